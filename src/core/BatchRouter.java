@@ -0,0 +1,264 @@
+package core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The class for routing a list of journeys without the GUI, so the program can be run from scripts.
+ * <p>
+ * Each line of the input holds an origin and a destination, either as two node IDs or as two latitude and longitude pairs,
+ * separated by spaces, commas, semicolons or tabs. Blank lines and lines starting with # are skipped. The map is loaded once,
+ * then the journeys are read in blocks and each block is routed on every core, with each thread using its own search
+ * workspace. Results are written in the same order as the input, one line per journey, as CSV or as JSON lines.
+ * <p>
+ * Results go to the standard output and the parser's messages to the standard error. The number of journeys routed per
+ * second is reported on the standard error once the input ends.
+ * @author Jacob Pennington
+ *
+ */
+public class BatchRouter {
+
+	public static final String USAGE = "Usage: --batch [file or - for standard input] [--json] [--path] [--shortest] [--mode=DIJKSTRA|A_STAR|BIDIRECTIONAL|CONTRACTION_HIERARCHY|LANDMARKS]";
+	private static final int BLOCK_SIZE = 4096; // The number of journeys read and routed at once, so long inputs are not all held in memory
+
+	private final Graph graph; // The map to route on
+	private final SearchMode mode; // The algorithm used between vertexes
+	private final boolean weighted; // True for quickest routes, false for shortest
+	private final boolean json; // True to write JSON lines, false to write CSV
+	private final boolean includePath; // True to write the node IDs of every vertex on each route
+
+	/**
+	 * Constructs a batch router.
+	 * @param graph - The map to route on.
+	 * @param mode - The algorithm to use between vertexes. Journeys between coordinates use Dijkstra's algorithm if the algorithm can only route between vertexes.
+	 * @param weighted - True for quickest routes, false for shortest.
+	 * @param json - True to write JSON lines, false to write CSV.
+	 * @param includePath - True to write the node IDs of every vertex on each route.
+	 */
+	public BatchRouter(Graph graph, SearchMode mode, boolean weighted, boolean json, boolean includePath){
+		this.graph = graph;
+		this.mode = mode;
+		this.weighted = weighted;
+		this.json = json;
+		this.includePath = includePath;
+	}
+
+	/**
+	 * Runs the batch mode from the command line arguments.
+	 * @param args - The arguments after --batch.
+	 * @return The exit status, 0 if every line could be read.
+	 */
+	public static int run(String[] args){
+		String input = "-";
+		boolean json = false;
+		boolean includePath = false;
+		boolean weighted = true;
+		SearchMode mode = SearchMode.DIJKSTRA;
+		for(String arg : args){
+			if(arg.equals("--json")){
+				json = true;
+			}else if(arg.equals("--path")){
+				includePath = true;
+			}else if(arg.equals("--shortest")){
+				weighted = false;
+			}else if(arg.startsWith("--mode=")){
+				try {
+					mode = SearchMode.valueOf(arg.substring(7).toUpperCase());
+				} catch (IllegalArgumentException e) {
+					System.err.println(USAGE);
+					return 2;
+				}
+			}else if(!arg.startsWith("--") || arg.equals("-")){
+				input = arg;
+			}else{
+				System.err.println(USAGE);
+				return 2;
+			}
+		}
+		if(!weighted && (mode == SearchMode.CONTRACTION_HIERARCHY || mode == SearchMode.LANDMARKS)){
+			System.err.println(mode + " only supports quickest routes");
+			return 2;
+		}
+		Parser parser = new Parser(WayFilter.DEFAULT, true, System.err); // The parser's statistics are kept out of the results
+		if(parser.map == null){
+			System.err.println("No map could be loaded from " + parser.path + " or " + parser.pbfPath);
+			return 1;
+		}
+		BatchRouter router = new BatchRouter(parser.map, mode, weighted, json, includePath);
+		try(InputStream in = input.equals("-") ? System.in : new FileInputStream(input)){
+			Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+			router.route(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), out);
+			out.flush();
+		} catch (FileNotFoundException e) {
+			System.err.println("Input file not found: " + input);
+			return 1;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Routes every journey read from the input and writes the results.
+	 * @param reader - The journeys, one per line.
+	 * @param writer - Where the results are written.
+	 * @return The number of journeys routed.
+	 * @throws IOException If the input cannot be read or the results cannot be written.
+	 */
+	public long route(BufferedReader reader, Writer writer) throws IOException{
+		final double startTime = System.nanoTime();
+		if(mode == SearchMode.CONTRACTION_HIERARCHY){
+			graph.getContractionHierarchy(); // Built before the clock starts for the routes so the throughput is not hidden by preprocessing
+		}else if(mode == SearchMode.LANDMARKS){
+			graph.getLandmarks();
+		}
+		final double routeStartTime = System.nanoTime();
+		if(!json){
+			writer.write(includePath ? "line,distance,time,error,path\n" : "line,distance,time,error\n");
+		}
+		List<String> lines = new ArrayList<String>(BLOCK_SIZE);
+		int[] lineNumbers = new int[BLOCK_SIZE];
+		int lineNumber = 0;
+		long count = 0;
+		String line;
+		do{
+			line = reader.readLine();
+			if(line != null){
+				lineNumber++;
+				String trimmed = line.trim();
+				if(trimmed.isEmpty() || trimmed.startsWith("#")){
+					continue;
+				}
+				lineNumbers[lines.size()] = lineNumber;
+				lines.add(trimmed);
+			}
+			if(lines.size() == BLOCK_SIZE || (line == null && !lines.isEmpty())){ // Routes a full block, or whatever is left at the end of the input
+				String[] results = IntStream.range(0, lines.size()).parallel().mapToObj(i -> routeLineSafely(lineNumbers[i], lines.get(i))).toArray(String[]::new);
+				for(String result : results){
+					writer.write(result);
+				}
+				count += lines.size();
+				lines.clear();
+			}
+		}while(line != null);
+		writer.flush();
+		final double endTime = System.nanoTime();
+		System.err.println("Routed " + count + " journeys in " + (endTime - routeStartTime)/1000000000 + " seconds, "
+				+ Utilities.round(count / ((endTime - routeStartTime)/1000000000), 1) + " journeys per second"
+				+ (routeStartTime - startTime > 1e9 ? " after " + (routeStartTime - startTime)/1000000000 + " seconds of preprocessing" : ""));
+		return count;
+	}
+
+	/**
+	 * Routes the journey on one line of the input, reporting anything that goes wrong as an error for that line so one bad
+	 * line cannot stop the rest of the batch.
+	 * @param lineNumber - The number of the line, starting from 1.
+	 * @param line - The line.
+	 * @return The result as a line of CSV or JSON, ending with a new line.
+	 */
+	private String routeLineSafely(int lineNumber, String line){
+		try {
+			return routeLine(lineNumber, line);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			return formatError(lineNumber, "could not be routed");
+		}
+	}
+
+	/**
+	 * Routes the journey on one line of the input.
+	 * @param lineNumber - The number of the line, starting from 1, used to match results to the input.
+	 * @param line - The line.
+	 * @return The result as a line of CSV or JSON, ending with a new line.
+	 */
+	private String routeLine(int lineNumber, String line){
+		String[] parts = line.split("[\\s,;]+");
+		Route route;
+		try {
+			if(parts.length == 2){
+				int source = graph.findVertex(Long.parseLong(parts[0]));
+				int destination = graph.findVertex(Long.parseLong(parts[1]));
+				if(source == -1 || destination == -1){
+					return formatError(lineNumber, (source == -1 ? parts[0] : parts[1]) + " is not on the map");
+				}
+				route = weighted ? graph.quickestRoute(source, destination, mode) : graph.shortestRoute(source, destination, mode);
+			}else if(parts.length == 4){
+				double[] coordinates = new double[4];
+				for(int i = 0; i < 4; i++){
+					coordinates[i] = Double.parseDouble(parts[i]);
+				}
+				if(!Graph.isValidLocation(coordinates[0], coordinates[1])){
+					return formatError(lineNumber, "origin is not a valid latitude and longitude");
+				}
+				if(!Graph.isValidLocation(coordinates[2], coordinates[3])){
+					return formatError(lineNumber, "destination is not a valid latitude and longitude");
+				}
+				Snap source = graph.findNearest(coordinates[0], coordinates[1]);
+				Snap destination = graph.findNearest(coordinates[2], coordinates[3]);
+				if(source == null || source.getDistance() > DataHandler.MAXIMUM_SNAP_DISTANCE){
+					return formatError(lineNumber, "origin is not near a road on the map");
+				}
+				if(destination == null || destination.getDistance() > DataHandler.MAXIMUM_SNAP_DISTANCE){
+					return formatError(lineNumber, "destination is not near a road on the map");
+				}
+				boolean pointMode = mode == SearchMode.DIJKSTRA || mode == SearchMode.A_STAR || mode == SearchMode.LANDMARKS; // The algorithms that can start part way along an arc
+				SearchMode snapMode = pointMode ? mode : SearchMode.DIJKSTRA;
+				route = weighted ? graph.quickestRoute(source, destination, snapMode) : graph.shortestRoute(source, destination, snapMode);
+			}else{
+				return formatError(lineNumber, "expected two node IDs or two latitude and longitude pairs");
+			}
+		} catch (NumberFormatException e) {
+			return formatError(lineNumber, "not a number");
+		}
+		if(route == null){
+			return formatError(lineNumber, "no route");
+		}
+		StringBuilder result = new StringBuilder();
+		if(json){
+			result.append("{\"line\":").append(lineNumber).append(",\"distance\":").append(route.getDistance()).append(",\"time\":").append(route.getTime());
+			if(includePath){
+				result.append(",\"path\":[");
+				for(int i = 0; i < route.size(); i++){
+					result.append(i == 0 ? "" : ",").append(graph.getNodeId(route.getVertex(i)));
+				}
+				result.append(']');
+			}
+			result.append("}\n");
+		}else{
+			result.append(lineNumber).append(',').append(route.getDistance()).append(',').append(route.getTime()).append(',');
+			if(includePath){
+				result.append(',');
+				for(int i = 0; i < route.size(); i++){
+					result.append(i == 0 ? "" : " ").append(graph.getNodeId(route.getVertex(i)));
+				}
+			}
+			result.append('\n');
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Formats the result of a journey that could not be routed.
+	 * @param lineNumber - The number of the line.
+	 * @param error - Why it could not be routed.
+	 * @return The result as a line of CSV or JSON, ending with a new line.
+	 */
+	private String formatError(int lineNumber, String error){
+		if(json){
+			return "{\"line\":" + lineNumber + ",\"error\":\"" + error + "\"}\n";
+		}
+		return lineNumber + ",,," + error + (includePath ? ",\n" : "\n");
+	}
+}
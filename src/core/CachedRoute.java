@@ -0,0 +1,72 @@
+package core;
+
+/**
+ * The class for storing a route kept by the route cache.
+ * <p>
+ * Only the vertexes of the route, its totals and its directions are kept, which is all that is needed to show the route again,
+ * so each cached route takes far less memory than the full result of the search.
+ * @author Jacob Pennington
+ *
+ */
+public class CachedRoute {
+
+	private final int[] vertexes; // The indexes of the vertexes on the route, starting with the source
+	private final double distance; // The length of the whole route in km
+	private final double time; // The weighted distance of the whole route in hours
+	private final String directions; // The directions for the route, as given by Graph.convertGraphToDirections
+
+	/**
+	 * Constructs a cached route from a calculated route.
+	 * @param route - The route.
+	 * @param directions - The directions for the route.
+	 */
+	public CachedRoute(Route route, String directions){
+		this.vertexes = new int[route.size()];
+		for(int i = 0; i < vertexes.length; i++){
+			vertexes[i] = route.getVertex(i);
+		}
+		this.distance = route.getDistance();
+		this.time = route.getTime();
+		this.directions = directions;
+	}
+
+	/**
+	 * Estimates the memory used by the route, so the cache can be limited by memory rather than by the number of routes.
+	 * @return The estimated size in bytes.
+	 */
+	public long getSize(){
+		return 64 + 4L * vertexes.length + 2L * directions.length();
+	}
+
+	/**
+	 * Returns the number of vertexes on the route, including the source and destination.
+	 * @return The number of vertexes on the route.
+	 */
+	public int size(){
+		return vertexes.length;
+	}
+
+	public int getVertex(int position){
+		return vertexes[position];
+	}
+
+	/**
+	 * Returns the length of the whole route.
+	 * @return The distance in km.
+	 */
+	public double getDistance(){
+		return distance;
+	}
+
+	/**
+	 * Returns the time taken to travel the whole route.
+	 * @return The time in hours.
+	 */
+	public double getTime(){
+		return time;
+	}
+
+	public String getDirections(){
+		return directions;
+	}
+}
@@ -0,0 +1,225 @@
+package core;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The class for storing the graph in compressed sparse row form for use by route calculations.
+ * <p>
+ * Vertexes are referred to by their index and every arc is stored as one edge leaving each of the
+ * two vertexes it joins. The edges leaving vertex v are found at positions firstEdge[v] up to but
+ * not including firstEdge[v + 1] of the edge arrays, so exploring a vertex reads a few adjacent
+ * array entries instead of looking up arc IDs in hashmaps.
+ * https://en.wikipedia.org/wiki/Sparse_matrix#Compressed_sparse_row_(CSR,_CRS_or_Yale_format)
+ * @author Jacob Pennington
+ *
+ */
+public class CompactGraph {
+
+	public static final byte START_TO_END = 1; // Set if the edge follows its arc from start to end, unset if it follows it from end to start
+	public static final byte TRAVERSABLE = 2; // Set if the edge can be travelled from its vertex to its target
+	public static final byte TRAVERSABLE_REVERSE = 4; // Set if the edge can be travelled from its target back to its vertex
+
+	final int vertexCount; // The number of vertexes
+	final int edgeCount; // The number of edges, two for each arc
+	final int[] firstEdge; // The position of the first edge of each vertex, with one extra entry marking the end of the last vertex's edges
+	final int[] edgeTarget; // The index of the vertex each edge leads to
+	final double[] edgeDistance; // The length of each edge in km
+	final double[] edgeTime; // The weighted distance of each edge in hours
+	final byte[] edgeFlags; // The direction and one way flags of each edge
+	final double[] lat; // The latitude of each vertex
+	final double[] lon; // The longitude of each vertex
+	final long[] nodeId; // The OSM ID of each vertex
+	final long[] sortedNodeIds; // The vertex IDs in ascending order, for finding a vertex by its ID
+	final int[] vertexAtRank; // The index of the vertex of each entry of sortedNodeIds
+	final int[] edgeWay; // The position in the way table of the way each edge's arc belongs to
+
+	/**
+	 * Breaks the ways down into one arc between each pair of neighbouring nodes and stores them in compressed sparse row form.
+	 * <p>
+	 * The edges of each vertex are stored in the order their arcs appear in the ways. Arcs that start and end on the same vertex are left
+	 * out as they can never be part of a route, as are arcs to nodes that were not in the file. The lengths of the arcs are calculated
+	 * with the ways shared out between threads, then the edges are filled in one arc at a time.
+	 * @param nodeId - The OSM ID of each vertex.
+	 * @param lat - The latitude of each vertex.
+	 * @param lon - The longitude of each vertex.
+	 * @param wayNodeStart - The position in wayNodes of the first node of each way, with one extra entry marking the end of the last way's nodes.
+	 * @param wayNodes - The index of the vertex of each node of each way in order, -1 for nodes that are not on the graph.
+	 * @param waySpeed - The average speed of each way in km/hr.
+	 * @param wayOneWay - 1 if a way is one way from its first node to its last, -1 if it is one way in reverse, 0 if it is not one way.
+	 * @param ways - The table of the ways, which is given the first edge of each way.
+	 * @param progress - Counts the arcs as they are weighted.
+	 */
+	public CompactGraph(long[] nodeId, double[] lat, double[] lon, int[] wayNodeStart, int[] wayNodes, double[] waySpeed, byte[] wayOneWay, WayTable ways, LoadProgress progress){
+		vertexCount = nodeId.length;
+		this.nodeId = nodeId;
+		this.lat = lat;
+		this.lon = lon;
+		int wayCount = wayNodeStart.length - 1;
+		double[] arcDistance = new double[wayNodes.length]; // The length of the arc starting at each position of wayNodes
+		progress.setTotalArcs(wayNodes.length - wayCount);
+		progress.setStage(LoadProgress.Stage.WEIGHTING);
+		IntStream.range(0, wayCount).parallel().forEach(w -> {
+			for(int k = wayNodeStart[w]; k < wayNodeStart[w + 1] - 1; k++){
+				int start = wayNodes[k];
+				int end = wayNodes[k + 1];
+				if(start != -1 && end != -1){
+					arcDistance[k] = Graph.calculateGreatCircleDistance(lat[start], lon[start], lat[end], lon[end]);
+				}
+			}
+			progress.addArcs(Math.max(0, wayNodeStart[w + 1] - wayNodeStart[w] - 1)); // Counted a way at a time so threads rarely add at once
+		});
+		firstEdge = new int[vertexCount + 1];
+		for(int w = 0; w < wayCount; w++){ // Counts the edges of each vertex so the arrays can be created at the right size
+			for(int k = wayNodeStart[w]; k < wayNodeStart[w + 1] - 1; k++){
+				if(isArc(wayNodes, k)){
+					firstEdge[wayNodes[k] + 1]++;
+					firstEdge[wayNodes[k + 1] + 1]++;
+				}
+			}
+		}
+		for(int v = 0; v < vertexCount; v++){ // Turns the counts into the position of each vertex's first edge
+			firstEdge[v + 1] += firstEdge[v];
+		}
+		edgeCount = firstEdge[vertexCount];
+		edgeTarget = new int[edgeCount];
+		edgeDistance = new double[edgeCount];
+		edgeTime = new double[edgeCount];
+		edgeFlags = new byte[edgeCount];
+		edgeWay = new int[edgeCount];
+		int[] nextEdge = Arrays.copyOf(firstEdge, vertexCount); // The position of the next edge to fill in for each vertex
+		for(int w = 0; w < wayCount; w++){
+			int oneWay = wayOneWay[w];
+			for(int k = wayNodeStart[w]; k < wayNodeStart[w + 1] - 1; k++){
+				if(!isArc(wayNodes, k)){
+					continue;
+				}
+				int start = wayNodes[k];
+				int end = wayNodes[k + 1];
+				double time = arcDistance[k] / waySpeed[w]; // Time in hours of the road found by dividing distance by the average speed
+				int edge = nextEdge[start]++; // The edge following the arc from start to end
+				edgeTarget[edge] = end;
+				edgeFlags[edge] = (byte)(START_TO_END | (oneWay != -1 ? TRAVERSABLE : 0) | (oneWay != 1 ? TRAVERSABLE_REVERSE : 0));
+				edgeDistance[edge] = arcDistance[k];
+				edgeTime[edge] = time;
+				edgeWay[edge] = w;
+				if(k == wayNodeStart[w]){
+					ways.firstSegmentEdge[w] = edge;
+				}
+				edge = nextEdge[end]++; // The edge following the arc from end to start
+				edgeTarget[edge] = start;
+				edgeFlags[edge] = (byte)((oneWay != 1 ? TRAVERSABLE : 0) | (oneWay != -1 ? TRAVERSABLE_REVERSE : 0));
+				edgeDistance[edge] = arcDistance[k];
+				edgeTime[edge] = time;
+				edgeWay[edge] = w;
+			}
+		}
+		sortedNodeIds = new long[vertexCount];
+		vertexAtRank = Utilities.sortIds(nodeId, sortedNodeIds);
+	}
+	
+	/**
+	 * Returns whether the nodes at a position of wayNodes and the position after it are both on the graph and are different vertexes.
+	 */
+	private static boolean isArc(int[] wayNodes, int k){
+		return wayNodes[k] != -1 && wayNodes[k + 1] != -1 && wayNodes[k] != wayNodes[k + 1];
+	}
+	
+	/**
+	 * Constructs a graph from arrays that have already been built, such as those read from a snapshot.
+	 * @param firstEdge - The position of the first edge of each vertex, with one extra entry.
+	 * @param edgeTarget - The index of the vertex each edge leads to.
+	 * @param edgeDistance - The length of each edge in km.
+	 * @param edgeTime - The weighted distance of each edge in hours.
+	 * @param edgeFlags - The direction and one way flags of each edge.
+	 * @param edgeWay - The position in the way table of the way of each edge.
+	 * @param lat - The latitude of each vertex.
+	 * @param lon - The longitude of each vertex.
+	 * @param nodeId - The OSM ID of each vertex.
+	 * @param sortedNodeIds - The vertex IDs in ascending order.
+	 * @param vertexAtRank - The index of the vertex of each entry of sortedNodeIds.
+	 */
+	CompactGraph(int[] firstEdge, int[] edgeTarget, double[] edgeDistance, double[] edgeTime, byte[] edgeFlags, int[] edgeWay,
+			double[] lat, double[] lon, long[] nodeId, long[] sortedNodeIds, int[] vertexAtRank){
+		this.vertexCount = lat.length;
+		this.edgeCount = edgeTarget.length;
+		this.firstEdge = firstEdge;
+		this.edgeTarget = edgeTarget;
+		this.edgeDistance = edgeDistance;
+		this.edgeTime = edgeTime;
+		this.edgeFlags = edgeFlags;
+		this.edgeWay = edgeWay;
+		this.lat = lat;
+		this.lon = lon;
+		this.nodeId = nodeId;
+		this.sortedNodeIds = sortedNodeIds;
+		this.vertexAtRank = vertexAtRank;
+	}
+	
+	/**
+	 * Finds a vertex by its OSM ID.
+	 * @param id - The OSM ID of the vertex.
+	 * @return The index of the vertex, or -1 if it is not on the graph.
+	 */
+	public int findVertex(long id){
+		return Utilities.findId(sortedNodeIds, vertexAtRank, id);
+	}
+	
+	/**
+	 * Finds the first edge leaving one vertex that leads to another, whether or not it can be travelled.
+	 * @param vertex - The index of the vertex the edge leaves.
+	 * @param target - The index of the vertex the edge leads to.
+	 * @return The index of the edge, or -1 if the vertexes are not joined.
+	 */
+	public int findEdge(int vertex, int target){
+		for(int edge = firstEdge[vertex]; edge < firstEdge[vertex + 1]; edge++){
+			if(edgeTarget[edge] == target){
+				return edge;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Calculates a hash of the vertexes, edges and weights of the graph, used to check that data saved for a graph is being loaded for the same graph.
+	 * @return The hash of the graph.
+	 */
+	public long getFingerprint(){
+		long hash = vertexCount;
+		for(int v = 0; v <= vertexCount; v++){
+			hash = hash * 31 + firstEdge[v];
+		}
+		for(int edge = 0; edge < edgeCount; edge++){
+			hash = hash * 31 + edgeTarget[edge];
+			hash = hash * 31 + Double.doubleToLongBits(edgeTime[edge]);
+			hash = hash * 31 + edgeFlags[edge];
+		}
+		return hash;
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public int getVertexCount(){
+		return vertexCount;
+	}
+
+	public int getEdgeCount(){
+		return edgeCount;
+	}
+
+	public double getLat(int vertex){
+		return lat[vertex];
+	}
+
+	public double getLon(int vertex){
+		return lon[vertex];
+	}
+	
+	public long getNodeId(int vertex){
+		return nodeId[vertex];
+	}
+	
+	public int getDegree(int vertex){
+		return firstEdge[vertex + 1] - firstEdge[vertex];
+	}
+}
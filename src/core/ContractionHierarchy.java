@@ -0,0 +1,717 @@
+package core;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The class for preprocessing a graph into a contraction hierarchy and calculating quickest routes with it.
+ * <p>
+ * Every vertex is given a rank by contracting the vertexes one at a time from least to most important. Contracting
+ * a vertex removes it from the graph and adds a shortcut between any two of its neighbours whose quickest route ran
+ * through it. A route can then be found by searching only upwards in rank from both the source and the destination,
+ * which settles far fewer vertexes than searching the whole graph.
+ * <p>
+ * Vertexes that do not neighbour each other are contracted at the same time, with their witness searches run in parallel.
+ * Each shortcut remembers the two edges it replaces so routes can be unpacked back into the edges of the compact graph.
+ * https://en.wikipedia.org/wiki/Contraction_hierarchies
+ * @author Jacob Pennington
+ *
+ */
+public class ContractionHierarchy {
+
+	private static final int WITNESS_SEARCH_LIMIT = 500; // The most vertexes a witness search settles before giving up and keeping the shortcut
+
+	private final CompactGraph graph; // The graph the hierarchy was built from
+	private final int vertexCount;
+
+	// Every edge of the hierarchy, both the edges of the graph and the shortcuts added while contracting
+	private int edgeCount = 0;
+	private int[] edgeSource; // The vertex each edge leaves
+	private int[] edgeTarget; // The vertex each edge arrives at
+	private double[] edgeTime; // The weighted distance of each edge in hours
+	private double[] edgeDistance; // The length of each edge in km
+	private int[] edgeOriginal; // The compact graph edge each original edge came from, -1 for shortcuts
+	private int[] edgeFirstChild; // The first of the two edges a shortcut replaces, -1 for original edges
+	private int[] edgeSecondChild; // The second of the two edges a shortcut replaces, -1 for original edges
+	private int shortcutCount = 0;
+
+	// The edges used by queries in compressed sparse row form
+	private int[] upwardFirst; // The position of each vertex's first edge to a higher ranked vertex in upwardEdges
+	private int[] upwardEdges; // The edges leaving each vertex to higher ranked vertexes, searched from the source
+	private int[] downwardFirst; // The position of each vertex's first edge from a higher ranked vertex in downwardEdges
+	private int[] downwardEdges; // The edges arriving at each vertex from higher ranked vertexes, searched backwards from the destination
+
+	// Only used while contracting
+	private IntList[] outEdges; // The edges leaving each uncontracted vertex
+	private IntList[] inEdges; // The edges arriving at each uncontracted vertex
+	private int[] deletedNeighbours; // The number of neighbours of each vertex that have been contracted
+
+	/**
+	 * Constructs the contraction hierarchy for the given graph using the weighted distance of its edges.
+	 * <p>
+	 * This is slow for large graphs so should be done once and kept for every query.
+	 * @param graph - The graph to preprocess.
+	 */
+	public ContractionHierarchy(CompactGraph graph){
+		final double startTime = System.nanoTime();
+		this.graph = graph;
+		this.vertexCount = graph.vertexCount;
+		int capacity = Math.max(graph.edgeCount, 16);
+		edgeSource = new int[capacity];
+		edgeTarget = new int[capacity];
+		edgeTime = new double[capacity];
+		edgeDistance = new double[capacity];
+		edgeOriginal = new int[capacity];
+		edgeFirstChild = new int[capacity];
+		edgeSecondChild = new int[capacity];
+		outEdges = new IntList[vertexCount];
+		inEdges = new IntList[vertexCount];
+		deletedNeighbours = new int[vertexCount];
+		for(int v = 0; v < vertexCount; v++){
+			outEdges[v] = new IntList(4);
+			inEdges[v] = new IntList(4);
+		}
+		addOriginalEdges();
+		int[][] upward = new int[vertexCount][]; // The edges each vertex had to higher ranked vertexes when it was contracted
+		int[][] downward = new int[vertexCount][];
+		contractVertexes(upward, downward);
+		upwardFirst = new int[vertexCount + 1];
+		upwardEdges = flatten(upward, upwardFirst);
+		downwardFirst = new int[vertexCount + 1];
+		downwardEdges = flatten(downward, downwardFirst);
+		outEdges = null; // The working lists are no longer needed once the hierarchy is built
+		inEdges = null;
+		deletedNeighbours = null;
+		final double duration = System.nanoTime() - startTime;
+		Core.debug("Contraction Hierarchy: " + shortcutCount + " shortcuts added in " + duration/1000000000 + " seconds");
+	}
+
+	/**
+	 * Adds one directed edge for each traversable edge of the compact graph, keeping only the quickest where two arcs join the same vertexes.
+	 */
+	private void addOriginalEdges(){
+		for(int v = 0; v < vertexCount; v++){
+			for(int edge = graph.firstEdge[v]; edge < graph.firstEdge[v + 1]; edge++){
+				if((graph.edgeFlags[edge] & CompactGraph.TRAVERSABLE) == 0){ // One way roads only get an edge in the direction they can be travelled
+					continue;
+				}
+				int target = graph.edgeTarget[edge];
+				int existing = findEdge(v, target);
+				if(existing == -1){
+					addEdge(v, target, graph.edgeTime[edge], graph.edgeDistance[edge], edge, -1, -1);
+				}else if(graph.edgeTime[edge] < edgeTime[existing]){ // Nothing refers to original edges yet so the slower one can be overwritten
+					edgeTime[existing] = graph.edgeTime[edge];
+					edgeDistance[existing] = graph.edgeDistance[edge];
+					edgeOriginal[existing] = edge;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Contracts every vertex, recording the edges each had to the more important vertexes still left when it was contracted.
+	 * <p>
+	 * Each round picks the vertexes with a lower priority than all of their neighbours. As none of them neighbour each other
+	 * their shortcuts are found in parallel, then they are removed from the graph one at a time in the order they were picked.
+	 * A witness route may pass through another vertex picked in the same round, but is only trusted if that vertex is removed later.
+	 * @param upward - Filled with the edges leaving each vertex to higher ranked vertexes.
+	 * @param downward - Filled with the edges arriving at each vertex from higher ranked vertexes.
+	 */
+	private void contractVertexes(int[][] upward, int[][] downward){
+		final int[] priority = new int[vertexCount];
+		final int[] roundOrder = new int[vertexCount]; // The position of each vertex in the order it is contracted this round, Integer.MAX_VALUE if it is not being contracted this round
+		Arrays.fill(roundOrder, Integer.MAX_VALUE);
+		boolean[] touched = new boolean[vertexCount];
+		IntStream.range(0, vertexCount).parallel().forEach(v -> priority[v] = calculatePriority(v));
+		int[] remaining = new int[vertexCount];
+		for(int v = 0; v < vertexCount; v++){
+			remaining[v] = v;
+		}
+		int remainingCount = vertexCount;
+		while(remainingCount > 0){
+			final int[] chosen = IntStream.of(Arrays.copyOf(remaining, remainingCount)).parallel().filter(v -> hasLowestPriority(v, priority)).toArray();
+			for(int i = 0; i < chosen.length; i++){
+				roundOrder[chosen[i]] = i;
+			}
+			final ShortcutList[] shortcuts = new ShortcutList[chosen.length];
+			IntStream.range(0, chosen.length).parallel().forEach(i -> { // The witness searches only read the graph so they can run at the same time
+				shortcuts[i] = new ShortcutList();
+				findShortcuts(chosen[i], roundOrder, shortcuts[i]);
+			});
+			IntList neighbours = new IntList();
+			for(int i = 0; i < chosen.length; i++){
+				int v = chosen[i];
+				upward[v] = outEdges[v].toArray();
+				downward[v] = inEdges[v].toArray();
+				removeVertex(v, neighbours, touched);
+				addShortcuts(shortcuts[i]);
+			}
+			for(int v : chosen){
+				roundOrder[v] = Integer.MAX_VALUE;
+			}
+			final int[] updated = neighbours.toArray();
+			for(int v : updated){
+				touched[v] = false;
+			}
+			IntStream.of(updated).parallel().forEach(v -> priority[v] = calculatePriority(v)); // Only the neighbours of contracted vertexes have changed
+			int kept = 0;
+			for(int i = 0; i < remainingCount; i++){ // Removes the contracted vertexes from the remaining vertexes
+				if(outEdges[remaining[i]] != null){
+					remaining[kept] = remaining[i];
+					kept++;
+				}
+			}
+			remainingCount = kept;
+		}
+	}
+
+	/**
+	 * Calculates how worthwhile it is to contract a vertex now, lower is better.
+	 * <p>
+	 * The priority is the edge difference, the number of shortcuts contracting it would add minus the number of edges it would
+	 * remove, plus the number of its neighbours already contracted so the contraction is spread evenly across the graph.
+	 * @param vertex - The index of the vertex.
+	 * @return The priority of the vertex.
+	 */
+	private int calculatePriority(int vertex){
+		int edgeDifference = findShortcuts(vertex, null, null) - outEdges[vertex].size() - inEdges[vertex].size();
+		return 4 * edgeDifference + deletedNeighbours[vertex]; // Edge difference matters most as it decides how many shortcuts are added
+	}
+
+	/**
+	 * Checks whether a vertex has a lower priority than every one of its uncontracted neighbours, with ties going to the lower index.
+	 * @param vertex - The index of the vertex.
+	 * @param priority - The priority of every vertex.
+	 * @return True if the vertex can be contracted this round.
+	 */
+	private boolean hasLowestPriority(int vertex, int[] priority){
+		IntList out = outEdges[vertex];
+		for(int i = 0; i < out.size(); i++){
+			if(!isLower(vertex, edgeTarget[out.get(i)], priority)){
+				return false;
+			}
+		}
+		IntList in = inEdges[vertex];
+		for(int i = 0; i < in.size(); i++){
+			if(!isLower(vertex, edgeSource[in.get(i)], priority)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isLower(int vertex, int neighbour, int[] priority){
+		return priority[vertex] < priority[neighbour] || (priority[vertex] == priority[neighbour] && vertex < neighbour);
+	}
+
+	/**
+	 * Finds the shortcuts needed to keep every quickest route that passes through a vertex once it is removed.
+	 * <p>
+	 * For each edge arriving at the vertex a limited Dijkstra's search is run from its source without using the vertex. A shortcut is
+	 * needed to each vertex the vertex has an edge to unless the search finds another route, a witness, that is no slower.
+	 * When vertexes are contracted together a witness is not trusted if it passes through a vertex that will already have been removed.
+	 * @param vertex - The index of the vertex to contract.
+	 * @param roundOrder - The order the vertexes of the current round are contracted in, or null if only the one vertex is considered.
+	 * @param shortcuts - The list to add the shortcuts to, or null to only count them.
+	 * @return The number of shortcuts needed.
+	 */
+	private int findShortcuts(int vertex, int[] roundOrder, ShortcutList shortcuts){
+		IntList in = inEdges[vertex];
+		IntList out = outEdges[vertex];
+		if(in.isEmpty() || out.isEmpty()){ // No route can pass through the vertex
+			return 0;
+		}
+		double longestOut = 0;
+		for(int j = 0; j < out.size(); j++){
+			longestOut = Math.max(longestOut, edgeTime[out.get(j)]);
+		}
+		int count = 0;
+		for(int i = 0; i < in.size(); i++){
+			int inEdge = in.get(i);
+			int source = edgeSource[inEdge];
+			SearchWorkspace workspace = findWitnesses(source, vertex, roundOrder, edgeTime[inEdge] + longestOut);
+			for(int j = 0; j < out.size(); j++){
+				int outEdge = out.get(j);
+				int target = edgeTarget[outEdge];
+				if(target == source){
+					continue;
+				}
+				double time = edgeTime[inEdge] + edgeTime[outEdge];
+				boolean witnessed = workspace.getWeightedDistance(target) <= time && (roundOrder == null || workspace.getDistance(target) > roundOrder[vertex]);
+				if(!witnessed){ // No witness so the shortcut is needed
+					count++;
+					if(shortcuts != null){
+						shortcuts.add(source, target, time, edgeDistance[inEdge] + edgeDistance[outEdge], inEdge, outEdge);
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Runs a limited Dijkstra's search from a vertex that avoids the vertex being contracted.
+	 * <p>
+	 * Only weighted distances are searched, so the distance of each vertex in the workspace is instead used to hold the earliest
+	 * round order of any vertex on the route to it.
+	 * @param source - The index of the vertex to search from.
+	 * @param avoid - The index of the vertex being contracted.
+	 * @param roundOrder - The order the vertexes of the current round are contracted in, or null.
+	 * @param limit - The weighted distance after which the search stops.
+	 * @return The workspace of the current thread holding the distances found.
+	 */
+	private SearchWorkspace findWitnesses(int source, int avoid, int[] roundOrder, double limit){
+		SearchWorkspace workspace = SearchWorkspace.forThread(vertexCount);
+		VertexQueue queue = workspace.getQueue();
+		workspace.visit(source, Integer.MAX_VALUE, 0, -1);
+		queue.add(source, 0);
+		int settled = 0;
+		while(!queue.isEmpty() && queue.peekKey() <= limit && settled < WITNESS_SEARCH_LIMIT){
+			int vertex = queue.poll();
+			workspace.settle(vertex);
+			settled++;
+			double time = workspace.getWeightedDistance(vertex);
+			double earliest = workspace.getDistance(vertex);
+			IntList out = outEdges[vertex];
+			for(int i = 0; i < out.size(); i++){
+				int edge = out.get(i);
+				int target = edgeTarget[edge];
+				if(target == avoid || workspace.isSettled(target)){
+					continue;
+				}
+				double workingTime = time + edgeTime[edge];
+				if(workingTime < workspace.getWeightedDistance(target)){
+					workspace.visit(target, roundOrder == null ? earliest : Math.min(earliest, roundOrder[target]), workingTime, vertex);
+					queue.add(target, workingTime);
+				}
+			}
+		}
+		return workspace;
+	}
+
+	/**
+	 * Takes a vertex out of the working graph by removing its edges from its neighbours' lists.
+	 * @param vertex - The index of the vertex being contracted.
+	 * @param neighbours - The list to add each neighbour to the first time it is seen.
+	 * @param touched - Marks the neighbours already added to the list.
+	 */
+	private void removeVertex(int vertex, IntList neighbours, boolean[] touched){
+		IntList out = outEdges[vertex];
+		for(int i = 0; i < out.size(); i++){
+			int edge = out.get(i);
+			int target = edgeTarget[edge];
+			inEdges[target].removeValue(edge);
+			deletedNeighbours[target]++;
+			if(!touched[target]){
+				touched[target] = true;
+				neighbours.add(target);
+			}
+		}
+		IntList in = inEdges[vertex];
+		for(int i = 0; i < in.size(); i++){
+			int edge = in.get(i);
+			int source = edgeSource[edge];
+			outEdges[source].removeValue(edge);
+			deletedNeighbours[source]++;
+			if(!touched[source]){
+				touched[source] = true;
+				neighbours.add(source);
+			}
+		}
+		outEdges[vertex] = null; // Marks the vertex as contracted
+		inEdges[vertex] = null;
+	}
+
+	/**
+	 * Adds shortcuts to the working graph, unless an edge between the same vertexes is already as quick.
+	 * <p>
+	 * A slower existing edge is replaced rather than changed, as it may be one of the edges an earlier shortcut unpacks to.
+	 * @param shortcuts - The shortcuts to add.
+	 */
+	private void addShortcuts(ShortcutList shortcuts){
+		for(int i = 0; i < shortcuts.size; i++){
+			int source = shortcuts.sources[i];
+			int target = shortcuts.targets[i];
+			int existing = findEdge(source, target);
+			if(existing != -1 && edgeTime[existing] <= shortcuts.times[i]){
+				continue;
+			}
+			int edge = addEdge(source, target, shortcuts.times[i], shortcuts.distances[i], -1, shortcuts.firstChildren[i], shortcuts.secondChildren[i]);
+			if(existing != -1){
+				outEdges[source].removeValue(existing);
+				inEdges[target].removeValue(existing);
+			}
+			shortcutCount++;
+		}
+	}
+
+	/**
+	 * Finds the edge from one vertex to another in the working graph.
+	 * @param source - The index of the vertex the edge leaves.
+	 * @param target - The index of the vertex the edge arrives at.
+	 * @return The edge, or -1 if there is none.
+	 */
+	private int findEdge(int source, int target){
+		IntList out = outEdges[source];
+		for(int i = 0; i < out.size(); i++){
+			if(edgeTarget[out.get(i)] == target){
+				return out.get(i);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Creates a new edge and adds it to the working graph.
+	 * @return The index of the new edge.
+	 */
+	private int addEdge(int source, int target, double time, double distance, int original, int firstChild, int secondChild){
+		if(edgeCount == edgeSource.length){ // Grows the edge arrays when they are full
+			int capacity = edgeCount * 2;
+			edgeSource = Arrays.copyOf(edgeSource, capacity);
+			edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+			edgeTime = Arrays.copyOf(edgeTime, capacity);
+			edgeDistance = Arrays.copyOf(edgeDistance, capacity);
+			edgeOriginal = Arrays.copyOf(edgeOriginal, capacity);
+			edgeFirstChild = Arrays.copyOf(edgeFirstChild, capacity);
+			edgeSecondChild = Arrays.copyOf(edgeSecondChild, capacity);
+		}
+		int edge = edgeCount;
+		edgeSource[edge] = source;
+		edgeTarget[edge] = target;
+		edgeTime[edge] = time;
+		edgeDistance[edge] = distance;
+		edgeOriginal[edge] = original;
+		edgeFirstChild[edge] = firstChild;
+		edgeSecondChild[edge] = secondChild;
+		edgeCount++;
+		outEdges[source].add(edge);
+		inEdges[target].add(edge);
+		return edge;
+	}
+
+	/**
+	 * Joins the edge lists of every vertex into one array.
+	 * @param lists - The edge list of each vertex.
+	 * @param first - Filled with the position of each vertex's first edge, plus the end of the last.
+	 * @return The joined edge lists.
+	 */
+	private static int[] flatten(int[][] lists, int[] first){
+		int total = 0;
+		for(int v = 0; v < lists.length; v++){
+			first[v] = total;
+			total += lists[v].length;
+		}
+		first[lists.length] = total;
+		int[] flat = new int[total];
+		for(int v = 0; v < lists.length; v++){
+			System.arraycopy(lists[v], 0, flat, first[v], lists[v].length);
+		}
+		return flat;
+	}
+
+	/**
+	 * Calculates the quickest route between two vertexes by searching upwards through the hierarchy from both ends.
+	 * <p>
+	 * The forward search only uses edges to higher ranked vertexes and the backward search only uses edges from higher ranked
+	 * vertexes, and the quickest route is where the two meet at the lowest total. A vertex is stalled, and its edges left
+	 * unexplored, if it can be reached more quickly through an edge coming down from a vertex the same search has already reached.
+	 * @param source - The index of the source vertex.
+	 * @param destination - The index of the destination vertex.
+	 * @return The route found, or null if the destination cannot be reached from the source.
+	 */
+	public Route calculateRoute(int source, int destination){
+		SearchWorkspace forward = SearchWorkspace.forThread(vertexCount, SearchWorkspace.FORWARD);
+		SearchWorkspace backward = SearchWorkspace.forThread(vertexCount, SearchWorkspace.BACKWARD);
+		VertexQueue forwardQueue = forward.getQueue();
+		VertexQueue backwardQueue = backward.getQueue();
+		forward.visit(source, 0, 0, -1);
+		forwardQueue.add(source, 0);
+		backward.visit(destination, 0, 0, -1);
+		backwardQueue.add(destination, 0);
+		double best = Double.MAX_VALUE; // The weighted distance of the quickest route found so far
+		int meeting = -1; // The vertex the quickest route found so far passes through
+		int settledVertexes = 0;
+		while(true){
+			boolean forwardActive = !forwardQueue.isEmpty() && forwardQueue.peekKey() < best; // A search stops once nothing left in its queue could improve the route
+			boolean backwardActive = !backwardQueue.isEmpty() && backwardQueue.peekKey() < best;
+			if(!forwardActive && !backwardActive){
+				break;
+			}
+			boolean forwards = forwardActive && (!backwardActive || forwardQueue.peekKey() <= backwardQueue.peekKey());
+			SearchWorkspace workspace = forwards ? forward : backward;
+			SearchWorkspace opposite = forwards ? backward : forward;
+			int vertex = workspace.getQueue().poll();
+			workspace.settle(vertex);
+			settledVertexes++;
+			if(opposite.isVisited(vertex)){ // The searches have met at this vertex
+				double total = workspace.getWeightedDistance(vertex) + opposite.getWeightedDistance(vertex);
+				if(total < best){
+					best = total;
+					meeting = vertex;
+				}
+			}
+			int[] searchFirst = forwards ? upwardFirst : downwardFirst;
+			int[] searchEdges = forwards ? upwardEdges : downwardEdges;
+			if(isStalled(vertex, workspace, forwards ? downwardFirst : upwardFirst, forwards ? downwardEdges : upwardEdges, !forwards)){
+				continue;
+			}
+			double time = workspace.getWeightedDistance(vertex);
+			double distance = workspace.getDistance(vertex);
+			for(int i = searchFirst[vertex]; i < searchFirst[vertex + 1]; i++){
+				int edge = searchEdges[i];
+				int target = forwards ? edgeTarget[edge] : edgeSource[edge];
+				double workingTime = time + edgeTime[edge];
+				if(workingTime < workspace.getWeightedDistance(target)){
+					workspace.visit(target, distance + edgeDistance[edge], workingTime, vertex);
+					workspace.getQueue().add(target, workingTime);
+				}
+			}
+		}
+		if(meeting == -1){
+			Core.debug("No route found - " + settledVertexes + " vertexes settled");
+			return null;
+		}
+		return unpackRoute(source, meeting, forward, backward, settledVertexes);
+	}
+
+	/**
+	 * Checks whether a vertex has been reached by its search more slowly than it could be through a higher ranked vertex.
+	 * @param vertex - The index of the vertex.
+	 * @param workspace - The workspace of the search.
+	 * @param first - The positions of the edges from higher ranked vertexes, in the direction opposite to the search.
+	 * @param edges - The edges from higher ranked vertexes.
+	 * @param outwards - True if the higher ranked vertex is the target of these edges, false if it is the source.
+	 * @return True if the vertex is stalled.
+	 */
+	private boolean isStalled(int vertex, SearchWorkspace workspace, int[] first, int[] edges, boolean outwards){
+		double time = workspace.getWeightedDistance(vertex);
+		for(int i = first[vertex]; i < first[vertex + 1]; i++){
+			int edge = edges[i];
+			int higher = outwards ? edgeTarget[edge] : edgeSource[edge];
+			if(workspace.isVisited(higher) && workspace.getWeightedDistance(higher) + edgeTime[edge] < time){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Turns the two halves of a finished query into a route along the edges of the compact graph.
+	 * @param source - The index of the source vertex.
+	 * @param meeting - The index of the vertex the searches met at.
+	 * @param forward - The workspace of the search from the source.
+	 * @param backward - The workspace of the search from the destination.
+	 * @param settledVertexes - The number of vertexes settled by the query.
+	 * @return The route from the source to the destination.
+	 */
+	private Route unpackRoute(int source, int meeting, SearchWorkspace forward, SearchWorkspace backward, int settledVertexes){
+		IntList hierarchyEdges = new IntList();
+		for(int vertex = meeting; forward.getPreviousVertex(vertex) != -1; vertex = forward.getPreviousVertex(vertex)){ // Collects the upward half from the meeting vertex back to the source
+			int previous = forward.getPreviousVertex(vertex);
+			hierarchyEdges.add(findQueryEdge(upwardFirst, upwardEdges, edgeTarget, previous, vertex));
+		}
+		int upwardCount = hierarchyEdges.size();
+		for(int i = 0; i < upwardCount / 2; i++){ // Puts the upward half in order from the source
+			int swap = hierarchyEdges.get(i);
+			hierarchyEdges.set(i, hierarchyEdges.get(upwardCount - 1 - i));
+			hierarchyEdges.set(upwardCount - 1 - i, swap);
+		}
+		for(int vertex = meeting; backward.getPreviousVertex(vertex) != -1; vertex = backward.getPreviousVertex(vertex)){ // Adds the downward half from the meeting vertex to the destination
+			int next = backward.getPreviousVertex(vertex);
+			hierarchyEdges.add(findQueryEdge(downwardFirst, downwardEdges, edgeSource, next, vertex));
+		}
+		IntList originalEdges = new IntList();
+		IntList stack = new IntList();
+		for(int i = 0; i < hierarchyEdges.size(); i++){ // Replaces every shortcut with the edges it was made from
+			stack.add(hierarchyEdges.get(i));
+			while(!stack.isEmpty()){
+				int edge = stack.removeLast();
+				if(edgeOriginal[edge] != -1){
+					originalEdges.add(edgeOriginal[edge]);
+				}else{
+					stack.add(edgeSecondChild[edge]); // The second child is added first so the first child is unpacked first
+					stack.add(edgeFirstChild[edge]);
+				}
+			}
+		}
+		int length = originalEdges.size() + 1;
+		int[] vertexes = new int[length];
+		double[] distances = new double[length];
+		double[] weightedDistances = new double[length];
+		vertexes[0] = source;
+		for(int i = 0; i < originalEdges.size(); i++){
+			int edge = originalEdges.get(i);
+			vertexes[i + 1] = graph.edgeTarget[edge];
+			distances[i + 1] = distances[i] + graph.edgeDistance[edge];
+			weightedDistances[i + 1] = weightedDistances[i] + graph.edgeTime[edge];
+		}
+		return new Route(vertexes, distances, weightedDistances, settledVertexes);
+	}
+
+	/**
+	 * Finds the query edge stored against one vertex that joins it to another.
+	 * @param first - The positions of each vertex's edges.
+	 * @param edges - The edges of every vertex.
+	 * @param ends - Either edgeTarget or edgeSource, whichever gives the other vertex of the stored edges.
+	 * @param vertex - The vertex the edge is stored against.
+	 * @param other - The other vertex of the edge.
+	 * @return The index of the edge.
+	 */
+	private int findQueryEdge(int[] first, int[] edges, int[] ends, int vertex, int other){
+		for(int i = first[vertex]; i < first[vertex + 1]; i++){
+			if(ends[edges[i]] == other){
+				return edges[i];
+			}
+		}
+		throw new IllegalStateException("No hierarchy edge between " + vertex + " and " + other);
+	}
+
+	/**
+	 * Calculates the quickest time and its distance from every source to every target using buckets.
+	 * <p>
+	 * An upward search is run backwards from each target, and every vertex it settles is given a bucket entry recording the
+	 * target and the time from the vertex to it. An upward search is then run forwards from each source, and at every vertex it
+	 * settles the entries in that vertex's bucket give a route to their target through the vertex. As with a single query the
+	 * quickest route to each target is the lowest of these, so each source and target is only searched once rather than once
+	 * for every pair. The searches from the targets, then the searches from the sources, are run in parallel.
+	 * @param sources - The index of the vertex of each row.
+	 * @param targets - The index of the vertex of each column.
+	 * @param times - Filled with the quickest time from each source to each target, Double.POSITIVE_INFINITY if it cannot be reached.
+	 * @param distances - Filled with the length of each of those routes.
+	 */
+	public void calculateMatrix(int[] sources, int[] targets, double[][] times, double[][] distances){
+		final double startTime = System.nanoTime();
+		int[][] reached = new int[targets.length][]; // The vertexes settled by the search from each target
+		double[][] reachedTime = new double[targets.length][]; // The time from each of those vertexes to the target
+		double[][] reachedDistance = new double[targets.length][];
+		IntStream.range(0, targets.length).parallel().forEach(column -> {
+			SearchWorkspace workspace = SearchWorkspace.forThread(vertexCount, SearchWorkspace.BACKWARD);
+			IntList settled = searchUpwards(targets[column], false, workspace);
+			reached[column] = settled.toArray();
+			reachedTime[column] = new double[settled.size()];
+			reachedDistance[column] = new double[settled.size()];
+			for(int i = 0; i < settled.size(); i++){
+				reachedTime[column][i] = workspace.getWeightedDistance(settled.get(i));
+				reachedDistance[column][i] = workspace.getDistance(settled.get(i));
+			}
+		});
+		int[] bucketStart = new int[vertexCount + 1]; // The position in the bucket arrays of the first entry of each vertex, with one extra entry marking the end of the last vertex's entries
+		for(int[] vertexes : reached){ // Counts the entries of each vertex so the buckets can be created at the right size
+			for(int vertex : vertexes){
+				bucketStart[vertex + 1]++;
+			}
+		}
+		for(int v = 0; v < vertexCount; v++){
+			bucketStart[v + 1] += bucketStart[v];
+		}
+		int entryCount = bucketStart[vertexCount];
+		int[] bucketTarget = new int[entryCount]; // The column of the target of each entry
+		double[] bucketTime = new double[entryCount]; // The time from the entry's vertex to its target
+		double[] bucketDistance = new double[entryCount];
+		int[] nextEntry = Arrays.copyOf(bucketStart, vertexCount); // The position of the next entry to fill in for each vertex
+		for(int column = 0; column < targets.length; column++){
+			for(int i = 0; i < reached[column].length; i++){
+				int entry = nextEntry[reached[column][i]]++;
+				bucketTarget[entry] = column;
+				bucketTime[entry] = reachedTime[column][i];
+				bucketDistance[entry] = reachedDistance[column][i];
+			}
+		}
+		IntStream.range(0, sources.length).parallel().forEach(row -> {
+			SearchWorkspace workspace = SearchWorkspace.forThread(vertexCount, SearchWorkspace.FORWARD);
+			IntList settled = searchUpwards(sources[row], true, workspace);
+			double[] rowTimes = times[row];
+			double[] rowDistances = distances[row];
+			Arrays.fill(rowTimes, Double.POSITIVE_INFINITY);
+			Arrays.fill(rowDistances, Double.POSITIVE_INFINITY);
+			for(int i = 0; i < settled.size(); i++){
+				int vertex = settled.get(i);
+				double time = workspace.getWeightedDistance(vertex);
+				double distance = workspace.getDistance(vertex);
+				for(int entry = bucketStart[vertex]; entry < bucketStart[vertex + 1]; entry++){
+					int column = bucketTarget[entry];
+					if(time + bucketTime[entry] < rowTimes[column]){
+						rowTimes[column] = time + bucketTime[entry];
+						rowDistances[column] = distance + bucketDistance[entry];
+					}
+				}
+			}
+		});
+		final double duration = System.nanoTime() - startTime;
+		Core.debug("Matrix: " + sources.length + " x " + targets.length + " with " + entryCount + " bucket entries in " + duration/1000000000 + " seconds");
+	}
+
+	/**
+	 * Searches upwards through the hierarchy from one vertex until every vertex it can reach has been settled.
+	 * @param start - The index of the vertex to search from.
+	 * @param forwards - True to follow edges to higher ranked vertexes, false to follow edges from them backwards.
+	 * @param workspace - The workspace to search in, left holding the times and distances from the start.
+	 * @return The vertexes settled that were not stalled, as only these can be where a quickest route meets the other search.
+	 */
+	private IntList searchUpwards(int start, boolean forwards, SearchWorkspace workspace){
+		IntList settled = new IntList();
+		VertexQueue queue = workspace.getQueue();
+		workspace.visit(start, 0, 0, -1);
+		queue.add(start, 0);
+		int[] searchFirst = forwards ? upwardFirst : downwardFirst;
+		int[] searchEdges = forwards ? upwardEdges : downwardEdges;
+		while(!queue.isEmpty()){
+			int vertex = queue.poll();
+			workspace.settle(vertex);
+			if(isStalled(vertex, workspace, forwards ? downwardFirst : upwardFirst, forwards ? downwardEdges : upwardEdges, !forwards)){
+				continue;
+			}
+			settled.add(vertex);
+			double time = workspace.getWeightedDistance(vertex);
+			double distance = workspace.getDistance(vertex);
+			for(int i = searchFirst[vertex]; i < searchFirst[vertex + 1]; i++){
+				int edge = searchEdges[i];
+				int target = forwards ? edgeTarget[edge] : edgeSource[edge];
+				double workingTime = time + edgeTime[edge];
+				if(workingTime < workspace.getWeightedDistance(target)){
+					workspace.visit(target, distance + edgeDistance[edge], workingTime, vertex);
+					queue.add(target, workingTime);
+				}
+			}
+		}
+		return settled;
+	}
+
+	public int getShortcutCount(){
+		return shortcutCount;
+	}
+
+	/**
+	 * A private class for storing the shortcuts found for one vertex while witness searches run in parallel.
+	 * @author Jacob Pennington
+	 *
+	 */
+	private static class ShortcutList {
+		int size = 0;
+		int[] sources = new int[4];
+		int[] targets = new int[4];
+		double[] times = new double[4];
+		double[] distances = new double[4];
+		int[] firstChildren = new int[4];
+		int[] secondChildren = new int[4];
+
+		void add(int source, int target, double time, double distance, int firstChild, int secondChild){
+			if(size == sources.length){
+				sources = Arrays.copyOf(sources, size * 2);
+				targets = Arrays.copyOf(targets, size * 2);
+				times = Arrays.copyOf(times, size * 2);
+				distances = Arrays.copyOf(distances, size * 2);
+				firstChildren = Arrays.copyOf(firstChildren, size * 2);
+				secondChildren = Arrays.copyOf(secondChildren, size * 2);
+			}
+			sources[size] = source;
+			targets[size] = target;
+			times[size] = time;
+			distances[size] = distance;
+			firstChildren[size] = firstChild;
+			secondChildren[size] = secondChild;
+			size++;
+		}
+	}
+}
@@ -1,5 +1,10 @@
 package core;
 
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 
@@ -17,11 +22,38 @@ public class Core { // The central class with the core methods for initialising
 	 * <p>
 	 * When the program runs, this method is the first to be called. 
 	 * It creates the parser object
-	 * and the GUI.
+	 * and the GUI, which then loads the map in the background.
+	 * <p>
+	 * If the first argument is --batch the GUI is not created and journeys are routed from a file or the standard input instead.
+	 * --serve runs an HTTP route server instead, and --loadtest measures a running server. Only the GUI sends the console
+	 * output to resources/output.log, so the other modes can write to the standard output.
 	 * @param args Command line arguments when the program is run from the command line.
 	 */
 	public static void main(String[] args) {
+		if(args.length > 0 && args[0].equals("--batch")){ // Headless mode for scripts
+			System.exit(BatchRouter.run(Arrays.copyOfRange(args, 1, args.length)));
+		}
+		if(args.length > 0 && args[0].equals("--serve")){ // Runs until the program is stopped
+			int status = RouteServer.run(Arrays.copyOfRange(args, 1, args.length));
+			if(status != 0){
+				System.exit(status);
+			}
+			return;
+		}
+		if(args.length > 0 && args[0].equals("--loadtest")){ // Measures a server started with --serve
+			System.exit(LoadTestClient.run(Arrays.copyOfRange(args, 1, args.length)));
+		}
 		final double startTime = System.nanoTime();
+		try {
+			System.setOut(new PrintStream(
+					new FileOutputStream("resources/output.log")));
+			/*  Ensures that all console output
+			 *  is redirected to a text
+			 *  file for reviewing, as the GUI
+			 *  has no console to write to */
+		} catch (FileNotFoundException e1) {
+			e1.printStackTrace();
+		}
 	    try {
 			UIManager.setLookAndFeel(
 					UIManager.getSystemLookAndFeelClassName()); // Sets the look and feel of the UI
@@ -31,8 +63,10 @@ public class Core { // The central class with the core methods for initialising
 				| UnsupportedLookAndFeelException e) {
 			e.printStackTrace();
 		}
-	    Parser parser = new Parser(); // Constructs the parser object
-		new RouteFinderGUI(parser).setVisible(true); // Creates the GUI passing the parser as an argument
+	    Parser parser = new Parser(WayFilter.DEFAULT, false); // Constructs the parser object without loading the map yet
+		RouteFinderGUI gui = new RouteFinderGUI(parser); // Creates the GUI passing the parser as an argument
+		gui.setVisible(true);
+		gui.loadMap(); // Loads the map on another thread so the window shows straight away
 		final double duration = System.nanoTime() - startTime;
 		System.out.println("Run Time: " +
 		duration/1000000000 + " seconds");
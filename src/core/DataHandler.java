@@ -1,12 +1,12 @@
 package core;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
-import java.util.HashMap;
 
 /**
  * The class for dealing with converting input from the UI into IDs that the core program can use.
@@ -15,9 +15,14 @@ import java.util.HashMap;
  */
 public class DataHandler { // The data handler receives input from the GUI and performs operations such as lookups
 	
+	public static final double MAXIMUM_SNAP_DISTANCE = 1; // How far in km a place can be from the nearest road and still be routed to
+	
 	private String origin;
 	private String destination;
 	private Parser parser;
+	private GeocodeCache geocodeCache; // The answers of earlier online lookups, loaded the first time one is needed
+	private Graph cacheMap; // The map the geocode cache was last checked against
+	private final RouteCache routeCache = new RouteCache(RouteCache.DEFAULT_MAXIMUM_BYTES); // The routes calculated most recently
 	
 	/**
 	 * Constructor for creating the DataHandler
@@ -36,11 +41,51 @@ public class DataHandler { // The data handler receives input from the GUI and p
 		String nodeId = "";
 		if(isANumber(input)){ // If the string entered is just a number - assume it is a node id
 			nodeId = input.trim();
-			if(parser.vertexMap.get(nodeId) != null){ // Checks to see if node id is present on the currently loaded map
+			if(convertNodeIdToVertex(nodeId) != -1){ // Checks to see if node id is present on the currently loaded map
 				return nodeId;
 			}
 			return "!presence";
 		}
+		String[] coordinates = input.split(",");
+		if(coordinates.length == 2 && isACoordinate(coordinates[0]) && isACoordinate(coordinates[1])){ // A latitude and longitude such as "51.5, -0.12"
+			nodeId = convertPointToNodeId(coordinates[0].trim(), coordinates[1].trim());
+			return nodeId == null ? "!presence" : nodeId;
+		}
+		Geocoder geocoder = parser.map.getGeocoder();
+		if(geocoder != null){ // Looks for the place on the loaded map first, so no internet connection is needed for places it knows
+			int vertex = geocoder.find(input);
+			if(vertex != -1){
+				Core.debug("Found " + input + " offline");
+				return Long.toString(parser.map.getNodeId(vertex));
+			}
+		}
+		GeocodeCache cache = getGeocodeCache();
+		nodeId = cache.get(input);
+		if(nodeId != null){ // The same place has been looked up online before on this map
+			Core.debug("Found " + input + " in the geocode cache");
+			return nodeId;
+		}
+		nodeId = convertPlaceToNodeId(input);
+		if(nodeId != null && (isANumber(nodeId) || nodeId.equals("!presence"))){ // Connection errors are not remembered as they may not happen next time
+			cache.put(input, nodeId);
+			try {
+				cache.save(new File(GeocodeCache.CACHE_FILE));
+			} catch (IOException e) {
+				e.printStackTrace();
+				Core.debug("Geocode cache could not be saved");
+			}
+		}
+		return nodeId;
+	}
+	
+	/**
+	 * Looks a place up with the online Nominatim geocoder and converts it into a node ID.
+	 * @param input - The input string.
+	 * @return A String of a node ID, "!presence" if the place was not found or is not on the map, "!internet" if there is no
+	 * connection, or null if the lookup failed in some other way.
+	 */
+	private String convertPlaceToNodeId(String input){
+		String nodeId = "";
 		String urlString = "http://nominatim.openstreetmap.org/search?q=" + input.replace(' ', '+') + "&format=xml&addressdetails=1"; // Nominatim is an online lookup which can convert addresses to osm ids
 		URL website;
 		try {
@@ -58,21 +103,29 @@ public class DataHandler { // The data handler receives input from the GUI and p
 				int osm_typeIndex = xmlResponse.indexOf("osm_type") + xmlResponse.substring(xmlResponse.indexOf("osm_type")).indexOf("'") + 1; // Finds the index in the string of the value of the "osm_type" tag
 				String osm_type = xmlResponse.substring(osm_typeIndex, osm_typeIndex + xmlResponse.substring(osm_typeIndex).indexOf("'")); // Extracts the value of the "osm_type" tag
 				int osm_idIndex = xmlResponse.indexOf("osm_id") + 8; // Finds the index in the string of the value of the "osm_id" tag
+				String lat = getAttribute(xmlResponse, "lat"); // The location of the place, used to find the nearest road to it
+				String lon = getAttribute(xmlResponse, "lon");
 				if(osm_type.equals("way")){ // If the id is a way then it needs to be converted to a node id before it can be used
 					String wayId = xmlResponse.substring(osm_idIndex, osm_idIndex + xmlResponse.substring(osm_idIndex).indexOf("'")); // Extracts the value of the "osm_id" tag
-					nodeId = convertWayIdToNodeId(wayId); // Calculates a best guess node id from the way id
+					nodeId = lat != null && lon != null ? convertPointToNodeId(lat, lon) : convertWayIdToNodeId(wayId); // Uses the road nearest the place, or guesses a node on the way if no location was given
 					Core.debug("Way ID: " + wayId);
 					Core.debug("Node ID: " + nodeId);
-					if(parser.vertexMap.get(nodeId) != null){ // Checks to see whether the node id is present on the currently loaded map
+					if(convertNodeIdToVertex(nodeId) != -1){ // Checks to see whether the node id is present on the currently loaded map
 						return nodeId;
 					}
 					return "!presence";
 				}else{
 					if(osm_type.equals("node")){ // If the id is a node id
 						nodeId = xmlResponse.substring(osm_idIndex, osm_idIndex + xmlResponse.substring(osm_idIndex).indexOf("'")); // Extracts the node id from the "osm_id" tag
-						if(parser.vertexMap.get(nodeId) != null){ // Checks to see whether the node id is present on the currently loaded map
+						if(convertNodeIdToVertex(nodeId) != -1){ // Checks to see whether the node id is present on the currently loaded map
 							return nodeId;
 						}
+						if(lat != null && lon != null){ // Nodes that are not on a road, such as shops, are routed to from the nearest road
+							nodeId = convertPointToNodeId(lat, lon);
+							if(nodeId != null){
+								return nodeId;
+							}
+						}
 						return "!presence";
 					}else{
 						Core.debug("Unsupported osm_type: " + osm_type + " - returning null");
@@ -80,6 +133,8 @@ public class DataHandler { // The data handler receives input from the GUI and p
 					}
 				}
 			}
+			Core.debug("No results for " + input);
+			return "!presence"; // Nominatim answered but found nothing, which is remembered like any other place not on the map
 		}catch(java.net.UnknownHostException e){ // Triggered when the program cannot connect to the openstreetmap website
 			Core.debug("No Internet Connection");
 			return "!internet";
@@ -92,24 +147,112 @@ public class DataHandler { // The data handler receives input from the GUI and p
 		return null;
 	}
 	
+	/**
+	 * Returns the cache of online lookups, loading it from the cache file the first time it is needed and clearing it if the
+	 * answers in it were found on a different map to the one now loaded.
+	 * @return The geocode cache.
+	 */
+	public synchronized GeocodeCache getGeocodeCache(){
+		if(geocodeCache == null){
+			File file = new File(GeocodeCache.CACHE_FILE);
+			if(file.exists()){
+				try {
+					geocodeCache = GeocodeCache.load(file, GeocodeCache.DEFAULT_MAXIMUM_BYTES);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			if(geocodeCache == null){ // There was no file, or it was written by a different version
+				geocodeCache = new GeocodeCache(GeocodeCache.DEFAULT_MAXIMUM_BYTES);
+			}
+		}
+		if(cacheMap != parser.map){ // The fingerprint is only calculated again when a different map is loaded
+			geocodeCache.useFingerprint(parser.map.getCompactGraph().getFingerprint());
+			cacheMap = parser.map;
+		}
+		return geocodeCache;
+	}
+	
+	/**
+	 * Returns the cache of calculated routes, which are kept for each map separately.
+	 * @return The route cache.
+	 */
+	public RouteCache getRouteCache(){
+		return routeCache;
+	}
+	
 	/**
 	 * Converts a Way ID to a node ID usable by the shortest route methods.
 	 * @param wayId - A way ID on the current map.
 	 * @return A vertex/node ID on the given way.
 	 */
 	private String convertWayIdToNodeId(String wayId){ // Calculates a best guess of a node id from a way id
-		String parsedWayId = wayId + "-0"; // Assumes that the node id is placed on the first part of the way parsed by the parser
-		Core.debug("Way Id to convert: " + parsedWayId);
-		HashMap<String,Arc> arcMap = parser.arcMap; // Stores the hashmap of all arcs temporarily
-		Arc arcToRetrieve = arcMap.get(parsedWayId); // Gets the arc by the way id
-		String bestGuessNodeId;
-		if(arcToRetrieve != null){ // Ensures that the arc is present on the arc hashmap
-			bestGuessNodeId = arcToRetrieve.getEnd(); // Gets the last node in the arc
+		Core.debug("Way Id to convert: " + wayId);
+		if(wayId.isEmpty() || !isANumber(wayId)){
+			return null;
 		}
-		else{
-			bestGuessNodeId = null; // Just returns null if the arc is not present
+		int vertex = parser.map.findVertexOnWay(Long.parseLong(wayId)); // Assumes that the node id is placed on the first part of the way parsed by the parser
+		if(vertex == -1){
+			return null; // Just returns null if the way is not on the graph
 		}
-		return bestGuessNodeId;
+		return Long.toString(parser.map.getNodeId(vertex));
+	}
+	
+	/**
+	 * Converts a point on the map to the ID of the nearest vertex on the nearest road, using the graph's spatial index.
+	 * @param lat - The latitude of the point.
+	 * @param lon - The longitude of the point.
+	 * @return A vertex/node ID, or null if the point is not a valid location or there is no road within MAXIMUM_SNAP_DISTANCE of it.
+	 */
+	private String convertPointToNodeId(String lat, String lon){
+		double latitude;
+		double longitude;
+		try {
+			latitude = Double.parseDouble(lat);
+			longitude = Double.parseDouble(lon);
+		} catch (NumberFormatException e) {
+			Core.debug("Malformed location: " + lat + ", " + lon);
+			return null;
+		}
+		if(!Graph.isValidLocation(latitude, longitude)){
+			Core.debug("Location out of range: " + lat + ", " + lon);
+			return null;
+		}
+		Snap snap = parser.map.findNearest(latitude, longitude);
+		if(snap == null || snap.getDistance() > MAXIMUM_SNAP_DISTANCE){
+			return null; // The point is off the edge of the current map
+		}
+		Core.debug("Snapped to " + snap.getDistance() + " km away");
+		return Long.toString(parser.map.getNodeId(snap.getNearestVertex()));
+	}
+	
+	/**
+	 * Extracts the value of an attribute from the first element of an XML response that has it.
+	 * @param xml - The XML response.
+	 * @param name - The name of the attribute.
+	 * @return The value of the attribute, or null if no element has it.
+	 */
+	private String getAttribute(CharSequence xml, String name){
+		String text = xml.toString();
+		int index = text.indexOf(" " + name + "='");
+		if(index == -1){
+			return null;
+		}
+		index += name.length() + 3;
+		int end = text.indexOf("'", index);
+		return end == -1 ? null : text.substring(index, end);
+	}
+	
+	/**
+	 * Converts a node ID into the index of its vertex on the graph, which the route calculation methods use.
+	 * @param nodeId - A node ID, as returned by convertInputToNodeId.
+	 * @return The index of the vertex, or -1 if the node is not on the current map.
+	 */
+	public int convertNodeIdToVertex(String nodeId){
+		if(nodeId == null || nodeId.isEmpty() || !isANumber(nodeId) || nodeId.length() > 18){ // Longer numbers may not fit in a long and are not OSM IDs
+			return -1;
+		}
+		return parser.map.findVertex(Long.parseLong(nodeId));
 	}
 	
 	/**
@@ -126,6 +269,15 @@ public class DataHandler { // The data handler receives input from the GUI and p
 	    }
 	    return true; // The string is a number
 	}
+	
+	/**
+	 * A simple utility method to return whether a String is a latitude or longitude in decimal degrees.
+	 * @param str - The string to check.
+	 * @return True if the string is a number with an optional sign and decimal point, false if not.
+	 */
+	public boolean isACoordinate(String str){
+		return str.trim().matches("-?[0-9]+(\\.[0-9]+)?");
+	}
 
 }
 
@@ -0,0 +1,215 @@
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The class for remembering the answers of the online geocoder, so the same place typed twice only needs one lookup.
+ * <p>
+ * Queries are stored lower case with their spaces tidied, along with the node ID found or "!presence" if the place is not on
+ * the map. Places not found are kept for less time than places found, as they are more likely to be added to the online map.
+ * Entries are kept in least recently used order and the oldest are removed once the estimated memory used by all of them goes
+ * over a limit. The cache is saved to a small binary file between runs along with the fingerprint of the graph its answers
+ * were found for, and is cleared whenever it is used with a different graph so node IDs from another map are never returned.
+ * @author Jacob Pennington
+ *
+ */
+public class GeocodeCache {
+
+	public static final String CACHE_FILE = "resources/geocode.cache"; // Where the cache is kept between runs
+	public static final long DEFAULT_MAXIMUM_BYTES = 1 << 20; // Enough for several thousand places
+	public static final long FOUND_LIFETIME = 30L * 24 * 60 * 60 * 1000; // How long in ms a node ID is kept for
+	public static final long NOT_FOUND_LIFETIME = 24L * 60 * 60 * 1000; // How long in ms a place not on the map is remembered for
+	private static final int ENTRY_OVERHEAD = 96; // The estimated bytes used by an entry apart from the characters of its Strings
+	private static final int MAXIMUM_QUERY_LENGTH = 1000; // Longer queries are not cached, they are almost certainly not typed twice
+	private static final int FILE_MAGIC = 0x47434348; // "GCCH", marks the start of a saved cache file
+	private static final int FILE_VERSION = 1; // Increased whenever the layout of the saved file changes
+
+	private final LinkedHashMap<String,Entry> entries = new LinkedHashMap<String,Entry>(16, 0.75f, true); // In access order, least recently used first
+	private final long maximumBytes; // The estimated memory the entries can use before the oldest are removed
+	private long bytes = 0; // The estimated memory used by the entries
+	private long fingerprint = 0; // The fingerprint of the graph the answers were found on
+	private long hits = 0; // The number of lookups answered by the cache
+	private long misses = 0; // The number of lookups the cache could not answer
+
+	/**
+	 * A cached answer and when it stops being used.
+	 */
+	private static class Entry {
+		private final String nodeId; // The node ID found, or "!presence"
+		private final long expiry; // The time in ms the answer expires at
+
+		private Entry(String nodeId, long expiry){
+			this.nodeId = nodeId;
+			this.expiry = expiry;
+		}
+	}
+
+	/**
+	 * Constructs an empty cache.
+	 * @param maximumBytes - The estimated memory the entries can use.
+	 */
+	public GeocodeCache(long maximumBytes){
+		this.maximumBytes = maximumBytes;
+	}
+
+	/**
+	 * Converts a query into the form it is stored under, so that differences in case and spacing still find the same entry.
+	 * @param query - The text typed in.
+	 * @return The query in lower case with single spaces.
+	 */
+	public static String normalise(String query){
+		return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Looks up the answer to a query.
+	 * @param query - The text typed in.
+	 * @return The node ID or "!presence" found last time, or null if the query has not been seen or its answer has expired.
+	 */
+	public synchronized String get(String query){
+		String key = normalise(query);
+		Entry entry = entries.get(key); // Also moves the entry to the most recently used end
+		if(entry != null && entry.expiry < System.currentTimeMillis()){
+			remove(key);
+			entry = null;
+		}
+		if(entry == null){
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.nodeId;
+	}
+
+	/**
+	 * Stores the answer to a query, removing the least recently used entries if the cache is full.
+	 * @param query - The text typed in.
+	 * @param nodeId - The node ID found, or "!presence". Other errors are not stored as they may not happen next time.
+	 */
+	public synchronized void put(String query, String nodeId){
+		String key = normalise(query);
+		if(nodeId == null || key.length() > MAXIMUM_QUERY_LENGTH || (nodeId.startsWith("!") && !nodeId.equals("!presence"))){
+			return;
+		}
+		long lifetime = nodeId.equals("!presence") ? NOT_FOUND_LIFETIME : FOUND_LIFETIME;
+		add(key, new Entry(nodeId, System.currentTimeMillis() + lifetime));
+	}
+
+	/**
+	 * Adds an entry as the most recently used and removes the least recently used entries until the cache fits its limit.
+	 */
+	private void add(String key, Entry entry){
+		remove(key);
+		entries.put(key, entry);
+		bytes += getSize(key, entry);
+		Iterator<Map.Entry<String,Entry>> oldest = entries.entrySet().iterator();
+		while(bytes > maximumBytes && oldest.hasNext()){
+			Map.Entry<String,Entry> next = oldest.next();
+			bytes -= getSize(next.getKey(), next.getValue());
+			oldest.remove();
+		}
+	}
+
+	private void remove(String key){
+		Entry entry = entries.remove(key);
+		if(entry != null){
+			bytes -= getSize(key, entry);
+		}
+	}
+
+	private static long getSize(String key, Entry entry){
+		return ENTRY_OVERHEAD + 2L * (key.length() + entry.nodeId.length());
+	}
+
+	/**
+	 * Makes sure the cache only holds answers for the given graph, clearing it if they were found on a different one.
+	 * @param fingerprint - The fingerprint of the graph now loaded, as given by CompactGraph.getFingerprint.
+	 * @return True if the cache was cleared.
+	 */
+	public synchronized boolean useFingerprint(long fingerprint){
+		if(this.fingerprint == fingerprint){
+			return false;
+		}
+		Core.debug("Geocode cache: cleared " + entries.size() + " answers found on a different map");
+		this.fingerprint = fingerprint;
+		entries.clear();
+		bytes = 0;
+		return true;
+	}
+
+	/**
+	 * Writes the cache to a file, least recently used first so the order is kept when it is loaded.
+	 * @param file - The file to write to.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public synchronized void save(File file) throws IOException{
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			out.writeLong(fingerprint);
+			out.writeInt(entries.size());
+			for(Map.Entry<String,Entry> entry : entries.entrySet()){
+				out.writeUTF(entry.getKey());
+				out.writeUTF(entry.getValue().nodeId);
+				out.writeLong(entry.getValue().expiry);
+			}
+		}
+	}
+
+	/**
+	 * Reads a cache previously written by save, leaving out any answers that have expired since.
+	 * @param file - The file to read from.
+	 * @param maximumBytes - The estimated memory the entries can use.
+	 * @return The cache, or null if the file was written by a different version.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static GeocodeCache load(File file, long maximumBytes) throws IOException{
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+			if(in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION){
+				return null;
+			}
+			GeocodeCache cache = new GeocodeCache(maximumBytes);
+			cache.fingerprint = in.readLong();
+			int count = in.readInt();
+			long now = System.currentTimeMillis();
+			for(int i = 0; i < count; i++){
+				String key = in.readUTF();
+				String nodeId = in.readUTF();
+				Entry entry = new Entry(nodeId.equals("!presence") ? "!presence" : nodeId, in.readLong()); // The same String as the constant, as answers are compared with ==
+				if(entry.expiry >= now){
+					cache.add(key, entry);
+				}
+			}
+			return cache;
+		}
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public synchronized long getHits(){
+		return hits;
+	}
+
+	public synchronized long getMisses(){
+		return misses;
+	}
+
+	public synchronized int getSize(){
+		return entries.size();
+	}
+
+	public synchronized long getBytes(){
+		return bytes;
+	}
+}
@@ -0,0 +1,314 @@
+package core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The class for turning a typed place or address into a vertex on the graph without going online.
+ * <p>
+ * While the map is parsed every named road, and every node or way with a name or address, becomes a place, which is moved onto
+ * the nearest vertex of the graph. The names and addresses are split into lower case words, called tokens. Every different token
+ * is stored once, in sorted order in one block of UTF-8 bytes, along with the list of places that use it, so all the tokens
+ * beginning with some letters are next to each other and are found with a binary search, like the branches of a prefix trie.
+ * <p>
+ * A search finds the places that match every word typed, where a word matches a token if it is the start of it, so "high st"
+ * finds "High Street". Places that match more words in full are preferred, then places with fewer other tokens. Words at the
+ * end that do not start any token on the map, such as a town or postcode the extract does not name, are left out as long as
+ * fewer words are left out than match. Any other word not on the map means no place is found, so the search can go online.
+ * @author Jacob Pennington
+ *
+ */
+public class Geocoder {
+
+	public static final String[] PLACE_KEYS = {"name", "ref", "addr:housenumber", "addr:housename", "addr:street", "addr:place",
+			"addr:postcode", "addr:city"}; // The tags whose values can be searched for
+	public static final double MAXIMUM_DISTANCE = 1; // How far in km a place can be from the nearest vertex and still be added
+
+	final int placeCount; // The number of places
+	final int[] placeVertex; // The index of the vertex each place was moved onto
+	final int[] placeTokenCount; // The number of different tokens of each place
+	final int[] tokenStart; // The position in tokenData of each token, with one extra entry marking the end of the last token
+	final ByteBuffer tokenData; // The UTF-8 bytes of every token in sorted order
+	final int[] postingStart; // The position in postings of the first place of each token, with one extra entry marking the end of the last token's places
+	final int[] postings; // The places using each token, in ascending order
+
+	/**
+	 * Constructs the index from the text of each place.
+	 * @param texts - The names and addresses of each place.
+	 * @param vertexes - The index of the vertex of each place.
+	 */
+	public Geocoder(List<String> texts, int[] vertexes){
+		this.placeCount = vertexes.length;
+		this.placeVertex = vertexes;
+		this.placeTokenCount = new int[placeCount];
+		HashMap<String,IntList> places = new HashMap<String,IntList>(); // The places using each token
+		for(int place = 0; place < placeCount; place++){
+			for(String token : tokenize(texts.get(place))){
+				IntList list = places.get(token);
+				if(list == null){
+					list = new IntList();
+					places.put(token, list);
+				}
+				if(list.isEmpty() || list.get(list.size() - 1) != place){ // Each place is only listed once for a token it uses twice
+					list.add(place);
+					placeTokenCount[place]++;
+				}
+			}
+		}
+		byte[][] tokens = new byte[places.size()][];
+		int i = 0;
+		for(String token : places.keySet()){
+			tokens[i++] = token.getBytes(StandardCharsets.UTF_8);
+		}
+		Arrays.sort(tokens, Geocoder::compare);
+		this.tokenStart = new int[tokens.length + 1];
+		this.postingStart = new int[tokens.length + 1];
+		for(i = 0; i < tokens.length; i++){
+			tokenStart[i + 1] = tokenStart[i] + tokens[i].length;
+			postingStart[i + 1] = postingStart[i] + places.get(new String(tokens[i], StandardCharsets.UTF_8)).size();
+		}
+		byte[] data = new byte[tokenStart[tokens.length]];
+		this.postings = new int[postingStart[tokens.length]];
+		for(i = 0; i < tokens.length; i++){
+			System.arraycopy(tokens[i], 0, data, tokenStart[i], tokens[i].length);
+			IntList list = places.get(new String(tokens[i], StandardCharsets.UTF_8));
+			for(int j = 0; j < list.size(); j++){
+				postings[postingStart[i] + j] = list.get(j);
+			}
+		}
+		this.tokenData = ByteBuffer.wrap(data);
+		Core.debug("Geocoder: " + placeCount + " places using " + tokens.length + " different tokens of " + data.length + " bytes");
+	}
+
+	/**
+	 * Constructs the index from arrays that have already been built, such as those read from a snapshot.
+	 * @param placeVertex - The index of the vertex of each place.
+	 * @param placeTokenCount - The number of different tokens of each place.
+	 * @param tokenStart - The position in tokenData of each token, with one extra entry.
+	 * @param tokenData - The UTF-8 bytes of every token in sorted order.
+	 * @param postingStart - The position in postings of the first place of each token, with one extra entry.
+	 * @param postings - The places using each token.
+	 */
+	Geocoder(int[] placeVertex, int[] placeTokenCount, int[] tokenStart, ByteBuffer tokenData, int[] postingStart, int[] postings){
+		this.placeCount = placeVertex.length;
+		this.placeVertex = placeVertex;
+		this.placeTokenCount = placeTokenCount;
+		this.tokenStart = tokenStart;
+		this.tokenData = tokenData;
+		this.postingStart = postingStart;
+		this.postings = postings;
+	}
+
+	/**
+	 * Joins the values of the searchable tags of a node or way.
+	 * @param tagList - The tags.
+	 * @return The text of the place, or null if it has none of the PLACE_KEYS.
+	 */
+	public static String getText(Map<String,String> tagList){
+		StringBuilder text = null;
+		for(String key : PLACE_KEYS){
+			String value = tagList.get(key);
+			if(value != null){
+				text = text == null ? new StringBuilder(value) : text.append(' ').append(value);
+			}
+		}
+		return text == null ? null : text.toString();
+	}
+
+	/**
+	 * Returns whether a tag can be searched for.
+	 * @param key - The key of the tag.
+	 * @return True if the key is one of PLACE_KEYS.
+	 */
+	public static boolean isPlaceKey(String key){
+		for(String placeKey : PLACE_KEYS){
+			if(placeKey.equals(key)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Splits text into lower case tokens of letters and digits, with accents removed so words typed without them still match.
+	 * Apostrophes are dropped rather than splitting words, so "St John's" and "St Johns" give the same tokens.
+	 * @param text - The text to split.
+	 * @return The tokens in the order they appear.
+	 */
+	public static String[] tokenize(String text){
+		text = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", ""); // Splits accented letters into the letter and the accent, then drops the accent
+		text = text.replace("'", "").replace("\u2019", "");
+		String[] tokens = text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+		if(tokens.length > 0 && tokens[0].isEmpty()){ // Text starting with a separator gives an empty first token
+			tokens = Arrays.copyOfRange(tokens, 1, tokens.length);
+		}
+		return tokens;
+	}
+
+	/**
+	 * Compares two tokens by their UTF-8 bytes, so that the order matches the order of the bytes in tokenData.
+	 */
+	private static int compare(byte[] a, byte[] b){
+		for(int i = 0; i < Math.min(a.length, b.length); i++){
+			int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if(difference != 0){
+				return difference;
+			}
+		}
+		return a.length - b.length;
+	}
+
+	/**
+	 * Finds the first token that is not before a prefix in sorted order.
+	 * @param prefix - The UTF-8 bytes of the prefix.
+	 * @return The position of the token, or the number of tokens if every token is before the prefix.
+	 */
+	private int findFirst(byte[] prefix){
+		int low = 0;
+		int high = tokenStart.length - 1;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(compareToken(middle, prefix) < 0){
+				low = middle + 1;
+			}else{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Compares a stored token with some bytes without creating a String.
+	 * @return Negative if the token is before the bytes, 0 if they are the same, positive if it is after.
+	 */
+	private int compareToken(int token, byte[] bytes){
+		int start = tokenStart[token];
+		int length = tokenStart[token + 1] - start;
+		for(int i = 0; i < Math.min(length, bytes.length); i++){
+			int difference = (tokenData.get(start + i) & 0xFF) - (bytes[i] & 0xFF);
+			if(difference != 0){
+				return difference;
+			}
+		}
+		return length - bytes.length;
+	}
+
+	/**
+	 * Returns whether a stored token starts with some bytes.
+	 */
+	private boolean startsWith(int token, byte[] prefix){
+		int start = tokenStart[token];
+		if(tokenStart[token + 1] - start < prefix.length){
+			return false;
+		}
+		for(int i = 0; i < prefix.length; i++){
+			if(tokenData.get(start + i) != prefix[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the place best matching some text.
+	 * <p>
+	 * Words at the end of the text that are not on the map, such as a town or postcode the extract does not name, are ignored
+	 * as long as more words are on the map than are ignored. Any other word that is not on the map means the place is not on
+	 * the map, so -1 is returned rather than a place that only matches some of the words. The best place must also match all
+	 * but one of the words in full, so a single word can still be shortened or only partly typed.
+	 * @param query - The text typed in, such as "10 High Street".
+	 * @return The index of the vertex of the place, or -1 if no place matches.
+	 */
+	public int find(String query){
+		int[] candidates = null; // The places matching every word so far, in ascending order
+		int[] fullMatches = null; // The number of words each candidate matches in full
+		int matchedWords = 0; // The number of words that start a token on the map
+		int skippedWords = 0; // The number of words at the end that are not on the map
+		for(String word : tokenize(query)){
+			byte[] prefix = word.getBytes(StandardCharsets.UTF_8);
+			int first = findFirst(prefix);
+			int last = first; // The position after the last token starting with the word
+			while(last < tokenStart.length - 1 && startsWith(last, prefix)){
+				last++;
+			}
+			if(first == last){ // No token starts with the word, which is only allowed for the words at the end
+				skippedWords++;
+				continue;
+			}
+			if(skippedWords > 0){ // A word before this one is not on the map, so the place is not either
+				return -1;
+			}
+			matchedWords++;
+			long[] matches = new long[postingStart[last] - postingStart[first]]; // Each place using a token starting with the word, with a full match in the lowest bit
+			int count = 0;
+			for(int token = first; token < last; token++){
+				int full = tokenStart[token + 1] - tokenStart[token] == prefix.length ? 1 : 0;
+				for(int i = postingStart[token]; i < postingStart[token + 1]; i++){
+					matches[count++] = ((long)postings[i] << 1) | full;
+				}
+			}
+			Arrays.sort(matches);
+			int[] places = new int[count];
+			int[] full = new int[count];
+			int unique = 0;
+			for(int i = 0; i < count; i++){
+				int place = (int)(matches[i] >>> 1);
+				if(unique > 0 && places[unique - 1] == place){ // The place uses more than one token starting with the word
+					full[unique - 1] |= (int)(matches[i] & 1);
+				}else{
+					places[unique] = place;
+					full[unique] = (int)(matches[i] & 1);
+					unique++;
+				}
+			}
+			if(candidates == null){
+				candidates = Arrays.copyOf(places, unique);
+				fullMatches = Arrays.copyOf(full, unique);
+				continue;
+			}
+			int kept = 0;
+			int j = 0;
+			for(int i = 0; i < candidates.length; i++){ // Keeps the candidates that also use a token starting with this word
+				while(j < unique && places[j] < candidates[i]){
+					j++;
+				}
+				if(j < unique && places[j] == candidates[i]){
+					candidates[kept] = candidates[i];
+					fullMatches[kept] = fullMatches[i] + full[j];
+					kept++;
+				}
+			}
+			candidates = Arrays.copyOf(candidates, kept);
+			fullMatches = Arrays.copyOf(fullMatches, kept);
+		}
+		if(candidates == null || candidates.length == 0 || skippedWords >= matchedWords){ // Such as "Red Palace" finding the Red Lion
+			return -1;
+		}
+		int best = 0;
+		for(int i = 1; i < candidates.length; i++){
+			if(fullMatches[i] > fullMatches[best] || (fullMatches[i] == fullMatches[best] && placeTokenCount[candidates[i]] < placeTokenCount[candidates[best]])){
+				best = i;
+			}
+		}
+		if(fullMatches[best] < matchedWords - 1){ // Too many words only match the start of a longer word, such as "palace" in "palaces"
+			return -1;
+		}
+		return placeVertex[candidates[best]];
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public int getPlaceCount(){
+		return placeCount;
+	}
+
+	public int getTokenCount(){
+		return tokenStart.length - 1;
+	}
+}
@@ -1,9 +1,12 @@
 package core;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
 
 /**
  * The class for storing vertexes and arcs in a weighted graph.
@@ -18,28 +21,69 @@ public class Graph {
 	public static final int EARTHDIAMETER = 12742;
 	public static final double KM_IN_MILE = 1.61;
 	public static final double MAXSPEEDDAMPENING = 0.75;
+	public static final String LANDMARK_FILE = "resources/landmarks.dat"; // Where landmark tables are kept between runs
+	public static final int MAXIMUM_ROW_SEARCHES = 64; // Matrices with up to this many sources are searched a row at a time if the contraction hierarchy has not been built
+	private static final AtomicLong nextVersion = new AtomicLong(); // The version given to the last graph built or loaded
 	
-	private HashMap<String,Vertex> vertexMap = new HashMap<String,Vertex>(); // A hashmap that stores all vertexes using their id as a reference
-	private HashMap<String,Arc> arcMap = new HashMap<String,Arc>(); // Same as above but with arcs
-	HashMap<String,Vertex> vertexMapMirror;
-	
-	private String lastEnteredDestination;
-	
-	public double calculatedRouteDistance = 0;
-	public double calculatedRouteTime = 0;
+	private final long version = nextVersion.incrementAndGet(); // Different for every graph built or loaded, so results cached for an old graph are never used with a new one
+	private CompactGraph compactGraph; // The vertexes and arcs in compressed sparse row form for route calculations
+	private double maximumSpeed = 0; // The fastest average speed of any arc on the graph in km/hr
+	private volatile ContractionHierarchy contractionHierarchy; // Built the first time it is needed as preprocessing is slow
+	private final Object contractionHierarchyLock = new Object(); // Held while the contraction hierarchy is built, so nothing else waits for it
+	private volatile Landmarks landmarks; // Loaded or calculated the first time they are needed
+	private final Object landmarksLock = new Object(); // Held while the landmarks are loaded or calculated
+	private WayTable ways; // The IDs and tags of the ways the arcs were broken down from, used for directions
+	private volatile SpatialIndex spatialIndex; // Built the first time a point needs to be snapped to an arc
+	private final Object spatialIndexLock = new Object(); // Held while the spatial index is built
+	private Geocoder geocoder; // The names and addresses of places on the map, built while parsing
 	
 	/**
 	 * Constructs the graph object then calculates all weights and
 	 * marks non-traversable arcs.
-	 * @param vertexMap - The hashmap of vertex objects to use.
-	 * @param arcMap - The hashmap of arc objects to use.
+	 * <p>
+	 * The speed of each way is worked out once from the tags the way table decoded when it was built, then used for every
+	 * arc the way is broken down into along with the way's one way value.
+	 * @param nodeIds - The OSM ID of each vertex, in index order.
+	 * @param lat - The latitude of each vertex.
+	 * @param lon - The longitude of each vertex.
+	 * @param wayNodeStart - The position in wayNodes of the first node of each way, with one extra entry marking the end of the last way's nodes.
+	 * @param wayNodes - The index of the vertex of each node of each way in order, -1 for nodes that are not on the graph.
+	 * @param ways - The table of the ways.
 	 */
-	public Graph(HashMap<String,Vertex> vertexMap, HashMap<String,Arc> arcMap){
-		this.vertexMap = vertexMap;
-		this.arcMap = arcMap;
-		this.calculateWeights(); // Calculates all arc weights on the graph
-		this.calculateNonTraversableArcs(); // Calculates whether any arcs on the graph are one way and if so in which direction
-		vertexMapMirror = cloneVertexMap(vertexMap);
+	public Graph(long[] nodeIds, double[] lat, double[] lon, int[] wayNodeStart, int[] wayNodes, WayTable ways){
+		this(nodeIds, lat, lon, wayNodeStart, wayNodes, ways, new LoadProgress());
+	}
+	
+	/**
+	 * Constructs the graph object from the vertexes and ways found by the parser, counting the arcs as they are weighted.
+	 * @param nodeIds - The OSM ID of each vertex, in index order.
+	 * @param lat - The latitude of each vertex.
+	 * @param lon - The longitude of each vertex.
+	 * @param wayNodeStart - The position in wayNodes of the first node of each way, with one extra entry marking the end of the last way's nodes.
+	 * @param wayNodes - The index of the vertex of each node of each way in order, -1 for nodes that are not on the graph.
+	 * @param ways - The table of the ways.
+	 * @param progress - Counts the arcs as they are weighted.
+	 */
+	public Graph(long[] nodeIds, double[] lat, double[] lon, int[] wayNodeStart, int[] wayNodes, WayTable ways, LoadProgress progress){
+		this.ways = ways;
+		double[] waySpeed = new double[ways.getWayCount()];
+		for(int w = 0; w < ways.getWayCount(); w++){
+			waySpeed[w] = getAverageSpeed(w); // Used to calculate the weight of every arc on the way
+		}
+		this.compactGraph = new CompactGraph(nodeIds, lat, lon, wayNodeStart, wayNodes, waySpeed, ways.oneWay, ways, progress); // Breaks the ways down into arcs in the compact form used by route calculations
+		this.maximumSpeed = IntStream.range(0, compactGraph.edgeCount).parallel().mapToDouble(edge -> waySpeed[compactGraph.edgeWay[edge]]).max().orElse(0); // The fastest arc, for A* estimates
+	}
+	
+	/**
+	 * Constructs the graph object from a graph that has already been built, such as one loaded from a snapshot.
+	 * @param compactGraph - The vertexes and arcs in compact form, with weights and one way flags already calculated.
+	 * @param ways - The table of the ways the arcs were broken down from.
+	 * @param maximumSpeed - The fastest average speed of any arc on the graph in km/hr.
+	 */
+	public Graph(CompactGraph compactGraph, WayTable ways, double maximumSpeed){
+		this.compactGraph = compactGraph;
+		this.ways = ways;
+		this.maximumSpeed = maximumSpeed;
 	}
 	
 	/**
@@ -47,382 +91,1002 @@ public class Graph {
 	 * <p>
 	 * Calculates the shortest route using distances weighted by the maximum speed of the road to give time. 
 	 * https://en.wikipedia.org/wiki/Dijkstra's_algorithm
-	 * @param source - The ID of the source node in the vertex hashmap
-	 * @param destination - The ID of the destination node in the vertex hashmap
-	 */
-	public void quickestRoute(String source, String destination){ // Calculates the quickest route from one vertex to another using dijkstra's algorithm - https://en.wikipedia.org/wiki/Dijkstra's_algorithm
-		System.out.println("Memory Usage Before Clone: " + (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()));
-		vertexMapMirror = cloneVertexMap(vertexMap);
-		System.out.println("Memory Usage After Clone: " + (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()));
-		lastEnteredDestination = destination;
-		Core.debug("-------------------------------- BEGIN DIJKSTRA'S ----------------------------");
-		Core.debug("Going from " + source + " to " + destination);
-		Set<String> unsettledVertexes = new HashSet<String>(); // A hashset of all vertexes that have working distances from the source but are not confirmed and settled
-		Set<String> settledVertexes = new HashSet<String>(); // A hashset of all vertexes that are settled and have distances from the source
-		vertexMapMirror.get(source).setWeightedDistanceFromSource(0); // Starts by setting all distance values for the source node to 0
-		vertexMapMirror.get(source).setDistanceFromSource(0);
-		vertexMapMirror.get(source).setPreviousVertex(null); // Assigns the previous vertex of the source to null
-		unsettledVertexes.add(source); // The source node is added to the list of unsettled vertexes
-		while(unsettledVertexes.size() > 0){ // Loop until no vertexes are unsettled
-			String workingVertex = getVertexWithLowestWeightedDistance(unsettledVertexes); // The current working vertex is assigned to the vertex in the unsettled vertex hashset with the shortest distance from any currently settled vertex
-			if(workingVertex.equals(destination)){ // If the current working vertex is the destination then the route has been found
-				String previousVertex = vertexMapMirror.get(workingVertex).getPreviousVertex(); // Gets the previous vertex before the destination
-				Core.debug("  " + workingVertex);
-				Core.debug("ROUTE FOUND:");
-				while(previousVertex != null){ // Iterates back through each vertex in the route to print out the route taken
-					Core.debug("  " + vertexMapMirror.get(previousVertex).getPreviousVertex() + " - " + getArcConnectingTwoVertexes(previousVertex, workingVertex).tagList.get("ref") + ", " + getArcConnectingTwoVertexes(previousVertex, workingVertex).tagList.get("name"));
-					workingVertex = previousVertex;
-					previousVertex = vertexMapMirror.get(previousVertex).getPreviousVertex(); // Gets the next vertex in the route
+	 * @param source - The index of the source vertex.
+	 * @param destination - The index of the destination vertex.
+	 * @return The route found, or null if the destination cannot be reached from the source.
+	 */
+	public Route quickestRoute(int source, int destination){ // Calculates the quickest route from one vertex to another using dijkstra's algorithm - https://en.wikipedia.org/wiki/Dijkstra's_algorithm
+		return calculateRoute(source, destination, true, SearchMode.DIJKSTRA);
+	}
+	
+	/**
+	 * Calculates the quickest route from one vertex to another using the given algorithm.
+	 * <p>
+	 * Every algorithm finds a route of the same time, they differ in how many vertexes they settle to find it.
+	 * @param source - The index of the source vertex, as found by findVertex.
+	 * @param destination - The index of the destination vertex.
+	 * @param mode - The algorithm to use.
+	 * @return The route found, or null if the destination cannot be reached from the source.
+	 * @throws IllegalArgumentException If either index is not a vertex on the graph.
+	 */
+	public Route quickestRoute(int source, int destination, SearchMode mode){
+		return calculateRoute(source, destination, true, mode);
+	}
+	
+	/**
+	 * Calculates the quickest route from the first vertex to the last through each of the others in order.
+	 * <p>
+	 * The route between each pair of waypoints is calculated at the same time on its own thread, each with that thread's
+	 * workspace, then the legs are joined into a single route.
+	 * @param waypoints - The indexes of the origin, any via vertexes and the destination, in order.
+	 * @param mode - The algorithm to use for each leg.
+	 * @return The route found, or null if any leg cannot be travelled.
+	 * @throws IllegalArgumentException If there are fewer than two waypoints or any index is not a vertex on the graph.
+	 */
+	public Route quickestRoute(int[] waypoints, SearchMode mode){
+		return calculateRoute(waypoints, true, mode);
+	}
+	
+	/**
+	 * Calculates the shortest route from the first vertex to the last through each of the others in order.
+	 * @param waypoints - The indexes of the origin, any via vertexes and the destination, in order.
+	 * @param mode - The algorithm to use for each leg.
+	 * @return The route found, or null if any leg cannot be travelled.
+	 * @throws IllegalArgumentException If there are fewer than two waypoints or any index is not a vertex on the graph.
+	 */
+	public Route shortestRoute(int[] waypoints, SearchMode mode){
+		return calculateRoute(waypoints, false, mode);
+	}
+	
+	/**
+	 * Calculates every leg of a route through several waypoints in parallel and joins them together.
+	 * <p>
+	 * Each waypoint between two legs appears once in the joined route, and the distances along each leg carry on from
+	 * the end of the leg before it, so the totals of the joined route are the sums of the legs.
+	 * @param waypoints - The indexes of the waypoints in order.
+	 * @param weighted - True for the quickest route, false for the shortest.
+	 * @param mode - The algorithm to use for each leg.
+	 * @return The joined route, or null if any leg cannot be travelled.
+	 */
+	private Route calculateRoute(int[] waypoints, boolean weighted, SearchMode mode){
+		if(waypoints.length < 2){
+			throw new IllegalArgumentException("A route needs at least two waypoints");
+		}
+		checkVertexes(waypoints);
+		if(mode == SearchMode.CONTRACTION_HIERARCHY){
+			getContractionHierarchy(); // Built once before the legs start rather than waited for by every leg
+		}else if(mode == SearchMode.LANDMARKS){
+			getLandmarks();
+		}
+		Route[] legs = IntStream.range(0, waypoints.length - 1).parallel()
+				.mapToObj(leg -> calculateRoute(waypoints[leg], waypoints[leg + 1], weighted, mode)).toArray(Route[]::new);
+		int length = 1;
+		int settledVertexes = 0;
+		for(Route leg : legs){
+			if(leg == null){
+				return null;
+			}
+			length += leg.size() - 1; // The first vertex of each leg is the last vertex of the one before
+			settledVertexes += leg.getSettledVertexes();
+		}
+		int[] vertexes = new int[length];
+		double[] distances = new double[length];
+		double[] weightedDistances = new double[length];
+		vertexes[0] = waypoints[0];
+		int position = 0;
+		for(Route leg : legs){
+			double distance = distances[position]; // Where this leg starts along the whole route
+			double weightedDistance = weightedDistances[position];
+			for(int i = 1; i < leg.size(); i++){
+				position++;
+				vertexes[position] = leg.getVertex(i);
+				distances[position] = distance + leg.getDistanceAt(i);
+				weightedDistances[position] = weightedDistance + leg.getWeightedDistanceAt(i);
+			}
+		}
+		return new Route(vertexes, distances, weightedDistances, settledVertexes);
+	}
+	
+	/**
+	 * Calculates the shortest route from one vertex to another using Dijkstra's algorithm
+	 * <p>
+	 * Same as quickestRoute but uses the unweighted length of each arc, ignoring the speed of the road.
+	 * @param source - The index of the source vertex.
+	 * @param destination - The index of the destination vertex.
+	 * @return The route found, or null if the destination cannot be reached from the source.
+	 */
+	public Route shortestRoute(int source, int destination){
+		return calculateRoute(source, destination, false, SearchMode.DIJKSTRA);
+	}
+	
+	/**
+	 * Calculates the shortest route from one vertex to another using the given algorithm.
+	 * @param source - The index of the source vertex.
+	 * @param destination - The index of the destination vertex.
+	 * @param mode - The algorithm to use.
+	 * @return The route found, or null if the destination cannot be reached from the source.
+	 */
+	public Route shortestRoute(int source, int destination, SearchMode mode){
+		return calculateRoute(source, destination, false, mode);
+	}
+	
+	/**
+	 * Calculates the quickest route between two points on the map using Dijkstra's algorithm.
+	 * <p>
+	 * Each point is moved onto the nearest arc and the route starts and ends part way along those arcs rather than at a vertex.
+	 * @param sourceLat - The latitude of the source.
+	 * @param sourceLon - The longitude of the source.
+	 * @param destinationLat - The latitude of the destination.
+	 * @param destinationLon - The longitude of the destination.
+	 * @return The route found, or null if the destination cannot be reached from the source or the graph has no arcs.
+	 * @throws IllegalArgumentException If either point is not a valid location, as checked by isValidLocation.
+	 */
+	public Route quickestRoute(double sourceLat, double sourceLon, double destinationLat, double destinationLon){
+		Snap source = findNearest(sourceLat, sourceLon);
+		Snap destination = findNearest(destinationLat, destinationLon);
+		if(source == null || destination == null){
+			return null;
+		}
+		return calculateRoute(source, destination, true, SearchMode.DIJKSTRA);
+	}
+	
+	/**
+	 * Calculates the quickest route between two points on arcs using the given algorithm.
+	 * @param source - The source, as found by findNearest.
+	 * @param destination - The destination.
+	 * @param mode - The algorithm to use, either DIJKSTRA, A_STAR or LANDMARKS.
+	 * @return The route found, or null if the destination cannot be reached from the source.
+	 * @throws IllegalArgumentException If the algorithm can only route between vertexes.
+	 */
+	public Route quickestRoute(Snap source, Snap destination, SearchMode mode){
+		return calculateRoute(source, destination, true, mode);
+	}
+	
+	/**
+	 * Calculates the shortest route between two points on arcs using the given algorithm.
+	 * @param source - The source, as found by findNearest.
+	 * @param destination - The destination.
+	 * @param mode - The algorithm to use, either DIJKSTRA or A_STAR.
+	 * @return The route found, or null if the destination cannot be reached from the source.
+	 * @throws IllegalArgumentException If the algorithm can only route between vertexes or only supports quickest routes.
+	 */
+	public Route shortestRoute(Snap source, Snap destination, SearchMode mode){
+		return calculateRoute(source, destination, false, mode);
+	}
+	
+	/**
+	 * Calculates the quickest time and its distance from one vertex to each of several others.
+	 * <p>
+	 * Runs a single Dijkstra search from the source which stops as soon as every target has been settled, rather than one
+	 * search for each target. The targets are looked up in a sorted copy of their indexes, so nothing the size of the graph
+	 * is created for each call.
+	 * @param source - The index of the source vertex.
+	 * @param targets - The index of each target vertex.
+	 * @return A matrix with one row, holding Double.POSITIVE_INFINITY for targets that cannot be reached.
+	 * @throws IllegalArgumentException If any index is not a vertex on the graph.
+	 */
+	public TravelMatrix calculateTravelTimes(int source, int[] targets){
+		checkVertexes(new int[]{source});
+		checkVertexes(targets);
+		double[] times = new double[targets.length];
+		double[] distances = new double[targets.length];
+		SearchWorkspace workspace = SearchWorkspace.forThread(compactGraph.getVertexCount());
+		int[] sortedTargets = IntStream.of(targets).sorted().distinct().toArray(); // Searched to tell whether a settled vertex is a target
+		int[] remaining = {sortedTargets.length}; // The number of different targets not yet settled, in an array so the search can count it down
+		searchByTime(source, workspace, Double.POSITIVE_INFINITY, vertex -> {
+			if(Arrays.binarySearch(sortedTargets, vertex) >= 0){
+				remaining[0]--;
+			}
+			return remaining[0] > 0;
+		});
+		for(int column = 0; column < targets.length; column++){
+			boolean reached = workspace.isSettled(targets[column]);
+			times[column] = reached ? workspace.getWeightedDistance(targets[column]) : Double.POSITIVE_INFINITY;
+			distances[column] = reached ? workspace.getDistance(targets[column]) : Double.POSITIVE_INFINITY;
+		}
+		return new TravelMatrix(new int[]{source}, targets, new double[][]{times}, new double[][]{distances});
+	}
+	
+	/**
+	 * Calculates the quickest time and its distance from every source to every target.
+	 * <p>
+	 * A single source uses one Dijkstra search. Otherwise the contraction hierarchy's bucket method is used, which searches
+	 * from each source and each target once, on every core, instead of finding each route separately. The hierarchy is built
+	 * first if this is the first time it has been needed, unless there are only a few sources, in which case one Dijkstra
+	 * search is run from each source in parallel rather than waiting for the hierarchy to be built.
+	 * @param sources - The index of the vertex of each row.
+	 * @param targets - The index of the vertex of each column.
+	 * @return The matrix, holding Double.POSITIVE_INFINITY for targets that cannot be reached.
+	 * @throws IllegalArgumentException If any index is not a vertex on the graph.
+	 */
+	public TravelMatrix calculateTravelTimes(int[] sources, int[] targets){
+		if(sources.length == 1){
+			return calculateTravelTimes(sources[0], targets);
+		}
+		checkVertexes(sources);
+		checkVertexes(targets);
+		double[][] times = new double[sources.length][targets.length];
+		double[][] distances = new double[sources.length][targets.length];
+		if(sources.length <= MAXIMUM_ROW_SEARCHES && !hasContractionHierarchy()){ // Building the hierarchy would take far longer than the searches
+			TravelMatrix[] rows = IntStream.range(0, sources.length).parallel().mapToObj(row -> calculateTravelTimes(sources[row], targets)).toArray(TravelMatrix[]::new);
+			for(int row = 0; row < sources.length; row++){
+				times[row] = rows[row].getTimes()[0];
+				distances[row] = rows[row].getDistances()[0];
+			}
+			return new TravelMatrix(sources, targets, times, distances);
+		}
+		getContractionHierarchy().calculateMatrix(sources, targets, times, distances);
+		return new TravelMatrix(sources, targets, times, distances);
+	}
+	
+	/**
+	 * Finds every vertex that can be reached from a source within a time budget.
+	 * <p>
+	 * Runs Dijkstra's algorithm from the source and stops as soon as the next vertex would take longer than the budget to reach.
+	 * @param source - The index of the source vertex.
+	 * @param budget - The most time allowed in hours.
+	 * @return The vertexes reached, with the quickest time and distance to each.
+	 * @throws IllegalArgumentException If the index is not a vertex on the graph.
+	 */
+	public Isochrone calculateIsochrone(int source, double budget){
+		checkVertexes(new int[]{source});
+		SearchWorkspace workspace = SearchWorkspace.forThread(compactGraph.getVertexCount());
+		IntList reached = new IntList();
+		searchByTime(source, workspace, budget, vertex -> {
+			reached.add(vertex);
+			return true;
+		});
+		int[] vertexes = reached.toArray();
+		double[] times = new double[vertexes.length];
+		double[] distances = new double[vertexes.length];
+		for(int i = 0; i < vertexes.length; i++){
+			times[i] = workspace.getWeightedDistance(vertexes[i]);
+			distances[i] = workspace.getDistance(vertexes[i]);
+		}
+		return new Isochrone(compactGraph, source, budget, vertexes, times, distances);
+	}
+	
+	/**
+	 * Finds every vertex that can be reached within a time budget from each of several sources, searching from the sources in parallel.
+	 * @param sources - The index of each source vertex.
+	 * @param budget - The most time allowed in hours.
+	 * @return The isochrone of each source, in the same order.
+	 * @throws IllegalArgumentException If any index is not a vertex on the graph.
+	 */
+	public Isochrone[] calculateIsochrones(int[] sources, double budget){
+		checkVertexes(sources);
+		return IntStream.of(sources).parallel().mapToObj(source -> calculateIsochrone(source, budget)).toArray(Isochrone[]::new);
+	}
+	
+	/**
+	 * Finds a quick order to visit several stops in, starting from the first.
+	 * <p>
+	 * The quickest times between every pair of stops are calculated as a travel time matrix, then the order is found with a
+	 * StopSequencer. The route through the stops can then be found with quickestTrip, or quickestRoute on the order returned.
+	 * @param stops - The index of the vertex of each stop, starting with where the trip begins.
+	 * @param keepLast - True if the last stop must be visited last, such as when the trip has to end at a depot.
+	 * @return The indexes of the stops' vertexes in the order to visit them.
+	 * @throws IllegalArgumentException If any index is not a vertex on the graph.
+	 */
+	public int[] orderStops(int[] stops, boolean keepLast){
+		final double startTime = System.nanoTime();
+		StopSequencer sequencer = new StopSequencer(calculateTravelTimes(stops, stops));
+		int[] order = sequencer.findOrder(keepLast, StopSequencer.DEFAULT_RESTARTS);
+		int[] ordered = new int[order.length];
+		for(int i = 0; i < order.length; i++){
+			ordered[i] = stops[order[i]];
+		}
+		final double duration = System.nanoTime() - startTime;
+		Core.debug("Ordered " + stops.length + " stops taking " + sequencer.getCost(order) + " hours in " + duration/1000000000 + " seconds");
+		return ordered;
+	}
+	
+	/**
+	 * Calculates the quickest route through several stops in the quickest order found by orderStops.
+	 * <p>
+	 * The legs of the route are calculated in parallel as for quickestRoute, and directions can be given with convertGraphToDirections.
+	 * @param stops - The index of the vertex of each stop, starting with where the trip begins.
+	 * @param keepLast - True if the last stop must be visited last.
+	 * @param mode - The algorithm to use for each leg.
+	 * @return The route, or null if any leg cannot be travelled.
+	 * @throws IllegalArgumentException If there are fewer than two stops or any index is not a vertex on the graph.
+	 */
+	public Route quickestTrip(int[] stops, boolean keepLast, SearchMode mode){
+		checkVertexes(stops);
+		return quickestRoute(orderStops(stops, keepLast), mode);
+	}
+	
+	/**
+	 * Runs Dijkstra's algorithm ordered by time from a source, settling vertexes until told to stop or the budget runs out.
+	 * <p>
+	 * Used by the searches that settle many vertexes rather than heading for one destination. The results are left in the workspace.
+	 * @param source - The index of the source vertex.
+	 * @param workspace - The workspace of the current thread.
+	 * @param budget - The most time in hours a vertex can take to reach and still be settled.
+	 * @param settled - Given each vertex as it is settled, returning false to stop the search once the vertex's arcs are no longer needed.
+	 */
+	private void searchByTime(int source, SearchWorkspace workspace, double budget, IntPredicate settled){
+		VertexQueue unsettledVertexes = workspace.getQueue();
+		workspace.visit(source, 0, 0, -1);
+		unsettledVertexes.add(source, 0);
+		while(!unsettledVertexes.isEmpty() && unsettledVertexes.peekKey() <= budget){
+			int workingVertex = unsettledVertexes.poll();
+			workspace.settle(workingVertex);
+			if(!settled.test(workingVertex)){
+				return;
+			}
+			relaxEdges(workingVertex, workspace, true, null);
+		}
+	}
+	
+	/**
+	 * Follows every arc leaving a settled vertex, giving each vertex at the other end a new working distance and moving it
+	 * up the queue if the arc reaches it sooner than it has been reached before.
+	 * <p>
+	 * Every search from a source vertex or point relaxes arcs this way, so which arcs are followed and how ties are broken is the same for all of them.
+	 * @param workingVertex - The index of the vertex that has just been settled.
+	 * @param workspace - The workspace of the search.
+	 * @param weighted - True if the search is ordered by weighted distance (time), false if it is ordered by distance.
+	 * @param estimate - Gives the estimate of the distance left from a vertex added to the key it is queued with, or null for Dijkstra's algorithm.
+	 */
+	private void relaxEdges(int workingVertex, SearchWorkspace workspace, boolean weighted, IntToDoubleFunction estimate){
+		VertexQueue unsettledVertexes = workspace.getQueue();
+		double distance = workspace.getDistance(workingVertex);
+		double weightedDistance = workspace.getWeightedDistance(workingVertex);
+		for(int edge = compactGraph.firstEdge[workingVertex]; edge < compactGraph.firstEdge[workingVertex + 1]; edge++){ // Explore all edges leaving the vertex
+			if((compactGraph.edgeFlags[edge] & CompactGraph.TRAVERSABLE) == 0){ // Discards edges that go the wrong way down a one way road
+				continue;
+			}
+			int target = compactGraph.edgeTarget[edge];
+			if(workspace.isSettled(target)){
+				continue;
+			}
+			double workingDistance = distance + compactGraph.edgeDistance[edge]; // Sets the working distance to the current vertex's distance from the source + the length of the edge
+			double workingWeightedDistance = weightedDistance + compactGraph.edgeTime[edge]; // Same as above but using weighted distance instead
+			double workingKey = weighted ? workingWeightedDistance : workingDistance; // The distance the queue is ordered by
+			if(workingKey < (weighted ? workspace.getWeightedDistance(target) : workspace.getDistance(target))){ // If the working distance is less than the target vertex's current distance
+				workspace.visit(target, workingDistance, workingWeightedDistance, workingVertex); // Assign working distances to target vertex with the current vertex as its previous vertex
+				if(estimate != null){ // A* orders the queue by the estimated length of the whole route through the target vertex
+					workingKey += estimate.applyAsDouble(target);
 				}
-				return; // Finishes the method
+				unsettledVertexes.add(target, workingKey); // Adds the target vertex to the queue, or moves it up the queue if it is already waiting
 			}
-			Core.debug("Using Vertex: " + workingVertex);
-			unsettledVertexes.remove(workingVertex); // Transfers the current vertex from the unsettled hashset to the settled hashset
-			settledVertexes.add(workingVertex);
-			for(int i = 0; i < vertexMapMirror.get(workingVertex).arcList.size(); i++){ // Explore all arcs connected to the vertex
-				String arc = vertexMapMirror.get(workingVertex).arcList.get(i); // Temporarily stores the current arc being used
-				Core.debug("Exploring Arc: " + arc);
-				Core.debug("  Start: " + arcMap.get(arc).getStart());
-				Core.debug("  End: " + arcMap.get(arc).getEnd());
-				if(workingVertex.equals(arcMap.get(arc).getStart()) && !settledVertexes.contains(arcMap.get(arc).getEnd())){ // Checking for the orientation of the arc being used: either start to end or end to start
-					// Section for dealing with arcs from start to end
-					if(arcMap.get(arc).getOneWay() == -1){ // Discards arc if the arc has the "oneway" tag set to -1 - can't be travelled down from start to end
-						Core.debug("Ignoring Arc, Reverse One Way Road");
-					}else{
-						double workingDistance = arcMap.get(arc).getWeight() + vertexMapMirror.get(workingVertex).getDistanceFromSource(); // Sets the working distance to the current vertex's distance from the source + the weight of the arc
-						double workingWeightedDistance = arcMap.get(arc).getWeightedDistance() + vertexMapMirror.get(workingVertex).getWeightedDistanceFromSource(); // Same as above but using weighted distance instead
-						if(workingWeightedDistance < vertexMapMirror.get(arcMap.get(arc).getEnd()).getWeightedDistanceFromSource()){ // If the working weighted distance is less than the target vertexes current weighted distance
-							Core.debug("  Modifying End Vertex - Distance From Source = " + workingDistance);
-							Core.debug("  Modifying End Vertex - Weighted Distance From Source = " + workingWeightedDistance);
-							vertexMapMirror.get(arcMap.get(arc).getEnd()).setDistanceFromSource(workingDistance);
-							vertexMapMirror.get(arcMap.get(arc).getEnd()).setWeightedDistanceFromSource(workingWeightedDistance);// Assign working distances to target vertex
-							vertexMapMirror.get(arcMap.get(arc).getEnd()).setPreviousVertex(workingVertex); // Assigns the current vertex as the target vertex's previous vertex
-							unsettledVertexes.add(arcMap.get(arc).getEnd()); // If the target vertex is not present in the unsettled vertexes hashset then it is added - hashset doesn't accept duplicates
-						}else{ // Ignore target vertex if the route to it is longer than its current distance from source
-							Core.debug("  Leaving End Vertex - Distance From Source = " + vertexMapMirror.get(arcMap.get(arc).getEnd()).getDistanceFromSource() + ", Rejected Distance = " + workingDistance);
-							Core.debug("  Leaving End Vertex - Weighted Distance From Source = " + vertexMapMirror.get(arcMap.get(arc).getEnd()).getWeightedDistanceFromSource() + ", Rejected Weighted Distance = " + workingWeightedDistance);
-						}
-					}
+		}
+	}
+	
+	/**
+	 * Checks that every index given is a vertex on the graph.
+	 * @param vertexes - The indexes to check.
+	 * @throws IllegalArgumentException If any index is out of range.
+	 */
+	private void checkVertexes(int[] vertexes){
+		for(int vertex : vertexes){
+			if(vertex < 0 || vertex >= compactGraph.vertexCount){
+				throw new IllegalArgumentException("Vertex index out of range");
+			}
+		}
+	}
+	
+	/**
+	 * Runs Dijkstra's algorithm or A* from the source vertex until the destination vertex is settled.
+	 * <p>
+	 * Unsettled vertexes are kept in a priority queue ordered by either weighted distance or distance from the source,
+	 * so the next vertex to settle is always taken from the top of the queue rather than found by scanning every unsettled vertex.
+	 * All working distances are kept in the current thread's SearchWorkspace so the graph itself is never modified,
+	 * and arcs are read from the compact form of the graph rather than the hashmaps.
+	 * <p>
+	 * For A* the queue is instead ordered by the distance from the source plus an estimate of the distance left to the destination.
+	 * The estimate is the great circle distance to the destination, divided by the fastest speed on the graph when ordering by weighted distance.
+	 * It can never be more than the real distance left, so the route found is the same as Dijkstra's algorithm would find.
+	 * Landmark searches are the same but estimate the weighted distance left using the landmark tables.
+	 * @param sourceIndex - The index of the source vertex.
+	 * @param destinationIndex - The index of the destination vertex.
+	 * @param weighted - True to order the search by weighted distance (time), false to order it by distance.
+	 * @param mode - The algorithm to use.
+	 * @return The route found, or null if the destination cannot be reached from the source.
+	 */
+	private Route calculateRoute(int sourceIndex, int destinationIndex, boolean weighted, SearchMode mode){
+		Core.debug("-------------------------------- BEGIN " + mode + " ----------------------------");
+		if(sourceIndex < 0 || sourceIndex >= compactGraph.vertexCount || destinationIndex < 0 || destinationIndex >= compactGraph.vertexCount){
+			throw new IllegalArgumentException("Vertex index out of range");
+		}
+		Core.debug("Going from " + getNodeId(sourceIndex) + " to " + getNodeId(destinationIndex));
+		if(mode == SearchMode.BIDIRECTIONAL){
+			return calculateBidirectionalRoute(sourceIndex, destinationIndex, weighted);
+		}
+		if(mode == SearchMode.CONTRACTION_HIERARCHY){
+			if(!weighted){
+				throw new IllegalArgumentException("Contraction hierarchies only support quickest routes");
+			}
+			return getContractionHierarchy().calculateRoute(sourceIndex, destinationIndex);
+		}
+		if(mode == SearchMode.LANDMARKS && !weighted){
+			throw new IllegalArgumentException("Landmarks only support quickest routes");
+		}
+		Landmarks landmarks = mode == SearchMode.LANDMARKS ? getLandmarks() : null; // Fetched before the workspace as calculating them uses the same workspace
+		SearchWorkspace workspace = SearchWorkspace.forThread(compactGraph.getVertexCount()); // Holds the distances and settled vertexes of this search
+		VertexQueue unsettledVertexes = workspace.getQueue(); // A priority queue of all vertexes that have working distances from the source but are not confirmed and settled
+		workspace.visit(sourceIndex, 0, 0, -1); // Starts by setting all distance values for the source node to 0 with no previous vertex
+		unsettledVertexes.add(sourceIndex, 0); // The source node is added to the queue of unsettled vertexes
+		double estimateScale = weighted ? 1 / maximumSpeed : 1; // Converts a great circle distance into an estimate that can be compared to the queue's distances
+		IntToDoubleFunction estimate = null; // Dijkstra's algorithm orders the queue by the distance from the source alone
+		if(mode == SearchMode.A_STAR){
+			estimate = vertex -> calculateGreatCircleDistance(vertex, destinationIndex) * estimateScale;
+		}else if(landmarks != null){
+			estimate = vertex -> landmarks.estimate(vertex, destinationIndex);
+		}
+		int settledVertexes = 0; // The number of vertexes settled, reported with the route
+		while(!unsettledVertexes.isEmpty()){ // Loop until no vertexes are unsettled
+			int workingVertex = unsettledVertexes.poll(); // The current working vertex is the unsettled vertex with the shortest distance from any currently settled vertex
+			if(workingVertex == destinationIndex){ // If the current working vertex is the destination then the route has been found
+				Core.debug("ROUTE FOUND - " + settledVertexes + " vertexes settled");
+				return buildRoute(workspace, destinationIndex, settledVertexes);
+			}
+			workspace.settle(workingVertex); // The current vertex has been taken off the queue so it is now settled
+			settledVertexes++;
+			relaxEdges(workingVertex, workspace, weighted, estimate);
+		}
+		Core.debug("No route found - " + settledVertexes + " vertexes settled");
+		return null;
+	}
+	
+	/**
+	 * Runs Dijkstra's algorithm or A* from a point part way along one arc to a point part way along another.
+	 * <p>
+	 * The points act as a virtual source and destination vertex joined to the ends of their arcs. Rather than adding them to the
+	 * graph, the search starts with both ends of the source's arc already visited at the distance along the arc to reach them,
+	 * and reaching the destination is checked whenever an end of the destination's arc is settled. One way arcs are only followed
+	 * the way they can be travelled. The search stops once nothing left in the queue could lead to a better route than the best found,
+	 * which may be straight along the arc if both points are on the same one.
+	 * @param source - The source.
+	 * @param destination - The destination.
+	 * @param weighted - True to order the search by weighted distance (time), false to order it by distance.
+	 * @param mode - The algorithm to use.
+	 * @return The route found, or null if the destination cannot be reached from the source.
+	 */
+	private Route calculateRoute(Snap source, Snap destination, boolean weighted, SearchMode mode){
+		Core.debug("-------------------------------- BEGIN " + mode + " FROM POINT ----------------------------");
+		if(mode != SearchMode.DIJKSTRA && mode != SearchMode.A_STAR && mode != SearchMode.LANDMARKS){
+			throw new IllegalArgumentException(mode + " only supports routes between vertexes");
+		}
+		if(mode == SearchMode.LANDMARKS && !weighted){
+			throw new IllegalArgumentException("Landmarks only support quickest routes");
+		}
+		Landmarks landmarks = mode == SearchMode.LANDMARKS ? getLandmarks() : null;
+		int sourceEdge = source.getEdge();
+		int destinationEdge = destination.getEdge();
+		boolean sourceForward = (compactGraph.edgeFlags[sourceEdge] & CompactGraph.TRAVERSABLE) != 0; // Whether the source's arc can be travelled from start to end
+		boolean sourceBackward = (compactGraph.edgeFlags[sourceEdge] & CompactGraph.TRAVERSABLE_REVERSE) != 0;
+		boolean destinationForward = (compactGraph.edgeFlags[destinationEdge] & CompactGraph.TRAVERSABLE) != 0;
+		boolean destinationBackward = (compactGraph.edgeFlags[destinationEdge] & CompactGraph.TRAVERSABLE_REVERSE) != 0;
+		double bestKey = Double.MAX_VALUE; // The distance the search is ordered by of the best route found so far
+		double bestDistance = 0;
+		double bestWeightedDistance = 0;
+		int bestVertex = -1; // The end of the destination's arc the best route leaves the graph from, -1 if it goes straight along one arc
+		if(sourceEdge == destinationEdge){ // Both points are on the same arc so the route may not need to leave it
+			double along = destination.getFraction() - source.getFraction();
+			if((along >= 0 && sourceForward) || (along <= 0 && sourceBackward)){
+				bestDistance = Math.abs(along) * compactGraph.edgeDistance[sourceEdge];
+				bestWeightedDistance = Math.abs(along) * compactGraph.edgeTime[sourceEdge];
+				bestKey = weighted ? bestWeightedDistance : bestDistance;
+			}
+		}
+		SearchWorkspace workspace = SearchWorkspace.forThread(compactGraph.getVertexCount());
+		VertexQueue unsettledVertexes = workspace.getQueue();
+		boolean aStar = mode == SearchMode.A_STAR;
+		double estimateScale = weighted ? 1 / maximumSpeed : 1;
+		for(int end = 0; end < 2; end++){ // Joins the virtual source to whichever ends of its arc can be driven to
+			if(end == 0 ? !sourceBackward : !sourceForward){
+				continue;
+			}
+			int vertex = end == 0 ? source.getVertex() : source.getTarget();
+			double part = end == 0 ? source.getFraction() : 1 - source.getFraction(); // How much of the arc lies between the point and this end
+			double distance = part * compactGraph.edgeDistance[sourceEdge];
+			double weightedDistance = part * compactGraph.edgeTime[sourceEdge];
+			workspace.visit(vertex, distance, weightedDistance, -1);
+			unsettledVertexes.add(vertex, (weighted ? weightedDistance : distance) + estimate(vertex, destination, landmarks, aStar, estimateScale, destinationForward, destinationBackward));
+		}
+		IntToDoubleFunction pointEstimate = mode == SearchMode.DIJKSTRA ? null : vertex -> estimate(vertex, destination, landmarks, aStar, estimateScale, destinationForward, destinationBackward);
+		int settledVertexes = 0;
+		while(!unsettledVertexes.isEmpty() && unsettledVertexes.peekKey() < bestKey){ // Loop until nothing left in the queue can improve on the best route
+			int workingVertex = unsettledVertexes.poll();
+			workspace.settle(workingVertex);
+			settledVertexes++;
+			double distance = workspace.getDistance(workingVertex);
+			double weightedDistance = workspace.getWeightedDistance(workingVertex);
+			for(int end = 0; end < 2; end++){ // Joins the ends of the destination's arc to the virtual destination
+				if(workingVertex != (end == 0 ? destination.getVertex() : destination.getTarget()) || (end == 0 ? !destinationForward : !destinationBackward)){
+					continue;
 				}
-				else{
-					if(workingVertex.equals(arcMap.get(arc).getEnd()) && !settledVertexes.contains(arcMap.get(arc).getStart())){ // Checking for the orientation of the arc
-						// Section for dealing with arcs from end to start
-						if(arcMap.get(arc).getOneWay() == 1){ // Discards arc if it can't be travelled down from end to start
-							Core.debug("Ignoring Arc, One Way Road");
-						}else{
-							double workingDistance = arcMap.get(arc).getWeight() + vertexMapMirror.get(workingVertex).getDistanceFromSource(); // Sets the working distance to the current vertex's distance from the source + the weight of the arc
-							double workingWeightedDistance = arcMap.get(arc).getWeightedDistance() + vertexMapMirror.get(workingVertex).getWeightedDistanceFromSource(); // Same as above but using weighted distance instead
-							if(workingWeightedDistance < vertexMapMirror.get(arcMap.get(arc).getStart()).getWeightedDistanceFromSource()){ // If the working weighted distance is less that the target vertexes current weighted distance
-								Core.debug("  Modifying Start Vertex - Distance From Source = " + workingDistance);
-								Core.debug("  Modifying Start Vertex - Weighted Distance From Source = " + workingWeightedDistance);
-								vertexMapMirror.get(arcMap.get(arc).getStart()).setDistanceFromSource(workingDistance); 
-								vertexMapMirror.get(arcMap.get(arc).getStart()).setWeightedDistanceFromSource(workingWeightedDistance); // Assigns the working distance to the target vertex
-								vertexMapMirror.get(arcMap.get(arc).getStart()).setPreviousVertex(workingVertex); // Assigns the current vertex as the target vertex's previous vertex
-								unsettledVertexes.add(arcMap.get(arc).getStart()); // If the target vertex is not present in the unsettled vertexes hashset then it is added - hashset doesn't accept duplicates
-							}else{ // Ignore target vertex if the route to its longer than its current distance from source
-								Core.debug("  Leaving Start Vertex - Distance From Source = " + vertexMapMirror.get(arcMap.get(arc).getStart()).getDistanceFromSource() + ", Rejected Distance = " + workingDistance);
-								Core.debug("  Leaving Start Vertex - Weighted Distance From Source = " + vertexMapMirror.get(arcMap.get(arc).getStart()).getWeightedDistanceFromSource() + ", Rejected Weighted Distance = " + workingWeightedDistance);
-							}
-						}
-					}
-					else{
-						Core.debug("Dead End: " + workingVertex);
-					}
+				double part = end == 0 ? destination.getFraction() : 1 - destination.getFraction();
+				double routeDistance = distance + part * compactGraph.edgeDistance[destinationEdge];
+				double routeWeightedDistance = weightedDistance + part * compactGraph.edgeTime[destinationEdge];
+				double routeKey = weighted ? routeWeightedDistance : routeDistance;
+				if(routeKey < bestKey){
+					bestKey = routeKey;
+					bestDistance = routeDistance;
+					bestWeightedDistance = routeWeightedDistance;
+					bestVertex = workingVertex;
 				}
-				//vertexMapMirror.get(source).arcList.get(i)
 			}
+			relaxEdges(workingVertex, workspace, weighted, pointEstimate);
+		}
+		if(bestKey == Double.MAX_VALUE){
+			Core.debug("No route found - " + settledVertexes + " vertexes settled");
+			return null;
 		}
-		for(String vertexId : unsettledVertexes){
-			Core.debug(vertexId);
+		Core.debug("ROUTE FOUND - " + settledVertexes + " vertexes settled");
+		if(bestVertex == -1){ // Straight along the arc from one point to the other
+			return new Route(new int[0], new double[0], new double[0], bestDistance, bestWeightedDistance, source, destination, settledVertexes);
 		}
-		return;
+		Route route = buildRoute(workspace, bestVertex, settledVertexes);
+		int[] vertexes = new int[route.size()];
+		double[] distances = new double[route.size()];
+		double[] weightedDistances = new double[route.size()];
+		for(int i = 0; i < route.size(); i++){
+			vertexes[i] = route.getVertex(i);
+			distances[i] = route.getDistanceAt(i);
+			weightedDistances[i] = route.getWeightedDistanceAt(i);
+		}
+		return new Route(vertexes, distances, weightedDistances, bestDistance, bestWeightedDistance, source, destination, settledVertexes);
 	}
 	
 	/**
-	 * Returns the vertex ID in the given hashset with the lowest value for distanceFromSource.
-	 * @param set - The hashset of vertex IDs to scan.
-	 * @return The vertex ID in the hashset with the lowest value for distanceFromSource.
+	 * Estimates the distance left from a vertex to a point on an arc for A* and landmark searches, without ever overestimating it.
+	 * <p>
+	 * Landmarks can only estimate the distance to a vertex, so the smaller of the estimates to the ends of the destination's arc
+	 * that lead to the point is used, as every route to the point passes through one of them.
+	 * @param vertex - The index of the vertex.
+	 * @param destination - The point the search is heading for.
+	 * @param landmarks - The landmarks to use, or null if the search is not a landmark search.
+	 * @param aStar - True if the search is an A* search.
+	 * @param estimateScale - Converts a great circle distance into the units the search is ordered by.
+	 * @param destinationForward - Whether the destination's arc can be travelled from its start to the point.
+	 * @param destinationBackward - Whether the destination's arc can be travelled from its end to the point.
+	 * @return The estimate, or 0 for Dijkstra's algorithm.
 	 */
-	@SuppressWarnings("unused")
-	private String getVertexWithLowestDistance(Set<String> set){ // Returns the vertex with the lowest distance from source in a hashset
-		Double minimum = null; // Using the double wrapper class so that it can be assigned a null value for when first initialised
-		String minimumVertex = null;
-		for(String vertexId : set){ // Iterates through every vertex id in the hashset
-			Vertex tempVertex = vertexMapMirror.get(vertexId); // Stores the vertex currently used in a temporary variable
-			if(minimum == null){ // If this is the first vertex checked then the minimum will always be this vertex's distance from source
-				minimum = tempVertex.getDistanceFromSource();
-				minimumVertex = tempVertex.getId();
-			}else{
-				if(tempVertex.getDistanceFromSource() < minimum){ // Checks if the value of the currently held vertex distance from source is lower than the minimum
-					minimum = tempVertex.getDistanceFromSource(); // If it is, assigns that value to the minimum
-					minimumVertex = tempVertex.getId(); // Stores the vertex id of the currently lowest distance from source
-				}
+	private double estimate(int vertex, Snap destination, Landmarks landmarks, boolean aStar, double estimateScale, boolean destinationForward, boolean destinationBackward){
+		if(aStar){
+			return calculateGreatCircleDistance(compactGraph.lat[vertex], compactGraph.lon[vertex], destination.getLat(), destination.getLon()) * estimateScale;
+		}
+		if(landmarks != null){
+			double estimate = Double.MAX_VALUE;
+			if(destinationForward){
+				estimate = landmarks.estimate(vertex, destination.getVertex());
 			}
-			
+			if(destinationBackward){
+				estimate = Math.min(estimate, landmarks.estimate(vertex, destination.getTarget()));
+			}
+			return estimate == Double.MAX_VALUE ? 0 : estimate;
 		}
-		return minimumVertex;
+		return 0;
 	}
 	
 	/**
-	 * Returns the vertex ID in the given hashset with the lowest value for weightedDistanceFromSource.
-	 * @param set - The hashset of vertex IDs to scan.
-	 * @return The vertex ID in the hashset with the lowest value for weightedDistanceFromSource.
+	 * Runs Dijkstra's algorithm forwards from the source and backwards from the destination at the same time.
+	 * <p>
+	 * Each step settles one vertex in whichever search has the lower distance at the top of its queue. Whenever one search
+	 * reaches a vertex the other search has already reached, the route through that vertex is kept if it is the best found so far.
+	 * The searches stop once the distances at the top of both queues add up to at least the best route, as any route through a
+	 * vertex still in the queues would be longer. The backward search travels down edges against their direction, so it only uses
+	 * edges that can be travelled from their target back to their vertex.
+	 * https://en.wikipedia.org/wiki/Bidirectional_search
+	 * @param sourceIndex - The index of the source vertex.
+	 * @param destinationIndex - The index of the destination vertex.
+	 * @param weighted - True to search by weighted distance (time), false to search by distance.
+	 * @return The route found, or null if the destination cannot be reached from the source.
 	 */
-	private String getVertexWithLowestWeightedDistance(Set<String> set){ // As above but using weighted distances instead of distance
-		Double minimum = null;
-		String minimumVertex = null;
-		for(String vertexId : set){
-			Vertex tempVertex = vertexMapMirror.get(vertexId);
-			if(minimum == null){
-				minimum = tempVertex.getWeightedDistanceFromSource();
-				minimumVertex = tempVertex.getId();
+	private Route calculateBidirectionalRoute(int sourceIndex, int destinationIndex, boolean weighted){
+		SearchWorkspace forward = SearchWorkspace.forThread(compactGraph.getVertexCount(), SearchWorkspace.FORWARD); // The search from the source
+		SearchWorkspace backward = SearchWorkspace.forThread(compactGraph.getVertexCount(), SearchWorkspace.BACKWARD); // The search from the destination
+		VertexQueue forwardQueue = forward.getQueue();
+		VertexQueue backwardQueue = backward.getQueue();
+		forward.visit(sourceIndex, 0, 0, -1);
+		forwardQueue.add(sourceIndex, 0);
+		backward.visit(destinationIndex, 0, 0, -1);
+		backwardQueue.add(destinationIndex, 0);
+		Meeting meeting = new Meeting();
+		if(sourceIndex == destinationIndex){ // The searches have met before they start
+			meeting.distance = 0;
+			meeting.vertex = sourceIndex;
+		}
+		int settledVertexes = 0;
+		while(!forwardQueue.isEmpty() && !backwardQueue.isEmpty() && forwardQueue.peekKey() + backwardQueue.peekKey() < meeting.distance){ // Loop until the best route found cannot be improved on
+			if(forwardQueue.peekKey() <= backwardQueue.peekKey()){ // Moves whichever search is further behind
+				settleNextVertex(forward, backward, CompactGraph.TRAVERSABLE, weighted, meeting);
 			}else{
-				if(tempVertex.getWeightedDistanceFromSource() < minimum){
-					minimum = tempVertex.getWeightedDistanceFromSource();
-					minimumVertex = tempVertex.getId();
-				}
+				settleNextVertex(backward, forward, CompactGraph.TRAVERSABLE_REVERSE, weighted, meeting);
 			}
-			
-		}
-		return minimumVertex;
-	}
-	
-	/**
-	 * Iterates through the arc hashmap and calculates both distance and weighted distance for each arc. Then assigns the values to each arc.
-	 */
-	private void calculateWeights(){ // Assigns distances and times to each arc in km and hours respectively
-		double lat1,lon1,lat2,lon2,temp,distance,weightedDistance;
-		for(String key : arcMap.keySet()){ // Iterates through every arc in the arc hashmap
-			Arc tempArc = arcMap.get(key);
-			lat1 = Math.toRadians(vertexMap.get(tempArc.getStart()).getLat());
-			lon1 = Math.toRadians(vertexMap.get(tempArc.getStart()).getLon());
-			lat2 = Math.toRadians(vertexMap.get(tempArc.getEnd()).getLat());
-			lon2 = Math.toRadians(vertexMap.get(tempArc.getEnd()).getLon());
-			temp = Math.pow(Math.sin((lat2 - lat1) / 2), 2) + (Math.cos(lat1) * Math.cos(lat2) * Math.pow(Math.sin((lon2 - lon1) / 2), 2)); // A temporary value for use in the distance calculation
-			distance = EARTHDIAMETER * Math.asin(Math.sqrt(temp)); // Using the haversine formula to calculate the length of arcs using latitudes and longitudes - https://en.wikipedia.org/wiki/Haversine_formula 
-			tempArc.setWeight(distance); // Assigns unweighted distance to the arc being used
-			//Core.debug("Way Id: " + tempArc.id);
-			//Core.debug("  Dist: " + distance);
-			//Core.debug("  Estimated Max Speed: " + getMaxSpeed(tempArc) + " kph"); 
-			weightedDistance = distance/(getAverageSpeed(tempArc)); // Calculates weighted distance which is equal to time in hours of road by dividing distance by the average speed
-			//Core.debug("  Weighted Distance: " + weightedDistance); 
-			tempArc.setWeightedDistance(weightedDistance); // Assigns the weighted distance to the arc being used 
-		}
-	}
-	
-	/**
-	 * Returns the the average speed of an arc based on its tag information.
-	 * @param arc - The arc to use.
-	 * @return The average speed of the arc passed.
-	 */
-	private double getAverageSpeed(Arc arc){ // Returns the max speed in km/hr of a give arc
-		double maxspeed = 0;
-		for(String tag : arc.tagList.keySet()){ // Iterates through every tag in the arc's taglist
-			switch(tag){ // Switch is in order of priority
-				case "maxspeed": // First looks for if the arc has a "maxspeed" tag
-					String maxspeedString = arc.tagList.get("maxspeed").trim(); // Stores the value of the "maxspeed" tag
-					if(maxspeedString.length() >= 4){ // If maxspeed is not just a number
-						if(maxspeedString.endsWith("mph")){ // If maxspeed is measured in mph
-							if(maxspeedString.contains(" ")){ // Differentiates between "30 mph" and "30mph"
-								maxspeed = KM_IN_MILE * Integer.parseInt(maxspeedString.substring(0,maxspeedString.indexOf(" "))); // Extracts values such as 5 from "5 mph" and then converts them to km/hr
-								//Core.debug("Parsing " + maxspeedString + " to " + maxspeed);
-								return maxspeed * MAXSPEEDDAMPENING;
-							}
-							else{
-								maxspeed = KM_IN_MILE * Integer.parseInt(maxspeedString.substring(0,maxspeedString.length() - 3)); // Extracts values such as 5 from "5mph" and then converts them to km/hr
-								//Core.debug("Parsing " + maxspeedString + " to " + maxspeed);
-								return maxspeed * MAXSPEEDDAMPENING;
-							}
-						}
-						else{
-							Core.debug("Malformed maxspeed tag");
-						}
-					}else{ // If string does not contain "mph" then it is measured in km/hr
-						if(maxspeedString.length() > 0){ // Ensuring string is not empty
-							maxspeed = Integer.parseInt(maxspeedString); // No substring needed as the string should just be a number - No conversion required either as value is already in km/hr
-							//Core.debug("Parsing " + maxspeedString + " to " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						}
-						else{
-							Core.debug("Malformed maxspeed tag");
-						}
-					}
-					//Core.debug("  Maxspeed = " + maxspeedString);
-					//Core.debug("    Maxspeed = " + maxspeed);
-					break;
-				case "highway": // If maxspeed tag is not present then the "highway" tag will be used instead
-					//Core.debug(arc.tagList.get("highway"));
-					switch(arc.tagList.get("highway").trim()){ // Switches based on "highway" value
-						case "motorway":
-							maxspeed = KM_IN_MILE * 70; // If the road is a motorway the speed limit in the UK is 70 mph
-							//Core.debug("Motorway, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "trunk":
-							maxspeed = KM_IN_MILE * 70; // Roads tagged with "trunk" are usually dual carriageway so 70 mph is assumed
-							//Core.debug("Trunk, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "primary": // Roads tagged with primary tend to be A roads and similar so 60 mph is assumed
-							maxspeed = KM_IN_MILE * 60;
-							//Core.debug("Primary, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "secondary": // Roads tagged with secondary tend to be roads slightly smaller than an A road and so 50 mph is assumed as a safe halfway point
-							maxspeed = KM_IN_MILE * 50;
-							//Core.debug("Secondary, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "tertiary": // Roads tagged with tertiary tend to be small and narrow, so while the speed limit may be 60 mph it is not achievable, therefore 40 mph is assumed
-							maxspeed = KM_IN_MILE * 40;
-							//Core.debug("Tertiary, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "unclassified": // Roads tagged with "unclassified" may be farm tracks or similar so 30 mph is assumed
-							maxspeed = KM_IN_MILE * 30;
-							//Core.debug("Unclassified, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "residential": // Roads that are residential are usually 30 mph speed limits
-							maxspeed = KM_IN_MILE * 30;
-							//Core.debug("Residential, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "service": // Service roads are usually private roads and very poorly maintained so 10 mph is assumed
-							maxspeed = KM_IN_MILE * 10;
-							//Core.debug("Service, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "track": // Tracks are farm tracks or worse so only 5 mph is assumed
-							maxspeed = KM_IN_MILE * 5;
-							//Core.debug("Track, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "motorway_link": // Motorway_link roads are usually slip roads or similar so 65 mph is assumed
-							maxspeed = KM_IN_MILE * 65;
-							//Core.debug("Motorway Link, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "trunk_link": // Trunk_link are roads such as slip ways onto dual carriageways so 65 mph assumed
-							maxspeed = KM_IN_MILE * 65;
-							//Core.debug("Trunk Link, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "primary_link": // Primary_link roads are smaller than primary roads but larger than secondary so 55 mph is assumed
-							maxspeed = KM_IN_MILE * 55;
-							//Core.debug("Primary Link, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "secondary_link": // Seccondary_link roads are smaller than secondary but larger than tertiary so 45 mph is assumed
-							maxspeed = KM_IN_MILE * 45;
-							//Core.debug("Secondary Link, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						case "tertiary_link": // Tertiary_link roads are smaller than tertiary but larger than tracks or service roads so 35 mph is assumed
-							maxspeed = KM_IN_MILE * 35;
-							//Core.debug("Tertiary Link, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
-						default: // If highway tag is malformed then 30 mph is assumed
-							maxspeed = KM_IN_MILE * 30; 
-							//Core.debug("Unknown, assuming: " + maxspeed);
-							return maxspeed * MAXSPEEDDAMPENING;
+			settledVertexes++;
+		}
+		if(meeting.vertex == -1){ // The searches never met
+			Core.debug("No route found - " + settledVertexes + " vertexes settled");
+			return null;
+		}
+		Core.debug("ROUTE FOUND - met at " + getNodeId(meeting.vertex) + ", " + settledVertexes + " vertexes settled");
+		int forwardLength = 0; // The number of vertexes from the source to the meeting vertex
+		for(int vertex = meeting.vertex; vertex != -1; vertex = forward.getPreviousVertex(vertex)){
+			forwardLength++;
+		}
+		int length = forwardLength - 1; // The meeting vertex is counted in both halves
+		for(int vertex = meeting.vertex; vertex != -1; vertex = backward.getPreviousVertex(vertex)){
+			length++;
+		}
+		int[] vertexes = new int[length];
+		double[] distances = new double[length];
+		double[] weightedDistances = new double[length];
+		int position = forwardLength - 1;
+		for(int vertex = meeting.vertex; vertex != -1; vertex = forward.getPreviousVertex(vertex)){ // Fills in the first half of the route from the meeting vertex backwards
+			vertexes[position] = vertex;
+			distances[position] = forward.getDistance(vertex);
+			weightedDistances[position] = forward.getWeightedDistance(vertex);
+			position--;
+		}
+		double totalDistance = forward.getDistance(meeting.vertex) + backward.getDistance(meeting.vertex);
+		double totalWeightedDistance = forward.getWeightedDistance(meeting.vertex) + backward.getWeightedDistance(meeting.vertex);
+		position = forwardLength;
+		for(int vertex = backward.getPreviousVertex(meeting.vertex); vertex != -1; vertex = backward.getPreviousVertex(vertex)){ // Fills in the second half of the route from the meeting vertex to the destination
+			vertexes[position] = vertex;
+			distances[position] = totalDistance - backward.getDistance(vertex); // The backward search holds the distance left to the destination
+			weightedDistances[position] = totalWeightedDistance - backward.getWeightedDistance(vertex);
+			position++;
+		}
+		return new Route(vertexes, distances, weightedDistances, settledVertexes);
+	}
+	
+	/**
+	 * Settles the vertex at the top of one search's queue and updates the vertexes its edges lead to.
+	 * @param workspace - The workspace of the search to move.
+	 * @param opposite - The workspace of the search going the other way.
+	 * @param traversable - The edge flag that must be set for the search to use an edge.
+	 * @param weighted - True to search by weighted distance (time), false to search by distance.
+	 * @param meeting - The best meeting of the two searches so far, updated if a better one is found.
+	 */
+	private void settleNextVertex(SearchWorkspace workspace, SearchWorkspace opposite, byte traversable, boolean weighted, Meeting meeting){
+		VertexQueue queue = workspace.getQueue();
+		int workingVertex = queue.poll();
+		workspace.settle(workingVertex);
+		double distance = workspace.getDistance(workingVertex);
+		double weightedDistance = workspace.getWeightedDistance(workingVertex);
+		for(int edge = compactGraph.firstEdge[workingVertex]; edge < compactGraph.firstEdge[workingVertex + 1]; edge++){
+			if((compactGraph.edgeFlags[edge] & traversable) == 0){ // Discards edges that go the wrong way down a one way road for this search
+				continue;
+			}
+			int target = compactGraph.edgeTarget[edge];
+			if(workspace.isSettled(target)){
+				continue;
+			}
+			double workingDistance = distance + compactGraph.edgeDistance[edge];
+			double workingWeightedDistance = weightedDistance + compactGraph.edgeTime[edge];
+			double workingKey = weighted ? workingWeightedDistance : workingDistance;
+			if(workingKey < (weighted ? workspace.getWeightedDistance(target) : workspace.getDistance(target))){
+				workspace.visit(target, workingDistance, workingWeightedDistance, workingVertex);
+				queue.add(target, workingKey);
+				if(opposite.isVisited(target)){ // The searches have met at the target vertex
+					double routeDistance = workingKey + (weighted ? opposite.getWeightedDistance(target) : opposite.getDistance(target));
+					if(routeDistance < meeting.distance){
+						meeting.distance = routeDistance;
+						meeting.vertex = target;
 					}
-					default:
-						break;
+				}
 			}
 		}
-		maxspeed = KM_IN_MILE * 30; // If no tags are present at all then 30 mph is assumed
-		Core.debug("No tag info, assuming: " + maxspeed);
-		return maxspeed * MAXSPEEDDAMPENING;
 	}
 	
 	/**
-	 * Iterates through the arc hashmap and marks any one way streets accordingly.
-	 */
-	private void calculateNonTraversableArcs(){
-		for(String key : arcMap.keySet()){ // Iterates through every arc in the arc hashmap
-			Arc tempArc = arcMap.get(key); // Stores the currently used arc temporarily for manipulating
-			for(String tag : tempArc.tagList.keySet()){ // Iterates through every tag in the current arc
-				if(tag.equals("oneway")){ // Check for if the "oneway" tag is present
-					switch(tempArc.tagList.get(tag)){ // Gets the value of the "oneway" tag
-						case "yes":
-							tempArc.setOneWay(1); // Assign the road to be one way
-							//Core.debug("One way");
-							break;
-						case "-1":
-							tempArc.setOneWay(-1); // Assign the road to be one way in reverse
-							//Core.debug("Reverse One Way");
-							break;
-						default: // If oneway does not equal yes or -1 then the road is not one way
-							break;
-					}
+	 * A private class for storing the best place a bidirectional search has met so far.
+	 * @author Jacob Pennington
+	 *
+	 */
+	private static class Meeting {
+		double distance = Double.MAX_VALUE; // The length of the best route through the meeting vertex
+		int vertex = -1; // The index of the meeting vertex, -1 if the searches have not met
+	}
+	
+	/**
+	 * Returns whether the contraction hierarchy has already been built, so callers can avoid waiting for it to be built.
+	 * <p>
+	 * This never waits, even while another thread is building the hierarchy.
+	 * @return True if getContractionHierarchy will return straight away.
+	 */
+	public boolean hasContractionHierarchy(){
+		return contractionHierarchy != null;
+	}
+	
+	/**
+	 * Returns the contraction hierarchy of the graph, building it if this is the first time it has been needed.
+	 * <p>
+	 * Threads that ask while it is being built wait for that build rather than starting another.
+	 * @return The contraction hierarchy for quickest routes.
+	 */
+	public ContractionHierarchy getContractionHierarchy(){
+		ContractionHierarchy hierarchy = contractionHierarchy;
+		if(hierarchy == null){
+			synchronized(contractionHierarchyLock){
+				hierarchy = contractionHierarchy;
+				if(hierarchy == null){ // Checked again, another thread may have built it while this one waited
+					hierarchy = new ContractionHierarchy(compactGraph);
+					contractionHierarchy = hierarchy;
 				}
-				if(tag.equals("junction")){ // Check for presence of "junction" tag
-					switch(tempArc.tagList.get(tag)){
-						case "roundabout":
-							tempArc.setOneWay(1); // Roundabouts imply the "oneway" tag
-							break;
+			}
+		}
+		return hierarchy;
+	}
+	
+	/**
+	 * Returns the landmarks of the graph, loading them from the landmark file or calculating them if this is the first time they have been needed.
+	 * <p>
+	 * Newly calculated landmarks are saved to the landmark file, replacing any saved for a different graph.
+	 * @return The landmarks for quickest routes.
+	 */
+	public Landmarks getLandmarks(){
+		Landmarks result = landmarks;
+		if(result == null){
+			synchronized(landmarksLock){
+				result = landmarks;
+				if(result == null){ // Checked again, another thread may have made them while this one waited
+					File file = new File(LANDMARK_FILE);
+					if(file.exists()){
+						try {
+							result = Landmarks.load(compactGraph, file);
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
 					}
-				}
-				if(tag.equals("highway")){
-					switch(tempArc.tagList.get(tag)){
-					case "motorway":
-						tempArc.setOneWay(1); // Motorways also imply the "oneway" tag
-						break;
+					if(result == null){ // There was no file, or it was for a different graph
+						result = new Landmarks(compactGraph, Landmarks.DEFAULT_LANDMARK_COUNT);
+						try {
+							result.save(file);
+						} catch (IOException e) {
+							e.printStackTrace();
+							Core.debug("Landmarks could not be saved");
+						}
 					}
+					landmarks = result;
 				}
 			}
 		}
+		return result;
 	}
 	
 	/**
-	 * Returns the Arc object that has both vertex IDs as its start and end.
-	 * @param vertexId1 - The first vertex ID to use.
-	 * @param vertexId2 - The second vertex ID to use.
-	 * @return The Arc object that connects the two vertexes, else returns null.
+	 * Returns the spatial index of the graph's arcs, building it if this is the first time it has been needed.
+	 * @return The spatial index.
 	 */
-	private Arc getArcConnectingTwoVertexes(String vertexId1, String vertexId2){ // Finds the id of an arc connecting two vertexes together
-		Vertex vertex1 = vertexMapMirror.get(vertexId1);
-		for(int i = 0; i < vertex1.arcList.size(); i++){ // Iterates through every arc connected to the first vertex
-			if(arcMap.get(vertex1.arcList.get(i)).getStart().equals(vertexId2) || arcMap.get(vertex1.arcList.get(i)).getEnd().equals(vertexId2)){ // Checks if the current arc also has the second vertex as a member
-				return arcMap.get(vertex1.arcList.get(i)); // If so return that arc
+	public SpatialIndex getSpatialIndex(){
+		SpatialIndex index = spatialIndex;
+		if(index == null){
+			synchronized(spatialIndexLock){
+				index = spatialIndex;
+				if(index == null){ // Checked again, another thread may have built it while this one waited
+					index = new SpatialIndex(compactGraph);
+					spatialIndex = index;
+				}
 			}
 		}
-		return null;
+		return index;
+	}
+	
+	/**
+	 * Finds the point on any arc of the graph nearest to a point on the map.
+	 * @param lat - The latitude of the point.
+	 * @param lon - The longitude of the point.
+	 * @return The nearest point on an arc, or null if the graph has no arcs.
+	 * @throws IllegalArgumentException If the point is not a valid location, as checked by isValidLocation.
+	 */
+	public Snap findNearest(double lat, double lon){
+		return getSpatialIndex().findNearest(lat, lon);
+	}
+	
+	/**
+	 * Follows the previous vertexes in a finished search back from the destination to create a route.
+	 * @param workspace - The workspace of the finished search.
+	 * @param destinationIndex - The index of the destination vertex.
+	 * @param settledVertexes - The number of vertexes the search settled.
+	 * @return The route from the source to the destination.
+	 */
+	private Route buildRoute(SearchWorkspace workspace, int destinationIndex, int settledVertexes){
+		int length = 0;
+		for(int vertex = destinationIndex; vertex != -1; vertex = workspace.getPreviousVertex(vertex)){ // Counts the vertexes on the route
+			length++;
+		}
+		int[] vertexes = new int[length];
+		double[] distances = new double[length];
+		double[] weightedDistances = new double[length];
+		int position = length - 1;
+		for(int vertex = destinationIndex; vertex != -1; vertex = workspace.getPreviousVertex(vertex)){ // Fills the route in from the destination backwards
+			vertexes[position] = vertex;
+			distances[position] = workspace.getDistance(vertex);
+			weightedDistances[position] = workspace.getWeightedDistance(vertex);
+			position--;
+		}
+		return new Route(vertexes, distances, weightedDistances, settledVertexes);
+	}
+	
+	/**
+	 * Returns the OSM ID of the vertex with the given index.
+	 * @param index - The index of the vertex, as used in routes.
+	 * @return The ID of the vertex.
+	 */
+	public long getNodeId(int index){
+		return compactGraph.nodeId[index];
+	}
+	
+	/**
+	 * Finds the index of the vertex with the given OSM ID.
+	 * @param nodeId - The ID of the vertex.
+	 * @return The index of the vertex, or -1 if it is not on the graph.
+	 */
+	public int findVertex(long nodeId){
+		return compactGraph.findVertex(nodeId);
+	}
+	
+	/**
+	 * Returns a vertex on the given way, the end of the way's first arc.
+	 * @param wayId - The OSM ID of the way.
+	 * @return The index of the vertex, or -1 if the way is not on the graph.
+	 */
+	public int findVertexOnWay(long wayId){
+		int way = ways.findWay(wayId);
+		if(way == -1 || ways.getFirstSegmentEdge(way) == -1){
+			return -1;
+		}
+		return compactGraph.edgeTarget[ways.getFirstSegmentEdge(way)];
+	}
+	
+	/**
+	 * Checks that a point is a real place on the earth's surface, so it can be searched for.
+	 * @param lat - The latitude of the point in degrees.
+	 * @param lon - The longitude of the point in degrees.
+	 * @return True if the latitude is from -90 to 90 and the longitude from -180 to 180, false otherwise or if either is NaN.
+	 */
+	public static boolean isValidLocation(double lat, double lon){
+		return lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180;
+	}
+	
+	/**
+	 * Calculates the distance between two points on the earth's surface.
+	 * @param latitude1 - The latitude of the first point in degrees.
+	 * @param longitude1 - The longitude of the first point in degrees.
+	 * @param latitude2 - The latitude of the second point in degrees.
+	 * @param longitude2 - The longitude of the second point in degrees.
+	 * @return The great circle distance between the points in km.
+	 */
+	public static double calculateGreatCircleDistance(double latitude1, double longitude1, double latitude2, double longitude2){
+		double lat1 = Math.toRadians(latitude1);
+		double lon1 = Math.toRadians(longitude1);
+		double lat2 = Math.toRadians(latitude2);
+		double lon2 = Math.toRadians(longitude2);
+		double temp = Math.pow(Math.sin((lat2 - lat1) / 2), 2) + (Math.cos(lat1) * Math.cos(lat2) * Math.pow(Math.sin((lon2 - lon1) / 2), 2)); // A temporary value for use in the distance calculation
+		return EARTHDIAMETER * Math.asin(Math.sqrt(temp)); // Using the haversine formula to calculate the length of arcs using latitudes and longitudes - https://en.wikipedia.org/wiki/Haversine_formula 
 	}
 	
 	/**
-	 * Converts the vertexMapMirror and arcMapMirror into directions that can be easily followed.
+	 * Calculates the great circle distance between two vertexes.
+	 * @param vertex1 - The index of the first vertex.
+	 * @param vertex2 - The index of the second vertex.
+	 * @return The distance between the vertexes in km.
+	 */
+	private double calculateGreatCircleDistance(int vertex1, int vertex2){
+		return calculateGreatCircleDistance(compactGraph.lat[vertex1], compactGraph.lon[vertex1], compactGraph.lat[vertex2], compactGraph.lon[vertex2]);
+	}
+	
+	/**
+	 * Returns the the average speed of a way based on its tag information.
+	 * <p>
+	 * A readable "maxspeed" tag is used first, then the road type given by the "highway" tag.
+	 * @param way - The position of the way in the way table.
+	 * @return The average speed of the way passed.
+	 */
+	private double getAverageSpeed(int way){ // Returns the max speed in km/hr of a give way
+		double maxspeed = ways.getMaxspeed(way); // Already converted to km/hr when the way table was built
+		if(!Double.isNaN(maxspeed)){
+			return maxspeed * MAXSPEEDDAMPENING;
+		}
+		byte highwayClass = ways.getHighwayClass(way);
+		if(highwayClass == WayTable.NO_HIGHWAY){
+			maxspeed = KM_IN_MILE * 30; // If no speed tags are present at all then 30 mph is assumed
+			Core.debug("No tag info, assuming: " + maxspeed);
+			return maxspeed * MAXSPEEDDAMPENING;
+		}
+		if(highwayClass == WayTable.OTHER_HIGHWAY){
+			maxspeed = KM_IN_MILE * 30; // If highway tag is malformed then 30 mph is assumed
+			//Core.debug("Unknown, assuming: " + maxspeed);
+			return maxspeed * MAXSPEEDDAMPENING;
+		}
+		switch(WayTable.HIGHWAY_CLASSES[highwayClass]){ // Switches based on "highway" value
+			case "motorway":
+				maxspeed = KM_IN_MILE * 70; // If the road is a motorway the speed limit in the UK is 70 mph
+				break;
+			case "trunk":
+				maxspeed = KM_IN_MILE * 70; // Roads tagged with "trunk" are usually dual carriageway so 70 mph is assumed
+				break;
+			case "primary": // Roads tagged with primary tend to be A roads and similar so 60 mph is assumed
+				maxspeed = KM_IN_MILE * 60;
+				break;
+			case "secondary": // Roads tagged with secondary tend to be roads slightly smaller than an A road and so 50 mph is assumed as a safe halfway point
+				maxspeed = KM_IN_MILE * 50;
+				break;
+			case "tertiary": // Roads tagged with tertiary tend to be small and narrow, so while the speed limit may be 60 mph it is not achievable, therefore 40 mph is assumed
+				maxspeed = KM_IN_MILE * 40;
+				break;
+			case "unclassified": // Roads tagged with "unclassified" may be farm tracks or similar so 30 mph is assumed
+				maxspeed = KM_IN_MILE * 30;
+				break;
+			case "residential": // Roads that are residential are usually 30 mph speed limits
+				maxspeed = KM_IN_MILE * 30;
+				break;
+			case "service": // Service roads are usually private roads and very poorly maintained so 10 mph is assumed
+				maxspeed = KM_IN_MILE * 10;
+				break;
+			case "track": // Tracks are farm tracks or worse so only 5 mph is assumed
+				maxspeed = KM_IN_MILE * 5;
+				break;
+			case "motorway_link": // Motorway_link roads are usually slip roads or similar so 65 mph is assumed
+				maxspeed = KM_IN_MILE * 65;
+				break;
+			case "trunk_link": // Trunk_link are roads such as slip ways onto dual carriageways so 65 mph assumed
+				maxspeed = KM_IN_MILE * 65;
+				break;
+			case "primary_link": // Primary_link roads are smaller than primary roads but larger than secondary so 55 mph is assumed
+				maxspeed = KM_IN_MILE * 55;
+				break;
+			case "secondary_link": // Seccondary_link roads are smaller than secondary but larger than tertiary so 45 mph is assumed
+				maxspeed = KM_IN_MILE * 45;
+				break;
+			case "tertiary_link": // Tertiary_link roads are smaller than tertiary but larger than tracks or service roads so 35 mph is assumed
+				maxspeed = KM_IN_MILE * 35;
+				break;
+			default: // Every entry of HIGHWAY_CLASSES has a case, this is only reached if one is added without a speed
+				maxspeed = KM_IN_MILE * 30;
+				break;
+		}
+		return maxspeed * MAXSPEEDDAMPENING;
+	}
+	
+	/**
+	 * Converts a calculated route into directions that can be easily followed.
+	 * @param route - The route to give directions for.
 	 * @return A string of directions.
 	 */
-	public String convertGraphToDirections(){ // Converts the current vertexMap to directions
+	public String convertGraphToDirections(Route route){ // Converts a route to directions
 		StringBuilder output = new StringBuilder(); // The overall output stringbuilder that is added to with each direction
-		String workingVertex = lastEnteredDestination;
-		String previousVertex = vertexMapMirror.get(workingVertex).getPreviousVertex();
-		ArrayList<String> reverseRoute = new ArrayList<String>(); // The route stored in reverse order
-		while(previousVertex != null){
-			reverseRoute.add(workingVertex);
-			workingVertex = previousVertex;
-			previousVertex = vertexMapMirror.get(previousVertex).getPreviousVertex(); // Working backwards along the route to find each vertex used
-		}
-		reverseRoute.add(workingVertex); // Adds the first vertex to the route
-		Arc currentArc;
+		int[] reverseRoute = new int[route.size()]; // The route stored in reverse order
+		double[] distanceFromSource = new double[route.size()]; // The distance from the source of each vertex in reverseRoute
+		for(int i = 0; i < route.size(); i++){ // Working backwards along the route to find each vertex used
+			distanceFromSource[i] = route.getDistanceAt(route.size() - 1 - i);
+			reverseRoute[i] = route.getVertex(route.size() - 1 - i);
+		}
+		int currentWay; // The position in the way table of the road between the current vertex and the next
 		String currentRoadRef = "!novalue"; // !novalue acts as null in this situation as null is an acceptable value
 		String currentRoadName = "!novalue"; // These two variables store the values of ref and name tags of the current road
 		boolean inRoundabout = false; // True if the current vertex is in a roundabout
 		boolean compassDirection = false; // A marker for if the direction is a "Travel east" direction
-		String roundaboutEntry = ""; // Stores the value of the first vertex's id in a roundabout
+		int roundaboutEntry = -1; // Stores the index of the first vertex in a roundabout
 		double previousDirectionDistance = 0;
 		int directionCounter = 1;
-		for(int i = reverseRoute.size() - 1; i >= 0; i--){ // Iterates through every vertex in the route
+		for(int i = reverseRoute.length - 1; i >= 0; i--){ // Iterates through every vertex in the route
 			compassDirection = false; // Resets the marker for if the direction is a "Travel north" direction on each new vertex
 			if(i != 0){ // Ensures no arc is retrieved using only one vertex - can't do i - 1 if i == 0
-				currentArc = getArcConnectingTwoVertexes(reverseRoute.get(i), reverseRoute.get(i-1));
+				currentWay = compactGraph.edgeWay[compactGraph.findEdge(reverseRoute[i], reverseRoute[i-1])];
 				if(!inRoundabout){ // Checks the vertex isnt in a roundabout
-					if(currentArc.tagList.get("junction") == null){ // Checks the vertex isn't the first in a roundabout
-						if(!Utilities.checkStringsAreEqual(currentRoadRef, currentArc.tagList.get("ref"))){ // If the ref is of a new road it means a junction has been found
-							if(i != reverseRoute.size() - 1){// Ensures this is not the first direction
-								if(vertexMapMirror.get(reverseRoute.get(i)).arcList.size() > 2){ // Checks if the vertex actually has more than two arcs coming off it - only two means there isnt any choice of where to turn - no direction required
-									output.append(directionCounter + ") After " + Utilities.round((vertexMapMirror.get(reverseRoute.get(i)).getDistanceFromSource() - previousDirectionDistance),2) + " km, "); // Adds "After x km," to the string, x is calculated from the last time a direction is called
-									previousDirectionDistance = vertexMapMirror.get(reverseRoute.get(i)).getDistanceFromSource(); // Assigns the distance from the source of the current vertex to previousDirectionDistance so that the next direction can measure the distance since the previous direction
-									output.append("turn " + calculateDirection(reverseRoute.get(i + 1), reverseRoute.get(i), reverseRoute.get(i - 1)) + " onto "); // Adds the turn direction to the output using the previous, current and next vertexes
+					if(ways.getJunction(currentWay) == null){ // Checks the vertex isn't the first in a roundabout
+						if(!Utilities.checkStringsAreEqual(currentRoadRef, ways.getRef(currentWay))){ // If the ref is of a new road it means a junction has been found
+							if(i != reverseRoute.length - 1){// Ensures this is not the first direction
+								if(compactGraph.getDegree(reverseRoute[i]) > 2){ // Checks if the vertex actually has more than two arcs coming off it - only two means there isnt any choice of where to turn - no direction required
+									output.append(directionCounter + ") After " + Utilities.round((distanceFromSource[i] - previousDirectionDistance),2) + " km, "); // Adds "After x km," to the string, x is calculated from the last time a direction is called
+									previousDirectionDistance = distanceFromSource[i]; // Assigns the distance from the source of the current vertex to previousDirectionDistance so that the next direction can measure the distance since the previous direction
+									output.append("turn " + calculateDirection(reverseRoute[i + 1], reverseRoute[i], reverseRoute[i - 1]) + " onto "); // Adds the turn direction to the output using the previous, current and next vertexes
 									directionCounter++;
 								}
 							}else{ // Triggered if the instruction is the first instruction
-								output.append(directionCounter + ") Travel " + getBearingString(reverseRoute.get(i),reverseRoute.get(i-1)) + " along "); // Adds the first direction format of "Travel north along "
+								output.append(directionCounter + ") Travel " + getBearingString(reverseRoute[i],reverseRoute[i-1]) + " along "); // Adds the first direction format of "Travel north along "
 								compassDirection = true; // A marker to ensure that the road name adding section is executed even though the direction is not a turning
 								directionCounter++;
 							}
-							currentRoadRef = currentArc.tagList.get("ref"); // Stores the current road ref and name for use in later comparisons
-							currentRoadName = currentArc.tagList.get("name"); // ^
-							if(vertexMapMirror.get(reverseRoute.get(i)).arcList.size() > 2 || compassDirection){ // Only triggers if the turning can have more than one option - one option is not a turning
+							currentRoadRef = ways.getRef(currentWay); // Stores the current road ref and name for use in later comparisons
+							currentRoadName = ways.getName(currentWay); // ^
+							if(compactGraph.getDegree(reverseRoute[i]) > 2 || compassDirection){ // Only triggers if the turning can have more than one option - one option is not a turning
 								if (currentRoadRef == null) {
 									if (currentRoadName == null) {
 										Core.debug("Unnamed Road");
@@ -437,30 +1101,28 @@ public class Graph {
 								}
 							}
 						} else {
-							if (currentRoadRef == currentArc.tagList.get("ref")) { // If the refs are equal but they're both null then use names instead, otherwise its the same road
-								if (!Utilities.checkStringsAreEqual(currentRoadName, currentArc.tagList.get("name"))) { // If ref is the same compare name instead
-									if (i != reverseRoute.size() - 1) { // Ensures this isnt the first direction
-										if (vertexMapMirror.get(reverseRoute.get(i)).arcList.size() > 2) { // Check for more than two arcs - reduces false positives
+							if (currentRoadRef == null) { // If the refs are equal but they're both null then use names instead, otherwise its the same road
+								if (!Utilities.checkStringsAreEqual(currentRoadName, ways.getName(currentWay))) { // If ref is the same compare name instead
+									if (i != reverseRoute.length - 1) { // Ensures this isnt the first direction
+										if (compactGraph.getDegree(reverseRoute[i]) > 2) { // Check for more than two arcs - reduces false positives
 											output.append(directionCounter 
 													+ ") After "
-													+ Utilities.round((vertexMapMirror.get(reverseRoute.get(i))
-															.getDistanceFromSource() - previousDirectionDistance), 2)
+													+ Utilities.round((distanceFromSource[i] - previousDirectionDistance), 2)
 													+ " km, ");
-											previousDirectionDistance = vertexMapMirror.get(reverseRoute.get(i))
-													.getDistanceFromSource();
-											output.append("turn " + calculateDirection(reverseRoute.get(i + 1),
-													reverseRoute.get(i), reverseRoute.get(i - 1)) + " onto ");
+											previousDirectionDistance = distanceFromSource[i];
+											output.append("turn " + calculateDirection(reverseRoute[i + 1],
+													reverseRoute[i], reverseRoute[i - 1]) + " onto ");
 											directionCounter++;
 										}
 									} else {
 										output.append(directionCounter + ") Travel "
-												+ getBearingString(reverseRoute.get(i), reverseRoute.get(i - 1))
+												+ getBearingString(reverseRoute[i], reverseRoute[i - 1])
 												+ " along ");
 										compassDirection = true;
 										directionCounter++;
 									}
-									currentRoadName = currentArc.tagList.get("name");
-									if (vertexMapMirror.get(reverseRoute.get(i)).arcList.size() > 2
+									currentRoadName = ways.getName(currentWay);
+									if (compactGraph.getDegree(reverseRoute[i]) > 2
 											|| compassDirection) {
 										if (currentRoadName == null) { // Only needs to check for a name as this code block is only executed if ref is already null
 											Core.debug("Unnamed Road");
@@ -474,19 +1136,19 @@ public class Graph {
 							}
 						}
 					} else { // Triggered if the vertex has a value for the "junction" tag
-						if(Utilities.checkStringsAreEqual(currentArc.tagList.get("junction"), "roundabout")){
+						if(ways.isRoundabout(currentWay)){
 							inRoundabout = true; // Ensures no directions such as "turn left" are triggered until the roundabout is cleared
-							roundaboutEntry = reverseRoute.get(i-1); // Roundabout entry is the first vertex which lies on the roundabout
+							roundaboutEntry = reverseRoute[i-1]; // Roundabout entry is the first vertex which lies on the roundabout
 						}
 					}
 				} else { // Triggered when the marker for being in a roundabout is true
-					if(currentArc.tagList.get("junction") == null){ // Checks if the current arc is no longer in the roundabout - otherwise do nothing and go to the next arc
+					if(ways.getJunction(currentWay) == null){ // Checks if the current arc is no longer in the roundabout - otherwise do nothing and go to the next arc
 						inRoundabout = false; // Flags the function is no longer in a roundabout and normal directions can continue
-						output.append(directionCounter + ") After " + Utilities.round((vertexMapMirror.get(reverseRoute.get(i)).getDistanceFromSource() - previousDirectionDistance),2) + " km, "); // Calculates the distance since the last direction
-						previousDirectionDistance = vertexMapMirror.get(reverseRoute.get(i)).getDistanceFromSource(); // Assigns the current vertex's distance from source as the direction distance
-						output.append("take the " + Utilities.formatNumberToPlace(getExitOnRoundabout(roundaboutEntry, reverseRoute.get(i-1))) + " exit on the roundabout, onto "); // Works out the exit on the roundabout by using the first vertex on the roundabout and the first vertex after that isnt
-						currentRoadRef = currentArc.tagList.get("ref");
-						currentRoadName = currentArc.tagList.get("name");
+						output.append(directionCounter + ") After " + Utilities.round((distanceFromSource[i] - previousDirectionDistance),2) + " km, "); // Calculates the distance since the last direction
+						previousDirectionDistance = distanceFromSource[i]; // Assigns the current vertex's distance from source as the direction distance
+						output.append("take the " + Utilities.formatNumberToPlace(getExitOnRoundabout(roundaboutEntry, reverseRoute[i-1])) + " exit on the roundabout, onto "); // Works out the exit on the roundabout by using the first vertex on the roundabout and the first vertex after that isnt
+						currentRoadRef = ways.getRef(currentWay);
+						currentRoadName = ways.getName(currentWay);
 						directionCounter++;
 						if(currentRoadRef == null){
 							if(currentRoadName == null){
@@ -499,28 +1161,24 @@ public class Graph {
 						}
 					}
 				}
-				//Core.debug(reverseRoute.get(i) + " - " + reverseRoute.get(i-1) + " --> " + currentArc.tagList.get("ref") + ", " + currentArc.tagList.get("name"));
+				//Core.debug(reverseRoute[i] + " - " + reverseRoute[i-1] + " --> " + ways.getRef(currentWay) + ", " + ways.getName(currentWay));
 			}
-			//Core.debug(reverseRoute.get(i));
+			//Core.debug(reverseRoute[i]);
 		}
-		calculatedRouteDistance = vertexMapMirror.get(reverseRoute.get(0)).getDistanceFromSource();
-		calculatedRouteTime = vertexMapMirror.get(reverseRoute.get(0)).getWeightedDistanceFromSource();
 		output.append("You will have arrived at your destination\n");
 		return output.toString().replaceAll("&apos;", "'");
 	}
 	/**
 	 * Calculates the angle between two vertexes relative to north.
-	 * @param vertexId1 - The first vertex ID to use.
-	 * @param vertexId2 - The second vertex ID to use.
+	 * @param vertex1 - The index of the first vertex to use.
+	 * @param vertex2 - The index of the second vertex to use.
 	 * @return The angle between two vertexes in radians.
 	 */
-	private double calculateBearing(String vertexId1, String vertexId2){ // Calculates the angle between two vertexes relative to north
-		Vertex vertex1 = vertexMapMirror.get(vertexId1);
-		Vertex vertex2 = vertexMapMirror.get(vertexId2);
-		double lat1 = Math.toRadians(vertex1.getLat());
-		double lon1 = Math.toRadians(vertex1.getLon());
-		double lat2 = Math.toRadians(vertex2.getLat());
-		double lon2 = Math.toRadians(vertex2.getLon());
+	private double calculateBearing(int vertex1, int vertex2){ // Calculates the angle between two vertexes relative to north
+		double lat1 = Math.toRadians(compactGraph.lat[vertex1]);
+		double lon1 = Math.toRadians(compactGraph.lon[vertex1]);
+		double lat2 = Math.toRadians(compactGraph.lat[vertex2]);
+		double lon2 = Math.toRadians(compactGraph.lon[vertex2]);
 		double temp1 = Math.cos(lat2) * Math.sin(lon2 - lon1);
 		double temp2 = (Math.cos(lat1) * Math.sin(lat2)) - (Math.sin(lat1) * Math.cos(lat2) * Math.cos(lon2 - lon1));
 		double bearing = Math.atan2(temp1, temp2); // http://www.movable-type.co.uk/scripts/latlong.html#bearing
@@ -532,12 +1190,12 @@ public class Graph {
 	
 	/**
 	 * Gets a string of the bearing between two vertexes.
-	 * @param vertexId1 - The first vertex ID to use.
-	 * @param vertexId2 - The second vertex ID to use.
+	 * @param vertex1 - The index of the first vertex to use.
+	 * @param vertex2 - The index of the second vertex to use.
 	 * @return A string of the direction between two vertexes, north, south, east, west or invalid.
 	 */
-	private String getBearingString(String vertexId1, String vertexId2){ // Returns a string based bearing between two vertexes
-		double bearing = calculateBearing(vertexId1, vertexId2);
+	private String getBearingString(int vertex1, int vertex2){ // Returns a string based bearing between two vertexes
+		double bearing = calculateBearing(vertex1, vertex2);
 		if(((7 * Math.PI) / 4 <= bearing && bearing <= 2 * Math.PI ) || (bearing >= 0 && bearing < (Math.PI / 4))){ // Northern quadrant contains from 7/4 pi to 0 and 0 to 1/4 pi
 			return "north";
 		}
@@ -555,13 +1213,13 @@ public class Graph {
 	
 	/**
 	 * Calculates the direction change between three vertexes from vertex 1 to 2 to 3.
-	 * @param vertexId1 - The first vertex ID to use.
-	 * @param vertexId2 - The second vertex ID to use.
-	 * @param vertexId3 - The third vertex ID to use.
+	 * @param vertex1 - The index of the first vertex to use.
+	 * @param vertex2 - The index of the second vertex to use.
+	 * @param vertex3 - The index of the third vertex to use.
 	 * @return A string of either right, left or invalid.
 	 */
-	private String calculateDirection(String vertexId1, String vertexId2, String vertexId3){
-		double directionValue = calculateBearing(vertexId1,vertexId2) - calculateBearing(vertexId2,vertexId3); // Gets the difference between the two bearings
+	private String calculateDirection(int vertex1, int vertex2, int vertex3){
+		double directionValue = calculateBearing(vertex1,vertex2) - calculateBearing(vertex2,vertex3); // Gets the difference between the two bearings
 		if((-Math.PI < directionValue && directionValue < 0) || (Math.PI < directionValue && directionValue < 2 * Math.PI)){
 			return "right";
 		}
@@ -574,61 +1232,66 @@ public class Graph {
 
 	/**
 	 * Gets the number of valid exits that occur travelling around a roundabout before the given exit is reached.
-	 * @param startingVertex - The ID of the first vertex to use on the roundabout.
-	 * @param exitVertex - The ID of the exit vertex, not on the roundabout.
+	 * @param startingVertex - The index of the first vertex to use on the roundabout.
+	 * @param exitVertex - The index of the exit vertex, not on the roundabout.
 	 * @return An integer of the number of valid exits that occur before reaching the given exit.
 	 */
-	private int getExitOnRoundabout(String startingVertex, String exitVertex){ // Returns the number of exits that occur before a given vertex is reached on a roundabout
-		Core.debug("Start: " + startingVertex + ", End: " + exitVertex);
-		String currentVertex = startingVertex;
+	private int getExitOnRoundabout(int startingVertex, int exitVertex){ // Returns the number of exits that occur before a given vertex is reached on a roundabout
+		Core.debug("Start: " + getNodeId(startingVertex) + ", End: " + getNodeId(exitVertex));
+		int currentVertex = startingVertex;
 		int exits = 0;
-		String nextVertex = "";
+		int nextVertex = -1;
 		do{
-			for(int i = 0; i < vertexMapMirror.get(currentVertex).arcList.size(); i++){ // Iterates through every arc on the vertex
-				String currentArc = vertexMapMirror.get(currentVertex).arcList.get(i);
-				Core.debug("Inspecting: " + currentArc + ", on " + currentVertex);
-				if(!Utilities.checkStringsAreEqual(arcMap.get(currentArc).tagList.get("junction"), "roundabout")){ // Checks if the arc is not on the roundabout - means its either an exit or not traversable
-					if(arcMap.get(currentArc).getStart().equals(currentVertex) && arcMap.get(currentArc).getOneWay() != -1){ // True if arc is traversable - therefore an exit
-						Core.debug(currentArc + " is an exit");
+			for(int edge = compactGraph.firstEdge[currentVertex]; edge < compactGraph.firstEdge[currentVertex + 1]; edge++){ // Iterates through every edge leaving the vertex
+				int way = compactGraph.edgeWay[edge];
+				Core.debug("Inspecting: " + ways.getWayId(way) + ", on " + getNodeId(currentVertex));
+				if(!ways.isRoundabout(way)){ // Checks if the edge is not on the roundabout - means its either an exit or not traversable
+					if((compactGraph.edgeFlags[edge] & CompactGraph.TRAVERSABLE) != 0){ // True if the edge can be travelled away from the roundabout - therefore an exit
+						Core.debug(ways.getWayId(way) + " is an exit");
 						exits++;
-						if(arcMap.get(currentArc).getEnd().equals(exitVertex)){ // If the end of the exit is the destination then the function is complete
+						if(compactGraph.edgeTarget[edge] == exitVertex){ // If the end of the exit is the destination then the function is complete
 							return exits;
 						}
 					}
-					if(arcMap.get(currentArc).getEnd().equals(currentVertex) && arcMap.get(currentArc).getOneWay() != 1){
-						Core.debug(currentArc + " is an exit");
-						exits++;
-						if(arcMap.get(currentArc).getStart().equals(exitVertex)){ // Same as previous block but for inverted one way arcs
-							return exits;
-						}
-					}
-				}else{ // If arc is on roundabout check for the arc that leads to the next vertex to check
-					if(arcMap.get(currentArc).getStart().equals(currentVertex)){ // Vertexes are stored in order of way round a roundabout so there is only one arc with a start and end round the correct way - checks for this
-						nextVertex = arcMap.get(currentArc).getEnd(); // Assigns the next vertex to go to
-						Core.debug("Discovered next vertex: " + nextVertex);
+				}else{ // If edge is on roundabout check for the edge that leads to the next vertex to check
+					if((compactGraph.edgeFlags[edge] & CompactGraph.START_TO_END) != 0){ // Vertexes are stored in order of way round a roundabout so there is only one arc with a start and end round the correct way - checks for this
+						nextVertex = compactGraph.edgeTarget[edge]; // Assigns the next vertex to go to
+						Core.debug("Discovered next vertex: " + getNodeId(nextVertex));
 					}								
 				}
 			}
 			currentVertex = nextVertex;
-		}while(!currentVertex.equals(startingVertex)); // Base case of if the roundabout has been traversed all the way around
+		}while(currentVertex != startingVertex); // Base case of if the roundabout has been traversed all the way around
 		return exits;
 	}
 	
-
+	////////////////////// GETTERS //////////////////////////////////
+	
+	public CompactGraph getCompactGraph(){
+		return compactGraph;
+	}
+	
+	public WayTable getWays(){
+		return ways;
+	}
+	
+	public long getVersion(){
+		return version;
+	}
+	
 	/**
-	 * Creates a new vertex hashmap identical to the given one, except cleansed of any distance values.
-	 * @param vertexMapToClone - The vertex map to clone.
-	 * @return A new vertex hashmap cleansed of any distance values.
+	 * Returns the geocoder for finding places on the graph by name or address.
+	 * @return The geocoder, or null if none was built for the graph.
 	 */
-	private HashMap<String,Vertex> cloneVertexMap(HashMap<String,Vertex> vertexMapToClone){
-		final double startTime = System.nanoTime(); // Gets the start time of the operation in nanoseconds
-		HashMap<String,Vertex> clone = new HashMap<String,Vertex>(); // Creates a new hashmap to store the clones into
-		for(String key : vertexMapToClone.keySet()){ // Iterates through every vertex in the vertexMap
-			clone.put(key, vertexMapToClone.get(key).clone()); // Puts each cloned vertex into the new vertex map
-		}
-		final double duration = System.nanoTime() - startTime; // Gets the time taken for the operation to complete in nanoseconds
-		Core.debug("Time To Clone: " + duration/1000000000 + " seconds");
-		return clone; // Returns the new, cloned, hashmap
+	public Geocoder getGeocoder(){
+		return geocoder;
+	}
+	
+	void setGeocoder(Geocoder geocoder){
+		this.geocoder = geocoder;
 	}
 	
+	public double getMaximumSpeed(){
+		return maximumSpeed;
+	}
 }
@@ -0,0 +1,245 @@
+package core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The class for saving a built graph to a binary file and loading it back, so the map file does not need to be parsed on every start up.
+ * <p>
+ * The file holds a header followed by every array of the compact graph and the way table, written in one go, and ends with a
+ * CRC32 checksum of everything before it. Loading maps the file into memory, checks the checksum and copies each array out of
+ * the mapping in bulk, which takes a fraction of the time needed to parse the map and calculate weights again. The way table's
+ * dictionary of tag Strings and the geocoder's tokens are left in the mapping and only decoded when they are needed.
+ * <p>
+ * 8 byte values are written before 4 byte values, and single bytes last, so every value is aligned within the mapping.
+ * @author Jacob Pennington
+ *
+ */
+public final class GraphSnapshot {
+
+	private static final int FILE_MAGIC = 0x47534E50; // "GSNP", marks the start of a snapshot file
+	private static final int FILE_VERSION = 5; // Increased whenever the layout of the file or the way graphs are built changes
+	private static final int HEADER_SIZE = 56; // The magic, version, ten counts and the maximum speed
+
+	private GraphSnapshot(){ // Only has static methods
+	}
+
+	/**
+	 * Writes a graph to a snapshot file.
+	 * @param graph - The graph to write.
+	 * @param file - The file to write to.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void save(Graph graph, File file) throws IOException{
+		final double startTime = System.nanoTime();
+		CompactGraph compactGraph = graph.getCompactGraph();
+		WayTable ways = graph.getWays();
+		ByteBuffer stringData = ways.stringData.duplicate();
+		stringData.clear();
+		Geocoder geocoder = graph.getGeocoder();
+		if(geocoder == null){ // Saved as a geocoder with no places
+			geocoder = new Geocoder(Collections.<String>emptyList(), new int[0]);
+		}
+		ByteBuffer tokenData = geocoder.tokenData.duplicate();
+		tokenData.clear();
+		try(CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16), new CRC32());
+				DataOutputStream out = new DataOutputStream(checked)){
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			out.writeInt(compactGraph.vertexCount);
+			out.writeInt(compactGraph.edgeCount);
+			out.writeInt(ways.wayCount);
+			out.writeInt(ways.tagKeys.length);
+			out.writeInt(ways.getStringCount());
+			out.writeInt(stringData.remaining());
+			out.writeInt(geocoder.placeCount);
+			out.writeInt(geocoder.getTokenCount());
+			out.writeInt(tokenData.remaining());
+			out.writeInt(geocoder.postings.length);
+			out.writeDouble(graph.getMaximumSpeed());
+			writeDoubles(out, compactGraph.edgeDistance);
+			writeDoubles(out, compactGraph.edgeTime);
+			writeDoubles(out, compactGraph.lat);
+			writeDoubles(out, compactGraph.lon);
+			writeLongs(out, compactGraph.nodeId);
+			writeLongs(out, compactGraph.sortedNodeIds);
+			writeLongs(out, ways.wayIds);
+			writeLongs(out, ways.sortedWayIds);
+			writeDoubles(out, ways.maxspeed);
+			writeInts(out, compactGraph.firstEdge);
+			writeInts(out, compactGraph.edgeTarget);
+			writeInts(out, compactGraph.edgeWay);
+			writeInts(out, compactGraph.vertexAtRank);
+			writeInts(out, ways.waysById);
+			writeInts(out, ways.firstSegmentEdge);
+			writeInts(out, ways.stringStart);
+			writeInts(out, ways.tagStart);
+			writeInts(out, ways.tagKeys);
+			writeInts(out, ways.tagValues);
+			writeInts(out, ways.junction);
+			writeInts(out, ways.ref);
+			writeInts(out, ways.name);
+			writeInts(out, geocoder.placeVertex);
+			writeInts(out, geocoder.placeTokenCount);
+			writeInts(out, geocoder.tokenStart);
+			writeInts(out, geocoder.postingStart);
+			writeInts(out, geocoder.postings);
+			out.write(compactGraph.edgeFlags);
+			out.write(ways.highwayClass);
+			out.write(ways.oneWay);
+			byte[] strings = new byte[stringData.remaining()];
+			stringData.get(strings);
+			out.write(strings);
+			byte[] tokens = new byte[tokenData.remaining()];
+			tokenData.get(tokens);
+			out.write(tokens);
+			out.writeLong(checked.getChecksum().getValue()); // Taken before the checksum itself is written
+		}
+		final double duration = System.nanoTime() - startTime;
+		Core.debug("Snapshot: written to " + file + " in " + duration/1000000000 + " seconds");
+	}
+
+	private static void writeDoubles(DataOutputStream out, double[] values) throws IOException{
+		for(double value : values){
+			out.writeDouble(value);
+		}
+	}
+
+	private static void writeLongs(DataOutputStream out, long[] values) throws IOException{
+		for(long value : values){
+			out.writeLong(value);
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException{
+		for(int value : values){
+			out.writeInt(value);
+		}
+	}
+
+	/**
+	 * Reads a graph previously written by save.
+	 * @param file - The file to read from.
+	 * @return The graph, or null if the file was written by a different version or is damaged.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static Graph load(File file) throws IOException{
+		final double startTime = System.nanoTime();
+		MappedByteBuffer buffer;
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			if(channel.size() < HEADER_SIZE + 8 || channel.size() > Integer.MAX_VALUE){
+				return null;
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // The mapping stays valid after the channel is closed
+		}
+		if(buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION){
+			Core.debug("Snapshot: " + file + " was written by a different version");
+			return null;
+		}
+		int vertexCount = buffer.getInt();
+		int edgeCount = buffer.getInt();
+		int wayCount = buffer.getInt();
+		int tagCount = buffer.getInt();
+		int stringCount = buffer.getInt();
+		int stringLength = buffer.getInt();
+		int placeCount = buffer.getInt();
+		int tokenCount = buffer.getInt();
+		int tokenLength = buffer.getInt();
+		int postingCount = buffer.getInt();
+		double maximumSpeed = buffer.getDouble();
+		long expectedSize = HEADER_SIZE + 8L * (2L * edgeCount + 4L * vertexCount + 3L * wayCount)
+				+ 4L * ((vertexCount + 1) + 2L * edgeCount + vertexCount + 5L * wayCount + (stringCount + 1) + (wayCount + 1) + 2L * tagCount)
+				+ 4L * (2L * placeCount + 2L * (tokenCount + 1) + postingCount)
+				+ edgeCount + 2L * wayCount + stringLength + tokenLength + 8;
+		if(vertexCount < 0 || edgeCount < 0 || wayCount < 0 || tagCount < 0 || stringCount < 0 || stringLength < 0
+				|| placeCount < 0 || tokenCount < 0 || tokenLength < 0 || postingCount < 0 || buffer.capacity() != expectedSize){
+			Core.debug("Snapshot: " + file + " is the wrong size");
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		ByteBuffer checked = buffer.duplicate();
+		checked.position(0).limit(buffer.capacity() - 8);
+		crc.update(checked);
+		if(crc.getValue() != buffer.getLong(buffer.capacity() - 8)){
+			Core.debug("Snapshot: " + file + " failed its checksum");
+			return null;
+		}
+		double[] edgeDistance = readDoubles(buffer, edgeCount);
+		double[] edgeTime = readDoubles(buffer, edgeCount);
+		double[] lat = readDoubles(buffer, vertexCount);
+		double[] lon = readDoubles(buffer, vertexCount);
+		long[] nodeId = readLongs(buffer, vertexCount);
+		long[] sortedNodeIds = readLongs(buffer, vertexCount);
+		long[] wayIds = readLongs(buffer, wayCount);
+		long[] sortedWayIds = readLongs(buffer, wayCount);
+		double[] maxspeed = readDoubles(buffer, wayCount);
+		int[] firstEdge = readInts(buffer, vertexCount + 1);
+		int[] edgeTarget = readInts(buffer, edgeCount);
+		int[] edgeWay = readInts(buffer, edgeCount);
+		int[] vertexAtRank = readInts(buffer, vertexCount);
+		int[] waysById = readInts(buffer, wayCount);
+		int[] firstSegmentEdge = readInts(buffer, wayCount);
+		int[] stringStart = readInts(buffer, stringCount + 1);
+		int[] tagStart = readInts(buffer, wayCount + 1);
+		int[] tagKeys = readInts(buffer, tagCount);
+		int[] tagValues = readInts(buffer, tagCount);
+		int[] junction = readInts(buffer, wayCount);
+		int[] ref = readInts(buffer, wayCount);
+		int[] name = readInts(buffer, wayCount);
+		int[] placeVertex = readInts(buffer, placeCount);
+		int[] placeTokenCount = readInts(buffer, placeCount);
+		int[] tokenStart = readInts(buffer, tokenCount + 1);
+		int[] postingStart = readInts(buffer, tokenCount + 1);
+		int[] postings = readInts(buffer, postingCount);
+		byte[] edgeFlags = new byte[edgeCount];
+		buffer.get(edgeFlags);
+		byte[] highwayClass = new byte[wayCount];
+		buffer.get(highwayClass);
+		byte[] oneWay = new byte[wayCount];
+		buffer.get(oneWay);
+		ByteBuffer stringData = buffer.slice();
+		stringData.limit(stringLength);
+		buffer.position(buffer.position() + stringLength);
+		ByteBuffer tokenData = buffer.slice();
+		tokenData.limit(tokenLength);
+		CompactGraph compactGraph = new CompactGraph(firstEdge, edgeTarget, edgeDistance, edgeTime, edgeFlags, edgeWay, lat, lon, nodeId, sortedNodeIds, vertexAtRank);
+		WayTable ways = new WayTable(wayIds, sortedWayIds, waysById, firstSegmentEdge, stringStart, stringData.asReadOnlyBuffer(), tagStart,
+				tagKeys, tagValues, highwayClass, maxspeed, oneWay, junction, ref, name);
+		final double duration = System.nanoTime() - startTime;
+		Core.debug("Snapshot: loaded " + vertexCount + " vertexes from " + file + " in " + duration/1000000000 + " seconds");
+		Graph graph = new Graph(compactGraph, ways, maximumSpeed);
+		graph.setGeocoder(new Geocoder(placeVertex, placeTokenCount, tokenStart, tokenData.asReadOnlyBuffer(), postingStart, postings));
+		return graph;
+	}
+
+	private static double[] readDoubles(ByteBuffer buffer, int count){
+		double[] values = new double[count];
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + count * 8);
+		return values;
+	}
+
+	private static long[] readLongs(ByteBuffer buffer, int count){
+		long[] values = new long[count];
+		buffer.asLongBuffer().get(values);
+		buffer.position(buffer.position() + count * 8);
+		return values;
+	}
+
+	private static int[] readInts(ByteBuffer buffer, int count){
+		int[] values = new int[count];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + count * 4);
+		return values;
+	}
+}
@@ -0,0 +1,94 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints, used instead of an ArrayList of Integers to avoid creating an object for every value.
+ * @author Jacob Pennington
+ *
+ */
+public class IntList {
+
+	private int[] values; // The values in the list, followed by unused space
+	private int size = 0; // The number of values in the list
+
+	public IntList(){
+		this(8);
+	}
+
+	/**
+	 * Constructs an empty list with room for the given number of values before it needs to grow.
+	 * @param capacity - The number of values to make room for.
+	 */
+	public IntList(int capacity){
+		this.values = new int[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Adds a value to the end of the list.
+	 * @param value - The value to add.
+	 */
+	public void add(int value){
+		if(size == values.length){ // Doubles the space in the list when it is full
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size] = value;
+		size++;
+	}
+
+	public int get(int index){
+		return values[index];
+	}
+
+	public void set(int index, int value){
+		values[index] = value;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * Removes the first occurrence of a value by moving the last value into its place, so the order of the list is not kept.
+	 * @param value - The value to remove.
+	 * @return True if the value was found and removed.
+	 */
+	public boolean removeValue(int value){
+		for(int i = 0; i < size; i++){
+			if(values[i] == value){
+				size--;
+				values[i] = values[size];
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the value at the end of the list.
+	 * @return The value removed.
+	 */
+	public int removeLast(){
+		size--;
+		return values[size];
+	}
+
+	/**
+	 * Removes every value from the list without releasing its space.
+	 */
+	public void clear(){
+		size = 0;
+	}
+
+	/**
+	 * Copies the values in the list into a new array.
+	 * @return An array of the values in the list, in order.
+	 */
+	public int[] toArray(){
+		return Arrays.copyOf(values, size);
+	}
+}
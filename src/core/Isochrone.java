@@ -0,0 +1,236 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class for storing every vertex that can be reached from a source within a time budget.
+ * <p>
+ * The vertexes are held in the order they were reached, with the quickest time and its distance to each, in plain arrays.
+ * <p>
+ * The area covered can be turned into polygons using a grid. Every reached vertex, and points along every arc that can be
+ * travelled before the time runs out, fill in the cell of the grid they lie in. The edges between filled and empty cells are
+ * then joined into rings, so the outline follows the roads reached rather than stretching across areas with no roads.
+ * @author Jacob Pennington
+ *
+ */
+public class Isochrone {
+
+	private static final int MAXIMUM_CELLS = 1 << 22; // The cells are made larger if the outline would need more than this
+	private static final int EAST = 0; // The directions of the edges between cells, in anticlockwise order
+	private static final int NORTH = 1;
+	private static final int WEST = 2;
+	private static final int SOUTH = 3;
+
+	private final CompactGraph graph; // The graph the search was run on
+	private final int source; // The index of the source vertex
+	private final double budget; // The time budget in hours
+	private final int[] vertexes; // The indexes of the vertexes reached, in the order they were reached
+	private final double[] times; // The quickest time to each vertex reached in hours
+	private final double[] distances; // The length of each of those routes in km
+
+	/**
+	 * Constructs an isochrone from the result of a bounded search.
+	 * @param graph - The graph the search was run on.
+	 * @param source - The index of the source vertex.
+	 * @param budget - The time budget in hours.
+	 * @param vertexes - The indexes of the vertexes reached.
+	 * @param times - The quickest time to each vertex reached.
+	 * @param distances - The length of each of those routes.
+	 */
+	public Isochrone(CompactGraph graph, int source, double budget, int[] vertexes, double[] times, double[] distances){
+		this.graph = graph;
+		this.source = source;
+		this.budget = budget;
+		this.vertexes = vertexes;
+		this.times = times;
+		this.distances = distances;
+	}
+
+	/**
+	 * Builds polygons around the area reached using a grid of square cells.
+	 * <p>
+	 * Each ring is given as latitude and longitude pairs, one after the other, without repeating the first point at the end.
+	 * Rings around the outside of an area go anticlockwise and rings around holes in an area go clockwise, as in GeoJSON.
+	 * Cells that only touch at a corner are treated as separate areas.
+	 * @param cellSize - The width of each cell in km. Smaller cells follow the roads more closely.
+	 * @return The rings, or an empty list if nothing was reached.
+	 */
+	public List<double[]> getBoundary(double cellSize){
+		List<double[]> rings = new ArrayList<double[]>();
+		if(vertexes.length == 0){
+			return rings;
+		}
+		double minLat = Double.MAX_VALUE;
+		double maxLat = -Double.MAX_VALUE;
+		double minLon = Double.MAX_VALUE;
+		double maxLon = -Double.MAX_VALUE;
+		for(int vertex : vertexes){
+			minLat = Math.min(minLat, graph.lat[vertex]);
+			maxLat = Math.max(maxLat, graph.lat[vertex]);
+			minLon = Math.min(minLon, graph.lon[vertex]);
+			maxLon = Math.max(maxLon, graph.lon[vertex]);
+		}
+		for(int i = 0; i < vertexes.length; i++){ // Arcs out of the reached vertexes can only end a little past them, but their ends still stretch the grid
+			for(int edge = graph.firstEdge[vertexes[i]]; edge < graph.firstEdge[vertexes[i] + 1]; edge++){
+				int target = graph.edgeTarget[edge];
+				minLat = Math.min(minLat, graph.lat[target]);
+				maxLat = Math.max(maxLat, graph.lat[target]);
+				minLon = Math.min(minLon, graph.lon[target]);
+				maxLon = Math.max(maxLon, graph.lon[target]);
+			}
+		}
+		double scale = Math.cos(Math.toRadians((minLat + maxLat) / 2)); // Longitudes are multiplied by this to make the cells square
+		double size = cellSize / (Math.PI * Graph.EARTHDIAMETER / 360); // The cell size in degrees of latitude
+		double width = (maxLon - minLon) * scale;
+		double height = maxLat - minLat;
+		size = Math.max(size, Math.sqrt(width * height / MAXIMUM_CELLS));
+		double minX = minLon * scale - size / 2; // Starting half a cell early keeps the outermost vertexes off the edges of the cells
+		double minY = minLat - size / 2;
+		int columns = (int)Math.floor(width / size + 0.5) + 3; // A border of empty cells keeps every ring inside the grid
+		int rows = (int)Math.floor(height / size + 0.5) + 3;
+		boolean[] filled = new boolean[columns * rows];
+		for(int i = 0; i < vertexes.length; i++){
+			int vertex = vertexes[i];
+			fill(filled, columns, rows, graph.lon[vertex] * scale, graph.lat[vertex], minX, minY, size);
+			for(int edge = graph.firstEdge[vertex]; edge < graph.firstEdge[vertex + 1]; edge++){
+				if((graph.edgeFlags[edge] & CompactGraph.TRAVERSABLE) == 0){
+					continue;
+				}
+				int target = graph.edgeTarget[edge];
+				double reach = graph.edgeTime[edge] == 0 ? 1 : Math.min(1, (budget - times[i]) / graph.edgeTime[edge]); // How much of the arc can be travelled in the time left
+				double startX = graph.lon[vertex] * scale;
+				double startY = graph.lat[vertex];
+				double dx = graph.lon[target] * scale - startX;
+				double dy = graph.lat[target] - startY;
+				int steps = (int)Math.ceil(reach * Math.sqrt(dx * dx + dy * dy) / (size / 2)); // Points half a cell apart so no cell along the arc is missed
+				for(int step = 1; step <= steps; step++){
+					double fraction = reach * step / steps;
+					fill(filled, columns, rows, startX + fraction * dx, startY + fraction * dy, minX, minY, size);
+				}
+			}
+		}
+		byte[] edges = new byte[(columns + 1) * (rows + 1)]; // The directions of the outline edges leaving each corner, one bit each
+		for(int row = 0; row < rows; row++){
+			for(int column = 0; column < columns; column++){
+				if(!filled[row * columns + column]){
+					continue;
+				}
+				int corner = row * (columns + 1) + column; // The south west corner of the cell
+				if(!filled[(row - 1) * columns + column]){ // Edges go anticlockwise around filled cells, keeping the filled cell on their left
+					edges[corner] |= 1 << EAST;
+				}
+				if(!filled[row * columns + column + 1]){
+					edges[corner + 1] |= 1 << NORTH;
+				}
+				if(!filled[(row + 1) * columns + column]){
+					edges[corner + columns + 2] |= 1 << WEST;
+				}
+				if(!filled[row * columns + column - 1]){
+					edges[corner + columns + 1] |= 1 << SOUTH;
+				}
+			}
+		}
+		byte[] used = new byte[edges.length];
+		for(int start = 0; start < edges.length; start++){
+			for(int startDirection = 0; startDirection < 4; startDirection++){
+				if((edges[start] & ~used[start] & (1 << startDirection)) == 0){
+					continue;
+				}
+				List<double[]> points = new ArrayList<double[]>();
+				int corner = start;
+				int direction = startDirection;
+				do{
+					used[corner] |= 1 << direction;
+					corner = move(corner, direction, columns);
+					int next = direction;
+					for(int turn : new int[]{1, 0, 3}){ // Turns left where two filled cells meet at a corner, so they are kept apart
+						if((edges[corner] & (1 << ((direction + turn) & 3))) != 0){
+							next = (direction + turn) & 3;
+							break;
+						}
+					}
+					if(next != direction){ // Only corners where the outline turns are kept
+						points.add(new double[]{minY + (corner / (columns + 1) - 1) * size, (minX + (corner % (columns + 1) - 1) * size) / scale}); // Less one for the border
+					}
+					direction = next;
+				}while(corner != start || direction != startDirection);
+				double[] ring = new double[points.size() * 2];
+				for(int i = 0; i < points.size(); i++){
+					ring[2 * i] = points.get(i)[0];
+					ring[2 * i + 1] = points.get(i)[1];
+				}
+				rings.add(ring);
+			}
+		}
+		return rings;
+	}
+
+	/**
+	 * Fills the cell a projected point lies in, counting from the cell after the border. Points that rounding puts just outside
+	 * the area are moved into the nearest cell inside the border, so the border is never filled.
+	 */
+	private static void fill(boolean[] filled, int columns, int rows, double x, double y, double minX, double minY, double size){
+		int column = Math.max(1, Math.min(columns - 2, 1 + (int)Math.floor((x - minX) / size)));
+		int row = Math.max(1, Math.min(rows - 2, 1 + (int)Math.floor((y - minY) / size)));
+		filled[row * columns + column] = true;
+	}
+
+	/**
+	 * Returns the corner one edge away in a direction.
+	 */
+	private static int move(int corner, int direction, int columns){
+		switch(direction){
+		case EAST:
+			return corner + 1;
+		case NORTH:
+			return corner + columns + 1;
+		case WEST:
+			return corner - 1;
+		default:
+			return corner - columns - 1;
+		}
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public int getSource(){
+		return source;
+	}
+
+	public double getBudget(){
+		return budget;
+	}
+
+	/**
+	 * Returns the number of vertexes reached, including the source.
+	 * @return The number of vertexes reached.
+	 */
+	public int size(){
+		return vertexes.length;
+	}
+
+	public int getVertex(int position){
+		return vertexes[position];
+	}
+
+	public double getTime(int position){
+		return times[position];
+	}
+
+	public double getDistance(int position){
+		return distances[position];
+	}
+
+	public int[] getVertexes(){
+		return vertexes;
+	}
+
+	public double[] getTimes(){
+		return times;
+	}
+
+	public double[] getDistances(){
+		return distances;
+	}
+}
@@ -0,0 +1,280 @@
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The class for storing the landmark distance tables used by ALT searches (A*, landmarks and the triangle inequality).
+ * <p>
+ * A few vertexes around the edge of the graph are picked as landmarks and the weighted distance from each landmark to every vertex,
+ * and from every vertex back to each landmark, is calculated once. As no route can be shorter than the difference between
+ * two of these distances, they give an estimate of the weighted distance left to the destination that is far closer than
+ * the great circle estimate, so the search heads much more directly towards it.
+ * <p>
+ * The tables hold one row per vertex with one column per landmark, so estimating a vertex reads adjacent array entries.
+ * https://www.microsoft.com/en-us/research/publication/computing-the-shortest-path-a-search-meets-graph-theory/
+ * @author Jacob Pennington
+ *
+ */
+public class Landmarks {
+
+	public static final int DEFAULT_LANDMARK_COUNT = 16; // Each landmark costs two doubles per vertex
+	private static final int FILE_MAGIC = 0x4C4D524B; // "LMRK", marks the start of a saved landmark file
+	private static final int FILE_VERSION = 1; // Increased whenever the layout of the saved file changes
+
+	private final CompactGraph graph; // The graph the tables were calculated for
+	private final int count; // The number of landmarks
+	private final int[] landmarks; // The index of the vertex of each landmark
+	private final double[] fromLandmark; // The weighted distance from each landmark to each vertex, at vertex * count + landmark
+	private final double[] toLandmark; // The weighted distance from each vertex to each landmark, at vertex * count + landmark
+
+	/**
+	 * Picks landmarks on the given graph and calculates their distance tables.
+	 * <p>
+	 * Landmarks are picked one at a time as the vertex furthest from all of the landmarks picked so far, starting from
+	 * the vertex furthest from the centre of the graph. The searches from each landmark are needed to pick the next one so
+	 * are run in turn, then the searches back to every landmark are run in parallel.
+	 * @param graph - The graph to calculate landmarks for.
+	 * @param count - The number of landmarks to pick. Fewer are picked if the graph is too small.
+	 */
+	public Landmarks(CompactGraph graph, int count){
+		final double startTime = System.nanoTime();
+		this.graph = graph;
+		int vertexCount = graph.vertexCount;
+		int[] picked = new int[Math.min(count, vertexCount)];
+		double[] from = new double[vertexCount * picked.length];
+		double[] nearestLandmark = new double[vertexCount]; // The weighted distance to each vertex from the closest landmark picked so far
+		Arrays.fill(nearestLandmark, Double.POSITIVE_INFINITY);
+		int pickedCount = 0;
+		int next = picked.length == 0 ? -1 : findFurthestVertex(findCentralVertex(), nearestLandmark);
+		while(next != -1 && pickedCount < picked.length){
+			picked[pickedCount] = next;
+			search(next, CompactGraph.TRAVERSABLE, from, pickedCount, picked.length);
+			for(int v = 0; v < vertexCount; v++){
+				nearestLandmark[v] = Math.min(nearestLandmark[v], from[v * picked.length + pickedCount]);
+			}
+			pickedCount++;
+			next = findFurthestReachedVertex(nearestLandmark);
+		}
+		this.count = pickedCount;
+		this.landmarks = Arrays.copyOf(picked, pickedCount);
+		if(pickedCount < picked.length){ // The graph ran out of vertexes to pick so the table is narrowed to the landmarks found
+			double[] narrowed = new double[vertexCount * pickedCount];
+			for(int v = 0; v < vertexCount; v++){
+				System.arraycopy(from, v * picked.length, narrowed, v * pickedCount, pickedCount);
+			}
+			from = narrowed;
+		}
+		this.fromLandmark = from;
+		this.toLandmark = new double[vertexCount * pickedCount];
+		IntStream.range(0, pickedCount).parallel().forEach(l -> search(landmarks[l], CompactGraph.TRAVERSABLE_REVERSE, toLandmark, l, this.count)); // Each search writes to its own column
+		final double duration = System.nanoTime() - startTime;
+		Core.debug("Landmarks: " + pickedCount + " landmarks calculated in " + duration/1000000000 + " seconds");
+	}
+
+	/**
+	 * Constructs landmarks from tables that have already been calculated.
+	 * @param graph - The graph the tables were calculated for.
+	 * @param landmarks - The index of the vertex of each landmark.
+	 * @param fromLandmark - The weighted distance from each landmark to each vertex.
+	 * @param toLandmark - The weighted distance from each vertex to each landmark.
+	 */
+	private Landmarks(CompactGraph graph, int[] landmarks, double[] fromLandmark, double[] toLandmark){
+		this.graph = graph;
+		this.count = landmarks.length;
+		this.landmarks = landmarks;
+		this.fromLandmark = fromLandmark;
+		this.toLandmark = toLandmark;
+	}
+
+	/**
+	 * Returns the vertex closest to the middle of the graph's latitudes and longitudes.
+	 * @return The index of the vertex.
+	 */
+	private int findCentralVertex(){
+		double lat = 0;
+		double lon = 0;
+		for(int v = 0; v < graph.vertexCount; v++){
+			lat += graph.lat[v];
+			lon += graph.lon[v];
+		}
+		lat /= graph.vertexCount;
+		lon /= graph.vertexCount;
+		int central = 0;
+		double closest = Double.MAX_VALUE;
+		for(int v = 0; v < graph.vertexCount; v++){
+			double distance = Graph.calculateGreatCircleDistance(lat, lon, graph.lat[v], graph.lon[v]);
+			if(distance < closest){
+				closest = distance;
+				central = v;
+			}
+		}
+		return central;
+	}
+
+	/**
+	 * Searches the whole graph from a vertex and returns the last vertex reached.
+	 * @param source - The index of the vertex to search from.
+	 * @param distances - Used to hold the weighted distances found.
+	 * @return The index of the vertex with the greatest weighted distance from the source.
+	 */
+	private int findFurthestVertex(int source, double[] distances){
+		search(source, CompactGraph.TRAVERSABLE, distances, 0, 1);
+		int furthest = findFurthestReachedVertex(distances);
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		return furthest == -1 ? source : furthest;
+	}
+
+	/**
+	 * Returns the reachable vertex with the greatest distance, ignoring vertexes that cannot be reached.
+	 * @param distances - The distance of each vertex.
+	 * @return The index of the vertex, or -1 if every reachable vertex has a distance of 0.
+	 */
+	private int findFurthestReachedVertex(double[] distances){
+		int furthest = -1;
+		double greatest = 0;
+		for(int v = 0; v < distances.length; v++){
+			if(distances[v] > greatest && distances[v] != Double.POSITIVE_INFINITY){
+				greatest = distances[v];
+				furthest = v;
+			}
+		}
+		return furthest;
+	}
+
+	/**
+	 * Runs Dijkstra's algorithm over the whole graph by weighted distance and writes every distance found into one column of a table.
+	 * @param source - The index of the vertex to search from.
+	 * @param traversable - TRAVERSABLE to search away from the source, TRAVERSABLE_REVERSE to search for distances to the source.
+	 * @param table - The table to write to, with Double.POSITIVE_INFINITY written for vertexes that are not reached.
+	 * @param column - The column of the table to write to.
+	 * @param columns - The number of columns in the table.
+	 */
+	private void search(int source, byte traversable, double[] table, int column, int columns){
+		SearchWorkspace workspace = SearchWorkspace.forThread(graph.vertexCount);
+		VertexQueue queue = workspace.getQueue();
+		workspace.visit(source, 0, 0, -1);
+		queue.add(source, 0);
+		while(!queue.isEmpty()){
+			int vertex = queue.poll();
+			workspace.settle(vertex);
+			double time = workspace.getWeightedDistance(vertex);
+			for(int edge = graph.firstEdge[vertex]; edge < graph.firstEdge[vertex + 1]; edge++){
+				if((graph.edgeFlags[edge] & traversable) == 0){
+					continue;
+				}
+				int target = graph.edgeTarget[edge];
+				if(workspace.isSettled(target)){
+					continue;
+				}
+				double workingTime = time + graph.edgeTime[edge];
+				if(workingTime < workspace.getWeightedDistance(target)){
+					workspace.visit(target, 0, workingTime, vertex);
+					queue.add(target, workingTime);
+				}
+			}
+		}
+		for(int v = 0; v < graph.vertexCount; v++){
+			table[v * columns + column] = workspace.isSettled(v) ? workspace.getWeightedDistance(v) : Double.POSITIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Estimates the weighted distance from a vertex to the destination without ever overestimating it.
+	 * <p>
+	 * For each landmark L the route from v to t can be no quicker than d(L,t) - d(L,v) or d(v,L) - d(t,L), and the largest of these is used.
+	 * Landmarks that cannot reach or be reached from either vertex are skipped.
+	 * @param vertex - The index of the vertex to estimate from.
+	 * @param destination - The index of the destination vertex.
+	 * @return The estimated weighted distance in hours.
+	 */
+	public double estimate(int vertex, int destination){
+		int vertexRow = vertex * count;
+		int destinationRow = destination * count;
+		double estimate = 0;
+		for(int l = 0; l < count; l++){
+			double fromVertex = fromLandmark[vertexRow + l];
+			double fromDestination = fromLandmark[destinationRow + l];
+			if(fromVertex != Double.POSITIVE_INFINITY && fromDestination != Double.POSITIVE_INFINITY){
+				estimate = Math.max(estimate, fromDestination - fromVertex);
+			}
+			double toVertex = toLandmark[vertexRow + l];
+			double toDestination = toLandmark[destinationRow + l];
+			if(toVertex != Double.POSITIVE_INFINITY && toDestination != Double.POSITIVE_INFINITY){
+				estimate = Math.max(estimate, toVertex - toDestination);
+			}
+		}
+		return estimate;
+	}
+
+	/**
+	 * Writes the landmarks and their tables to a file so they do not need to be calculated again for the same graph.
+	 * @param file - The file to write to.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void save(File file) throws IOException{
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			out.writeLong(graph.getFingerprint());
+			out.writeInt(graph.vertexCount);
+			out.writeInt(count);
+			for(int landmark : landmarks){
+				out.writeInt(landmark);
+			}
+			for(double distance : fromLandmark){
+				out.writeDouble(distance);
+			}
+			for(double distance : toLandmark){
+				out.writeDouble(distance);
+			}
+		}
+	}
+
+	/**
+	 * Reads landmarks previously written by save.
+	 * @param graph - The graph the landmarks are for.
+	 * @param file - The file to read from.
+	 * @return The landmarks, or null if the file was written for a different graph or by a different version.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static Landmarks load(CompactGraph graph, File file) throws IOException{
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+			if(in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION || in.readLong() != graph.getFingerprint() || in.readInt() != graph.vertexCount){
+				return null;
+			}
+			int count = in.readInt();
+			int[] landmarks = new int[count];
+			for(int l = 0; l < count; l++){
+				landmarks[l] = in.readInt();
+			}
+			double[] fromLandmark = new double[graph.vertexCount * count];
+			for(int i = 0; i < fromLandmark.length; i++){
+				fromLandmark[i] = in.readDouble();
+			}
+			double[] toLandmark = new double[graph.vertexCount * count];
+			for(int i = 0; i < toLandmark.length; i++){
+				toLandmark[i] = in.readDouble();
+			}
+			return new Landmarks(graph, landmarks, fromLandmark, toLandmark);
+		}
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public int getCount(){
+		return count;
+	}
+
+	public int getLandmark(int landmark){
+		return landmarks[landmark];
+	}
+}
@@ -0,0 +1,143 @@
+package core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The class for counting how far the parser has got through loading the map, so it can be shown while the map loads.
+ * <p>
+ * The counts are added to by every thread reading the file at once, so they are kept in LongAdders, which threads can add to
+ * without waiting for each other. Anything can read them at any time, such as a timer on the GUI thread, and the values read
+ * are only ever a little behind.
+ * @author Jacob Pennington
+ *
+ */
+public class LoadProgress {
+
+	/**
+	 * The steps of loading a map, in the order they happen.
+	 */
+	public enum Stage {
+		STARTING("Starting"),
+		LOADING_SNAPSHOT("Loading saved map"),
+		PARSING("Reading map file"),
+		WEIGHTING("Weighting arcs"),
+		INDEXING("Indexing places"),
+		SAVING("Saving map for next time"),
+		DONE("Map loaded"),
+		FAILED("Map could not be loaded");
+
+		private final String description; // The text shown for the step
+
+		Stage(String description){
+			this.description = description;
+		}
+
+		public String getDescription(){
+			return description;
+		}
+	}
+
+	private volatile Stage stage = Stage.STARTING; // The step being worked on
+	private volatile long totalBytes = 0; // The number of bytes of the file to read, 0 if not known
+	private volatile long totalArcs = 0; // The number of arcs to weight, 0 if not known
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder nodesParsed = new LongAdder();
+	private final LongAdder waysParsed = new LongAdder();
+	private final LongAdder arcsWeighted = new LongAdder();
+
+	/**
+	 * Moves on to the next step of loading.
+	 * @param stage - The step now being worked on.
+	 */
+	public void setStage(Stage stage){
+		this.stage = stage;
+	}
+
+	public void setTotalBytes(long totalBytes){
+		this.totalBytes = totalBytes;
+	}
+
+	public void setTotalArcs(long totalArcs){
+		this.totalArcs = totalArcs;
+	}
+
+	public void addBytes(long bytes){
+		bytesRead.add(bytes);
+	}
+
+	public void addNodes(long nodes){
+		nodesParsed.add(nodes);
+	}
+
+	public void addWays(long ways){
+		waysParsed.add(ways);
+	}
+
+	public void addArcs(long arcs){
+		arcsWeighted.add(arcs);
+	}
+
+	/**
+	 * Returns how much of the current step has been done.
+	 * @return A fraction from 0 to 1, or -1 if the step's progress cannot be measured.
+	 */
+	public double getFraction(){
+		Stage current = stage;
+		if(current == Stage.PARSING && totalBytes > 0){
+			return Math.min(1, bytesRead.doubleValue() / totalBytes);
+		}
+		if(current == Stage.WEIGHTING && totalArcs > 0){
+			return Math.min(1, arcsWeighted.doubleValue() / totalArcs);
+		}
+		if(current == Stage.DONE){
+			return 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Describes the current step and the counts so far, such as "Reading map file: 12.5 of 50.0 MB, 81234 nodes, 9012 ways".
+	 * @return The description.
+	 */
+	@Override
+	public String toString(){
+		Stage current = stage;
+		StringBuilder text = new StringBuilder(current.getDescription());
+		if(current == Stage.PARSING){
+			text.append(": ").append(Utilities.round(bytesRead.doubleValue() / 1000000, 1));
+			if(totalBytes > 0){
+				text.append(" of ").append(Utilities.round(totalBytes / 1000000.0, 1));
+			}
+			text.append(" MB, ").append(nodesParsed.sum()).append(" nodes, ").append(waysParsed.sum()).append(" ways");
+		}else if(current == Stage.WEIGHTING){
+			text.append(": ").append(arcsWeighted.sum()).append(" of ").append(totalArcs);
+		}
+		return text.toString();
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public Stage getStage(){
+		return stage;
+	}
+
+	public long getTotalBytes(){
+		return totalBytes;
+	}
+
+	public long getBytesRead(){
+		return bytesRead.sum();
+	}
+
+	public long getNodesParsed(){
+		return nodesParsed.sum();
+	}
+
+	public long getWaysParsed(){
+		return waysParsed.sum();
+	}
+
+	public long getArcsWeighted(){
+		return arcsWeighted.sum();
+	}
+}
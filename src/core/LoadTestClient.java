@@ -0,0 +1,156 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class for measuring how quickly a running RouteServer answers requests.
+ * <p>
+ * A list of request paths, such as "/route?from=1&amp;to=2", is sent to the server over and over by several threads at once,
+ * each waiting for an answer before sending its next request. The time taken for every answer is recorded, and the median,
+ * 99th percentile and slowest times are reported along with the number of requests per second and how many got each status code.
+ * @author Jacob Pennington
+ *
+ */
+public class LoadTestClient {
+
+	public static final String USAGE = "Usage: --loadtest <server URL> <file of request paths> [--requests=1000] [--concurrency=16]";
+
+	private final String server; // The address of the server, such as "http://localhost:8080"
+	private final List<String> paths; // The paths of the requests to send, used in turn
+	private final int concurrency; // The number of requests sent at once
+
+	/**
+	 * Constructs a load test client.
+	 * @param server - The address of the server.
+	 * @param paths - The paths of the requests to send.
+	 * @param concurrency - The number of requests sent at once.
+	 */
+	public LoadTestClient(String server, List<String> paths, int concurrency){
+		this.server = server.endsWith("/") ? server.substring(0, server.length() - 1) : server;
+		this.paths = paths;
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Runs the load test from the command line arguments.
+	 * @param args - The arguments after --loadtest.
+	 * @return The exit status.
+	 */
+	public static int run(String[] args){
+		List<String> positional = new ArrayList<String>();
+		int requests = 1000;
+		int concurrency = 16;
+		try {
+			for(String arg : args){
+				if(arg.startsWith("--requests=")){
+					requests = Integer.parseInt(arg.substring(11));
+				}else if(arg.startsWith("--concurrency=")){
+					concurrency = Integer.parseInt(arg.substring(14));
+				}else{
+					positional.add(arg);
+				}
+			}
+		} catch (NumberFormatException e) {
+			System.err.println(USAGE);
+			return 2;
+		}
+		if(positional.size() != 2){
+			System.err.println(USAGE);
+			return 2;
+		}
+		List<String> paths = new ArrayList<String>();
+		try {
+			for(String line : Files.readAllLines(Paths.get(positional.get(1)), StandardCharsets.UTF_8)){
+				if(!line.trim().isEmpty()){
+					paths.add(line.trim());
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Request paths could not be read: " + e.getMessage());
+			return 1;
+		}
+		if(paths.isEmpty()){
+			System.err.println("No request paths given");
+			return 1;
+		}
+		System.out.println(new LoadTestClient(positional.get(0), paths, concurrency).test(requests));
+		return 0;
+	}
+
+	/**
+	 * Sends requests to the server and measures how long each takes.
+	 * @param requests - The number of requests to send.
+	 * @return A report of the times taken and the status codes received.
+	 */
+	public String test(int requests){
+		long[] latencies = new long[requests]; // The time taken for each request in ns
+		int[] statuses = new int[requests]; // The status code of each request, 0 if it failed to connect
+		AtomicInteger nextRequest = new AtomicInteger();
+		ExecutorService threads = Executors.newFixedThreadPool(concurrency);
+		final double startTime = System.nanoTime();
+		for(int t = 0; t < concurrency; t++){
+			threads.execute(() -> {
+				byte[] buffer = new byte[1 << 16];
+				for(int request = nextRequest.getAndIncrement(); request < requests; request = nextRequest.getAndIncrement()){
+					long requestStart = System.nanoTime();
+					try {
+						HttpURLConnection connection = (HttpURLConnection)new URL(server + paths.get(request % paths.size())).openConnection();
+						statuses[request] = connection.getResponseCode();
+						try(InputStream in = statuses[request] < 400 ? connection.getInputStream() : connection.getErrorStream()){
+							while(in != null && in.read(buffer) != -1){ // Reads the whole answer so the time includes sending it
+							}
+						}
+					} catch (IOException e) {
+						statuses[request] = 0;
+					}
+					latencies[request] = System.nanoTime() - requestStart;
+				}
+			});
+		}
+		threads.shutdown();
+		try {
+			threads.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		final double duration = (System.nanoTime() - startTime) / 1000000000;
+		Map<Integer,Integer> statusCounts = new TreeMap<Integer,Integer>();
+		for(int status : statuses){
+			statusCounts.merge(status, 1, Integer::sum);
+		}
+		long[] sorted = latencies.clone();
+		Arrays.sort(sorted);
+		return requests + " requests in " + Utilities.round(duration, 3) + " seconds, " + Utilities.round(requests / duration, 1) + " requests per second\n"
+				+ "p50 " + getPercentile(sorted, 50) + " ms, p99 " + getPercentile(sorted, 99) + " ms, max " + getPercentile(sorted, 100) + " ms\n"
+				+ "Status codes: " + statusCounts + (statusCounts.containsKey(0) ? " (0 means the connection failed)" : "");
+	}
+
+	/**
+	 * Returns the time at or below which the given percentage of requests finished.
+	 * @param sorted - The time taken for each request in ns, in ascending order.
+	 * @param percentile - The percentage.
+	 * @return The time in ms.
+	 */
+	private static double getPercentile(long[] sorted, double percentile){
+		if(sorted.length == 0){
+			return 0;
+		}
+		int index = (int)Math.ceil(percentile / 100 * sorted.length) - 1; // The nearest rank method
+		return Utilities.round(sorted[Math.max(0, index)] / 1000000.0, 3);
+	}
+}
@@ -0,0 +1,128 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * A hashmap from longs to ints, used instead of a HashMap of Longs to Integers to avoid creating objects for every entry.
+ * <p>
+ * Keys and values are kept in two arrays. A key is placed at the position given by its hash, or if that position is taken
+ * at the next free position after it, so finding a key reads neighbouring array entries until the key or a free position is found.
+ * The arrays are doubled in size whenever they become more than half full.
+ * https://en.wikipedia.org/wiki/Linear_probing
+ * @author Jacob Pennington
+ *
+ */
+public class LongIntMap {
+
+	public static final int MISSING = -1; // Returned by get for keys that are not in the map
+	private static final long FREE = Long.MIN_VALUE; // Marks an unused position, so it cannot be used as a key
+
+	private long[] keys; // The key at each position, FREE if the position is unused
+	private int[] values; // The value of the key at each position
+	private int mask; // One less than the number of positions, used in place of the remainder as the number is a power of 2
+	private int size = 0; // The number of keys in the map
+
+	public LongIntMap(){
+		this(16);
+	}
+
+	/**
+	 * Constructs an empty map with room for the given number of keys before it needs to grow.
+	 * @param capacity - The number of keys to make room for.
+	 */
+	public LongIntMap(int capacity){
+		int positions = Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1) * 2; // At least twice the capacity, rounded up to a power of 2
+		keys = new long[positions];
+		values = new int[positions];
+		Arrays.fill(keys, FREE);
+		mask = positions - 1;
+	}
+
+	/**
+	 * Finds the position of a key, or the free position where it would be added.
+	 */
+	private int findPosition(long key){
+		long hash = key * 0x9E3779B97F4A7C15L; // Spreads out IDs that are close together, https://en.wikipedia.org/wiki/Hash_function#Fibonacci_hashing
+		int position = (int)(hash ^ (hash >>> 32)) & mask;
+		while(keys[position] != FREE && keys[position] != key){
+			position = (position + 1) & mask;
+		}
+		return position;
+	}
+
+	/**
+	 * Adds a key to the map, replacing its value if it is already in the map.
+	 * @param key - The key, which cannot be Long.MIN_VALUE.
+	 * @param value - The value of the key.
+	 */
+	public void put(long key, int value){
+		if(key == FREE){
+			throw new IllegalArgumentException("Long.MIN_VALUE cannot be used as a key");
+		}
+		int position = findPosition(key);
+		if(keys[position] == FREE){
+			if((size + 1) * 2 > keys.length){ // Keeps the map at most half full so keys are found in a few reads
+				grow();
+				position = findPosition(key);
+			}
+			keys[position] = key;
+			size++;
+		}
+		values[position] = value;
+	}
+
+	/**
+	 * Adds a key to the map if it is not already in the map.
+	 * @param key - The key, which cannot be Long.MIN_VALUE.
+	 * @param value - The value to give the key if it is added.
+	 * @return The value of the key, either the value it already had or the value given.
+	 */
+	public int putIfAbsent(long key, int value){
+		if(key == FREE){
+			throw new IllegalArgumentException("Long.MIN_VALUE cannot be used as a key");
+		}
+		int position = findPosition(key);
+		if(keys[position] == key){
+			return values[position];
+		}
+		put(key, value);
+		return value;
+	}
+
+	/**
+	 * Returns the value of a key.
+	 * @param key - The key to look up.
+	 * @return The value of the key, or MISSING if it is not in the map.
+	 */
+	public int get(long key){
+		int position = findPosition(key);
+		return keys[position] == FREE ? MISSING : values[position];
+	}
+
+	public boolean containsKey(long key){
+		return keys[findPosition(key)] != FREE;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Doubles the number of positions and moves every key to its position in the new arrays.
+	 */
+	private void grow(){
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldValues.length * 2];
+		Arrays.fill(keys, FREE);
+		mask = keys.length - 1;
+		for(int i = 0; i < oldKeys.length; i++){
+			if(oldKeys[i] != FREE){
+				int position = findPosition(oldKeys[i]);
+				keys[position] = oldKeys[i];
+				values[position] = oldValues[i];
+			}
+		}
+	}
+}
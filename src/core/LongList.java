@@ -0,0 +1,69 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of longs, used instead of an ArrayList of Longs to avoid creating an object for every value.
+ * @author Jacob Pennington
+ *
+ */
+public class LongList {
+
+	private long[] values; // The values in the list, followed by unused space
+	private int size = 0; // The number of values in the list
+
+	public LongList(){
+		this(8);
+	}
+
+	/**
+	 * Constructs an empty list with room for the given number of values before it needs to grow.
+	 * @param capacity - The number of values to make room for.
+	 */
+	public LongList(int capacity){
+		this.values = new long[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Adds a value to the end of the list.
+	 * @param value - The value to add.
+	 */
+	public void add(long value){
+		if(size == values.length){ // Doubles the space in the list when it is full
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size] = value;
+		size++;
+	}
+
+	public long get(int index){
+		return values[index];
+	}
+
+	public void set(int index, long value){
+		values[index] = value;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * Removes every value from the list without releasing its space.
+	 */
+	public void clear(){
+		size = 0;
+	}
+
+	/**
+	 * Copies the values in the list into a new array.
+	 * @return An array of the values in the list, in order.
+	 */
+	public long[] toArray(){
+		return Arrays.copyOf(values, size);
+	}
+}
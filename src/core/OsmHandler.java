@@ -0,0 +1,51 @@
+package core;
+
+/**
+ * The interface for receiving the parts of an OSM file that are needed to build a graph as they are read.
+ * <p>
+ * The methods for a way are called in order: way, then wayNode and wayTag for each of its children, then wayEnd. The tags of a
+ * node are passed to nodeTag straight after the node itself, before the next node or way.
+ * @author Jacob Pennington
+ *
+ */
+public interface OsmHandler {
+
+	/**
+	 * Called for every node in the file.
+	 * @param id - The ID of the node.
+	 * @param lat - The latitude of the node.
+	 * @param lon - The longitude of the node.
+	 */
+	public void node(long id, double lat, double lon);
+
+	/**
+	 * Called for every tag of the node most recently passed to node.
+	 * @param key - The key of the tag.
+	 * @param value - The value of the tag.
+	 */
+	public void nodeTag(String key, String value);
+
+	/**
+	 * Called at the start of every way in the file.
+	 * @param id - The ID of the way.
+	 */
+	public void way(long id);
+
+	/**
+	 * Called for every node reference inside the current way, in order.
+	 * @param ref - The ID of the node.
+	 */
+	public void wayNode(long ref);
+
+	/**
+	 * Called for every tag inside the current way.
+	 * @param key - The key of the tag.
+	 * @param value - The value of the tag.
+	 */
+	public void wayTag(String key, String value);
+
+	/**
+	 * Called at the end of every way in the file.
+	 */
+	public void wayEnd();
+}
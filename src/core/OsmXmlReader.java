@@ -0,0 +1,553 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The class for reading OSM XML files as a stream of bytes and passing the nodes and ways found to an OsmHandler.
+ * <p>
+ * Elements are found by their tags rather than their position on a line, so the file may be indented or laid out in any way
+ * and attributes may come in any order. Only the parts of the XML used by OSM files are understood: elements, attributes,
+ * comments and processing instructions.
+ * <p>
+ * Bytes are read into a buffer that is refilled as it is used up, and IDs and coordinates are read directly from the buffer
+ * without creating a String for them. Only tag keys and values are turned into Strings.
+ * <p>
+ * A reader can also be given one chunk of a memory mapped file. It then stops at the first node, way or relation that starts
+ * after the end of its chunk, so a file can be split into chunks at the starts of those elements and each chunk read on its own thread.
+ * @author Jacob Pennington
+ *
+ */
+public class OsmXmlReader {
+
+	private static final int BUFFER_SIZE = 1 << 16; // The starting size of the buffer, which grows if a single element does not fit
+	private static final byte[] NODE = "node".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] WAY = "way".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] RELATION = "relation".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] ND = "nd".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] TAG = "tag".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] ID = "id".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] LAT = "lat".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] LON = "lon".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] REF = "ref".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] KEY = "k".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] VALUE = "v".getBytes(StandardCharsets.US_ASCII);
+	private static final double[] POWERS_OF_TEN = { // Every power of ten that a double holds exactly
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	private static final long MAXIMUM_EXACT_MANTISSA = 1L << 53; // The largest whole number a double holds exactly
+
+	private final InputStream in; // The stream the XML is read from, null if it is read from a buffer
+	private final ByteBuffer source; // The buffer the XML is read from, null if it is read from a stream
+	private final long stopAt; // The number of bytes into the input at or after which the first node, way or relation ends the reading
+	private final OsmHandler handler; // The handler given everything found
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0; // The position of the next byte to read in the buffer
+	private int limit = 0; // The position after the last byte read into the buffer
+	private int elementStart = 0; // The position of the start of the element being read, which must stay in the buffer when it is refilled
+	private long bytesRead = 0; // The number of bytes read from the stream so far
+	private boolean inWay = false; // Whether the elements being read are inside a way
+	private boolean inNode = false; // Whether the elements being read are inside a node
+	private boolean stopped = false; // Whether the end of the chunk has been reached
+
+	// The positions of the attributes of the element being read, counted from elementStart so they stay correct when the buffer is refilled
+	private int attributeCount = 0;
+	private int[] nameStart = new int[8];
+	private int[] nameEnd = new int[8];
+	private int[] valueStart = new int[8];
+	private int[] valueEnd = new int[8];
+
+	/**
+	 * Constructs a reader for the given stream. Nothing is read until read is called.
+	 * @param in - The stream to read the XML from.
+	 * @param handler - The handler to pass the nodes and ways to.
+	 */
+	public OsmXmlReader(InputStream in, OsmHandler handler){
+		this.in = in;
+		this.source = null;
+		this.stopAt = Long.MAX_VALUE;
+		this.handler = handler;
+	}
+
+	/**
+	 * Constructs a reader for one chunk of a file held in a buffer. Nothing is read until read is called.
+	 * @param source - The buffer to read the XML from, starting at the start of the chunk and running past its end.
+	 * @param stopAt - The length of the chunk. Reading stops at the first node, way or relation starting at or after it.
+	 * @param handler - The handler to pass the nodes and ways to.
+	 */
+	public OsmXmlReader(ByteBuffer source, long stopAt, OsmHandler handler){
+		this.in = null;
+		this.source = source;
+		this.stopAt = stopAt;
+		this.handler = handler;
+	}
+
+	/**
+	 * Finds where the next node, way or relation starts in a buffer, used to split a file into chunks.
+	 * @param buffer - The buffer to search.
+	 * @param from - The position to start searching from.
+	 * @return The position of the element's opening bracket, or -1 if there is none.
+	 */
+	public static int findElementStart(ByteBuffer buffer, int from){
+		int limit = buffer.limit();
+		for(int i = from; i < limit; i++){
+			if(buffer.get(i) != '<'){
+				continue;
+			}
+			for(byte[] name : new byte[][]{NODE, WAY, RELATION}){
+				int end = i + 1 + name.length;
+				if(end >= limit){
+					continue;
+				}
+				boolean found = true;
+				for(int j = 0; j < name.length && found; j++){
+					found = buffer.get(i + 1 + j) == name[j];
+				}
+				int after = buffer.get(end);
+				if(found && (isWhitespace(after) || after == '/' || after == '>')){
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads the whole stream, passing every node and way to the handler as it is found.
+	 * @throws IOException If the stream cannot be read.
+	 */
+	public void read() throws IOException{
+		while(true){
+			int c;
+			do{ // Skips any text between elements
+				elementStart = position;
+				c = next();
+			}while(c != '<' && c != -1);
+			if(c == -1){
+				if(inWay){
+					endWay();
+				}
+				return;
+			}
+			c = next();
+			if(c == '/'){
+				readEndTag();
+			}else if(c == '?'){
+				skipPast('?', '>');
+			}else if(c == '!'){
+				if(next() == '-' && next() == '-'){
+					skipComment();
+				}else{
+					skipPast('>', '>'); // Declarations such as DOCTYPE
+				}
+			}else if(c != -1){
+				readStartTag();
+				if(stopped){
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the name and attributes of an element whose first letter has just been read, and passes it to the handler if needed.
+	 * @throws IOException If the stream cannot be read.
+	 */
+	private void readStartTag() throws IOException{
+		int c = next();
+		while(c != -1 && !isWhitespace(c) && c != '/' && c != '>'){
+			c = next();
+		}
+		int start = elementStart + 1; // The name starts straight after the <
+		int end = position - 1;
+		byte[] element = null; // The element if it is one the handler needs, null for any other element
+		if(matches(start, end, NODE)){
+			element = NODE;
+		}else if(matches(start, end, WAY)){
+			element = WAY;
+		}else if(matches(start, end, RELATION)){
+			element = RELATION;
+		}else if(matches(start, end, ND) && inWay){
+			element = ND;
+		}else if(matches(start, end, TAG) && (inWay || inNode)){
+			element = TAG;
+		}
+		if(element == NODE || element == WAY || element == RELATION){
+			inNode = false;
+			if(inWay){ // A way that was never closed ends when the next node, way or relation starts
+				endWay();
+			}
+			if(bytesRead - limit + elementStart >= stopAt){ // The element belongs to the next chunk
+				stopped = true;
+				return;
+			}
+		}
+		attributeCount = 0;
+		boolean selfClosing = false;
+		while(c != '>' && c != -1){ // Reads each attribute until the end of the tag
+			if(isWhitespace(c)){
+				c = next();
+				continue;
+			}
+			if(c == '/'){
+				selfClosing = true;
+				c = next();
+				continue;
+			}
+			selfClosing = false;
+			int attributeNameStart = position - 1 - elementStart;
+			while(c != '=' && c != -1 && !isWhitespace(c)){
+				c = next();
+			}
+			int attributeNameEnd = position - 1 - elementStart;
+			while(c != '=' && c != -1){
+				c = next();
+			}
+			c = next();
+			while(isWhitespace(c)){
+				c = next();
+			}
+			if(c != '"' && c != '\''){ // Not well formed, so the rest of the tag is skipped
+				break;
+			}
+			int quote = c;
+			int attributeValueStart = position - elementStart;
+			do{
+				c = next();
+			}while(c != quote && c != -1);
+			if(element != null && element != RELATION){
+				addAttribute(attributeNameStart, attributeNameEnd, attributeValueStart, position - 1 - elementStart);
+			}
+			c = next();
+		}
+		if(c == -1){
+			return;
+		}
+		if(element == NODE){
+			int id = findAttribute(ID);
+			int lat = findAttribute(LAT);
+			int lon = findAttribute(LON);
+			if(id != -1 && lat != -1 && lon != -1){
+				handler.node(parseLongAttribute(id), parseDoubleAttribute(lat), parseDoubleAttribute(lon));
+				inNode = !selfClosing; // Any tags before the node is closed belong to it
+			}
+		}else if(element == WAY){
+			int id = findAttribute(ID);
+			if(id != -1){
+				inWay = true;
+				handler.way(parseLongAttribute(id));
+				if(selfClosing){ // A way with no children ends straight away
+					endWay();
+				}
+			}
+		}else if(element == ND){
+			int ref = findAttribute(REF);
+			if(ref != -1){
+				handler.wayNode(parseLongAttribute(ref));
+			}
+		}else if(element == TAG){
+			int key = findAttribute(KEY);
+			int value = findAttribute(VALUE);
+			if(key != -1 && value != -1){
+				String keyString = decode(elementStart + valueStart[key], elementStart + valueEnd[key]);
+				String valueString = decode(elementStart + valueStart[value], elementStart + valueEnd[value]);
+				if(inWay){
+					handler.wayTag(keyString, valueString);
+				}else{
+					handler.nodeTag(keyString, valueString);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads an end tag whose slash has just been read, ending the current way if it is one.
+	 * @throws IOException If the stream cannot be read.
+	 */
+	private void readEndTag() throws IOException{
+		int c = next();
+		while(c != -1 && !isWhitespace(c) && c != '>'){
+			c = next();
+		}
+		if(inWay && matches(elementStart + 2, position - 1, WAY)){ // The name starts straight after the </
+			endWay();
+		}else if(inNode && matches(elementStart + 2, position - 1, NODE)){
+			inNode = false;
+		}
+		while(c != '>' && c != -1){
+			c = next();
+		}
+	}
+
+	private void endWay(){
+		inWay = false;
+		handler.wayEnd();
+	}
+
+	/**
+	 * Skips to just after the next occurrence of two bytes in a row.
+	 * @param first - The first byte to find.
+	 * @param second - The byte that must follow it.
+	 * @throws IOException If the stream cannot be read.
+	 */
+	private void skipPast(int first, int second) throws IOException{
+		int previous = -2;
+		int c = next();
+		while(c != -1 && !(c == second && (previous == first || first == second))){
+			previous = c;
+			c = next();
+		}
+	}
+
+	/**
+	 * Skips to just after the end of a comment whose opening has just been read.
+	 * @throws IOException If the stream cannot be read.
+	 */
+	private void skipComment() throws IOException{
+		int dashes = 0;
+		int c = next();
+		while(c != -1 && !(c == '>' && dashes >= 2)){
+			dashes = c == '-' ? dashes + 1 : 0;
+			c = next();
+		}
+	}
+
+	/**
+	 * Returns the next byte, refilling the buffer from the stream if it has all been read.
+	 * @return The next byte, or -1 at the end of the stream.
+	 * @throws IOException If the stream cannot be read.
+	 */
+	private int next() throws IOException{
+		if(position >= limit && !fill()){
+			position = limit + 1; // Keeps positions after the end consistent with positions after a byte
+			return -1;
+		}
+		return buffer[position++] & 0xFF;
+	}
+
+	/**
+	 * Reads more of the stream into the buffer, first moving the element being read to the start of the buffer.
+	 * @return False if the end of the stream has been reached.
+	 * @throws IOException If the stream cannot be read.
+	 */
+	private boolean fill() throws IOException{
+		int shift = elementStart;
+		if(shift > 0){
+			System.arraycopy(buffer, shift, buffer, 0, limit - shift);
+			limit -= shift;
+			position -= shift;
+			elementStart = 0;
+		}
+		if(limit == buffer.length){ // The element fills the whole buffer
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		int read;
+		if(in != null){
+			read = in.read(buffer, limit, buffer.length - limit);
+		}else{
+			read = Math.min(source.remaining(), buffer.length - limit);
+			source.get(buffer, limit, read);
+		}
+		if(read <= 0){
+			return false;
+		}
+		limit += read;
+		bytesRead += read;
+		return true;
+	}
+
+	private void addAttribute(int attributeNameStart, int attributeNameEnd, int attributeValueStart, int attributeValueEnd){
+		if(attributeCount == nameStart.length){
+			nameStart = Arrays.copyOf(nameStart, attributeCount * 2);
+			nameEnd = Arrays.copyOf(nameEnd, attributeCount * 2);
+			valueStart = Arrays.copyOf(valueStart, attributeCount * 2);
+			valueEnd = Arrays.copyOf(valueEnd, attributeCount * 2);
+		}
+		nameStart[attributeCount] = attributeNameStart;
+		nameEnd[attributeCount] = attributeNameEnd;
+		valueStart[attributeCount] = attributeValueStart;
+		valueEnd[attributeCount] = attributeValueEnd;
+		attributeCount++;
+	}
+
+	/**
+	 * Finds an attribute of the element being read by name.
+	 * @param name - The name of the attribute.
+	 * @return The position of the attribute in the attribute arrays, or -1 if the element does not have it.
+	 */
+	private int findAttribute(byte[] name){
+		for(int i = 0; i < attributeCount; i++){
+			if(matches(elementStart + nameStart[i], elementStart + nameEnd[i], name)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks whether part of the buffer holds the given bytes.
+	 * @param start - The position of the first byte.
+	 * @param end - The position after the last byte.
+	 * @param bytes - The bytes to compare with.
+	 * @return True if they are the same.
+	 */
+	private boolean matches(int start, int end, byte[] bytes){
+		if(end - start != bytes.length){
+			return false;
+		}
+		for(int i = 0; i < bytes.length; i++){
+			if(buffer[start + i] != bytes[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long parseLongAttribute(int attribute){
+		return parseLong(elementStart + valueStart[attribute], elementStart + valueEnd[attribute]);
+	}
+
+	private double parseDoubleAttribute(int attribute){
+		return parseDouble(elementStart + valueStart[attribute], elementStart + valueEnd[attribute]);
+	}
+
+	private static boolean isWhitespace(int c){
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+	/**
+	 * Reads a whole number from the buffer.
+	 * @param start - The position of the first byte.
+	 * @param end - The position after the last byte.
+	 * @return The number.
+	 */
+	private long parseLong(int start, int end){
+		int i = start;
+		boolean negative = i < end && buffer[i] == '-';
+		if(negative){
+			i++;
+		}
+		if(i == end || end - i > 18){ // Empty or too long to add up without overflowing, so left to Long.parseLong
+			return Long.parseLong(new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+		}
+		long value = 0;
+		for(; i < end; i++){
+			int digit = buffer[i] - '0';
+			if(digit < 0 || digit > 9){
+				return Long.parseLong(new String(buffer, start, end - start, StandardCharsets.US_ASCII)); // Throws a NumberFormatException for the value
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Reads a decimal number from the buffer.
+	 * <p>
+	 * Numbers written as digits with at most one decimal point, which covers every coordinate in an OSM file, are read as a whole number
+	 * then divided by a power of ten. As both are held exactly by a double the division gives the same result as Double.parseDouble.
+	 * Any other number is passed to Double.parseDouble.
+	 * @param start - The position of the first byte.
+	 * @param end - The position after the last byte.
+	 * @return The number.
+	 */
+	private double parseDouble(int start, int end){
+		int i = start;
+		boolean negative = i < end && buffer[i] == '-';
+		if(negative){
+			i++;
+		}
+		long mantissa = 0;
+		int decimalPlaces = 0;
+		boolean point = false;
+		int digits = 0;
+		for(; i < end; i++){
+			int c = buffer[i];
+			if(c == '.' && !point){
+				point = true;
+				continue;
+			}
+			int digit = c - '0';
+			if(digit < 0 || digit > 9 || digits == 18){ // Exponents and very long numbers are left to Double.parseDouble
+				return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+			}
+			mantissa = mantissa * 10 + digit;
+			digits++;
+			if(point){
+				decimalPlaces++;
+			}
+		}
+		if(digits == 0 || mantissa > MAXIMUM_EXACT_MANTISSA || decimalPlaces >= POWERS_OF_TEN.length){
+			return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+		}
+		double value = mantissa / POWERS_OF_TEN[decimalPlaces];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Creates a String from an attribute value in the buffer, replacing any XML character references.
+	 * @param start - The position of the first byte.
+	 * @param end - The position after the last byte.
+	 * @return The value.
+	 */
+	private String decode(int start, int end){
+		String value = new String(buffer, start, end - start, StandardCharsets.UTF_8);
+		if(value.indexOf('&') == -1){
+			return value;
+		}
+		StringBuilder decoded = new StringBuilder(value.length());
+		int i = 0;
+		while(i < value.length()){
+			char c = value.charAt(i);
+			int semicolon = c == '&' ? value.indexOf(';', i) : -1;
+			if(semicolon == -1){
+				decoded.append(c);
+				i++;
+				continue;
+			}
+			String entity = value.substring(i + 1, semicolon);
+			switch(entity){
+				case "amp":
+					decoded.append('&');
+					break;
+				case "lt":
+					decoded.append('<');
+					break;
+				case "gt":
+					decoded.append('>');
+					break;
+				case "quot":
+					decoded.append('"');
+					break;
+				case "apos":
+					decoded.append('\'');
+					break;
+				default:
+					try {
+						if(entity.startsWith("#x")){
+							decoded.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+						}else if(entity.startsWith("#")){
+							decoded.appendCodePoint(Integer.parseInt(entity.substring(1)));
+						}else{
+							decoded.append(value, i, semicolon + 1); // Unknown entities are kept as they are
+						}
+					} catch (IllegalArgumentException e) {
+						decoded.append(value, i, semicolon + 1);
+					}
+			}
+			i = semicolon + 1;
+		}
+		return decoded.toString();
+	}
+
+	/**
+	 * Returns how much of the stream has been read.
+	 * @return The number of bytes read.
+	 */
+	public long getBytesRead(){
+		return bytesRead;
+	}
+}
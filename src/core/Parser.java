@@ -1,14 +1,17 @@
 package core;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.stream.IntStream;
 
 // The Parser is the section of program dedicated to converting OSM XML files to a Graph Datatype that can then be manipulated
 /**
@@ -19,88 +22,247 @@ import java.util.HashMap;
  */
 public class Parser {
 	
+	public static final long MINIMUM_CHUNK_SIZE = 1 << 20; // Files are not split into chunks smaller than 1MB as each chunk has a start up cost
+	public static final long MAXIMUM_CHUNK_SIZE = 1 << 28; // Chunks are kept well under the 2GB a single mapping can hold so the last element of a chunk can run past its end
+	private static final int UNREAD = -2; // Marks a node used by a way that has not yet been found in the file
+	private static final int PROGRESS_STEP = 4096; // The number of nodes or ways each chunk reads between adding to the progress, a power of two
+	
 	String path = "resources/defaultMap.osm"; // File location to load
+	String pbfPath = "resources/defaultMap.osm.pbf"; // File location to load if there is no file at path
+	String snapshotPath = "resources/defaultMap.osm.snapshot"; // Where the built graph is saved so that later start ups do not need to parse the file
 	public boolean filePresent = false;
 	File xmlFile;
 	int nodeCounter = 0;
 	int wayCounter = 0;
-	HashMap<String,Vertex> vertexMap = new HashMap<String,Vertex>();
-	HashMap<String,Arc> arcMap = new HashMap<String,Arc>();
-	boolean inWay = false;
-	TempWay tempWay;
-	Graph map;
+	WayFilter wayFilter; // Decides which ways in the file become arcs
+	volatile Graph map; // Only set once the graph is complete, so other threads never see it part built
+	private final PrintStream messages; // Where the statistics of each parse are written
+	final LoadProgress progress = new LoadProgress(); // How far loading has got, read by the GUI while the map loads on another thread
 	
 	/**
 	 * A private class for temporarily storing information about a way while 
 	 * it is parsed.
 	 * <p>
-	 * The parser runs on a line by line basis, therefore information 
-	 * cannot be stored between lines. Ways are
+	 * The parser is given the contents of a way one element at a time. Ways are
 	 * made up of multiple tags, this class allows the parser to 
 	 * temporarily store information.
 	 * @author Jacob Pennington
 	 *
 	 */
 	private class TempWay{ // TempWay is a temporary class for use in my parser as it stores data to do with arcs.
-		String id;
-		public TempWay(String id){
+		long id;
+		public TempWay(long id){
 			this.id = id;
 		}
-		public ArrayList<String> nodeList = new ArrayList<String>(); // List of all nodes in the arc
+		public LongList nodeList = new LongList(); // List of the IDs of all nodes in the way
 		public HashMap<String,String> tagList = new HashMap<String, String>(); // List of all tags and their values
 	}
 	
 	/**
 	 * Constructs the parser, then checks for the presence of the default file. If 
 	 * the file is present then the program parses it.
+	 * <p>
+	 * If a snapshot of the graph has been saved since the file last changed then the snapshot is loaded instead.
+	 * Otherwise a new snapshot is saved once the file has been parsed.
 	 */
 	public Parser(){
-		PrintStream out;
+		this(WayFilter.DEFAULT);
+	}
+	
+	/**
+	 * Constructs the parser using the given filter to decide which ways are added to the graph, then parses the default file.
+	 * <p>
+	 * Snapshots do not record which filter built them, so they are only loaded and saved when the default filter is used.
+	 * @param wayFilter - The filter to use.
+	 */
+	public Parser(WayFilter wayFilter){
+		this(wayFilter, true);
+	}
+	
+	/**
+	 * Constructs the parser using the given filter, only loading the map straight away if asked to.
+	 * <p>
+	 * A parser constructed without loading has no map until load is called, which can be done on another thread while the
+	 * progress is shown.
+	 * @param wayFilter - The filter to use.
+	 * @param loadNow - True to load the map before returning.
+	 */
+	public Parser(WayFilter wayFilter, boolean loadNow){
+		this(wayFilter, loadNow, System.out);
+	}
+	
+	/**
+	 * Constructs the parser using the given filter, writing the statistics of each parse to the given stream.
+	 * <p>
+	 * Modes that write their results to the standard output, such as batch routing, pass the standard error here so the
+	 * statistics do not get mixed in with the results.
+	 * @param wayFilter - The filter to use.
+	 * @param loadNow - True to load the map before returning.
+	 * @param messages - Where the parse time and the number of nodes and ways kept are written.
+	 */
+	public Parser(WayFilter wayFilter, boolean loadNow, PrintStream messages){
+		this.wayFilter = wayFilter;
+		this.messages = messages;
+		if(loadNow){
+			load();
+		}
+	}
+	
+	/**
+	 * Loads the map, from a snapshot if one has been saved since the file last changed, or by parsing the file.
+	 * <p>
+	 * The progress is updated as the file is read, and the map is only set once it is complete.
+	 */
+	public void load(){
+		xmlFile = new File(path);
+		if(!xmlFile.exists() && new File(pbfPath).exists()){
+			xmlFile = new File(pbfPath);
+		}
+		File snapshotFile = new File(snapshotPath);
+		boolean useSnapshot = wayFilter == WayFilter.DEFAULT;
+		Graph graph = null;
+		if(useSnapshot && snapshotFile.exists() && (!xmlFile.exists() || snapshotFile.lastModified() >= xmlFile.lastModified())){
+			progress.setStage(LoadProgress.Stage.LOADING_SNAPSHOT);
+			graph = this.loadSnapshot(snapshotFile); // Null if the snapshot is damaged or out of date, in which case the file is parsed instead
+		}
+		if(graph != null){
+			filePresent = true;
+		} else if(xmlFile.exists()){
+			filePresent = true;
+			graph = this.parseFileToGraph(xmlFile);
+			/* Immediately parses
+			 * the XML file once the
+			 * class is initialised */
+			if(graph != null && useSnapshot){
+				progress.setStage(LoadProgress.Stage.SAVING);
+				this.saveSnapshot(graph, snapshotFile);
+			}
+		} else {
+			filePresent = false;
+			/* If the file is not present then
+			 *  the program should not attempt to 
+			 *  parse the file */
+		}
+		this.map = graph; // Published last so the map is never seen before it is ready
+		progress.setStage(graph != null ? LoadProgress.Stage.DONE : LoadProgress.Stage.FAILED);
+	}
+	
+	/**
+	 * Loads a graph saved by saveSnapshot.
+	 * @param snapshotFile - The snapshot file.
+	 * @return The graph, or null if the snapshot cannot be used.
+	 */
+	private Graph loadSnapshot(File snapshotFile){
 		try {
-			out = new PrintStream(
-					new FileOutputStream("resources/output.log")); 
-			/*  Ensures that all console output
-			 *  is redirected to a text
-			 *  file for reviewing */
-			System.setOut(out);
-			xmlFile = new File(path);
-			if(xmlFile.exists()){
-				filePresent = true;
-				this.map = this.parseXMLtoGraph(xmlFile);
-				/* Immediately parses
-				 * the XML file once the
-				 * class is initialised */
-			} else {
-				filePresent = false;
-				/* If the file is not present then
-				 *  the program should not attempt to 
-				 *  parse the file */
-			}
-		} catch (FileNotFoundException e1) {
-			e1.printStackTrace();
-			Core.debug(e1.getMessage());
+			return GraphSnapshot.load(snapshotFile);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
 		}
 	}
 	
+	/**
+	 * Saves the graph to a snapshot file. The graph can still be used if this fails, the file will just be parsed again next time.
+	 * @param graph - The graph to save.
+	 * @param snapshotFile - The snapshot file.
+	 */
+	private void saveSnapshot(Graph graph, File snapshotFile){
+		try {
+			GraphSnapshot.save(graph, snapshotFile);
+		} catch (IOException e) {
+			e.printStackTrace();
+			Core.debug("Snapshot could not be saved");
+			snapshotFile.delete(); // A partly written snapshot would fail its checksum anyway
+		}
+	}
+	
+	/**
+	 * Parses either an OSM XML or OSM PBF file to vertices and arcs, telling them apart by the start of the file rather than its name.
+	 * @param file - The file to parse.
+	 * @return A Graph object representation of the file, null if the file cannot be parsed.
+	 */
+	public Graph parseFileToGraph(File file){
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			if(PbfReader.isPbf(channel)){
+				return parsePBFtoGraph(file);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		return parseXMLtoGraph(file);
+	}
+	
 	/**
 	 * Central method for parsing OSM XML files to vertices and arcs.
+	 * <p>
+	 * The file is memory mapped and split into chunks at the starts of nodes, ways and relations. Each chunk is read by its own
+	 * OsmXmlReader on a separate thread, then the vertexes and ways found are numbered in file order so the graph
+	 * is the same as if the file had been read in one go.
 	 * @param XMLfile - The XML file to parse.
 	 * @return A Graph object representation of the XML file, null if the file cannot be parsed.
 	 */
 	public Graph parseXMLtoGraph(File XMLfile){
-		Graph map = null;
-		try (BufferedReader br = new BufferedReader(new FileReader(xmlFile))){
-			String line;
-			while ((line = br.readLine()) != null){ // Loops through every line in the XML file
-				parseLine(line); // Individually parses each line
-				//Core.debug(line);
+		final double startTime = System.nanoTime();
+		try (FileChannel channel = FileChannel.open(XMLfile.toPath(), StandardOpenOption.READ)){
+			long size = channel.size();
+			progress.setTotalBytes(size);
+			progress.setStage(LoadProgress.Stage.PARSING);
+			long[] chunkStarts = findChunkStarts(channel, size);
+			ParsedChunk[] chunks = new ParsedChunk[chunkStarts.length - 1];
+			IntStream.range(0, chunks.length).parallel().forEach(i -> chunks[i] = parseChunk(channel, chunkStarts[i], chunkStarts[i + 1], size));
+			Graph graph = buildGraph(chunks); // Constructs a new graph using the extracted information
+			final double duration = (System.nanoTime() - startTime) / 1000000000;
+			messages.println("Parse Time: " + duration + " seconds, " + size / 1000000.0 / duration + " MB/s using " + chunks.length + " chunks");
+			return graph;
+		} catch (NoSuchFileException e) {
+			e.printStackTrace();
+			Core.debug("File Not Found");
+		} catch (UncheckedIOException e) {
+			e.getCause().printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return null; // Will return null if any errors occur
+	}
+	
+	/**
+	 * Parses an OSM PBF file to vertices and arcs.
+	 * <p>
+	 * Each block of the file is decompressed and decoded on its own thread, then the vertexes and ways found are numbered in file order.
+	 * @param PBFfile - The PBF file to parse.
+	 * @return A Graph object representation of the PBF file, null if the file cannot be parsed.
+	 */
+	public Graph parsePBFtoGraph(File PBFfile){
+		final double startTime = System.nanoTime();
+		try (FileChannel channel = FileChannel.open(PBFfile.toPath(), StandardOpenOption.READ)){
+			PbfReader reader = new PbfReader(channel);
+			ParsedChunk[] chunks = new ParsedChunk[reader.getBlockCount()];
+			long totalBytes = 0;
+			for(int i = 0; i < chunks.length; i++){ // Only the data blobs are counted, as they are what is read in parallel
+				totalBytes += reader.getBlockSize(i);
 			}
-
-			map = new Graph(vertexMap, arcMap); // Constructs a new graph using the extracted information
-			return map; // Returns the graph datatype 
-		} catch (FileNotFoundException e) {
+			progress.setTotalBytes(totalBytes);
+			progress.setStage(LoadProgress.Stage.PARSING);
+			IntStream.range(0, chunks.length).parallel().forEach(i -> {
+				chunks[i] = new ParsedChunk();
+				chunks[i].length = reader.getBlockSize(i);
+				try {
+					reader.readBlock(i, chunks[i]);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				chunks[i].finish();
+			});
+			Graph graph = buildGraph(chunks); // Constructs a new graph using the extracted information
+			final double duration = (System.nanoTime() - startTime) / 1000000000;
+			messages.println("Parse Time: " + duration + " seconds, " + channel.size() / 1000000.0 / duration + " MB/s using " + chunks.length + " blocks");
+			return graph;
+		} catch (NoSuchFileException e) {
 			e.printStackTrace();
 			Core.debug("File Not Found");
+		} catch (UncheckedIOException e) {
+			e.getCause().printStackTrace();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -108,104 +270,300 @@ public class Parser {
 	}
 	
 	/**
-	 * Parses an individual line, creating objects to store the data.
-	 * @param line - The individual line of the XML.
-	 */
-	public void parseLine(String line){ // Individually works on one line and extracts useful information
-		if(line.length() > 8){ // Discount any lines like </way>
-			if(!inWay){ // Ensures the line being parsed is not one inside a <way> block
-				if(line.substring(3, 7).equals("node")){ // Checks if the line being parsed is a <node> line
-					String id = line.substring(12, line.indexOf("\"", 12));
-					/* Extracts the id of the node -
-					 * always in the same place -
-					 * index 12 to the first set of double quotes */
-					int latLocationInString = line.indexOf("lat=\"") + 5; 
-					/* Finds the index
-					 * of lat=" in the string */
-					int lonLocationInString = line.indexOf("lon=\"") + 5; 
-					/* Finds the index
-					 * of lon=" in the string */
-					double lat = Double.parseDouble(
-							line.substring(
-									latLocationInString,
-									latLocationInString +
-									line.substring(latLocationInString).indexOf("\"")
-									)
-							); // Finds the latitude of the node in the string and then parses it to a double
-					double lon = Double.parseDouble(
-							line.substring(
-									lonLocationInString,
-									lonLocationInString +
-									line.substring(lonLocationInString).indexOf("\"")
-									)
-							); // Same as above but with longitude
-					nodeCounter++;
-					vertexMap.put(id,new Vertex(id,lat,lon)); 
-					/* Add a new vertex to the hashmap
-					 *  of vertexes using its id as a
-					 *  reference, also constructs a
-					 *  vertex using the data extracted */
-					
-				}else{
-					if(line.substring(3,7).equals("way ")){ // Checks if the line being parsed is a <way> line
-						inWay = true; // Sets the flag to make sure the next line parsed knows its inside a <way> block
-						wayCounter++;
-						String tempId = line.substring(
-								11,
-								11 + line.substring(11).indexOf("\"")
-								); // Extracts the id of the way - always in the same place - index 11 to the first set of double quotes
-						tempWay = new TempWay(tempId);
-						/* Creates a temporary way
-						 * datatype held outside the
-						 * function to edit when the contents
-						 * of the way are parsed in the next lines */
-					}
+	 * Numbers the vertexes and ways found in each chunk, in the order the chunks were in the file, and builds the graph from them.
+	 * <p>
+	 * Only the ways that passed the filter were kept, and only the nodes those ways use are made into vertexes. Node IDs are
+	 * turned into vertex indexes using a LongIntMap, so each node reference costs a few array reads and no objects are created for it.
+	 * @param chunks - The chunks that have been read.
+	 * @return The graph of the vertexes and ways.
+	 */
+	private Graph buildGraph(ParsedChunk[] chunks){
+		ArrayList<TempWay> allWays = new ArrayList<TempWay>();
+		int nodesRead = 0;
+		int waysRead = 0;
+		int nodeReferences = 0;
+		for(ParsedChunk chunk : chunks){
+			allWays.addAll(chunk.ways);
+			nodesRead += chunk.nodeCount;
+			waysRead += chunk.waysRead;
+		}
+		for(TempWay way : allWays){
+			nodeReferences += way.nodeList.size();
+		}
+		LongIntMap nodeIndexes = new LongIntMap(Math.min(nodeReferences, nodesRead)); // The index of each node used by a kept way
+		for(TempWay way : allWays){
+			for(int i = 0; i < way.nodeList.size(); i++){
+				nodeIndexes.putIfAbsent(way.nodeList.get(i), UNREAD);
+			}
+		}
+		long[] nodeIds = new long[nodeIndexes.size()];
+		double[] lat = new double[nodeIndexes.size()];
+		double[] lon = new double[nodeIndexes.size()];
+		int vertexCount = 0;
+		for(ParsedChunk chunk : chunks){ // All vertexes are numbered before any arcs are made as a way may use nodes from any chunk
+			for(int i = 0; i < chunk.nodeCount; i++){
+				if(nodeIndexes.get(chunk.nodeIds[i]) == UNREAD){ // The node is used by a way, and this is the first time it has been found in the file
+					nodeIndexes.put(chunk.nodeIds[i], vertexCount);
+					nodeIds[vertexCount] = chunk.nodeIds[i];
+					lat[vertexCount] = chunk.nodeLats[i];
+					lon[vertexCount] = chunk.nodeLons[i];
+					vertexCount++;
+				}
+			}
+		}
+		if(vertexCount < nodeIds.length){ // Some ways use nodes that are not in the file, as happens at the edge of an extract
+			nodeIds = Arrays.copyOf(nodeIds, vertexCount);
+			lat = Arrays.copyOf(lat, vertexCount);
+			lon = Arrays.copyOf(lon, vertexCount);
+		}
+		long[] wayIds = new long[allWays.size()];
+		ArrayList<HashMap<String,String>> tagLists = new ArrayList<HashMap<String,String>>(allWays.size());
+		int[] wayNodeStart = new int[allWays.size() + 1]; // The position in wayNodes of the first node of each way
+		int[] wayNodes = new int[nodeReferences]; // The index of the vertex of every node of every way, -1 for nodes that are not in the file
+		for(int w = 0; w < wayIds.length; w++){
+			TempWay way = allWays.get(w);
+			wayIds[w] = way.id;
+			tagLists.add(way.tagList);
+			int position = wayNodeStart[w];
+			for(int i = 0; i < way.nodeList.size(); i++){
+				int index = nodeIndexes.get(way.nodeList.get(i));
+				wayNodes[position + i] = index == UNREAD ? -1 : index;
+			}
+			wayNodeStart[w + 1] = position + way.nodeList.size();
+		}
+		nodeCounter += vertexCount;
+		wayCounter += allWays.size();
+		messages.println("Kept " + vertexCount + " of " + nodesRead + " nodes and " + allWays.size() + " of " + waysRead + " ways");
+		Graph graph = new Graph(nodeIds, lat, lon, wayNodeStart, wayNodes, new WayTable(wayIds, tagLists), progress);
+		progress.setStage(LoadProgress.Stage.INDEXING);
+		graph.setGeocoder(buildGeocoder(chunks, allWays, graph, wayNodeStart, wayNodes));
+		return graph;
+	}
+	
+	/**
+	 * Builds the geocoder from the named roads on the graph and the nodes and ways with names or addresses found in each chunk.
+	 * <p>
+	 * Roads are found at their middle vertex, nodes at their own location and other ways at their first node. Each place is then
+	 * moved onto the nearest vertex of the graph, and places too far from any road are left out.
+	 * @param chunks - The chunks that have been read.
+	 * @param allWays - The ways on the graph.
+	 * @param graph - The graph built from the ways.
+	 * @param wayNodeStart - The position in wayNodes of the first node of each way.
+	 * @param wayNodes - The index of the vertex of every node of every way.
+	 * @return The geocoder.
+	 */
+	private Geocoder buildGeocoder(ParsedChunk[] chunks, ArrayList<TempWay> allWays, Graph graph, int[] wayNodeStart, int[] wayNodes){
+		CompactGraph compactGraph = graph.getCompactGraph();
+		ArrayList<String> texts = new ArrayList<String>();
+		IntList vertexes = new IntList();
+		for(int w = 0; w < allWays.size(); w++){
+			String text = Geocoder.getText(allWays.get(w).tagList);
+			int vertex = -1;
+			for(int k = (wayNodeStart[w] + wayNodeStart[w + 1]) / 2; k < wayNodeStart[w + 1] && vertex == -1; k++){ // The middle node, or the next one that is in the file
+				vertex = wayNodes[k];
+			}
+			if(text != null && vertex != -1){
+				texts.add(text);
+				vertexes.add(vertex);
+			}
+		}
+		LongIntMap refPositions = new LongIntMap(16); // The position in the ref arrays of each first node of a place way
+		for(ParsedChunk chunk : chunks){
+			for(int i = 0; i < chunk.placeWayRefs.size(); i++){
+				refPositions.putIfAbsent(chunk.placeWayRefs.get(i), refPositions.size());
+			}
+		}
+		double[] refLat = new double[refPositions.size()];
+		double[] refLon = new double[refPositions.size()];
+		boolean[] refFound = new boolean[refPositions.size()];
+		for(ParsedChunk chunk : chunks){
+			for(int i = 0; i < chunk.placeNodes.size(); i++){
+				addPlace(graph, chunk.placeNodeTexts.get(i), chunk.nodeLats[chunk.placeNodes.get(i)], chunk.nodeLons[chunk.placeNodes.get(i)], texts, vertexes);
+			}
+			for(int i = 0; refPositions.size() > 0 && i < chunk.nodeCount; i++){
+				int position = refPositions.get(chunk.nodeIds[i]);
+				if(position != LongIntMap.MISSING){
+					refLat[position] = chunk.nodeLats[i];
+					refLon[position] = chunk.nodeLons[i];
+					refFound[position] = true;
+				}
+			}
+		}
+		for(ParsedChunk chunk : chunks){
+			for(int i = 0; i < chunk.placeWayRefs.size(); i++){
+				int position = refPositions.get(chunk.placeWayRefs.get(i));
+				if(refFound[position]){
+					addPlace(graph, chunk.placeWayTexts.get(i), refLat[position], refLon[position], texts, vertexes);
 				}
+			}
+		}
+		Core.debug("Geocoder: " + texts.size() + " places found for " + compactGraph.getVertexCount() + " vertexes");
+		return new Geocoder(texts, vertexes.toArray());
+	}
+	
+	/**
+	 * Moves a place onto the nearest vertex of the graph and adds it, unless it is too far from every road.
+	 */
+	private void addPlace(Graph graph, String text, double lat, double lon, ArrayList<String> texts, IntList vertexes){
+		Snap snap = graph.findNearest(lat, lon);
+		if(snap != null && snap.getDistance() <= Geocoder.MAXIMUM_DISTANCE){
+			texts.add(text);
+			vertexes.add(snap.getNearestVertex());
+		}
+	}
+	
+	/**
+	 * Splits the file into chunks for reading in parallel, moving the start of each chunk forward to the start of the next node, way or relation.
+	 * @param channel - The channel of the file.
+	 * @param size - The size of the file in bytes.
+	 * @return The position each chunk starts at, followed by the size of the file.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	private long[] findChunkStarts(FileChannel channel, long size) throws IOException{
+		int chunkCount = (int)Math.max(1, Math.min(size / MINIMUM_CHUNK_SIZE, Runtime.getRuntime().availableProcessors() * 4L));
+		chunkCount = (int)Math.max(chunkCount, size / MAXIMUM_CHUNK_SIZE + 1);
+		long[] starts = new long[chunkCount + 1];
+		for(int i = 1; i < chunkCount; i++){
+			long nominalStart = Math.max(size * i / chunkCount, starts[i - 1]);
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, nominalStart, Math.min(size - nominalStart, Integer.MAX_VALUE));
+			int offset = OsmXmlReader.findElementStart(buffer, 0);
+			starts[i] = offset == -1 ? size : nominalStart + offset;
+		}
+		starts[chunkCount] = size;
+		return starts;
+	}
+	
+	/**
+	 * Reads the nodes and ways of one chunk of the file.
+	 * @param channel - The channel of the file.
+	 * @param start - The position of the start of the chunk.
+	 * @param end - The position of the start of the next chunk.
+	 * @param size - The size of the file in bytes.
+	 * @return The vertexes and ways found in the chunk.
+	 */
+	private ParsedChunk parseChunk(FileChannel channel, long start, long end, long size){
+		ParsedChunk chunk = new ParsedChunk();
+		if(start == end){ // Chunks whose start moved past the next chunk's are empty
+			return chunk;
+		}
+		try {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, Integer.MAX_VALUE)); // The last element may run past the end of the chunk
+			chunk.xmlReader = new OsmXmlReader(buffer, end - start, chunk);
+			chunk.length = end - start;
+			chunk.xmlReader.read();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		chunk.finish();
+		return chunk;
+	}
+	
+	/**
+	 * A private class for storing the vertexes and ways found in one chunk or block of the file until every chunk has been read.
+	 * @author Jacob Pennington
+	 *
+	 */
+	private class ParsedChunk implements OsmHandler{
+		long[] nodeIds = new long[1024]; // Nodes are kept as numbers until it is known which ones are used by a way
+		double[] nodeLats = new double[1024];
+		double[] nodeLons = new double[1024];
+		int nodeCount = 0;
+		ArrayList<TempWay> ways = new ArrayList<TempWay>(); // The ways that passed the filter
+		int waysRead = 0;
+		TempWay tempWay; // The way being read
+		IntList placeNodes = new IntList(); // The position in the node arrays of each node with a name or address
+		ArrayList<String> placeNodeTexts = new ArrayList<String>(); // The names and addresses of each of placeNodes
+		LongList placeWayRefs = new LongList(); // The first node of each way with a name or address that did not pass the filter
+		ArrayList<String> placeWayTexts = new ArrayList<String>(); // The names and addresses of each of placeWayRefs
+		HashMap<String,String> strings = new HashMap<String,String>(); // One copy of every tag key and value seen in the chunk, shared by the ways that use it
+		OsmXmlReader xmlReader; // The reader of the chunk if it is XML, asked how far it has got each time the progress is added to
+		long length = 0; // The size of the chunk or block in the file
+		long bytesCounted = 0; // The bytes of the chunk already added to the progress
+		
+		@Override
+		public void node(long id, double lat, double lon){
+			if(nodeCount == nodeIds.length){
+				nodeIds = Arrays.copyOf(nodeIds, nodeCount * 2);
+				nodeLats = Arrays.copyOf(nodeLats, nodeCount * 2);
+				nodeLons = Arrays.copyOf(nodeLons, nodeCount * 2);
+			}
+			nodeIds[nodeCount] = id;
+			nodeLats[nodeCount] = lat;
+			nodeLons[nodeCount] = lon;
+			nodeCount++;
+			if((nodeCount & (PROGRESS_STEP - 1)) == 0){ // Counted in steps so the threads are not all adding to the progress for every node
+				progress.addNodes(PROGRESS_STEP);
+				countBytes();
+			}
+		}
+		@Override
+		public void nodeTag(String key, String value){
+			if(!Geocoder.isPlaceKey(key)){
+				return;
+			}
+			int last = placeNodes.size() - 1;
+			if(last >= 0 && placeNodes.get(last) == nodeCount - 1){ // Another name or address of the same node
+				placeNodeTexts.set(last, placeNodeTexts.get(last) + " " + value);
 			}else{
-				if(line.substring(5,7).equals("nd")){ // If inside a <way> block and on a <nd> line
-					tempWay.nodeList.add(
-							line.substring(
-									13,
-									13 +
-									line.substring(13).indexOf('"')
-									)
-							); // Adds the node reference to the list of nodes stored in the temporary way
-				}else{
-					if(line.substring(5,7).equals("ta")){ // If inside a <way> block and on a <tag> line
-						int keyIndex = line.indexOf("k=\"") + 3; // Find the location in the string of k=" which indicates the start of the tag key
-						String key = line.substring(
-								keyIndex,
-								keyIndex +
-								line.substring(keyIndex).indexOf('"')
-								); // Extracts the tag key from the keyIndex to the next set of double quotes
-						int valueIndex = line.indexOf("v=\"") + 3; // Find the location in the string of v=" which indicates the start of the tag value
-						String value = line.substring(
-								valueIndex,
-								valueIndex +
-								line.substring(valueIndex).indexOf('"')
-								); // Extracts the tag value from the valueIndex to the next set of double quotes
-						tempWay.tagList.put(key, value); // Add the key value pair to the hashmap of tags
-					}else{
-						inWay = false; // If in a <way> block and encounters a line not recognised - assumed to be quitting out of the <way> block - updates boolean flag accordingly
-						for(int i = 0; i < tempWay.nodeList.size() - 1; i++){ // For every node inside the temporary way create a new Arc between each individual pair of nodes
-							String start = tempWay.nodeList.get(i);
-							String end = tempWay.nodeList.get(i + 1);
-							String id = tempWay.id + "-" + i; // Assigns an id to the broken down road 1234 gets broken down to 1234-0, 1234-1 etc
-							Arc tempArc = new Arc(start,end,id,tempWay.tagList); // Creates a new arc using the data extracted
-							arcMap.put(id, tempArc); // Adds the new arc to the hashmap of arcs
-							vertexMap.get(start).arcList.add(id); // Updates the vertexes that are contained in each arc, giving them the ids of all arcs they are included in
-							vertexMap.get(end).arcList.add(id);
-						}
-						// Construct Arcs
-						parseLine(line); 
-						/* Calls itself with the new perspective
-						 *  that it is not in a <way> block,
-						 *  and so makes sure no important
-						 *  information such as a new <way>
-						 *  block or a <node> was missed */
-					}
+				placeNodes.add(nodeCount - 1);
+				placeNodeTexts.add(value);
+			}
+		}
+		@Override
+		public void way(long id){
+			tempWay = new TempWay(id); // Creates a temporary way to add the contents of the way to as they are parsed
+		}
+		@Override
+		public void wayNode(long ref){
+			tempWay.nodeList.add(ref); // Adds the node reference to the list of nodes stored in the temporary way
+		}
+		@Override
+		public void wayTag(String key, String value){
+			tempWay.tagList.put(intern(key), intern(value)); // Add the key value pair to the hashmap of tags
+		}
+		@Override
+		public void wayEnd(){
+			waysRead++;
+			if((waysRead & (PROGRESS_STEP - 1)) == 0){
+				progress.addWays(PROGRESS_STEP);
+				countBytes();
+			}
+			if(wayFilter.isRoutable(tempWay.tagList)){ // Ways that cannot be driven along are dropped straight away
+				ways.add(tempWay);
+			}else if(tempWay.nodeList.size() > 0){
+				String text = Geocoder.getText(tempWay.tagList); // Buildings and other areas with addresses can still be searched for
+				if(text != null){
+					placeWayRefs.add(tempWay.nodeList.get(0));
+					placeWayTexts.add(text);
 				}
 			}
+			tempWay = null;
+		}
+		/**
+		 * Adds the nodes and ways read since the last full step to the progress, once the chunk has been read.
+		 */
+		void finish(){
+			progress.addNodes(nodeCount & (PROGRESS_STEP - 1));
+			progress.addWays(waysRead & (PROGRESS_STEP - 1));
+			progress.addBytes(length - bytesCounted);
+			bytesCounted = length;
+		}
+		/**
+		 * Adds the bytes an XML chunk has read since this was last called to the progress. PBF blocks are only counted once they have been read.
+		 */
+		private void countBytes(){
+			if(xmlReader != null){
+				long read = Math.min(xmlReader.getBytesRead(), length); // The last element can run past the end of the chunk
+				progress.addBytes(read - bytesCounted);
+				bytesCounted = read;
+			}
+		}
+		/**
+		 * Returns the copy of a String kept for the chunk, so the many ways with the same tags do not each hold their own copies until the graph is built.
+		 */
+		private String intern(String string){
+			String existing = strings.putIfAbsent(string, string);
+			return existing == null ? string : existing;
 		}
 	}
 }
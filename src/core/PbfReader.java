@@ -0,0 +1,531 @@
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * The class for reading OSM PBF files and passing the nodes and ways found to an OsmHandler.
+ * <p>
+ * A PBF file is a series of blobs, each holding a zlib compressed block of a few thousand nodes or ways. The blobs are found
+ * by reading the small header in front of each one, then each blob can be decompressed and decoded on its own, so blobs are
+ * shared out between threads by the caller. The protocol buffer messages are decoded by hand as only a few fields of each are needed,
+ * and repeated numbers are expected in packed form as written by every current OSM tool.
+ * https://wiki.openstreetmap.org/wiki/PBF_Format
+ * @author Jacob Pennington
+ *
+ */
+public class PbfReader {
+
+	private static final String HEADER_BLOB = "OSMHeader"; // The type of the blob at the start of every file
+	private static final String DATA_BLOB = "OSMData"; // The type of blobs holding nodes and ways
+	private static final String[] SUPPORTED_FEATURES = {"OsmSchema-V0.6", "DenseNodes"}; // The required features this reader understands
+	private static final int MAXIMUM_HEADER_SIZE = 64 * 1024; // Limits set by the format
+	private static final int MAXIMUM_BLOB_SIZE = 32 * 1024 * 1024;
+	private static final double NANODEGREES = 1e9; // Coordinates are stored in nanodegrees
+
+	private final FileChannel channel; // The channel of the file being read
+	private final long[] blobStarts; // The position in the file of each data blob
+	private final int[] blobSizes; // The size in bytes of each data blob
+
+	/**
+	 * Constructs a reader for the given file, finding every data blob and checking that the file's required features are supported.
+	 * @param channel - The channel of the file to read.
+	 * @throws IOException If the file cannot be read, is not a PBF file, or needs features that are not supported.
+	 */
+	public PbfReader(FileChannel channel) throws IOException{
+		this.channel = channel;
+		ArrayList<long[]> blobs = new ArrayList<long[]>();
+		long size = channel.size();
+		long position = 0;
+		while(position < size){
+			ByteBuffer length = ByteBuffer.allocate(4);
+			readFully(length, position);
+			int headerSize = length.getInt(0);
+			if(headerSize < 0 || headerSize > MAXIMUM_HEADER_SIZE){
+				throw new IOException("Invalid PBF blob header size " + headerSize + " at " + position);
+			}
+			ByteBuffer headerBuffer = ByteBuffer.allocate(headerSize);
+			readFully(headerBuffer, position + 4);
+			ProtobufReader header = new ProtobufReader(headerBuffer.array(), 0, headerSize);
+			String type = null;
+			int dataSize = -1;
+			while(header.hasMore()){
+				int tag = header.readTag();
+				switch(tag >>> 3){
+					case 1: // type
+						type = header.readString();
+						break;
+					case 3: // datasize
+						dataSize = (int)header.readVarint();
+						break;
+					default:
+						header.skip(tag);
+				}
+			}
+			if(type == null || dataSize < 0 || dataSize > MAXIMUM_BLOB_SIZE){
+				throw new IOException("Invalid PBF blob header at " + position);
+			}
+			long blobStart = position + 4 + headerSize;
+			if(type.equals(HEADER_BLOB)){
+				checkFeatures(readBlob(blobStart, dataSize));
+			}else if(type.equals(DATA_BLOB)){
+				blobs.add(new long[]{blobStart, dataSize});
+			} // Any other type of blob is skipped, as the format allows
+			position = blobStart + dataSize;
+		}
+		blobStarts = new long[blobs.size()];
+		blobSizes = new int[blobs.size()];
+		for(int i = 0; i < blobs.size(); i++){
+			blobStarts[i] = blobs.get(i)[0];
+			blobSizes[i] = (int)blobs.get(i)[1];
+		}
+	}
+
+	/**
+	 * Checks whether a file is a PBF file by looking for the header blob at its start.
+	 * @param channel - The channel of the file to check.
+	 * @return True if the file starts like a PBF file.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static boolean isPbf(FileChannel channel) throws IOException{
+		ByteBuffer start = ByteBuffer.allocate(6 + HEADER_BLOB.length());
+		channel.read(start, 0);
+		if(start.position() < start.capacity()){
+			return false;
+		}
+		byte[] bytes = start.array();
+		if(bytes[0] != 0 || bytes[4] != 0x0A || bytes[5] != HEADER_BLOB.length()){ // A big endian length, then field 1 of the header holding "OSMHeader"
+			return false;
+		}
+		return new String(bytes, 6, HEADER_BLOB.length(), StandardCharsets.US_ASCII).equals(HEADER_BLOB);
+	}
+
+	/**
+	 * Returns the number of blobs holding nodes and ways, each of which can be read with readBlock.
+	 * @return The number of data blobs.
+	 */
+	public int getBlockCount(){
+		return blobStarts.length;
+	}
+
+	/**
+	 * Returns the size in bytes of one data blob as stored in the file, before it is decompressed.
+	 * @param block - The position of the blob among the data blobs.
+	 * @return The size of the blob.
+	 */
+	public int getBlockSize(int block){
+		return blobSizes[block];
+	}
+
+	/**
+	 * Decompresses and decodes one data blob, passing its nodes and ways to the handler. Different blocks can be read at the same time.
+	 * @param block - The position of the blob among the data blobs.
+	 * @param handler - The handler to pass the nodes and ways to.
+	 * @throws IOException If the blob cannot be read or decoded.
+	 */
+	public void readBlock(int block, OsmHandler handler) throws IOException{
+		byte[] data = readBlob(blobStarts[block], blobSizes[block]);
+		try {
+			decodePrimitiveBlock(new ProtobufReader(data, 0, data.length), handler);
+		} catch (IllegalStateException | IndexOutOfBoundsException e) { // Thrown by the decoder when a message runs past the end of the block
+			throw new IOException("Corrupt PBF block at " + blobStarts[block], e);
+		}
+	}
+
+	/**
+	 * Reads a blob from the file and decompresses it.
+	 * @param start - The position of the blob in the file.
+	 * @param size - The size of the blob in bytes.
+	 * @return The decompressed contents of the blob.
+	 * @throws IOException If the blob cannot be read or uses an unsupported compression.
+	 */
+	private byte[] readBlob(long start, int size) throws IOException{
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		readFully(buffer, start);
+		ProtobufReader blob = new ProtobufReader(buffer.array(), 0, size);
+		int rawSize = -1;
+		byte[] raw = null;
+		int zlibStart = -1;
+		int zlibEnd = -1;
+		while(blob.hasMore()){
+			int tag = blob.readTag();
+			switch(tag >>> 3){
+				case 1: // raw
+					ProtobufReader rawField = blob.readMessage();
+					raw = new byte[rawField.limit - rawField.position];
+					System.arraycopy(rawField.data, rawField.position, raw, 0, raw.length);
+					break;
+				case 2: // raw_size
+					rawSize = (int)blob.readVarint();
+					break;
+				case 3: // zlib_data
+					ProtobufReader zlibField = blob.readMessage();
+					zlibStart = zlibField.position;
+					zlibEnd = zlibField.limit;
+					break;
+				default: // lzma, bzip2, lz4 and zstd data are not supported
+					blob.skip(tag);
+			}
+		}
+		if(raw != null){
+			return raw;
+		}
+		if(zlibStart == -1 || rawSize < 0 || rawSize > MAXIMUM_BLOB_SIZE){
+			throw new IOException("Unsupported PBF blob compression at " + start);
+		}
+		byte[] data = new byte[rawSize];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(buffer.array(), zlibStart, zlibEnd - zlibStart);
+			int inflated = 0;
+			while(inflated < rawSize && !inflater.finished()){
+				int read = inflater.inflate(data, inflated, rawSize - inflated);
+				if(read == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+					break;
+				}
+				inflated += read;
+			}
+			if(inflated != rawSize){
+				throw new IOException("Truncated PBF blob at " + start);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt PBF blob at " + start, e);
+		} finally {
+			inflater.end();
+		}
+		return data;
+	}
+
+	/**
+	 * Checks that every feature the file's header says is needed to read it is supported.
+	 * @param data - The decompressed header block.
+	 * @throws IOException If a required feature is not supported.
+	 */
+	private static void checkFeatures(byte[] data) throws IOException{
+		ProtobufReader header = new ProtobufReader(data, 0, data.length);
+		while(header.hasMore()){
+			int tag = header.readTag();
+			if(tag >>> 3 == 4){ // required_features
+				String feature = header.readString();
+				boolean supported = false;
+				for(String supportedFeature : SUPPORTED_FEATURES){
+					supported |= supportedFeature.equals(feature);
+				}
+				if(!supported){
+					throw new IOException("Unsupported PBF feature " + feature);
+				}
+			}else{
+				header.skip(tag);
+			}
+		}
+	}
+
+	/**
+	 * Decodes a block of nodes and ways.
+	 * <p>
+	 * The string table and coordinate scale come before and after the groups of nodes and ways respectively, so the block is read once to find them and the groups, then each group is decoded.
+	 * @param block - The block to decode.
+	 * @param handler - The handler to pass the nodes and ways to.
+	 */
+	private static void decodePrimitiveBlock(ProtobufReader block, OsmHandler handler){
+		ArrayList<String> strings = new ArrayList<String>();
+		ArrayList<ProtobufReader> groups = new ArrayList<ProtobufReader>();
+		long granularity = 100;
+		long latOffset = 0;
+		long lonOffset = 0;
+		while(block.hasMore()){
+			int tag = block.readTag();
+			switch(tag >>> 3){
+				case 1: // stringtable
+					ProtobufReader table = block.readMessage();
+					while(table.hasMore()){
+						int stringTag = table.readTag();
+						if(stringTag >>> 3 == 1){
+							strings.add(table.readString());
+						}else{
+							table.skip(stringTag);
+						}
+					}
+					break;
+				case 2: // primitivegroup
+					groups.add(block.readMessage());
+					break;
+				case 17: // granularity
+					granularity = block.readVarint();
+					break;
+				case 19: // lat_offset
+					latOffset = block.readVarint();
+					break;
+				case 20: // lon_offset
+					lonOffset = block.readVarint();
+					break;
+				default:
+					block.skip(tag);
+			}
+		}
+		String[] stringTable = strings.toArray(new String[strings.size()]);
+		for(ProtobufReader group : groups){
+			while(group.hasMore()){
+				int tag = group.readTag();
+				switch(tag >>> 3){
+					case 1: // nodes
+						decodeNode(group.readMessage(), stringTable, granularity, latOffset, lonOffset, handler);
+						break;
+					case 2: // dense
+						decodeDenseNodes(group.readMessage(), stringTable, granularity, latOffset, lonOffset, handler);
+						break;
+					case 3: // ways
+						decodeWay(group.readMessage(), stringTable, handler);
+						break;
+					default: // Relations and changesets are not needed
+						group.skip(tag);
+				}
+			}
+		}
+	}
+
+	private static void decodeNode(ProtobufReader node, String[] stringTable, long granularity, long latOffset, long lonOffset, OsmHandler handler){
+		long id = 0;
+		long lat = 0;
+		long lon = 0;
+		ProtobufReader keys = null;
+		ProtobufReader values = null;
+		while(node.hasMore()){
+			int tag = node.readTag();
+			switch(tag >>> 3){
+				case 1:
+					id = node.readSignedVarint();
+					break;
+				case 2:
+					keys = node.readMessage();
+					break;
+				case 3:
+					values = node.readMessage();
+					break;
+				case 8:
+					lat = node.readSignedVarint();
+					break;
+				case 9:
+					lon = node.readSignedVarint();
+					break;
+				default:
+					node.skip(tag);
+			}
+		}
+		handler.node(id, toDegrees(lat, granularity, latOffset), toDegrees(lon, granularity, lonOffset));
+		while(keys != null && values != null && keys.hasMore() && values.hasMore()){
+			handler.nodeTag(stringTable[(int)keys.readVarint()], stringTable[(int)values.readVarint()]);
+		}
+	}
+
+	/**
+	 * Decodes a group of dense nodes, whose IDs and coordinates are each stored as a packed list of differences from the previous node.
+	 * <p>
+	 * The tags of every node in the group are stored in one packed list of key and value pairs, with a 0 after each node's tags.
+	 */
+	private static void decodeDenseNodes(ProtobufReader dense, String[] stringTable, long granularity, long latOffset, long lonOffset, OsmHandler handler){
+		ProtobufReader ids = null;
+		ProtobufReader lats = null;
+		ProtobufReader lons = null;
+		ProtobufReader keysVals = null;
+		while(dense.hasMore()){
+			int tag = dense.readTag();
+			switch(tag >>> 3){
+				case 1:
+					ids = dense.readMessage();
+					break;
+				case 8:
+					lats = dense.readMessage();
+					break;
+				case 9:
+					lons = dense.readMessage();
+					break;
+				case 10:
+					keysVals = dense.readMessage();
+					break;
+				default: // Metadata is not needed
+					dense.skip(tag);
+			}
+		}
+		if(ids == null || lats == null || lons == null){
+			return;
+		}
+		long id = 0;
+		long lat = 0;
+		long lon = 0;
+		while(ids.hasMore() && lats.hasMore() && lons.hasMore()){
+			id += ids.readSignedVarint();
+			lat += lats.readSignedVarint();
+			lon += lons.readSignedVarint();
+			handler.node(id, toDegrees(lat, granularity, latOffset), toDegrees(lon, granularity, lonOffset));
+			while(keysVals != null && keysVals.hasMore()){
+				int key = (int)keysVals.readVarint();
+				if(key == 0){ // The end of this node's tags
+					break;
+				}
+				handler.nodeTag(stringTable[key], stringTable[(int)keysVals.readVarint()]);
+			}
+		}
+	}
+
+	private static void decodeWay(ProtobufReader way, String[] stringTable, OsmHandler handler){
+		long id = 0;
+		ProtobufReader keys = null;
+		ProtobufReader values = null;
+		ProtobufReader refs = null;
+		while(way.hasMore()){
+			int tag = way.readTag();
+			switch(tag >>> 3){
+				case 1:
+					id = way.readVarint();
+					break;
+				case 2:
+					keys = way.readMessage();
+					break;
+				case 3:
+					values = way.readMessage();
+					break;
+				case 8:
+					refs = way.readMessage();
+					break;
+				default:
+					way.skip(tag);
+			}
+		}
+		handler.way(id);
+		long ref = 0;
+		while(refs != null && refs.hasMore()){ // Each node reference is stored as the difference from the previous one
+			ref += refs.readSignedVarint();
+			handler.wayNode(ref);
+		}
+		while(keys != null && values != null && keys.hasMore() && values.hasMore()){
+			handler.wayTag(stringTable[(int)keys.readVarint()], stringTable[(int)values.readVarint()]);
+		}
+		handler.wayEnd();
+	}
+
+	/**
+	 * Converts a stored coordinate to degrees.
+	 * <p>
+	 * The nanodegree value is a whole number and is divided by a power of ten, so coordinates match those read from the same data in an XML file.
+	 * @param value - The stored coordinate.
+	 * @param granularity - The size in nanodegrees of one unit of the stored coordinate.
+	 * @param offset - The offset in nanodegrees added to every coordinate.
+	 * @return The coordinate in degrees.
+	 */
+	private static double toDegrees(long value, long granularity, long offset){
+		return (offset + granularity * value) / NANODEGREES;
+	}
+
+	/**
+	 * Fills a buffer from the file starting at the given position.
+	 * @param buffer - The buffer to fill.
+	 * @param position - The position in the file to start reading from.
+	 * @throws IOException If the end of the file is reached before the buffer is full.
+	 */
+	private void readFully(ByteBuffer buffer, long position) throws IOException{
+		while(buffer.hasRemaining()){
+			int read = channel.read(buffer, position + buffer.position());
+			if(read < 0){
+				throw new IOException("Unexpected end of PBF file");
+			}
+		}
+	}
+
+	/**
+	 * A private class for reading the fields of a protocol buffer message held in part of a byte array.
+	 * https://protobuf.dev/programming-guides/encoding/
+	 * @author Jacob Pennington
+	 *
+	 */
+	private static class ProtobufReader {
+		final byte[] data; // The array holding the message
+		int position; // The position of the next byte to read
+		final int limit; // The position after the end of the message
+
+		ProtobufReader(byte[] data, int position, int limit){
+			this.data = data;
+			this.position = position;
+			this.limit = limit;
+		}
+
+		boolean hasMore(){
+			return position < limit;
+		}
+
+		/**
+		 * Reads the key of the next field, holding its field number shifted left by 3 and its wire type in the lowest 3 bits.
+		 * @return The key of the field.
+		 */
+		int readTag(){
+			return (int)readVarint();
+		}
+
+		long readVarint(){
+			long value = 0;
+			for(int shift = 0; shift < 64; shift += 7){
+				byte b = data[position++];
+				value |= (long)(b & 0x7F) << shift;
+				if(b >= 0){
+					return value;
+				}
+			}
+			throw new IllegalStateException("Malformed varint in PBF data");
+		}
+
+		/**
+		 * Reads a zigzag encoded varint, used by sint64 fields so that small negative numbers stay short.
+		 * @return The value of the field.
+		 */
+		long readSignedVarint(){
+			long value = readVarint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		/**
+		 * Reads a length delimited field, such as an embedded message or a packed list.
+		 * @return A reader for the contents of the field.
+		 */
+		ProtobufReader readMessage(){
+			int length = (int)readVarint();
+			ProtobufReader message = new ProtobufReader(data, position, position + length);
+			position += length;
+			return message;
+		}
+
+		String readString(){
+			int length = (int)readVarint();
+			String value = new String(data, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return value;
+		}
+
+		/**
+		 * Skips over the value of a field that is not needed.
+		 * @param tag - The key of the field.
+		 */
+		void skip(int tag){
+			switch(tag & 7){
+				case 0: // varint
+					readVarint();
+					break;
+				case 1: // 64 bit
+					position += 8;
+					break;
+				case 2: // length delimited
+					position += (int)readVarint();
+					break;
+				case 5: // 32 bit
+					position += 4;
+					break;
+				default:
+					throw new IllegalStateException("Unsupported wire type " + (tag & 7) + " in PBF data");
+			}
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package core;
+
+/**
+ * The class for storing the result of a route calculation.
+ * <p>
+ * Holds the vertexes of the route in order from the source to the destination along with the
+ * distance and weighted distance from the source at each of them.
+ * @author Jacob Pennington
+ *
+ */
+public class Route {
+
+	private final int[] vertexes; // The indexes of the vertexes on the route, starting with the source
+	private final double[] distances; // The distance from the source at each vertex on the route in km
+	private final double[] weightedDistances; // The weighted distance from the source at each vertex on the route in hours
+	private final int settledVertexes; // The number of vertexes settled by the search that found the route
+	private final double distance; // The length of the whole route in km
+	private final double time; // The weighted distance of the whole route in hours
+	private final Snap source; // Where the route starts on an arc, null if it starts at its first vertex
+	private final Snap destination; // Where the route ends on an arc, null if it ends at its last vertex
+
+	/**
+	 * Constructs a route from the given vertexes and distances.
+	 * @param vertexes - The indexes of the vertexes on the route in order.
+	 * @param distances - The distance from the source at each vertex.
+	 * @param weightedDistances - The weighted distance from the source at each vertex.
+	 * @param settledVertexes - The number of vertexes settled by the search that found the route.
+	 */
+	public Route(int[] vertexes, double[] distances, double[] weightedDistances, int settledVertexes){
+		this(vertexes, distances, weightedDistances, distances[distances.length - 1], weightedDistances[weightedDistances.length - 1], null, null, settledVertexes);
+	}
+
+	/**
+	 * Constructs a route between two points part way along arcs.
+	 * <p>
+	 * The distances at each vertex include the part of the source's arc before the first vertex, and the length of the whole
+	 * route includes the part of the destination's arc after the last vertex. A route along a single arc has no vertexes.
+	 * @param vertexes - The indexes of the vertexes on the route in order.
+	 * @param distances - The distance from the source at each vertex.
+	 * @param weightedDistances - The weighted distance from the source at each vertex.
+	 * @param distance - The length of the whole route.
+	 * @param time - The weighted distance of the whole route.
+	 * @param source - Where the route starts.
+	 * @param destination - Where the route ends.
+	 * @param settledVertexes - The number of vertexes settled by the search that found the route.
+	 */
+	public Route(int[] vertexes, double[] distances, double[] weightedDistances, double distance, double time, Snap source, Snap destination, int settledVertexes){
+		this.vertexes = vertexes;
+		this.distances = distances;
+		this.weightedDistances = weightedDistances;
+		this.distance = distance;
+		this.time = time;
+		this.source = source;
+		this.destination = destination;
+		this.settledVertexes = settledVertexes;
+	}
+
+	/**
+	 * Returns the number of vertexes on the route, including the source and destination.
+	 * @return The number of vertexes on the route.
+	 */
+	public int size(){
+		return vertexes.length;
+	}
+
+	public int getVertex(int position){
+		return vertexes[position];
+	}
+
+	public double getDistanceAt(int position){
+		return distances[position];
+	}
+
+	public double getWeightedDistanceAt(int position){
+		return weightedDistances[position];
+	}
+
+	/**
+	 * Returns the length of the whole route.
+	 * @return The distance in km.
+	 */
+	public double getDistance(){
+		return distance;
+	}
+
+	/**
+	 * Returns how much of the graph was searched to find the route.
+	 * @return The number of vertexes settled by the search.
+	 */
+	public int getSettledVertexes(){
+		return settledVertexes;
+	}
+
+	/**
+	 * Returns the time taken to travel the whole route.
+	 * @return The time in hours.
+	 */
+	public double getTime(){
+		return time;
+	}
+
+	/**
+	 * Returns where the route starts when it was calculated from a point rather than a vertex.
+	 * @return The point on the source's arc, or null if the route starts at its first vertex.
+	 */
+	public Snap getSource(){
+		return source;
+	}
+
+	/**
+	 * Returns where the route ends when it was calculated to a point rather than a vertex.
+	 * @return The point on the destination's arc, or null if the route ends at its last vertex.
+	 */
+	public Snap getDestination(){
+		return destination;
+	}
+}
@@ -0,0 +1,206 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The class for remembering calculated routes, so popular journeys are not calculated and turned into directions every time.
+ * <p>
+ * Routes are stored by their waypoints, whether they are the quickest or shortest, and the version of the graph they
+ * were calculated on. Each graph gets a new version when it is built or loaded, so routes from a map that has been replaced can
+ * never be returned, and the first route calculated on a new map clears every route from the old one. Routes are kept in least
+ * recently used order and the oldest are removed once the estimated memory used by all of them goes over a limit.
+ * <p>
+ * Routes are calculated outside the cache's lock, so lookups of different routes from several threads do not wait for each other.
+ * Routes that cannot be found are not stored.
+ * @author Jacob Pennington
+ *
+ */
+public class RouteCache {
+
+	public static final long DEFAULT_MAXIMUM_BYTES = 1 << 24; // Enough for a few thousand routes across a city
+	private static final int ENTRY_OVERHEAD = 96; // The estimated bytes used by an entry apart from its waypoints and route
+
+	private final LinkedHashMap<Key,CachedRoute> routes = new LinkedHashMap<Key,CachedRoute>(16, 0.75f, true); // In access order, least recently used first
+	private final long maximumBytes; // The estimated memory the routes can use before the oldest are removed
+	private long bytes = 0; // The estimated memory used by the routes
+	private long graphVersion = 0; // The version of the graph the routes were calculated on
+	private long hits = 0; // The number of routes found in the cache
+	private long misses = 0; // The number of routes that had to be calculated
+
+	/**
+	 * The parts of a route request that decide which route is found.
+	 */
+	private static final class Key {
+		private final long graphVersion; // The version of the graph the route is on
+		private final int[] waypoints; // The indexes of the source, any via vertexes and the destination
+		private final boolean weighted; // True for the quickest route, false for the shortest
+
+		private Key(long graphVersion, int[] waypoints, boolean weighted){
+			this.graphVersion = graphVersion;
+			this.waypoints = waypoints;
+			this.weighted = weighted;
+		}
+
+		@Override
+		public boolean equals(Object other){
+			if(!(other instanceof Key)){
+				return false;
+			}
+			Key key = (Key)other;
+			return graphVersion == key.graphVersion && weighted == key.weighted && Arrays.equals(waypoints, key.waypoints);
+		}
+
+		@Override
+		public int hashCode(){
+			int hash = Long.hashCode(graphVersion);
+			hash = hash * 31 + Arrays.hashCode(waypoints);
+			return hash * 2 + (weighted ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Constructs an empty cache.
+	 * @param maximumBytes - The estimated memory the routes can use.
+	 */
+	public RouteCache(long maximumBytes){
+		this.maximumBytes = maximumBytes;
+	}
+
+	/**
+	 * Returns the quickest route from one vertex to another, calculating it with the given algorithm if it is not cached.
+	 * @param graph - The graph to find the route on.
+	 * @param source - The index of the source vertex.
+	 * @param destination - The index of the destination vertex.
+	 * @param mode - The algorithm to use if the route needs to be calculated.
+	 * @return The route, or null if the destination cannot be reached from the source.
+	 */
+	public CachedRoute quickestRoute(Graph graph, int source, int destination, SearchMode mode){
+		return getRoute(graph, new int[]{source, destination}, true, mode);
+	}
+
+	/**
+	 * Returns the quickest route from one vertex to another, calculating it with Dijkstra's algorithm if it is not cached.
+	 * @param graph - The graph to find the route on.
+	 * @param source - The index of the source vertex.
+	 * @param destination - The index of the destination vertex.
+	 * @return The route, or null if the destination cannot be reached from the source.
+	 */
+	public CachedRoute quickestRoute(Graph graph, int source, int destination){
+		return getRoute(graph, new int[]{source, destination}, true, SearchMode.DIJKSTRA);
+	}
+
+	/**
+	 * Returns the quickest route through several waypoints in order, calculating its legs with the given algorithm if it is not cached.
+	 * @param graph - The graph to find the route on.
+	 * @param waypoints - The indexes of the source, any via vertexes and the destination, in order.
+	 * @param mode - The algorithm to use if the route needs to be calculated.
+	 * @return The route, or null if any leg cannot be travelled.
+	 */
+	public CachedRoute quickestRoute(Graph graph, int[] waypoints, SearchMode mode){
+		return getRoute(graph, waypoints.clone(), true, mode);
+	}
+
+	/**
+	 * Returns the shortest route from one vertex to another, calculating it with the given algorithm if it is not cached.
+	 * @param graph - The graph to find the route on.
+	 * @param source - The index of the source vertex.
+	 * @param destination - The index of the destination vertex.
+	 * @param mode - The algorithm to use if the route needs to be calculated.
+	 * @return The route, or null if the destination cannot be reached from the source.
+	 */
+	public CachedRoute shortestRoute(Graph graph, int source, int destination, SearchMode mode){
+		return getRoute(graph, new int[]{source, destination}, false, mode);
+	}
+
+	/**
+	 * Returns the shortest route through several waypoints in order, calculating its legs with the given algorithm if it is not cached.
+	 * @param graph - The graph to find the route on.
+	 * @param waypoints - The indexes of the source, any via vertexes and the destination, in order.
+	 * @param mode - The algorithm to use if the route needs to be calculated.
+	 * @return The route, or null if any leg cannot be travelled.
+	 */
+	public CachedRoute shortestRoute(Graph graph, int[] waypoints, SearchMode mode){
+		return getRoute(graph, waypoints.clone(), false, mode);
+	}
+
+	/**
+	 * Looks a route up in the cache, calculating it and adding it if it is not there.
+	 */
+	private CachedRoute getRoute(Graph graph, int[] waypoints, boolean weighted, SearchMode mode){
+		Key key = new Key(graph.getVersion(), waypoints, weighted);
+		synchronized(this){
+			CachedRoute cached = routes.get(key); // Also moves the route to the most recently used end
+			if(cached != null){
+				hits++;
+				return cached;
+			}
+			misses++;
+		}
+		Route route;
+		if(waypoints.length == 2){
+			route = weighted ? graph.quickestRoute(waypoints[0], waypoints[1], mode) : graph.shortestRoute(waypoints[0], waypoints[1], mode);
+		}else{
+			route = weighted ? graph.quickestRoute(waypoints, mode) : graph.shortestRoute(waypoints, mode);
+		}
+		if(route == null){
+			return null;
+		}
+		CachedRoute cached = new CachedRoute(route, graph.convertGraphToDirections(route));
+		synchronized(this){
+			if(key.graphVersion != graphVersion){ // The first route on a different graph, so every route already cached is out of date
+				if(key.graphVersion < graphVersion){ // Calculated on a graph that was replaced while the route was being found
+					return cached;
+				}
+				Core.debug("Route cache: cleared " + routes.size() + " routes from an older map");
+				routes.clear();
+				bytes = 0;
+				graphVersion = key.graphVersion;
+			}
+			CachedRoute previous = routes.put(key, cached);
+			if(previous != null){ // Another thread calculated the same route at the same time
+				bytes -= getSize(key, previous);
+			}
+			bytes += getSize(key, cached);
+			Iterator<Map.Entry<Key,CachedRoute>> oldest = routes.entrySet().iterator();
+			while(bytes > maximumBytes && oldest.hasNext()){
+				Map.Entry<Key,CachedRoute> next = oldest.next();
+				bytes -= getSize(next.getKey(), next.getValue());
+				oldest.remove();
+			}
+		}
+		return cached;
+	}
+
+	private static long getSize(Key key, CachedRoute route){
+		return ENTRY_OVERHEAD + 4L * key.waypoints.length + route.getSize();
+	}
+
+	/**
+	 * Removes every route from the cache.
+	 */
+	public synchronized void clear(){
+		routes.clear();
+		bytes = 0;
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public synchronized long getHits(){
+		return hits;
+	}
+
+	public synchronized long getMisses(){
+		return misses;
+	}
+
+	public synchronized int getSize(){
+		return routes.size();
+	}
+
+	public synchronized long getBytes(){
+		return bytes;
+	}
+}
@@ -1,5 +1,6 @@
 package core;
 
+import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
@@ -15,6 +16,7 @@ import java.awt.event.KeyListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.print.PrinterException;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.*;
 
@@ -39,12 +41,18 @@ public class RouteFinderGUI extends JFrame implements ActionListener, ItemListen
 	private double distanceOfRoute = 0;		 // Distance of the route
 	private double timeOfRoute = 0;			 // Time of the route
 	private KeyListener textBoxListener;	 // KeyListener to deal with pressing enter
+	private JButton calculateButton;		 // The calculate button, enabled once the map has loaded
+	private JProgressBar progressBar;		 // Shows how much of the map has loaded
+	private JLabel statusLabel;				 // Describes what the parser is doing while the map loads
 
 	/**
-	 * The constructor for creating the GUI and displaying any errors that may occur at startup.
-	 * @param parser - The parser object which contains map data.
+	 * The constructor for creating the GUI.
+	 * <p>
+	 * The parser does not need to have loaded the map yet. Route calculations stay disabled until loadMap has finished
+	 * loading it, so the window can be shown straight away.
+	 * @param parser - The parser object which contains or will contain map data.
 	 */
-	public RouteFinderGUI(Parser parser){ // GUI requires the parser being created before being constructed itself - byproduct of single threading means parser needs to parse map before showing UI
+	public RouteFinderGUI(Parser parser){
 		this.parser = parser;
 		this.dataHandler = new DataHandler(parser); // Datahandler deals with manipulating inputs to return values that can be used in the core program
 		this.setTitle("Route Finder");
@@ -68,10 +76,72 @@ public class RouteFinderGUI extends JFrame implements ActionListener, ItemListen
 		initComponents(); // Creates UI components
 		this.pack(); // Compresses the window down to make sure there's no extra blank space to the bottom or side of the window
 		this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		if(!parser.filePresent){ // Checks if the file is present
-			showWarning("There is no map file at " + parser.path + " \nTherefore the program will not function.", "File Not Present");
-			System.exit(ERROR);
+	}
+	
+	/**
+	 * Loads the map on a background thread, showing the progress and enabling route calculations once the map is ready.
+	 * <p>
+	 * The progress is read from the parser by a timer on the GUI thread, so the threads reading the file never wait for the GUI.
+	 * Errors at startup are shown once loading has finished.
+	 */
+	public void loadMap(){
+		final double startTime = System.nanoTime();
+		Timer progressTimer = new Timer(100, new ActionListener() { // Updates the progress ten times a second
+			public void actionPerformed(ActionEvent event){
+				showProgress();
+			}
+		});
+		progressTimer.start();
+		new SwingWorker<Void, Void>() {
+			@Override
+			protected Void doInBackground(){
+				parser.load();
+				return null;
+			}
+			
+			@Override
+			protected void done(){ // Runs on the GUI thread once the map has loaded or failed to load
+				progressTimer.stop();
+				try {
+					get(); // Throws anything load threw, which would otherwise be lost
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					e.getCause().printStackTrace();
+					parser.progress.setStage(LoadProgress.Stage.FAILED);
+					showProgress();
+					showWarning("The map could not be loaded: " + e.getCause() + " \nTherefore the program will not function.", "Map Not Loaded");
+					return;
+				}
+				showProgress();
+				if(!parser.filePresent){ // Checks if the file is present
+					showWarning("There is no map file at " + parser.path + " \nTherefore the program will not function.", "File Not Present");
+					System.exit(ERROR);
+				}
+				if(parser.map == null){
+					showWarning("The map file at " + parser.xmlFile + " could not be read. \nTherefore the program will not function.", "Map Not Loaded");
+					return;
+				}
+				final double duration = (System.nanoTime() - startTime) / 1000000000;
+				System.out.println("Load Time: " + duration + " seconds");
+				progressBar.setVisible(false);
+				statusLabel.setText("Map loaded: " + parser.map.getCompactGraph().getVertexCount() + " vertexes");
+				calculateButton.setEnabled(true);
+			}
+		}.execute();
+	}
+	
+	/**
+	 * Shows the parser's progress below the tabs.
+	 */
+	private void showProgress(){
+		LoadProgress progress = parser.progress;
+		double fraction = progress.getFraction();
+		progressBar.setIndeterminate(fraction < 0); // Steps that cannot be measured just show that something is happening
+		if(fraction >= 0){
+			progressBar.setValue((int)(fraction * 100));
 		}
+		statusLabel.setText(progress.toString());
 	}
 	
 	/**
@@ -82,6 +152,7 @@ public class RouteFinderGUI extends JFrame implements ActionListener, ItemListen
 		tabPane.addTab("Input", makeInputPanel());
 		tabPane.addTab("Text Display", makeDirectionPanel());
 		this.add(tabPane); // Adds the tabbed pane to the JFrame
+		this.add(makeStatusPanel(), BorderLayout.SOUTH);
 		this.addWindowListener(new WindowAdapter() {
 			public void windowOpened(WindowEvent e){
 				originInputField.requestFocusInWindow(); // Ensures that when the window is loaded the first text entry field has the focus
@@ -117,7 +188,8 @@ public class RouteFinderGUI extends JFrame implements ActionListener, ItemListen
         });
         viaInputField = new JTextField(20);
         viaInputField.addKeyListener(textBoxListener);
-        JButton calculateButton = new JButton("Calculate Route");
+        calculateButton = new JButton("Calculate Route");
+        calculateButton.setEnabled(false); // Enabled once the map has loaded
         calculateButton.addActionListener(new ActionListener() { // Creates the method for what to do when the "calculate" button is pressed
         	public void actionPerformed(ActionEvent event){
         		callRouteCalculations();
@@ -164,6 +236,21 @@ public class RouteFinderGUI extends JFrame implements ActionListener, ItemListen
 		return panel;
 	}
 	
+	/**
+	 * Creates the status bar at the bottom of the window, showing the progress while the map loads.
+	 * @return The status bar in JComponent form.
+	 */
+	private JComponent makeStatusPanel(){
+		JPanel panel = new JPanel(new BorderLayout(5, 0));
+		panel.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+		statusLabel = new JLabel(LoadProgress.Stage.STARTING.getDescription());
+		progressBar = new JProgressBar(0, 100);
+		progressBar.setIndeterminate(true);
+		panel.add(statusLabel, BorderLayout.CENTER);
+		panel.add(progressBar, BorderLayout.EAST);
+		return panel;
+	}
+	
 	/**
 //	 * Creates the Output tab and its components.
 	 * @return The output tab in JComponent form.
@@ -242,7 +329,9 @@ public class RouteFinderGUI extends JFrame implements ActionListener, ItemListen
 	private void callRouteCalculations(){
 		outputBox.setText(""); // Clears the output box
 		Core.debug("Calculate Route");
-		if(originInputField.getText().equals("") || destinationInputField.getText().equals("")){ // Checks if text present in both fields
+		if(parser.map == null){ // Enter can still be pressed while the map is loading
+			showWarning("The map is still loading, please wait.", "Map Loading");
+		}else if(originInputField.getText().equals("") || destinationInputField.getText().equals("")){ // Checks if text present in both fields
 			showWarning("Please complete all fields.", "Incomplete Fields");
 		}else{
 			String originResponse = dataHandler.convertInputToNodeId(originInputField.getText()); // Sends the origin text to the data handler for processing
@@ -265,6 +354,8 @@ public class RouteFinderGUI extends JFrame implements ActionListener, ItemListen
 				return;
 			}
 			
+			IntList waypoints = new IntList(); // The origin, the via point if there is one, and the destination
+			waypoints.add(dataHandler.convertNodeIdToVertex(originResponse));
 			if(travelVia){
 				String viaResponse = dataHandler.convertInputToNodeId(viaInputField.getText()); // Sends the destination text to the data handler
 				if(viaResponse == "!internet"){
@@ -275,26 +366,19 @@ public class RouteFinderGUI extends JFrame implements ActionListener, ItemListen
 					showWarning("Travel Via destination not present on current map. Please refine your search", "Node Not Present");
 					return;
 				}
-				Core.debug(originResponse + " to " + viaResponse);
-				parser.map.quickestRoute(originResponse, viaResponse); // Calls the first route calculation
-				tabPane.setSelectedIndex(1); // Moves the ui to the output tab
-				outputBox.append(parser.map.convertGraphToDirections()); // Gets the directions of the first calculation and adds it to the UI
-				outputBox.append("\n"); // Adds a new line before the next directions
-				distanceOfRoute = parser.map.calculatedRouteDistance; // Sets the distance to the first route's distance
-				timeOfRoute = parser.map.calculatedRouteTime; // Sets the time to the first route's time
-				Core.debug(viaResponse + " to " + destinationResponse);
-				parser.map.quickestRoute(viaResponse, destinationResponse); // Calls the second route calculation
-				outputBox.append(parser.map.convertGraphToDirections()); // Adds the second set of directions to the UI
-				distanceOfRoute += parser.map.calculatedRouteDistance; // Adds the distance of the second route to the first route
-				timeOfRoute += parser.map.calculatedRouteTime; // Adds the time of the second route to the first route
-
-			}else{
-				parser.map.quickestRoute(originResponse, destinationResponse); // Calls the shortest route algorithm
-				tabPane.setSelectedIndex(1); // Changes the tab to the output tab
-				outputBox.append(parser.map.convertGraphToDirections()); // Adds the directions to the output tab
-				distanceOfRoute = parser.map.calculatedRouteDistance;
-				timeOfRoute = parser.map.calculatedRouteTime;
+				Core.debug(originResponse + " to " + viaResponse + " to " + destinationResponse);
+				waypoints.add(dataHandler.convertNodeIdToVertex(viaResponse));
+			}
+			waypoints.add(dataHandler.convertNodeIdToVertex(destinationResponse));
+			CachedRoute route = dataHandler.getRouteCache().quickestRoute(parser.map, waypoints.toArray(), SearchMode.DIJKSTRA); // Calculates every leg of the route at once
+			if(route == null){
+				showWarning("No route could be found between the given locations.", "No Route Found");
+				return;
 			}
+			tabPane.setSelectedIndex(1); // Changes the tab to the output tab
+			outputBox.append(route.getDirections()); // Adds the directions to the output tab
+			distanceOfRoute = route.getDistance();
+			timeOfRoute = route.getTime();
 			distanceLabel.setText("Distance: " + Utilities.round(distanceOfRoute,2) + " km");
 			if(timeOfRoute < 1){ // If the time of the route is less than 1 hour
 				if(timeOfRoute < (0.017)){ // If the time of the route is less than 1 minute
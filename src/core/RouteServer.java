@@ -0,0 +1,468 @@
+package core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The class for serving routes, travel time matrices and nearest vertexes over HTTP, so other programs can use the router.
+ * <p>
+ * Every request is read and answered on its own thread, a virtual thread when the JDK has them and a pooled thread when it
+ * does not. The searches themselves are handed to a fixed pool of worker threads, one per core, which share the read only
+ * graph and keep their own search workspaces, so a workspace is reused by every search on its worker rather than created
+ * for each request. Searches wait in a queue of limited size, and once it is full further requests are turned away at once
+ * with 503 Service Unavailable rather than being left to wait longer and longer.
+ * <p>
+ * Endpoints, all using GET, with places given as a node ID or as "lat,lon":
+ * <ul>
+ * <li>/route?from=...&amp;to=...&amp;via=...&amp;mode=...&amp;shortest=true&amp;directions=true&amp;optimize=true - the route between two places, through any via places
+ * in order, or in the quickest order found when optimize is true</li>
+ * <li>/matrix?sources=...;...&amp;targets=...;... - the travel times and distances from every source to every target</li>
+ * <li>/nearest?lat=...&amp;lon=... - the vertex nearest to a point</li>
+ * </ul>
+ * The contraction hierarchy and landmarks are built when first needed, or before the server starts with --prepare, and only
+ * requests that need them wait while they are built. Answers are JSON. When stopped, the server stops accepting connections and waits for the requests it has already accepted to finish.
+ * @author Jacob Pennington
+ *
+ */
+public class RouteServer {
+
+	public static final int DEFAULT_PORT = 8080;
+	public static final int DEFAULT_QUEUE_SIZE = 256; // The number of searches that can wait for a worker before requests are turned away
+	public static final int MAXIMUM_MATRIX_CELLS = 1000000; // Larger matrices are refused, as their answers would be too large to send
+	public static final String USAGE = "Usage: --serve [--port=" + DEFAULT_PORT + "] [--workers=cores] [--queue=" + DEFAULT_QUEUE_SIZE + "] [--prepare]";
+
+	private final Graph graph; // The map to route on
+	private final HttpServer server; // Accepts connections and reads requests
+	private final ExecutorService requestThreads; // Runs each request
+	private final ThreadPoolExecutor workers; // Runs the searches, with a bounded queue
+	private final RouteCache routeCache = new RouteCache(RouteCache.DEFAULT_MAXIMUM_BYTES); // Routes between popular places are only calculated once
+	private volatile boolean stopping = false; // Set once the server starts to stop, after which new requests are turned away
+
+	/**
+	 * An error to send back to the client instead of an answer.
+	 */
+	private static class RequestException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		private final int status; // The HTTP status code
+
+		private RequestException(int status, String message){
+			super(message);
+			this.status = status;
+		}
+	}
+
+	/**
+	 * Constructs a server, which does not accept connections until started.
+	 * @param graph - The map to route on.
+	 * @param port - The port to listen on.
+	 * @param workerCount - The number of searches run at once.
+	 * @param queueSize - The number of searches that can wait for a worker.
+	 * @throws IOException If the port cannot be listened on.
+	 */
+	public RouteServer(Graph graph, int port, int workerCount, int queueSize) throws IOException{
+		this.graph = graph;
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		this.requestThreads = createRequestThreads();
+		this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize)); // Throws RejectedExecutionException when the queue is full
+		server.setExecutor(requestThreads);
+		server.createContext("/route", exchange -> handle(exchange, this::route));
+		server.createContext("/matrix", exchange -> handle(exchange, this::matrix));
+		server.createContext("/nearest", exchange -> handle(exchange, this::nearest));
+	}
+
+	/**
+	 * Creates a virtual thread per request if the JDK has virtual threads, or a pool of threads if it does not.
+	 * @return The executor for requests.
+	 */
+	private static ExecutorService createRequestThreads(){
+		try {
+			ExecutorService executor = (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null); // Looked up by name as the program is built for older JDKs too
+			Core.debug("Route server: using virtual threads");
+			return executor;
+		} catch (ReflectiveOperationException e) {
+			Core.debug("Route server: virtual threads are not available, using a thread pool");
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Runs the server from the command line arguments until the program is stopped.
+	 * @param args - The arguments after --serve.
+	 * @return The exit status if the server could not be started.
+	 */
+	public static int run(String[] args){
+		int port = DEFAULT_PORT;
+		int workerCount = Runtime.getRuntime().availableProcessors();
+		int queueSize = DEFAULT_QUEUE_SIZE;
+		boolean prepare = false;
+		try {
+			for(String arg : args){
+				if(arg.startsWith("--port=")){
+					port = Integer.parseInt(arg.substring(7));
+				}else if(arg.startsWith("--workers=")){
+					workerCount = Integer.parseInt(arg.substring(10));
+				}else if(arg.startsWith("--queue=")){
+					queueSize = Integer.parseInt(arg.substring(8));
+				}else if(arg.equals("--prepare")){
+					prepare = true;
+				}else{
+					System.err.println(USAGE);
+					return 2;
+				}
+			}
+		} catch (NumberFormatException e) {
+			System.err.println(USAGE);
+			return 2;
+		}
+		Parser parser = new Parser(WayFilter.DEFAULT, true, System.err);
+		if(parser.map == null){
+			System.err.println("No map could be loaded from " + parser.path + " or " + parser.pbfPath);
+			return 1;
+		}
+		parser.map.getSpatialIndex(); // Built before the first request, as nearly every kind of request snaps points to arcs
+		if(prepare){ // Otherwise the first request that needs them waits for them, but requests that do not are still answered
+			final double startTime = System.nanoTime();
+			parser.map.getContractionHierarchy();
+			parser.map.getLandmarks();
+			System.err.println("Prepared in " + (System.nanoTime() - startTime)/1000000000 + " seconds");
+		}
+		try {
+			RouteServer routeServer = new RouteServer(parser.map, port, workerCount, queueSize);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> routeServer.stop(10))); // Lets requests already accepted finish when the program is stopped
+			routeServer.start();
+			System.err.println("Serving on port " + port + " with " + workerCount + " workers");
+		} catch (IOException e) {
+			e.printStackTrace();
+			return 1;
+		}
+		return 0;
+	}
+
+	public void start(){
+		server.start();
+	}
+
+	/**
+	 * Stops accepting connections, then waits for the requests already accepted to finish.
+	 * @param delay - The most time in seconds to wait.
+	 */
+	public void stop(int delay){
+		stopping = true;
+		server.stop(delay); // Returns once every request being answered has finished, or after the delay
+		workers.shutdown();
+		requestThreads.shutdown();
+		try {
+			workers.awaitTermination(delay, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Answers a request by running the endpoint on a worker and sending back what it returns.
+	 * @param exchange - The request.
+	 * @param endpoint - Turns the request's query parameters into the JSON answer.
+	 */
+	private void handle(HttpExchange exchange, Function<Map<String,List<String>>,String> endpoint){
+		try {
+			int status = 200;
+			String body;
+			try {
+				if(!exchange.getRequestMethod().equals("GET")){
+					throw new RequestException(405, "Only GET is supported");
+				}
+				if(stopping){
+					throw new RequestException(503, "The server is stopping");
+				}
+				Map<String,List<String>> query = parseQuery(exchange.getRequestURI().getRawQuery());
+				Future<String> answer;
+				try {
+					answer = workers.submit(() -> endpoint.apply(query));
+				} catch (RejectedExecutionException e) {
+					throw new RequestException(503, "Too many requests are waiting");
+				}
+				try {
+					body = answer.get();
+				} catch (ExecutionException e) {
+					if(e.getCause() instanceof RequestException){
+						throw (RequestException)e.getCause();
+					}
+					if(e.getCause() instanceof IllegalArgumentException){ // Such as an algorithm that does not support the type of route asked for
+						throw new RequestException(400, e.getCause().getMessage());
+					}
+					e.printStackTrace();
+					throw new RequestException(500, "The request could not be answered");
+				}
+			} catch (RequestException e) {
+				status = e.status;
+				body = "{\"error\":" + toJSON(e.getMessage()) + "}";
+				if(status == 503){
+					exchange.getResponseHeaders().set("Retry-After", "1");
+				}
+			}
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(status, bytes.length);
+			try(OutputStream out = exchange.getResponseBody()){
+				out.write(bytes);
+			}
+		} catch (IOException e) {
+			Core.debug("Route server: " + e.getMessage()); // The client went away before the answer was sent
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Answers /route with the distance, time, node IDs and optionally directions of a route.
+	 * <p>
+	 * With optimize=true the via places are visited in the quickest order found by Graph.orderStops, still starting at from and
+	 * ending at to, and the order is given as the node IDs of the stops.
+	 */
+	private String route(Map<String,List<String>> query){
+		IntList waypoints = new IntList();
+		waypoints.add(findPlace(getParameter(query, "from")));
+		List<String> vias = query.get("via");
+		if(vias != null){
+			for(String via : vias){
+				waypoints.add(findPlace(via));
+			}
+		}
+		waypoints.add(findPlace(getParameter(query, "to")));
+		SearchMode mode = SearchMode.DIJKSTRA;
+		if(query.containsKey("mode")){
+			try {
+				mode = SearchMode.valueOf(query.get("mode").get(0).toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new RequestException(400, "Unknown mode");
+			}
+		}
+		boolean shortest = query.containsKey("shortest") && query.get("shortest").get(0).equals("true");
+		boolean optimize = query.containsKey("optimize") && query.get("optimize").get(0).equals("true");
+		int[] stops = waypoints.toArray();
+		if(optimize){
+			if(shortest){
+				throw new RequestException(400, "Stops can only be ordered for quickest routes");
+			}
+			stops = graph.orderStops(stops, true);
+		}
+		CachedRoute route = shortest ? routeCache.shortestRoute(graph, stops, mode) : routeCache.quickestRoute(graph, stops, mode);
+		if(route == null){
+			throw new RequestException(404, "No route could be found between the given places");
+		}
+		StringBuilder json = new StringBuilder();
+		json.append("{\"distance\":").append(route.getDistance()).append(",\"time\":").append(route.getTime());
+		if(optimize){
+			json.append(",\"stops\":[");
+			for(int i = 0; i < stops.length; i++){
+				json.append(i == 0 ? "" : ",").append(graph.getNodeId(stops[i]));
+			}
+			json.append(']');
+		}
+		json.append(",\"path\":[");
+		for(int i = 0; i < route.size(); i++){
+			json.append(i == 0 ? "" : ",").append(graph.getNodeId(route.getVertex(i)));
+		}
+		json.append(']');
+		if(query.containsKey("directions") && query.get("directions").get(0).equals("true")){
+			json.append(",\"directions\":").append(toJSON(route.getDirections()));
+		}
+		return json.append('}').toString();
+	}
+
+	/**
+	 * Answers /matrix with the times and distances from every source to every target, null where there is no route.
+	 */
+	private String matrix(Map<String,List<String>> query){
+		int[] sources = findPlaces(getParameter(query, "sources"));
+		int[] targets = findPlaces(getParameter(query, "targets"));
+		if((long)sources.length * targets.length > MAXIMUM_MATRIX_CELLS){
+			throw new RequestException(400, "The matrix can have at most " + MAXIMUM_MATRIX_CELLS + " cells");
+		}
+		TravelMatrix matrix = graph.calculateTravelTimes(sources, targets);
+		StringBuilder json = new StringBuilder("{\"times\":");
+		appendTable(json, matrix.getTimes());
+		json.append(",\"distances\":");
+		appendTable(json, matrix.getDistances());
+		return json.append('}').toString();
+	}
+
+	private static void appendTable(StringBuilder json, double[][] table){
+		json.append('[');
+		for(int row = 0; row < table.length; row++){
+			json.append(row == 0 ? "[" : ",[");
+			for(int column = 0; column < table[row].length; column++){
+				if(column > 0){
+					json.append(',');
+				}
+				if(table[row][column] == Double.POSITIVE_INFINITY){
+					json.append("null");
+				}else{
+					json.append(table[row][column]);
+				}
+			}
+			json.append(']');
+		}
+		json.append(']');
+	}
+
+	/**
+	 * Answers /nearest with the vertex nearest to a point and how far away it is.
+	 */
+	private String nearest(Map<String,List<String>> query){
+		double lat;
+		double lon;
+		try {
+			lat = Double.parseDouble(getParameter(query, "lat"));
+			lon = Double.parseDouble(getParameter(query, "lon"));
+		} catch (NumberFormatException e) {
+			throw new RequestException(400, "lat and lon must be numbers");
+		}
+		if(!Graph.isValidLocation(lat, lon)){
+			throw new RequestException(400, "lat must be from -90 to 90 and lon from -180 to 180");
+		}
+		Snap snap = graph.findNearest(lat, lon);
+		if(snap == null){
+			throw new RequestException(404, "The map has no roads");
+		}
+		int vertex = snap.getNearestVertex();
+		CompactGraph compactGraph = graph.getCompactGraph();
+		double distance = Graph.calculateGreatCircleDistance(lat, lon, compactGraph.lat[vertex], compactGraph.lon[vertex]); // To the vertex, not to the point on the arc
+		return "{\"node\":" + graph.getNodeId(vertex) + ",\"lat\":" + compactGraph.lat[vertex] + ",\"lon\":" + compactGraph.lon[vertex] + ",\"distance\":" + distance + "}";
+	}
+
+	/**
+	 * Finds the vertex of a place given as a node ID or as "lat,lon".
+	 * @param place - The place.
+	 * @return The index of the vertex.
+	 * @throws RequestException If the place is not on the map.
+	 */
+	private int findPlace(String place){
+		String[] coordinates = place.split(",");
+		try {
+			if(coordinates.length == 2){
+				double lat = Double.parseDouble(coordinates[0].trim());
+				double lon = Double.parseDouble(coordinates[1].trim());
+				if(!Graph.isValidLocation(lat, lon)){
+					throw new RequestException(400, place + " is not a valid latitude and longitude");
+				}
+				Snap snap = graph.findNearest(lat, lon);
+				if(snap == null || snap.getDistance() > DataHandler.MAXIMUM_SNAP_DISTANCE){
+					throw new RequestException(404, place + " is not near a road on the map");
+				}
+				return snap.getNearestVertex();
+			}
+			int vertex = graph.findVertex(Long.parseLong(place.trim()));
+			if(vertex == -1){
+				throw new RequestException(404, place + " is not on the map");
+			}
+			return vertex;
+		} catch (NumberFormatException e) {
+			throw new RequestException(400, place + " is not a node ID or a latitude and longitude");
+		}
+	}
+
+	/**
+	 * Finds the vertexes of a list of places separated by semicolons.
+	 */
+	private int[] findPlaces(String places){
+		String[] parts = places.split(";");
+		int[] vertexes = new int[parts.length];
+		for(int i = 0; i < parts.length; i++){
+			vertexes[i] = findPlace(parts[i]);
+		}
+		return vertexes;
+	}
+
+	private static String getParameter(Map<String,List<String>> query, String name){
+		List<String> values = query.get(name);
+		if(values == null || values.get(0).isEmpty()){
+			throw new RequestException(400, "Missing parameter " + name);
+		}
+		return values.get(0);
+	}
+
+	/**
+	 * Splits the query part of a URL into its parameters.
+	 * @param rawQuery - The query, still URL encoded, or null if there is none.
+	 * @return The values of each parameter, in the order they were given.
+	 */
+	private static Map<String,List<String>> parseQuery(String rawQuery){
+		Map<String,List<String>> query = new HashMap<String,List<String>>();
+		if(rawQuery == null){
+			return query;
+		}
+		try {
+			for(String pair : rawQuery.split("&")){
+				int equals = pair.indexOf('=');
+				String name = URLDecoder.decode(equals == -1 ? pair : pair.substring(0, equals), "UTF-8");
+				String value = equals == -1 ? "" : URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+				List<String> values = query.get(name);
+				if(values == null){
+					values = new ArrayList<String>();
+					query.put(name, values);
+				}
+				values.add(value);
+			}
+		} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			throw new RequestException(400, "The query could not be decoded");
+		}
+		return query;
+	}
+
+	/**
+	 * Converts a String into a JSON string, with quotes around it and special characters escaped.
+	 */
+	private static String toJSON(String text){
+		StringBuilder json = new StringBuilder(text.length() + 2).append('"');
+		for(int i = 0; i < text.length(); i++){
+			char c = text.charAt(i);
+			if(c == '"' || c == '\\'){
+				json.append('\\').append(c);
+			}else if(c == '\n'){
+				json.append("\\n");
+			}else if(c < 0x20){
+				json.append(String.format("\\u%04x", (int)c));
+			}else{
+				json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public RouteCache getRouteCache(){
+		return routeCache;
+	}
+
+	/**
+	 * Returns the number of searches waiting for a worker.
+	 * @return The length of the queue.
+	 */
+	public int getQueueLength(){
+		return workers.getQueue().size();
+	}
+}
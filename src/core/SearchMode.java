@@ -0,0 +1,35 @@
+package core;
+
+/**
+ * The algorithms that can be used to calculate a route.
+ * @author Jacob Pennington
+ *
+ */
+public enum SearchMode {
+	/**
+	 * Dijkstra's algorithm, which explores outwards from the source equally in every direction.
+	 * https://en.wikipedia.org/wiki/Dijkstra's_algorithm
+	 */
+	DIJKSTRA,
+	/**
+	 * The A* algorithm, which favours vertexes closer to the destination as the crow flies.
+	 * https://en.wikipedia.org/wiki/A*_search_algorithm
+	 */
+	A_STAR,
+	/**
+	 * Dijkstra's algorithm run from the source and the destination at the same time until the two searches meet.
+	 * https://en.wikipedia.org/wiki/Bidirectional_search
+	 */
+	BIDIRECTIONAL,
+	/**
+	 * A bidirectional search through a contraction hierarchy, which is built the first time it is used.
+	 * Only supports quickest routes.
+	 * https://en.wikipedia.org/wiki/Contraction_hierarchies
+	 */
+	CONTRACTION_HIERARCHY,
+	/**
+	 * The A* algorithm using distances to and from a set of landmarks, which are calculated the first time it is used.
+	 * Only supports quickest routes.
+	 */
+	LANDMARKS
+}
@@ -0,0 +1,150 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * The class for storing the working state of a single route calculation.
+ * <p>
+ * Distances, previous vertexes and whether a vertex is settled are held here rather than on the
+ * vertexes themselves so that the graph is never modified by a search and several searches can run
+ * at once. Each thread keeps one workspace which is reused for every search it runs.
+ * <p>
+ * Instead of clearing the arrays between searches every entry is stamped with the generation of the
+ * search that wrote it. Starting a new search only increases the generation, which makes every
+ * older entry read as unvisited.
+ * @author Jacob Pennington
+ *
+ */
+public class SearchWorkspace {
+
+	public static final int FORWARD = 0; // The workspace used by searches from the source, and by all one directional searches
+	public static final int BACKWARD = 1; // The workspace used by the search from the destination in bidirectional searches
+
+	private static final ThreadLocal<SearchWorkspace[]> workspaces = new ThreadLocal<SearchWorkspace[]>(){ // The workspaces belonging to each thread
+		@Override
+		protected SearchWorkspace[] initialValue(){
+			return new SearchWorkspace[2];
+		}
+	};
+
+	private final int vertexCount; // The number of vertexes on the graph the workspace was made for
+	private final double[] distances; // The distance from the source of each vertex
+	private final double[] weightedDistances; // The weighted distance from the source of each vertex
+	private final int[] previousVertexes; // The index of the previous vertex in the route to each vertex, -1 for the source
+	private final int[] visitedGeneration; // The generation of the search that last gave each vertex a distance
+	private final int[] settledGeneration; // The generation of the search that last settled each vertex
+	private final VertexQueue queue; // The unsettled vertexes of the current search
+	private int generation = 0; // The generation of the current search
+
+	/**
+	 * Constructs a workspace for a graph with the given number of vertexes.
+	 * @param vertexCount - The number of vertexes on the graph.
+	 */
+	public SearchWorkspace(int vertexCount){
+		this.vertexCount = vertexCount;
+		this.distances = new double[vertexCount];
+		this.weightedDistances = new double[vertexCount];
+		this.previousVertexes = new int[vertexCount];
+		this.visitedGeneration = new int[vertexCount];
+		this.settledGeneration = new int[vertexCount];
+		this.queue = new VertexQueue(vertexCount);
+	}
+
+	/**
+	 * Returns the forward workspace of the current thread, ready for a new search.
+	 * @param vertexCount - The number of vertexes on the graph to be searched.
+	 * @return A reset workspace for the current thread.
+	 */
+	public static SearchWorkspace forThread(int vertexCount){
+		return forThread(vertexCount, FORWARD);
+	}
+
+	/**
+	 * Returns one of the workspaces of the current thread, ready for a new search.
+	 * <p>
+	 * A new workspace is only created the first time a thread searches, or when the graph has a different number of vertexes to the last one searched.
+	 * @param vertexCount - The number of vertexes on the graph to be searched.
+	 * @param direction - Either FORWARD or BACKWARD.
+	 * @return A reset workspace for the current thread.
+	 */
+	public static SearchWorkspace forThread(int vertexCount, int direction){
+		SearchWorkspace[] threadWorkspaces = workspaces.get();
+		SearchWorkspace workspace = threadWorkspaces[direction];
+		if(workspace == null || workspace.vertexCount != vertexCount){
+			workspace = new SearchWorkspace(vertexCount);
+			threadWorkspaces[direction] = workspace;
+		}
+		workspace.reset();
+		return workspace;
+	}
+
+	/**
+	 * Forgets the previous search by moving on to the next generation.
+	 */
+	public void reset(){
+		generation++;
+		if(generation == Integer.MAX_VALUE){ // Once the stamps run out the arrays are cleared for real and the generations start again
+			Arrays.fill(visitedGeneration, 0);
+			Arrays.fill(settledGeneration, 0);
+			generation = 1;
+		}
+		queue.clear();
+	}
+
+	/**
+	 * Gives a vertex new distances from the source and a new previous vertex.
+	 * @param vertex - The index of the vertex.
+	 * @param distance - The distance from the source.
+	 * @param weightedDistance - The weighted distance from the source.
+	 * @param previousVertex - The index of the previous vertex in the route, -1 for the source.
+	 */
+	public void visit(int vertex, double distance, double weightedDistance, int previousVertex){
+		distances[vertex] = distance;
+		weightedDistances[vertex] = weightedDistance;
+		previousVertexes[vertex] = previousVertex;
+		visitedGeneration[vertex] = generation;
+	}
+
+	public void settle(int vertex){
+		settledGeneration[vertex] = generation;
+	}
+
+	public boolean isSettled(int vertex){
+		return settledGeneration[vertex] == generation;
+	}
+
+	public boolean isVisited(int vertex){
+		return visitedGeneration[vertex] == generation;
+	}
+
+	/**
+	 * Returns the distance from the source of a vertex.
+	 * @param vertex - The index of the vertex.
+	 * @return The distance from the source, or Double.MAX_VALUE if the vertex has not been reached.
+	 */
+	public double getDistance(int vertex){
+		return isVisited(vertex) ? distances[vertex] : Double.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the weighted distance from the source of a vertex.
+	 * @param vertex - The index of the vertex.
+	 * @return The weighted distance from the source, or Double.MAX_VALUE if the vertex has not been reached.
+	 */
+	public double getWeightedDistance(int vertex){
+		return isVisited(vertex) ? weightedDistances[vertex] : Double.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the previous vertex in the route to a vertex.
+	 * @param vertex - The index of the vertex.
+	 * @return The index of the previous vertex, or -1 if there is none.
+	 */
+	public int getPreviousVertex(int vertex){
+		return isVisited(vertex) ? previousVertexes[vertex] : -1;
+	}
+
+	public VertexQueue getQueue(){
+		return queue;
+	}
+}
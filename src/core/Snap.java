@@ -0,0 +1,76 @@
+package core;
+
+/**
+ * The class for storing where a point on the map was moved onto the nearest arc of the graph.
+ * <p>
+ * The point on the arc is given by the edge following the arc from its start to its end and how far along the arc from its
+ * start the point is. Routes from a snapped point start part way along the arc rather than at a vertex.
+ * @author Jacob Pennington
+ *
+ */
+public class Snap {
+
+	private final int edge; // The compact graph edge following the arc from its start to its end
+	private final int vertex; // The index of the vertex at the start of the arc
+	private final int target; // The index of the vertex at the end of the arc
+	private final double fraction; // How far along the arc the point is, from 0 at its start to 1 at its end
+	private final double lat; // The latitude of the point on the arc
+	private final double lon; // The longitude of the point on the arc
+	private final double distance; // The distance in km from the point that was snapped to the point on the arc
+
+	/**
+	 * Constructs a snapped point.
+	 * @param edge - The edge following the arc from its start to its end.
+	 * @param vertex - The index of the vertex at the start of the arc.
+	 * @param target - The index of the vertex at the end of the arc.
+	 * @param fraction - How far along the arc the point is, between 0 and 1.
+	 * @param lat - The latitude of the point on the arc.
+	 * @param lon - The longitude of the point on the arc.
+	 * @param distance - The distance in km from the point that was snapped.
+	 */
+	public Snap(int edge, int vertex, int target, double fraction, double lat, double lon, double distance){
+		this.edge = edge;
+		this.vertex = vertex;
+		this.target = target;
+		this.fraction = fraction;
+		this.lat = lat;
+		this.lon = lon;
+		this.distance = distance;
+	}
+
+	public int getEdge(){
+		return edge;
+	}
+
+	public int getVertex(){
+		return vertex;
+	}
+
+	public int getTarget(){
+		return target;
+	}
+
+	public double getFraction(){
+		return fraction;
+	}
+
+	public double getLat(){
+		return lat;
+	}
+
+	public double getLon(){
+		return lon;
+	}
+
+	public double getDistance(){
+		return distance;
+	}
+
+	/**
+	 * Returns whichever end of the arc is closest to the snapped point.
+	 * @return The index of the vertex.
+	 */
+	public int getNearestVertex(){
+		return fraction <= 0.5 ? vertex : target;
+	}
+}
@@ -0,0 +1,209 @@
+package core;
+
+/**
+ * The class for finding the arc of the graph nearest to a point on the map.
+ * <p>
+ * The area covered by the graph is split into a uniform grid of square cells and every arc is listed in each cell its bounding
+ * box overlaps, stored in compressed sparse row form like the compact graph. A search starts in the cell holding the point and
+ * checks rings of cells further and further out, stopping once no arc in an unchecked ring could be closer than the best found.
+ * With a few arcs per cell a search only looks at a handful of arcs wherever the point is.
+ * <p>
+ * Distances within the grid are measured on a flat projection, with longitudes scaled by the cosine of the graph's middle
+ * latitude, which is accurate enough to pick the nearest arc over the size of a map file.
+ * @author Jacob Pennington
+ *
+ */
+public class SpatialIndex {
+
+	private static final int ARCS_PER_CELL = 4; // The average number of arcs per cell the grid is sized for
+	private static final int MAXIMUM_CELLS = 1 << 24; // Stops a map with a few far apart arcs creating a huge empty grid
+
+	private final CompactGraph graph; // The graph the arcs belong to
+	private final int arcCount; // The number of arcs
+	private final int[] arcEdge; // The edge following each arc from its start to its end
+	private final int[] arcVertex; // The index of the vertex at the start of each arc
+	private final double scale; // The cosine of the middle latitude, which longitudes are multiplied by to make the grid square
+	private final double minX; // The projected longitude of the west edge of the grid
+	private final double minY; // The latitude of the south edge of the grid
+	private final double cellSize; // The width and height of each cell in degrees of latitude
+	private final int columns; // The number of cells from west to east
+	private final int rows; // The number of cells from south to north
+	private final int[] cellStart; // The position in cellArcs of the first arc of each cell, with one extra entry marking the end of the last cell's arcs
+	private final int[] cellArcs; // The arcs overlapping each cell
+
+	/**
+	 * Builds the grid for a graph.
+	 * @param graph - The graph to index the arcs of.
+	 */
+	public SpatialIndex(CompactGraph graph){
+		final double startTime = System.nanoTime();
+		this.graph = graph;
+		this.arcCount = graph.edgeCount / 2;
+		this.arcEdge = new int[arcCount];
+		this.arcVertex = new int[arcCount];
+		double minLat = Double.MAX_VALUE;
+		double maxLat = -Double.MAX_VALUE;
+		double minLon = Double.MAX_VALUE;
+		double maxLon = -Double.MAX_VALUE;
+		int arc = 0;
+		for(int v = 0; v < graph.vertexCount; v++){
+			for(int edge = graph.firstEdge[v]; edge < graph.firstEdge[v + 1]; edge++){
+				if((graph.edgeFlags[edge] & CompactGraph.START_TO_END) != 0){ // Each arc is indexed once, by its edge from start to end
+					arcEdge[arc] = edge;
+					arcVertex[arc] = v;
+					arc++;
+				}
+			}
+			minLat = Math.min(minLat, graph.lat[v]);
+			maxLat = Math.max(maxLat, graph.lat[v]);
+			minLon = Math.min(minLon, graph.lon[v]);
+			maxLon = Math.max(maxLon, graph.lon[v]);
+		}
+		if(graph.vertexCount == 0){ // Gives an empty graph a grid of one cell
+			minLat = maxLat = minLon = maxLon = 0;
+		}
+		this.scale = Math.cos(Math.toRadians((minLat + maxLat) / 2));
+		this.minX = minLon * scale;
+		this.minY = minLat;
+		double width = Math.max((maxLon - minLon) * scale, 1e-9);
+		double height = Math.max(maxLat - minLat, 1e-9);
+		double size = Math.sqrt(width * height / Math.min(Math.max(1, arcCount / ARCS_PER_CELL), MAXIMUM_CELLS));
+		this.columns = (int)Math.max(1, Math.min(Math.ceil(width / size), MAXIMUM_CELLS));
+		this.rows = (int)Math.max(1, Math.min(Math.ceil(height / size), MAXIMUM_CELLS / columns));
+		this.cellSize = Math.max(width / columns, height / rows);
+		this.cellStart = new int[columns * rows + 1];
+		int[] bounds = new int[4]; // The first column, last column, first row and last row of the cells an arc overlaps
+		for(arc = 0; arc < arcCount; arc++){ // Counts the arcs of each cell so the array can be created at the right size
+			findCells(arc, bounds);
+			for(int row = bounds[2]; row <= bounds[3]; row++){
+				for(int column = bounds[0]; column <= bounds[1]; column++){
+					cellStart[row * columns + column + 1]++;
+				}
+			}
+		}
+		for(int cell = 0; cell < columns * rows; cell++){ // Turns the counts into the position of each cell's first arc
+			cellStart[cell + 1] += cellStart[cell];
+		}
+		this.cellArcs = new int[cellStart[columns * rows]];
+		int[] nextArc = cellStart.clone(); // The position of the next arc to fill in for each cell
+		for(arc = 0; arc < arcCount; arc++){
+			findCells(arc, bounds);
+			for(int row = bounds[2]; row <= bounds[3]; row++){
+				for(int column = bounds[0]; column <= bounds[1]; column++){
+					cellArcs[nextArc[row * columns + column]++] = arc;
+				}
+			}
+		}
+		final double duration = System.nanoTime() - startTime;
+		Core.debug("Spatial index: " + arcCount + " arcs in " + columns + " x " + rows + " cells, built in " + duration/1000000000 + " seconds");
+	}
+
+	/**
+	 * Finds the range of cells the bounding box of an arc overlaps.
+	 * @param arc - The arc.
+	 * @param bounds - Filled with the first column, last column, first row and last row.
+	 */
+	private void findCells(int arc, int[] bounds){
+		int start = arcVertex[arc];
+		int end = graph.edgeTarget[arcEdge[arc]];
+		bounds[0] = getColumn(Math.min(graph.lon[start], graph.lon[end]));
+		bounds[1] = getColumn(Math.max(graph.lon[start], graph.lon[end]));
+		bounds[2] = getRow(Math.min(graph.lat[start], graph.lat[end]));
+		bounds[3] = getRow(Math.max(graph.lat[start], graph.lat[end]));
+	}
+
+	/**
+	 * Returns the column of the grid a longitude lies in, or the nearest column if it is outside the grid.
+	 */
+	private int getColumn(double lon){
+		int column = (int)Math.floor((lon * scale - minX) / cellSize);
+		return Math.max(0, Math.min(columns - 1, column));
+	}
+
+	/**
+	 * Returns the row of the grid a latitude lies in, or the nearest row if it is outside the grid.
+	 */
+	private int getRow(double lat){
+		int row = (int)Math.floor((lat - minY) / cellSize);
+		return Math.max(0, Math.min(rows - 1, row));
+	}
+
+	/**
+	 * Finds the point on any arc of the graph nearest to the given point.
+	 * <p>
+	 * Rings of cells around the point's cell are checked in turn. Every cell outside ring r is at least r cells away from the point,
+	 * so once the nearest arc found is closer than that no later ring can hold a nearer one.
+	 * @param lat - The latitude of the point.
+	 * @param lon - The longitude of the point.
+	 * @return The nearest point on an arc, or null if the graph has no arcs.
+	 * @throws IllegalArgumentException If the point is not a valid location, as every distance to it would be infinite or NaN.
+	 */
+	public Snap findNearest(double lat, double lon){
+		if(!Graph.isValidLocation(lat, lon)){
+			throw new IllegalArgumentException("Not a valid location: " + lat + ", " + lon);
+		}
+		if(arcCount == 0){
+			return null;
+		}
+		double x = lon * scale;
+		int centreColumn = getColumn(lon);
+		int centreRow = getRow(lat);
+		int bestArc = -1;
+		double bestDistance = Double.MAX_VALUE; // The squared projected distance to the nearest arc found so far
+		double bestFraction = 0;
+		int maximumRing = Math.max(columns, rows);
+		for(int ring = 0; ring <= maximumRing; ring++){
+			for(int row = centreRow - ring; row <= centreRow + ring; row++){
+				if(row < 0 || row >= rows){
+					continue;
+				}
+				boolean edgeRow = row == centreRow - ring || row == centreRow + ring;
+				for(int column = centreColumn - ring; column <= centreColumn + ring; column += edgeRow ? 1 : Math.max(1, 2 * ring)){ // Only the cells on the ring itself, the ones inside have been checked
+					if(column < 0 || column >= columns){
+						continue;
+					}
+					int cell = row * columns + column;
+					for(int i = cellStart[cell]; i < cellStart[cell + 1]; i++){
+						int arc = cellArcs[i];
+						int start = arcVertex[arc];
+						int end = graph.edgeTarget[arcEdge[arc]];
+						double startX = graph.lon[start] * scale;
+						double startY = graph.lat[start];
+						double dx = graph.lon[end] * scale - startX;
+						double dy = graph.lat[end] - startY;
+						double lengthSquared = dx * dx + dy * dy;
+						double fraction = lengthSquared == 0 ? 0 : ((x - startX) * dx + (lat - startY) * dy) / lengthSquared; // Projects the point onto the line through the arc
+						fraction = Math.max(0, Math.min(1, fraction)); // Then keeps it between the ends of the arc
+						double offsetX = startX + fraction * dx - x;
+						double offsetY = startY + fraction * dy - lat;
+						double distance = offsetX * offsetX + offsetY * offsetY;
+						if(distance < bestDistance || (distance == bestDistance && arc < bestArc)){ // Ties go to the lowest arc so the answer does not depend on the order cells are checked
+							bestDistance = distance;
+							bestArc = arc;
+							bestFraction = fraction;
+						}
+					}
+				}
+			}
+			double reach = ring * cellSize; // No arc outside this ring can be closer than this
+			if(bestArc != -1 && bestDistance <= reach * reach){
+				break;
+			}
+		}
+		int start = arcVertex[bestArc];
+		int end = graph.edgeTarget[arcEdge[bestArc]];
+		double snappedLat = graph.lat[start] + bestFraction * (graph.lat[end] - graph.lat[start]);
+		double snappedLon = graph.lon[start] + bestFraction * (graph.lon[end] - graph.lon[start]);
+		return new Snap(arcEdge[bestArc], start, end, bestFraction, snappedLat, snappedLon, Graph.calculateGreatCircleDistance(lat, lon, snappedLat, snappedLon));
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public int getArcCount(){
+		return arcCount;
+	}
+
+	public int getCellCount(){
+		return columns * rows;
+	}
+}
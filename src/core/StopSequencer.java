@@ -0,0 +1,230 @@
+package core;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * The class for finding a quick order to visit a list of stops in, starting from the first stop.
+ * <p>
+ * The quickest time between every pair of stops is taken from a travel time matrix, so the order can be improved many times
+ * without searching the graph again. An order is started by always driving to the nearest stop not yet visited, then improved
+ * with 2-opt, which reverses part of the order, and Or-opt, which moves one to three stops in a row to a different place, until
+ * neither finds anything quicker. This is run several times at once from different starting orders, where all but the first
+ * sometimes pick the second or third nearest stop instead, and the quickest order found is used.
+ * https://en.wikipedia.org/wiki/2-opt
+ * @author Jacob Pennington
+ *
+ */
+public class StopSequencer {
+
+	public static final int DEFAULT_RESTARTS = 8; // The number of different starting orders tried
+	private static final double UNREACHABLE_COST = 1e6; // The time in hours used between stops with no route, so any order with a route is preferred
+	private static final double MINIMUM_IMPROVEMENT = 1e-12; // Changes smaller than this are rounding errors, and accepting them could loop forever
+
+	private final int stopCount; // The number of stops
+	private final double[][] cost; // The quickest time in hours from each stop to each other stop
+
+	/**
+	 * Constructs a sequencer from the travel times between every pair of stops.
+	 * @param matrix - A matrix with the same stops as its sources and targets, in the same order.
+	 */
+	public StopSequencer(TravelMatrix matrix){
+		this.stopCount = matrix.getSourceCount();
+		this.cost = new double[stopCount][stopCount];
+		for(int from = 0; from < stopCount; from++){
+			for(int to = 0; to < stopCount; to++){
+				double time = matrix.getTime(from, to);
+				cost[from][to] = time == Double.POSITIVE_INFINITY ? UNREACHABLE_COST : time;
+			}
+		}
+	}
+
+	/**
+	 * Finds a quick order to visit the stops in.
+	 * @param keepLast - True if the last stop must be visited last, such as when the driver has to finish at a depot.
+	 * @param restarts - The number of different starting orders to try.
+	 * @return The position of each stop in the list given to the matrix, in the order to visit them, always starting with 0.
+	 */
+	public int[] findOrder(boolean keepLast, int restarts){
+		if(stopCount <= 2){
+			return IntStream.range(0, stopCount).toArray();
+		}
+		int[][] orders = IntStream.range(0, Math.max(1, restarts)).parallel().mapToObj(restart -> {
+			int[] order = buildOrder(keepLast, restart);
+			improve(order, keepLast);
+			return order;
+		}).toArray(int[][]::new);
+		int[] best = orders[0];
+		for(int[] order : orders){ // Ties go to the earliest restart so the answer does not depend on which thread finished first
+			if(getCost(order) < getCost(best) - MINIMUM_IMPROVEMENT){
+				best = order;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the total time to visit the stops in the given order.
+	 * @param order - The positions of the stops in the order they are visited.
+	 * @return The time in hours.
+	 */
+	public double getCost(int[] order){
+		double total = 0;
+		for(int i = 0; i + 1 < order.length; i++){
+			total += cost[order[i]][order[i + 1]];
+		}
+		return total;
+	}
+
+	/**
+	 * Builds a starting order by driving to the nearest stop not yet visited each time.
+	 * @param keepLast - True if the last stop must stay last.
+	 * @param restart - The number of the restart. Restart 0 always picks the nearest stop, the others sometimes pick one of the next nearest.
+	 * @return The order.
+	 */
+	private int[] buildOrder(boolean keepLast, int restart){
+		Random random = new Random(restart);
+		int[] order = new int[stopCount];
+		boolean[] visited = new boolean[stopCount];
+		visited[0] = true;
+		int free = keepLast ? stopCount - 1 : stopCount; // The stops that can go anywhere after the first
+		if(keepLast){
+			visited[stopCount - 1] = true;
+			order[stopCount - 1] = stopCount - 1;
+		}
+		int[] nearest = new int[3]; // The nearest few stops not yet visited, closest first
+		for(int position = 1; position < free; position++){
+			int current = order[position - 1];
+			int found = 0;
+			for(int stop = 0; stop < stopCount; stop++){
+				if(visited[stop]){
+					continue;
+				}
+				int i = Math.min(found, nearest.length - 1);
+				if(found < nearest.length || cost[current][stop] < cost[current][nearest[i]]){
+					while(i > 0 && cost[current][stop] < cost[current][nearest[i - 1]]){ // Keeps the few nearest in order
+						nearest[i] = nearest[i - 1];
+						i--;
+					}
+					nearest[i] = stop;
+					found = Math.min(found + 1, nearest.length);
+				}
+			}
+			int pick = restart == 0 || random.nextInt(3) != 0 ? 0 : random.nextInt(found); // Usually still the nearest so the order stays good
+			order[position] = nearest[pick];
+			visited[nearest[pick]] = true;
+		}
+		return order;
+	}
+
+	/**
+	 * Improves an order with 2-opt and Or-opt moves until neither can make it any quicker.
+	 * @param order - The order to improve, which is changed in place.
+	 * @param keepLast - True if the last stop must stay last.
+	 */
+	private void improve(int[] order, boolean keepLast){
+		int last = keepLast ? stopCount - 2 : stopCount - 1; // The last position a stop can be moved to or from
+		boolean improved = true;
+		while(improved){
+			improved = twoOpt(order, last) | orOpt(order, last, keepLast);
+		}
+	}
+
+	/**
+	 * Reverses any part of the order that makes it quicker. As times can differ in each direction, the time along the reversed
+	 * part is added up again rather than assumed to be the same.
+	 * @param order - The order, which is changed in place.
+	 * @param last - The last position that can be moved.
+	 * @return True if the order was changed.
+	 */
+	private boolean twoOpt(int[] order, int last){
+		boolean improved = false;
+		for(int i = 1; i < last; i++){
+			double forward = 0; // The time along positions i to j in the current direction
+			double backward = 0; // The time along them in the reverse direction
+			for(int j = i + 1; j <= last; j++){
+				forward += cost[order[j - 1]][order[j]];
+				backward += cost[order[j]][order[j - 1]];
+				double before = cost[order[i - 1]][order[i]] + forward;
+				double after = cost[order[i - 1]][order[j]] + backward;
+				if(j + 1 < stopCount){
+					before += cost[order[j]][order[j + 1]];
+					after += cost[order[i]][order[j + 1]];
+				}
+				if(after < before - MINIMUM_IMPROVEMENT){
+					for(int a = i, b = j; a < b; a++, b--){
+						int stop = order[a];
+						order[a] = order[b];
+						order[b] = stop;
+					}
+					double swap = forward; // The part up to j is now the other way round
+					forward = backward;
+					backward = swap;
+					improved = true;
+				}
+			}
+		}
+		return improved;
+	}
+
+	/**
+	 * Moves any run of one to three stops to wherever else in the order makes it quicker.
+	 * @param order - The order, which is changed in place.
+	 * @param last - The last position that can be moved.
+	 * @param keepLast - True if the last stop must stay last, so nothing can be moved after it.
+	 * @return True if the order was changed.
+	 */
+	private boolean orOpt(int[] order, int last, boolean keepLast){
+		boolean improved = false;
+		for(int length = 1; length <= 3; length++){
+			for(int i = 1; i + length - 1 <= last; i++){
+				int first = order[i];
+				int end = order[i + length - 1];
+				int previous = order[i - 1];
+				int next = i + length < stopCount ? order[i + length] : -1;
+				double removed = cost[previous][first] + (next == -1 ? 0 : cost[end][next] - cost[previous][next]); // The time saved by taking the run out
+				for(int p = 0; p < stopCount; p++){ // Tries putting the run after position p
+					if(p >= i - 1 && p < i + length){ // Where the run already is
+						continue;
+					}
+					int after = p + 1 < stopCount ? order[p + 1] : -1; // The stop that would follow the run
+					if(after == -1 && keepLast){
+						continue;
+					}
+					double added = cost[order[p]][first] + (after == -1 ? 0 : cost[end][after] - cost[order[p]][after]);
+					if(added < removed - MINIMUM_IMPROVEMENT){
+						move(order, i, length, p);
+						improved = true;
+						break;
+					}
+				}
+			}
+		}
+		return improved;
+	}
+
+	/**
+	 * Moves a run of stops to just after another position.
+	 * @param order - The order, which is changed in place.
+	 * @param start - The position of the first stop of the run.
+	 * @param length - The number of stops in the run.
+	 * @param position - The position of the stop the run is moved after, outside the run.
+	 */
+	private static void move(int[] order, int start, int length, int position){
+		int[] run = new int[length];
+		System.arraycopy(order, start, run, 0, length);
+		if(position < start){ // Shifts the stops in between up to make room
+			System.arraycopy(order, position + 1, order, position + 1 + length, start - position - 1);
+			System.arraycopy(run, 0, order, position + 1, length);
+		}else{ // Shifts the stops in between down to make room
+			System.arraycopy(order, start + length, order, start, position - start - length + 1);
+			System.arraycopy(run, 0, order, position - length + 1, length);
+		}
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public int getStopCount(){
+		return stopCount;
+	}
+}
@@ -0,0 +1,98 @@
+package core;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The class for storing the quickest travel times between every source and every target of a matrix calculation.
+ * <p>
+ * Row i of each table holds the values from source i, and column j the values to target j. Times are in hours and the
+ * distances are the lengths in km of the quickest routes. Targets that cannot be reached have a time and distance of
+ * Double.POSITIVE_INFINITY.
+ * @author Jacob Pennington
+ *
+ */
+public class TravelMatrix {
+
+	private final int[] sources; // The index of the vertex of each row
+	private final int[] targets; // The index of the vertex of each column
+	private final double[][] times; // The quickest time from each source to each target in hours
+	private final double[][] distances; // The length of each of those routes in km
+
+	/**
+	 * Constructs a matrix from tables that have already been filled in.
+	 * @param sources - The index of the vertex of each row.
+	 * @param targets - The index of the vertex of each column.
+	 * @param times - The quickest time from each source to each target.
+	 * @param distances - The length of each of those routes.
+	 */
+	public TravelMatrix(int[] sources, int[] targets, double[][] times, double[][] distances){
+		this.sources = sources;
+		this.targets = targets;
+		this.times = times;
+		this.distances = distances;
+	}
+
+	/**
+	 * Writes the matrix as CSV with one line per source and target, a row at a time so no large String is built.
+	 * <p>
+	 * Each line holds the source and target node IDs, the time in hours and the distance in km. The time and distance are left
+	 * empty when the target cannot be reached.
+	 * @param writer - The writer to write to, which should be buffered.
+	 * @param graph - The graph the matrix was calculated on, used for the node IDs.
+	 * @throws IOException If the writer fails.
+	 */
+	public void writeCSV(Writer writer, Graph graph) throws IOException{
+		writer.write("source,target,time,distance\n");
+		StringBuilder line = new StringBuilder();
+		for(int row = 0; row < sources.length; row++){
+			long sourceId = graph.getNodeId(sources[row]);
+			for(int column = 0; column < targets.length; column++){
+				line.setLength(0);
+				line.append(sourceId).append(',').append(graph.getNodeId(targets[column])).append(',');
+				if(times[row][column] != Double.POSITIVE_INFINITY){
+					line.append(times[row][column]).append(',').append(distances[row][column]);
+				}else{
+					line.append(',');
+				}
+				line.append('\n');
+				writer.append(line);
+			}
+		}
+		writer.flush();
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public int getSourceCount(){
+		return sources.length;
+	}
+
+	public int getTargetCount(){
+		return targets.length;
+	}
+
+	public int getSource(int row){
+		return sources[row];
+	}
+
+	public int getTarget(int column){
+		return targets[column];
+	}
+
+	public double getTime(int row, int column){
+		return times[row][column];
+	}
+
+	public double getDistance(int row, int column){
+		return distances[row][column];
+	}
+
+	public double[][] getTimes(){
+		return times;
+	}
+
+	public double[][] getDistances(){
+		return distances;
+	}
+}
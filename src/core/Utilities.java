@@ -2,6 +2,8 @@ package core;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
  * A class for utility functions.
@@ -66,4 +68,30 @@ public final class Utilities { // A class for utility functions
 	    bd = bd.setScale(places, RoundingMode.HALF_UP);
 	    return bd.doubleValue();
 	}
+	
+	/**
+	 * Sorts a list of IDs so that the position of an ID in the list can be found with a binary search by findId.
+	 * @param ids - The IDs, which must all be different.
+	 * @param sortedIds - Filled with the IDs in ascending order, the same length as ids.
+	 * @return The position in ids of each entry of sortedIds.
+	 */
+	public static int[] sortIds(long[] ids, long[] sortedIds){
+		System.arraycopy(ids, 0, sortedIds, 0, ids.length);
+		Arrays.parallelSort(sortedIds);
+		int[] positions = new int[ids.length];
+		IntStream.range(0, ids.length).parallel().forEach(i -> positions[Arrays.binarySearch(sortedIds, ids[i])] = i);
+		return positions;
+	}
+	
+	/**
+	 * Finds the position of an ID in a list sorted by sortIds.
+	 * @param sortedIds - The IDs in ascending order.
+	 * @param positions - The position in the original list of each entry of sortedIds.
+	 * @param id - The ID to find.
+	 * @return The position of the ID in the original list, or -1 if it is not in the list.
+	 */
+	public static int findId(long[] sortedIds, int[] positions, long id){
+		int index = Arrays.binarySearch(sortedIds, id);
+		return index < 0 ? -1 : positions[index];
+	}
 }
@@ -0,0 +1,149 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * A priority queue of vertex indexes ordered by a distance key, used as the frontier of route calculations.
+ * <p>
+ * Implemented as a binary min-heap with decrease-key. The position of every vertex in the heap is
+ * tracked so that a vertex already in the queue can have its key lowered without being added twice.
+ * https://en.wikipedia.org/wiki/Binary_heap
+ * @author Jacob Pennington
+ *
+ */
+public class VertexQueue {
+
+	private int[] heap; // The vertex indexes in heap order
+	private double[] keys; // The key of the vertex at the same position in the heap
+	private int[] positions; // The position of each vertex in the heap plus one, 0 means the vertex is not in the queue
+	private int size = 0; // The number of vertexes currently in the queue
+
+	/**
+	 * Constructs an empty queue able to hold the given number of vertexes.
+	 * @param vertexCount - The number of vertexes on the graph, vertex indexes must be below this.
+	 */
+	public VertexQueue(int vertexCount){
+		this.heap = new int[16];
+		this.keys = new double[16];
+		this.positions = new int[vertexCount];
+	}
+
+	/**
+	 * Adds a vertex to the queue, or lowers its key if it is already present.
+	 * <p>
+	 * If the vertex is already in the queue with a key lower than the one given then nothing is changed.
+	 * @param vertex - The index of the vertex.
+	 * @param key - The distance to order the vertex by.
+	 */
+	public void add(int vertex, double key){
+		int position = positions[vertex] - 1;
+		if(position < 0){ // The vertex is not in the queue yet so it is placed at the bottom of the heap
+			if(size == heap.length){ // Grows the heap arrays when they are full
+				heap = Arrays.copyOf(heap, size * 2);
+				keys = Arrays.copyOf(keys, size * 2);
+			}
+			position = size;
+			size++;
+		}else if(keys[position] <= key){ // The vertex already has an equal or better key
+			return;
+		}
+		siftUp(position, vertex, key);
+	}
+
+	/**
+	 * Removes the vertex with the lowest key from the queue.
+	 * @return The index of the vertex with the lowest key.
+	 */
+	public int poll(){
+		int top = heap[0];
+		positions[top] = 0;
+		size--;
+		if(size > 0){ // Moves the last vertex in the heap to the top and lets it sink to its place
+			siftDown(0, heap[size], keys[size]);
+		}
+		return top;
+	}
+
+	/**
+	 * Returns the lowest key in the queue without removing its vertex.
+	 * @return The lowest key in the queue.
+	 */
+	public double peekKey(){
+		return keys[0];
+	}
+
+	/**
+	 * Returns whether the given vertex is waiting in the queue.
+	 * @param vertex - The index of the vertex.
+	 * @return True if the vertex is in the queue.
+	 */
+	public boolean contains(int vertex){
+		return positions[vertex] != 0;
+	}
+
+	/**
+	 * Removes every vertex from the queue.
+	 * <p>
+	 * Only the vertexes still in the queue are touched, so the cost depends on the size of the queue and not the graph.
+	 */
+	public void clear(){
+		for(int i = 0; i < size; i++){
+			positions[heap[i]] = 0;
+		}
+		size = 0;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Moves a vertex up the heap from the given position until its parent has a lower key.
+	 * @param position - The position to start from.
+	 * @param vertex - The vertex being placed.
+	 * @param key - The key of the vertex being placed.
+	 */
+	private void siftUp(int position, int vertex, double key){
+		while(position > 0){
+			int parent = (position - 1) >>> 1;
+			if(keys[parent] <= key){ // The heap property holds so the vertex belongs here
+				break;
+			}
+			place(position, heap[parent], keys[parent]); // Moves the parent down into the gap
+			position = parent;
+		}
+		place(position, vertex, key);
+	}
+
+	/**
+	 * Moves a vertex down the heap from the given position until both its children have higher keys.
+	 * @param position - The position to start from.
+	 * @param vertex - The vertex being placed.
+	 * @param key - The key of the vertex being placed.
+	 */
+	private void siftDown(int position, int vertex, double key){
+		int half = size >>> 1; // Positions from here onwards have no children
+		while(position < half){
+			int child = (position << 1) + 1;
+			if(child + 1 < size && keys[child + 1] < keys[child]){ // Picks the child with the lower key
+				child++;
+			}
+			if(key <= keys[child]){
+				break;
+			}
+			place(position, heap[child], keys[child]); // Moves the child up into the gap
+			position = child;
+		}
+		place(position, vertex, key);
+	}
+
+	private void place(int position, int vertex, double key){
+		heap[position] = vertex;
+		keys[position] = key;
+		positions[vertex] = position + 1;
+	}
+}
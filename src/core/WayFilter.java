@@ -0,0 +1,63 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The class for deciding which ways in a map file can be driven along and so should become arcs on the graph.
+ * <p>
+ * A way is kept if its "highway" tag has one of the routable values and its access tags do not forbid cars. Everything else,
+ * such as buildings, rivers, land use areas and footpaths, is dropped while the file is being read, and only the nodes that
+ * kept ways use become vertexes.
+ * <p>
+ * Access tags are checked from the most specific to the most general, "motorcar", then "motor_vehicle", then "vehicle", then
+ * "access", and the first one present decides, so a road tagged "access=no" and "motorcar=yes" is kept.
+ * https://wiki.openstreetmap.org/wiki/Key:access
+ * @author Jacob Pennington
+ *
+ */
+public class WayFilter {
+
+	public static final String[] ACCESS_KEYS = {"motorcar", "motor_vehicle", "vehicle", "access"}; // In order of priority
+	public static final WayFilter DEFAULT = new WayFilter(
+			new HashSet<String>(Arrays.asList(WayTable.HIGHWAY_CLASSES)), // The road types Graph has an average speed for
+			new HashSet<String>(Arrays.asList("no", "private", "agricultural", "forestry"))); // Values that keep the public out
+	public static final WayFilter ALL = new WayFilter(null, Collections.<String>emptySet()); // Keeps every way whatever its tags are
+
+	private final Set<String> highways; // The values of the "highway" tag that are routable, null to keep every way
+	private final Set<String> deniedAccess; // The values of an access tag that mean the way cannot be driven along
+
+	/**
+	 * Constructs a filter.
+	 * @param highways - The values of the "highway" tag that are routable, or null to keep ways whatever their tags are.
+	 * @param deniedAccess - The values of an access tag that mean a way cannot be used.
+	 */
+	public WayFilter(Set<String> highways, Set<String> deniedAccess){
+		this.highways = highways;
+		this.deniedAccess = deniedAccess;
+	}
+
+	/**
+	 * Returns whether a way should be added to the graph. Only reads the tags so it can be called from several threads at once.
+	 * @param tagList - The tags of the way.
+	 * @return True if the way can be used by routes.
+	 */
+	public boolean isRoutable(Map<String,String> tagList){
+		if(highways != null){
+			String highway = tagList.get("highway");
+			if(highway == null || !highways.contains(highway.trim())){
+				return false;
+			}
+		}
+		for(String key : ACCESS_KEYS){
+			String value = tagList.get(key);
+			if(value != null){ // The most specific access tag present decides
+				return !deniedAccess.contains(value.trim());
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,340 @@
+package core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class for storing the ID and tags of every way on the graph, so that the speed, direction and names of a route's roads can be found.
+ * <p>
+ * Ways are referred to by their position in the table. Every different tag key and value is stored once in a dictionary and
+ * referred to by its position in it, so the thousands of ways tagged "highway=residential" share a single copy of each String.
+ * The tags of way w are the dictionary positions from tagStart[w] up to but not including tagStart[w + 1] of tagKeys and tagValues.
+ * <p>
+ * The tags needed to weight the graph and give directions are decoded once when the table is built and kept in arrays of their
+ * own, so neither has to search a way's tags. The dictionary is held as one block of UTF-8 bytes and Strings are only created
+ * from it when they are looked up, which lets a table loaded from a snapshot be used without creating any objects for its ways.
+ * @author Jacob Pennington
+ *
+ */
+public class WayTable {
+
+	public static final String[] HIGHWAY_CLASSES = {"motorway", "trunk", "primary", "secondary", "tertiary", "unclassified", "residential",
+			"service", "track", "motorway_link", "trunk_link", "primary_link", "secondary_link", "tertiary_link"}; // The road types Graph has an average speed for
+	public static final byte NO_HIGHWAY = -1; // The highway class of a way without a "highway" tag
+	public static final byte OTHER_HIGHWAY = -2; // The highway class of a way whose "highway" tag is not one of HIGHWAY_CLASSES
+	public static final int NO_STRING = -1; // The dictionary position given for a tag the way does not have
+	private static final byte[] ROUNDABOUT = "roundabout".getBytes(StandardCharsets.UTF_8);
+
+	final int wayCount; // The number of ways
+	final long[] wayIds; // The OSM ID of each way
+	final long[] sortedWayIds; // The way IDs in ascending order, for finding a way by its ID
+	final int[] waysById; // The position in the table of each entry of sortedWayIds
+	final int[] firstSegmentEdge; // The compact graph edge following each way's first arc from start to end, -1 if it has none
+	final int[] stringStart; // The position in stringData of each dictionary String, with one extra entry marking the end of the last String
+	final ByteBuffer stringData; // The UTF-8 bytes of every dictionary String
+	final int[] tagStart; // The position in tagKeys and tagValues of the first tag of each way, with one extra entry marking the end of the last way's tags
+	final int[] tagKeys; // The dictionary position of the key of each tag
+	final int[] tagValues; // The dictionary position of the value of each tag
+	final byte[] highwayClass; // The position in HIGHWAY_CLASSES of each way's "highway" tag, or NO_HIGHWAY or OTHER_HIGHWAY
+	final double[] maxspeed; // The "maxspeed" tag of each way in km/hr, NaN if it is missing or cannot be read
+	final byte[] oneWay; // 1 if a way is one way from start to end, -1 if it is one way from end to start, 0 if it is not one way
+	final int[] junction; // The dictionary position of the value of each way's "junction" tag
+	final int[] ref; // The dictionary position of the value of each way's "ref" tag
+	final int[] name; // The dictionary position of the value of each way's "name" tag
+
+	/**
+	 * Constructs the table from the ways found by the parser.
+	 * @param wayIds - The OSM ID of each way.
+	 * @param tagLists - The tags of each way.
+	 */
+	public WayTable(long[] wayIds, List<HashMap<String,String>> tagLists){
+		this.wayCount = wayIds.length;
+		this.wayIds = wayIds;
+		this.sortedWayIds = new long[wayCount];
+		this.waysById = Utilities.sortIds(wayIds, sortedWayIds);
+		this.firstSegmentEdge = new int[wayCount];
+		Arrays.fill(firstSegmentEdge, -1);
+		this.tagStart = new int[wayCount + 1];
+		for(int way = 0; way < wayCount; way++){
+			tagStart[way + 1] = tagStart[way] + tagLists.get(way).size();
+		}
+		this.tagKeys = new int[tagStart[wayCount]];
+		this.tagValues = new int[tagStart[wayCount]];
+		this.highwayClass = new byte[wayCount];
+		this.maxspeed = new double[wayCount];
+		this.oneWay = new byte[wayCount];
+		this.junction = new int[wayCount];
+		this.ref = new int[wayCount];
+		this.name = new int[wayCount];
+		HashMap<String,Integer> dictionary = new HashMap<String,Integer>(); // The position of every String added so far
+		IntList starts = new IntList();
+		byte[] data = new byte[1024];
+		int length = 0;
+		for(int way = 0; way < wayCount; way++){
+			HashMap<String,String> tagList = tagLists.get(way);
+			int tag = tagStart[way];
+			for(Map.Entry<String,String> entry : tagList.entrySet()){
+				for(int part = 0; part < 2; part++){
+					String string = part == 0 ? entry.getKey() : entry.getValue();
+					Integer position = dictionary.get(string);
+					if(position == null){ // The first time the String has been seen so it is added to the end of the dictionary
+						position = starts.size();
+						dictionary.put(string, position);
+						starts.add(length);
+						byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+						if(length + bytes.length > data.length){
+							data = Arrays.copyOf(data, Math.max(data.length * 2, length + bytes.length));
+						}
+						System.arraycopy(bytes, 0, data, length, bytes.length);
+						length += bytes.length;
+					}
+					if(part == 0){
+						tagKeys[tag] = position;
+					}else{
+						tagValues[tag] = position;
+					}
+				}
+				tag++;
+			}
+			highwayClass[way] = findHighwayClass(tagList.get("highway"));
+			maxspeed[way] = parseMaxspeed(tagList.get("maxspeed"));
+			oneWay[way] = calculateOneWay(tagList);
+			junction[way] = findString(dictionary, tagList.get("junction"));
+			ref[way] = findString(dictionary, tagList.get("ref"));
+			name[way] = findString(dictionary, tagList.get("name"));
+		}
+		starts.add(length);
+		this.stringStart = starts.toArray();
+		this.stringData = ByteBuffer.wrap(data, 0, length).slice();
+		Core.debug("Way table: " + tagKeys.length + " tags using " + getStringCount() + " different Strings of " + length + " bytes");
+	}
+
+	/**
+	 * Constructs a table from arrays that have already been built, such as those read from a snapshot.
+	 * @param wayIds - The OSM ID of each way.
+	 * @param sortedWayIds - The way IDs in ascending order.
+	 * @param waysById - The position in the table of each entry of sortedWayIds.
+	 * @param firstSegmentEdge - The compact graph edge following each way's first arc.
+	 * @param stringStart - The position in stringData of each dictionary String, with one extra entry.
+	 * @param stringData - The UTF-8 bytes of every dictionary String.
+	 * @param tagStart - The position in tagKeys and tagValues of the first tag of each way, with one extra entry.
+	 * @param tagKeys - The dictionary position of the key of each tag.
+	 * @param tagValues - The dictionary position of the value of each tag.
+	 * @param highwayClass - The highway class of each way.
+	 * @param maxspeed - The "maxspeed" tag of each way in km/hr.
+	 * @param oneWay - The one way value of each way.
+	 * @param junction - The dictionary position of each way's "junction" tag.
+	 * @param ref - The dictionary position of each way's "ref" tag.
+	 * @param name - The dictionary position of each way's "name" tag.
+	 */
+	WayTable(long[] wayIds, long[] sortedWayIds, int[] waysById, int[] firstSegmentEdge, int[] stringStart, ByteBuffer stringData, int[] tagStart,
+			int[] tagKeys, int[] tagValues, byte[] highwayClass, double[] maxspeed, byte[] oneWay, int[] junction, int[] ref, int[] name){
+		this.wayCount = wayIds.length;
+		this.wayIds = wayIds;
+		this.sortedWayIds = sortedWayIds;
+		this.waysById = waysById;
+		this.firstSegmentEdge = firstSegmentEdge;
+		this.stringStart = stringStart;
+		this.stringData = stringData;
+		this.tagStart = tagStart;
+		this.tagKeys = tagKeys;
+		this.tagValues = tagValues;
+		this.highwayClass = highwayClass;
+		this.maxspeed = maxspeed;
+		this.oneWay = oneWay;
+		this.junction = junction;
+		this.ref = ref;
+		this.name = name;
+	}
+
+	private static int findString(HashMap<String,Integer> dictionary, String string){
+		return string == null ? NO_STRING : dictionary.get(string);
+	}
+
+	/**
+	 * Returns the position in HIGHWAY_CLASSES of the value of a "highway" tag.
+	 * @param highway - The value of the tag, or null if the way does not have one.
+	 * @return The highway class.
+	 */
+	private static byte findHighwayClass(String highway){
+		if(highway == null){
+			return NO_HIGHWAY;
+		}
+		highway = highway.trim();
+		for(int i = 0; i < HIGHWAY_CLASSES.length; i++){
+			if(HIGHWAY_CLASSES[i].equals(highway)){
+				return (byte)i;
+			}
+		}
+		return OTHER_HIGHWAY;
+	}
+
+	/**
+	 * Reads the value of a "maxspeed" tag, which is a number of km/hr unless it ends with "mph".
+	 * @param maxspeedString - The value of the tag, or null if the way does not have one.
+	 * @return The speed in km/hr, or NaN if there is no tag or it cannot be read.
+	 */
+	private static double parseMaxspeed(String maxspeedString){
+		if(maxspeedString == null){
+			return Double.NaN;
+		}
+		maxspeedString = maxspeedString.trim();
+		try{
+			if(maxspeedString.length() >= 4){ // If maxspeed is not just a number
+				if(maxspeedString.endsWith("mph")){ // If maxspeed is measured in mph
+					if(maxspeedString.contains(" ")){ // Differentiates between "30 mph" and "30mph"
+						return Graph.KM_IN_MILE * Integer.parseInt(maxspeedString.substring(0,maxspeedString.indexOf(" "))); // Extracts values such as 5 from "5 mph" and then converts them to km/hr
+					}
+					return Graph.KM_IN_MILE * Integer.parseInt(maxspeedString.substring(0,maxspeedString.length() - 3)); // Extracts values such as 5 from "5mph" and then converts them to km/hr
+				}
+			}else if(maxspeedString.length() > 0){ // If string does not contain "mph" then it is measured in km/hr
+				return Integer.parseInt(maxspeedString); // No conversion required as value is already in km/hr
+			}
+		}catch(NumberFormatException e){ // Values such as "signals" or "none" fall back to the "highway" tag
+		}
+		Core.debug("Malformed maxspeed tag");
+		return Double.NaN;
+	}
+
+	/**
+	 * Works out whether a way is one way from its tags.
+	 * <p>
+	 * A "oneway" tag of "yes", "-1" or "no" decides. Otherwise roundabouts and motorways are one way from start to end.
+	 * @param tagList - The tags of the way.
+	 * @return 1 if the way is one way from start to end, -1 if it is one way from end to start, 0 if it is not one way.
+	 */
+	private static byte calculateOneWay(Map<String,String> tagList){
+		String oneway = tagList.get("oneway");
+		if("yes".equals(oneway)){
+			return 1;
+		}
+		if("-1".equals(oneway)){
+			return -1; // The road is one way in reverse
+		}
+		if("no".equals(oneway)){
+			return 0;
+		}
+		if("roundabout".equals(tagList.get("junction")) || "motorway".equals(tagList.get("highway"))){
+			return 1; // Roundabouts and motorways imply the "oneway" tag
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns a String from the dictionary.
+	 * @param position - The position of the String in the dictionary.
+	 * @return The String, or null if the position is NO_STRING.
+	 */
+	public String getString(int position){
+		if(position == NO_STRING){
+			return null;
+		}
+		int start = stringStart[position];
+		byte[] bytes = new byte[stringStart[position + 1] - start];
+		for(int i = 0; i < bytes.length; i++){ // Absolute reads so several threads can share the buffer
+			bytes[i] = stringData.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns whether a String in the dictionary has the given bytes, without creating the String.
+	 */
+	private boolean stringMatches(int position, byte[] bytes){
+		int start = stringStart[position];
+		if(stringStart[position + 1] - start != bytes.length){
+			return false;
+		}
+		for(int i = 0; i < bytes.length; i++){
+			if(stringData.get(start + i) != bytes[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the value of one tag of a way.
+	 * @param way - The position of the way in the table.
+	 * @param key - The key of the tag.
+	 * @return The value of the tag, or null if the way does not have it.
+	 */
+	public String getTag(int way, String key){
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		for(int tag = tagStart[way]; tag < tagStart[way + 1]; tag++){
+			if(stringMatches(tagKeys[tag], keyBytes)){
+				return getString(tagValues[tag]);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds a way by its OSM ID.
+	 * @param wayId - The OSM ID of the way.
+	 * @return The position of the way in the table, or -1 if it is not on the graph.
+	 */
+	public int findWay(long wayId){
+		return Utilities.findId(sortedWayIds, waysById, wayId);
+	}
+
+	/**
+	 * Returns whether a way is part of a roundabout, without creating any Strings.
+	 * @param way - The position of the way in the table.
+	 * @return True if the way has the tag "junction=roundabout".
+	 */
+	public boolean isRoundabout(int way){
+		return junction[way] != NO_STRING && stringMatches(junction[way], ROUNDABOUT);
+	}
+
+	////////////////////// GETTERS //////////////////////////////////
+
+	public int getWayCount(){
+		return wayCount;
+	}
+
+	public long getWayId(int way){
+		return wayIds[way];
+	}
+
+	/**
+	 * Returns the edge that follows the first arc of a way from its start to its end.
+	 * @param way - The position of the way in the table.
+	 * @return The index of the edge in the compact graph, or -1 if the way has no arcs.
+	 */
+	public int getFirstSegmentEdge(int way){
+		return firstSegmentEdge[way];
+	}
+
+	public int getStringCount(){
+		return stringStart.length - 1;
+	}
+
+	public byte getHighwayClass(int way){
+		return highwayClass[way];
+	}
+
+	public double getMaxspeed(int way){
+		return maxspeed[way];
+	}
+
+	public int getOneWay(int way){
+		return oneWay[way];
+	}
+
+	public String getJunction(int way){
+		return getString(junction[way]);
+	}
+
+	public String getRef(int way){
+		return getString(ref[way]);
+	}
+
+	public String getName(int way){
+		return getString(name[way]);
+	}
+}
@@ -0,0 +1,85 @@
+package core;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The check that the outline of an isochrone can be built from any source and covers every vertex reached.
+ * <p>
+ * The grid map from RouteSearchCheck is searched from many sources with several time budgets, and each isochrone is outlined
+ * with several cell sizes. Building the outline must not fail, and every vertex reached must lie inside the outline by the
+ * even-odd rule, which also catches cells at the edge of the grid being joined up with the wrong neighbours.
+ * <p>
+ * Run from the root of the project with:
+ * javac -d bin src/core/*.java test/core/*.java &amp;&amp; java -cp bin core.IsochroneCheck
+ * @author Jacob Pennington
+ *
+ */
+public class IsochroneCheck {
+
+	private static final int SOURCE_STEP = 3; // Every third vertex is used as a source
+	private static final double[] BUDGETS = {0.005, 0.02, 0.05}; // The time budgets in hours
+	private static final double[] CELL_SIZES = {0.05, 0.1, 0.2, 0.3, 0.5}; // The cell widths in km
+
+	/**
+	 * Runs the check, exiting with status 1 if any outline fails.
+	 * @param args - Not used.
+	 */
+	public static void main(String[] args){
+		Graph graph = RouteSearchCheck.buildGraph(new Random(1), RouteSearchCheck.GRID_SIZE);
+		CompactGraph compactGraph = graph.getCompactGraph();
+		int outlines = 0;
+		int failures = 0;
+		for(int source = 0; source < compactGraph.getVertexCount(); source += SOURCE_STEP){
+			for(double budget : BUDGETS){
+				Isochrone isochrone = graph.calculateIsochrone(source, budget);
+				for(double cellSize : CELL_SIZES){
+					outlines++;
+					String problem;
+					try{
+						problem = check(compactGraph, isochrone, isochrone.getBoundary(cellSize));
+					}catch(RuntimeException e){
+						problem = e.toString();
+					}
+					if(problem != null){
+						failures++;
+						System.err.println("Isochrone from " + source + " within " + budget + " h with " + cellSize + " km cells: " + problem);
+					}
+				}
+			}
+		}
+		System.err.println((outlines - failures) + " of " + outlines + " outlines are correct");
+		if(failures > 0){
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Checks that every vertex reached lies inside the outline.
+	 * @param graph - The graph the search was run on.
+	 * @param isochrone - The vertexes reached.
+	 * @param rings - The outline of the isochrone.
+	 * @return A description of the first problem, or null if there is none.
+	 */
+	private static String check(CompactGraph graph, Isochrone isochrone, List<double[]> rings){
+		if(rings.isEmpty()){
+			return "no outline";
+		}
+		for(int i = 0; i < isochrone.size(); i++){
+			int vertex = isochrone.getVertex(i);
+			boolean inside = false;
+			for(double[] ring : rings){
+				for(int a = 0, b = ring.length - 2; a < ring.length; b = a, a += 2){ // Counts the ring edges crossed by a line due east of the vertex
+					if((ring[a] > graph.lat[vertex]) != (ring[b] > graph.lat[vertex])
+							&& graph.lon[vertex] < ring[a + 1] + (graph.lat[vertex] - ring[a]) * (ring[b + 1] - ring[a + 1]) / (ring[b] - ring[a])){
+						inside = !inside;
+					}
+				}
+			}
+			if(!inside){
+				return "vertex " + vertex + " is outside the outline";
+			}
+		}
+		return null;
+	}
+}
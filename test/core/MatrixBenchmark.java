@@ -0,0 +1,78 @@
+package core;
+
+import java.util.Random;
+
+/**
+ * The benchmark for travel time matrices, timing 100 by 100 and 1000 by 1000 matrices against finding each route on its own.
+ * <p>
+ * A grid map is generated with the builder from RouteSearchCheck, 300 vertexes along each side unless another size is given.
+ * The contraction hierarchy is built first and timed separately, then each matrix is calculated a few times so the JIT has
+ * warmed up before the last run is timed. The time for contraction hierarchy queries between every pair is estimated from a
+ * sample of them, and the sample is also checked against the matrix. One row is timed with a single one-to-many search too.
+ * <p>
+ * Run from the root of the project with:
+ * javac -d bin src/core/*.java test/core/*.java &amp;&amp; java -cp bin core.MatrixBenchmark [grid size]
+ * @author Jacob Pennington
+ *
+ */
+public class MatrixBenchmark {
+
+	private static final int DEFAULT_GRID_SIZE = 300; // About 90,000 vertexes
+	private static final int[] MATRIX_SIZES = {100, 1000};
+	private static final int RUNS = 3; // The matrix is calculated this many times and the last is timed
+	private static final int SAMPLE_PAIRS = 20000; // The most routes found on their own to estimate the time for every pair
+
+	/**
+	 * Runs the benchmark and prints the times.
+	 * @param args - The number of vertexes along each side of the grid, optional.
+	 */
+	public static void main(String[] args){
+		int gridSize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GRID_SIZE;
+		Graph graph = RouteSearchCheck.buildGraph(new Random(1), gridSize);
+		int vertexCount = graph.getCompactGraph().getVertexCount();
+		System.out.println(vertexCount + " vertexes");
+		double startTime = System.nanoTime();
+		graph.getContractionHierarchy();
+		System.out.println("Contraction hierarchy built in " + Utilities.round((System.nanoTime() - startTime)/1000000000, 2) + " seconds");
+		Random random = new Random(7);
+		for(int size : MATRIX_SIZES){
+			int[] sources = new int[size];
+			int[] targets = new int[size];
+			for(int i = 0; i < size; i++){
+				sources[i] = random.nextInt(vertexCount);
+				targets[i] = random.nextInt(vertexCount);
+			}
+			TravelMatrix matrix = null;
+			double matrixTime = 0;
+			for(int run = 0; run < RUNS; run++){
+				startTime = System.nanoTime();
+				matrix = graph.calculateTravelTimes(sources, targets);
+				matrixTime = (System.nanoTime() - startTime)/1000000;
+			}
+			startTime = System.nanoTime();
+			TravelMatrix row = graph.calculateTravelTimes(sources[0], targets);
+			double rowTime = (System.nanoTime() - startTime)/1000000;
+			int pairs = Math.min(size * size, SAMPLE_PAIRS);
+			int mismatches = 0;
+			startTime = System.nanoTime();
+			for(int k = 0; k < pairs; k++){
+				int i = k % size;
+				int j = (k / size) % size;
+				Route route = graph.quickestRoute(sources[i], targets[j], SearchMode.CONTRACTION_HIERARCHY);
+				double time = route == null ? Double.POSITIVE_INFINITY : route.getTime();
+				if(time != matrix.getTime(i, j) && Math.abs(time - matrix.getTime(i, j)) > 1e-9){
+					mismatches++;
+				}
+			}
+			double pairTime = (System.nanoTime() - startTime)/1000000 * size * size / pairs;
+			for(int j = 0; j < size; j++){
+				if(row.getTime(0, j) != matrix.getTime(0, j) && Math.abs(row.getTime(0, j) - matrix.getTime(0, j)) > 1e-9){
+					mismatches++;
+				}
+			}
+			System.out.println(size + "x" + size + ": matrix " + Utilities.round(matrixTime, 1) + " ms, every pair on its own about "
+					+ Utilities.round(pairTime, 1) + " ms, one row searched on its own " + Utilities.round(rowTime, 1) + " ms, "
+					+ mismatches + " mismatches");
+		}
+	}
+}
@@ -0,0 +1,292 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The check that routes found by every search mode are the same as those found by scanning every unsettled vertex.
+ * <p>
+ * A small map is generated as a grid of roads with uneven spacing, different road types, some one way roads and some
+ * vertexes no road reaches, so every part of the search is used. Routes between random pairs of vertexes are then found
+ * with Graph.quickestRoute and Graph.shortestRoute in each SearchMode that supports them, and compared with a plain Dijkstra
+ * search that finds the next vertex to settle by scanning every vertex, as the program did before the queue was added. The
+ * path, distance and time must match. Travel time matrices are checked the same way, once with few enough sources to be
+ * searched a row at a time and once with enough to use the contraction hierarchy.
+ * <p>
+ * The landmarks are saved to resources/landmarks.dat under the working directory as the program does, if that folder exists.
+ * Run from the root of the project with:
+ * javac -d bin src/core/*.java test/core/*.java &amp;&amp; java -cp bin core.RouteSearchCheck
+ * @author Jacob Pennington
+ *
+ */
+public class RouteSearchCheck {
+
+	static final int GRID_SIZE = 30; // The number of vertexes along each side of the grid checked
+	private static final int ISOLATED_VERTEXES = 5; // Vertexes on a road of their own, which cannot be reached from the grid
+	private static final int PAIRS = 300; // The number of routes compared for each ordering and mode
+	private static final int MATRIX_TARGETS = 40; // The number of columns of each matrix checked
+	private static final String[] HIGHWAYS = {"motorway", "primary", "secondary", "tertiary", "residential", "unclassified"};
+
+	/**
+	 * Runs the check, exiting with status 1 if any route or matrix entry differs.
+	 * @param args - Not used.
+	 */
+	public static void main(String[] args){
+		Graph graph = buildGraph(new Random(1), GRID_SIZE);
+		CompactGraph compactGraph = graph.getCompactGraph();
+		Random random = new Random(2);
+		int failures = 0;
+		int checks = 0;
+		int unreachable = 0;
+		Random matrixRandom = new Random(3);
+		int[] rowSources = randomVertexes(matrixRandom, compactGraph, Graph.MAXIMUM_ROW_SEARCHES / 2);
+		int[] hierarchySources = randomVertexes(matrixRandom, compactGraph, Graph.MAXIMUM_ROW_SEARCHES * 2);
+		int[] targets = randomVertexes(matrixRandom, compactGraph, MATRIX_TARGETS);
+		for(int[] sources : new int[][]{rowSources, hierarchySources}){ // The rows first, as they are only searched one at a time before the hierarchy is built
+			TravelMatrix matrix = graph.calculateTravelTimes(sources, targets);
+			for(int row = 0; row < sources.length; row++){
+				Search reference = scan(compactGraph, sources[row], true);
+				for(int column = 0; column < targets.length; column++){
+					checks++;
+					double time = reference.time[targets[column]];
+					double distance = reference.distance[targets[column]];
+					if(time == Double.MAX_VALUE){
+						time = Double.POSITIVE_INFINITY;
+						distance = Double.POSITIVE_INFINITY;
+					}
+					if(!isClose(matrix.getTime(row, column), time) || !isClose(matrix.getDistance(row, column), distance)){
+						failures++;
+						System.err.println("Matrix of " + sources.length + " sources from " + sources[row] + " to " + targets[column] + ": time " + matrix.getTime(row, column)
+								+ " and distance " + matrix.getDistance(row, column) + ", expected " + time + " and " + distance);
+					}
+				}
+			}
+		}
+		for(int i = 0; i < PAIRS; i++){
+			int source = random.nextInt(compactGraph.getVertexCount());
+			int destination = random.nextInt(compactGraph.getVertexCount());
+			for(boolean weighted : new boolean[]{true, false}){
+				Reference reference = scan(compactGraph, source, weighted).getRoute(destination);
+				if(reference == null){
+					unreachable++;
+				}
+				for(SearchMode mode : SearchMode.values()){
+					if(!weighted && (mode == SearchMode.CONTRACTION_HIERARCHY || mode == SearchMode.LANDMARKS)){
+						continue; // They only support quickest routes
+					}
+					checks++;
+					Route route = weighted ? graph.quickestRoute(source, destination, mode) : graph.shortestRoute(source, destination, mode);
+					String difference = compare(route, reference);
+					if(difference != null){
+						failures++;
+						System.err.println(mode + (weighted ? " quickest" : " shortest") + " route from " + source + " to " + destination + ": " + difference);
+					}
+				}
+			}
+		}
+		System.err.println((checks - failures) + " of " + checks + " routes and matrix entries match, " + unreachable + " of " + PAIRS * 2 + " pairs with no route");
+		if(failures > 0){
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Picks vertexes at random.
+	 * @param random - The source of the choices.
+	 * @param graph - The graph to pick from.
+	 * @param count - The number of vertexes to pick.
+	 * @return The indexes of the vertexes, which may repeat.
+	 */
+	private static int[] randomVertexes(Random random, CompactGraph graph, int count){
+		int[] vertexes = new int[count];
+		for(int i = 0; i < count; i++){
+			vertexes[i] = random.nextInt(graph.getVertexCount());
+		}
+		return vertexes;
+	}
+
+	/**
+	 * Checks two times or distances are the same apart from rounding, which differs when they are added up in another order.
+	 */
+	private static boolean isClose(double a, double b){
+		return a == b || Math.abs(a - b) <= 1e-9 * Math.max(1, Math.abs(b));
+	}
+
+	/**
+	 * Builds a grid of roads with jittered vertexes, so no two routes are exactly the same length.
+	 * @param random - The source of the jitter and road types.
+	 * @param gridSize - The number of vertexes along each side of the grid.
+	 * @return The graph.
+	 */
+	static Graph buildGraph(Random random, int gridSize){
+		int vertexCount = gridSize * gridSize + ISOLATED_VERTEXES;
+		long[] nodeIds = new long[vertexCount];
+		double[] lat = new double[vertexCount];
+		double[] lon = new double[vertexCount];
+		for(int v = 0; v < vertexCount; v++){
+			nodeIds[v] = 1000000 + v;
+			lat[v] = 51 + (v / gridSize) * 0.002 + random.nextDouble() * 0.001;
+			lon[v] = -1 + (v % gridSize) * 0.003 + random.nextDouble() * 0.001;
+		}
+		List<int[]> wayNodeLists = new ArrayList<int[]>();
+		List<HashMap<String,String>> tagLists = new ArrayList<HashMap<String,String>>();
+		for(int line = 0; line < gridSize; line++){ // One way along each row and one along each column
+			for(boolean row : new boolean[]{true, false}){
+				int[] nodes = new int[gridSize];
+				for(int i = 0; i < gridSize; i++){
+					nodes[i] = row ? line * gridSize + i : i * gridSize + line;
+				}
+				HashMap<String,String> tags = new HashMap<String,String>();
+				tags.put("highway", HIGHWAYS[random.nextInt(HIGHWAYS.length)]);
+				if(random.nextInt(4) == 0){
+					tags.put("oneway", random.nextBoolean() ? "yes" : "-1");
+				}
+				if(random.nextInt(5) == 0){
+					tags.put("maxspeed", (20 + 10 * random.nextInt(5)) + " mph");
+				}
+				wayNodeLists.add(nodes);
+				tagLists.add(tags);
+			}
+		}
+		for(int i = 0; i + 1 < ISOLATED_VERTEXES; i += 2){ // Short roads that do not join the grid
+			HashMap<String,String> tags = new HashMap<String,String>();
+			tags.put("highway", "residential");
+			wayNodeLists.add(new int[]{gridSize * gridSize + i, gridSize * gridSize + i + 1});
+			tagLists.add(tags);
+		}
+		long[] wayIds = new long[wayNodeLists.size()];
+		int[] wayNodeStart = new int[wayNodeLists.size() + 1];
+		for(int w = 0; w < wayIds.length; w++){
+			wayIds[w] = 5000 + w;
+			wayNodeStart[w + 1] = wayNodeStart[w] + wayNodeLists.get(w).length;
+		}
+		int[] wayNodes = new int[wayNodeStart[wayIds.length]];
+		for(int w = 0; w < wayIds.length; w++){
+			System.arraycopy(wayNodeLists.get(w), 0, wayNodes, wayNodeStart[w], wayNodeLists.get(w).length);
+		}
+		return new Graph(nodeIds, lat, lon, wayNodeStart, wayNodes, new WayTable(wayIds, tagLists));
+	}
+
+	/**
+	 * A private class for storing a route found by the reference search.
+	 * @author Jacob Pennington
+	 *
+	 */
+	private static class Reference {
+		int[] vertexes; // The vertexes of the route from the source to the destination
+		double distance; // The length of the route in km
+		double time; // The time of the route in hours
+	}
+
+	/**
+	 * A private class for storing a finished reference search from one source to every vertex it can reach.
+	 * @author Jacob Pennington
+	 *
+	 */
+	private static class Search {
+		double[] distance; // The length of the best route to each vertex, Double.MAX_VALUE if it cannot be reached
+		double[] time; // The time of that route
+		int[] previous; // The vertex before each vertex on its route, -1 for the source and vertexes not reached
+
+		/**
+		 * Follows the previous vertexes back from a destination to find the route to it.
+		 * @param destination - The index of the destination vertex.
+		 * @return The route, or null if the destination cannot be reached.
+		 */
+		Reference getRoute(int destination){
+			if(distance[destination] == Double.MAX_VALUE){
+				return null;
+			}
+			IntList path = new IntList();
+			for(int v = destination; v != -1; v = previous[v]){
+				path.add(v);
+			}
+			Reference reference = new Reference();
+			reference.vertexes = new int[path.size()];
+			for(int i = 0; i < path.size(); i++){
+				reference.vertexes[i] = path.get(path.size() - 1 - i);
+			}
+			reference.distance = distance[destination];
+			reference.time = time[destination];
+			return reference;
+		}
+	}
+
+	/**
+	 * Runs Dijkstra's algorithm from a source to every vertex, finding the next vertex to settle by scanning every vertex.
+	 * @param graph - The graph to search.
+	 * @param source - The index of the source vertex.
+	 * @param weighted - True to order the search by time, false to order it by distance.
+	 * @return The finished search.
+	 */
+	private static Search scan(CompactGraph graph, int source, boolean weighted){
+		int vertexCount = graph.getVertexCount();
+		Search search = new Search();
+		double[] distance = search.distance = new double[vertexCount];
+		double[] time = search.time = new double[vertexCount];
+		int[] previous = search.previous = new int[vertexCount];
+		boolean[] settled = new boolean[vertexCount];
+		for(int v = 0; v < vertexCount; v++){
+			distance[v] = Double.MAX_VALUE;
+			time[v] = Double.MAX_VALUE;
+			previous[v] = -1;
+		}
+		distance[source] = 0;
+		time[source] = 0;
+		while(true){
+			int workingVertex = -1;
+			for(int v = 0; v < vertexCount; v++){ // The unsettled vertex with the smallest working distance
+				if(!settled[v] && (weighted ? time[v] : distance[v]) != Double.MAX_VALUE
+						&& (workingVertex == -1 || (weighted ? time[v] < time[workingVertex] : distance[v] < distance[workingVertex]))){
+					workingVertex = v;
+				}
+			}
+			if(workingVertex == -1){
+				return search;
+			}
+			settled[workingVertex] = true;
+			for(int edge = graph.firstEdge[workingVertex]; edge < graph.firstEdge[workingVertex + 1]; edge++){
+				if((graph.edgeFlags[edge] & CompactGraph.TRAVERSABLE) == 0){
+					continue;
+				}
+				int target = graph.edgeTarget[edge];
+				double workingDistance = distance[workingVertex] + graph.edgeDistance[edge];
+				double workingTime = time[workingVertex] + graph.edgeTime[edge];
+				if(!settled[target] && (weighted ? workingTime < time[target] : workingDistance < distance[target])){
+					distance[target] = workingDistance;
+					time[target] = workingTime;
+					previous[target] = workingVertex;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compares a route with the reference route between the same vertexes.
+	 * @param route - The route found by the graph, or null.
+	 * @param reference - The reference route, or null.
+	 * @return A description of the first difference, or null if they are the same.
+	 */
+	private static String compare(Route route, Reference reference){
+		if(route == null || reference == null){
+			if(route == null && reference == null){
+				return null;
+			}
+			return route == null ? "no route found, expected one" : "a route was found, expected none";
+		}
+		if(route.size() != reference.vertexes.length){
+			return route.size() + " vertexes, expected " + reference.vertexes.length;
+		}
+		for(int i = 0; i < route.size(); i++){
+			if(route.getVertex(i) != reference.vertexes[i]){
+				return "vertex " + i + " is " + route.getVertex(i) + ", expected " + reference.vertexes[i];
+			}
+		}
+		if(!isClose(route.getDistance(), reference.distance) || !isClose(route.getTime(), reference.time)){
+			return "distance " + route.getDistance() + " and time " + route.getTime() + ", expected " + reference.distance + " and " + reference.time;
+		}
+		return null;
+	}
+}